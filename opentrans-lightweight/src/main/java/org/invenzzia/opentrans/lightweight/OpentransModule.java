@@ -104,6 +104,7 @@ public class OpentransModule extends AbstractModule {
 		this.bindInterceptor(Matchers.any(), Matchers.annotatedWith(InModelThread.class), mti);
 		
 		SwingThreadInterceptor sti = new SwingThreadInterceptor();
+		this.bind(SwingThreadInterceptor.class).toInstance(sti);
 		this.bindInterceptor(Matchers.any(), Matchers.annotatedWith(InSwingThread.class), sti);
 
 		// Bind controller utils
@@ -21,11 +21,19 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import org.invenzzia.opentrans.lightweight.concurrent.MessagePriority;
 
 /**
  * Forces the annotated method to be always executed in the model thread through
  * the interception technique.
  * 
+ * <p>The methods that return {@link com.google.common.util.concurrent.ListenableFuture}
+ * are invoked in the future mode: the caller never waits, and immediately gets a future
+ * that completes with the result of the future returned by the method in the model thread.
+ * The continuations can be passed back to the Swing thread by calling the methods annotated
+ * with {@link InSwingThread}. In this mode, <tt>asynchronous</tt> and <tt>coalesce</tt> are
+ * ignored.</p>
+ * 
  * @author Tomasz Jędrzejewski
  */
 @Retention(RetentionPolicy.RUNTIME)
@@ -33,4 +41,18 @@ import java.lang.annotation.Target;
 @Documented
 public @interface InModelThread {
 	boolean asynchronous() default true;
+	/**
+	 * Applies to the asynchronous calls only. If the previous call of the same method
+	 * on the same object still waits in the queue, it is replaced by the new one, so
+	 * that the model thread processes only the latest arguments. Use it for the events
+	 * that come in bursts and carry the complete state, such as camera updates.
+	 */
+	boolean coalesce() default false;
+	/**
+	 * The pending calls of a higher priority are executed first. Use {@link MessagePriority#INTERACTIVE}
+	 * for the calls that follow the user input directly, and {@link MessagePriority#BACKGROUND}
+	 * for the work the user does not wait for. Note that the calls of different priorities
+	 * may be executed in a different order than they were made.
+	 */
+	MessagePriority priority() default MessagePriority.NORMAL;
 }
@@ -23,12 +23,12 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import org.invenzzia.opentrans.lightweight.annotations.InModelThread;
+import org.invenzzia.opentrans.lightweight.concurrent.MessagePriority;
 import org.invenzzia.opentrans.lightweight.concurrent.ModelThread;
 import org.invenzzia.opentrans.lightweight.events.CameraUpdatedEvent;
 import org.invenzzia.opentrans.visitons.Project.ProjectRecord;
 import org.invenzzia.opentrans.visitons.events.NewProjectEvent;
 import org.invenzzia.opentrans.visitons.events.WorldSizeChangedEvent;
-import org.invenzzia.opentrans.visitons.network.Segment;
 import org.invenzzia.opentrans.visitons.network.World;
 import org.invenzzia.opentrans.visitons.render.CameraModel;
 import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
@@ -68,15 +68,12 @@ public class CameraListener {
 	}
 
 	@Subscribe
-	@InModelThread(asynchronous = true)
+	@InModelThread(asynchronous = true, coalesce = true, priority = MessagePriority.INTERACTIVE)
 	public void notifyCameraUpdated(final CameraUpdatedEvent event) {
 		final CameraModelSnapshot snapshot = event.getSnapshot();
-		final VisibleSegmentSnapshot vss = new VisibleSegmentSnapshot();
 		final World world = this.worldProvider.get();
 		if(null != world) {
-			for(Segment segment: world.getVisibleSegments(snapshot)) {
-				vss.addSegmentInfo(new VisibleSegmentSnapshot.SegmentInfo(segment, null));
-			}
+			final VisibleSegmentSnapshot vss = world.exportVisibleSegments(snapshot);
 			sceneManager.guard();
 			try {
 				sceneManager.batchUpdateResource(CameraModelSnapshot.class, snapshot);
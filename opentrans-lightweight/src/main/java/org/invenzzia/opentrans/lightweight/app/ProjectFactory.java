@@ -18,7 +18,11 @@
 package org.invenzzia.opentrans.lightweight.app;
 
 import com.google.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
 import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.io.ProjectReader;
+import org.invenzzia.opentrans.visitons.io.ProjectWriter;
 
 /**
  * Description here.
@@ -32,7 +36,26 @@ public class ProjectFactory {
 		return new Project();
 	}
 	
-	public Project openExistingProject(String path) {
-		return new Project();
+	/**
+	 * Loads the project from the project file.
+	 * 
+	 * @param path Path to the project file.
+	 * @return The loaded project.
+	 * @throws IOException If the file cannot be read or is damaged.
+	 */
+	public Project openExistingProject(String path) throws IOException {
+		return new ProjectReader().read(new File(path));
+	}
+	
+	/**
+	 * Writes the project to the project file. The method must be called within the
+	 * model thread.
+	 * 
+	 * @param project The project to save.
+	 * @param path Path to the project file.
+	 * @throws IOException If the file cannot be written.
+	 */
+	public void saveProject(Project project, String path) throws IOException {
+		new ProjectWriter().write(project, new File(path));
 	}
 }
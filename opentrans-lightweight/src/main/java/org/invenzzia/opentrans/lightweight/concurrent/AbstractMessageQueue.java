@@ -17,60 +17,176 @@
 
 package org.invenzzia.opentrans.lightweight.concurrent;
 
+import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import net.jcip.annotations.GuardedBy;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Description here.
+ * Message queue with many producers and a single consumer: the thread of the service.
+ * The messages are kept in lock-free queues, one per {@link MessagePriority}, so that
+ * enqueuing never waits for the consumer, even if it executes a long operation. The
+ * consumer drains all the pending messages at once, and parks only if all the queues
+ * are empty.
+ * 
+ * <p>Every queue collects its {@link MessageQueueStatistics}. To group them by the
+ * message name, the messages shall implement {@link INamedMessage}.</p>
  * 
  * @author Tomasz Jędrzejewski
  */
 public abstract class AbstractMessageQueue extends AbstractExecutionThreadService {
 	/**
-	 * Lock for controlling the access to the request queue.
+	 * Requests awaiting processing, indexed by the priority ordinal.
+	 */
+	private final Queue<TimedMessage> messages[];
+	/**
+	 * Set by the consumer before it parks; the producer that clears it must wake it up.
 	 */
-	private final Lock lock = new ReentrantLock();
+	private final AtomicBoolean sleeping = new AtomicBoolean(false);
 	/**
-	 * For signalling the arrival of the new request.
+	 * The latest pending message for every coalescing key, see {@link #enqueueLatest}.
 	 */
-	private final Condition notEmpty = this.lock.newCondition();
+	private final ConcurrentMap<Object, Runnable> latestMessages = new ConcurrentHashMap<>();
 	/**
-	 * Requests awaiting processing.
+	 * Number of the messages dropped by coalescing, per key.
 	 */
-	protected final List<Runnable> messages = new LinkedList<>();
+	private final ConcurrentMap<Object, AtomicLong> coalescedMessages = new ConcurrentHashMap<>();
 	/**
-	 * For the implementation of {@link AbstractMessageQueue#enqueueAndWait}
+	 * Total number of the messages dropped by coalescing.
 	 */
-	protected final Map<Runnable, CountDownLatch> blockers = new LinkedHashMap<>();
+	private final AtomicLong coalescedMessageNum = new AtomicLong();
 	/**
 	 * The execution thread.
 	 */
-	private Thread executionThread;
+	private volatile Thread executionThread;
+	/**
+	 * Queue depth, latencies and execution times.
+	 */
+	private final MessageQueueStatistics statistics;
+	
+	@SuppressWarnings("unchecked")
+	public AbstractMessageQueue() {
+		this.statistics = new MessageQueueStatistics(this.getClass().getSimpleName());
+		MessagePriority priorities[] = MessagePriority.values();
+		this.messages = new Queue[priorities.length];
+		for(int i = 0; i < priorities.length; i++) {
+			this.messages[i] = new ConcurrentLinkedQueue<>();
+		}
+	}
 	
 	/**
 	 * Enqueues a new task to be executed by this message queue.
 	 *
-	 * @param request
+	 * @param msg The task to execute.
 	 */
 	public void enqueue(Runnable msg) {
-		if(this.state() == State.TERMINATED) {
-			throw new IllegalStateException("The scheduler '%s' is terminated.");
+		this.enqueue(msg, MessagePriority.NORMAL);
+	}
+	
+	/**
+	 * Enqueues a new task to be executed by this message queue with the given priority.
+	 *
+	 * @param msg The task to execute.
+	 * @param priority Message priority.
+	 */
+	public void enqueue(Runnable msg, MessagePriority priority) {
+		this.enqueue(msg, getMessageName(msg), priority);
+	}
+	
+	private void enqueue(Runnable msg, String name, MessagePriority priority) {
+		this.checkNotTerminated();
+		this.statistics.messageEnqueued();
+		this.messages[priority.ordinal()].add(new TimedMessage(msg, name, System.nanoTime()));
+		this.wakeUp();
+	}
+	
+	/**
+	 * Enqueues a new task, where only the latest task for the given key matters. If
+	 * the previous task with the same key has not been executed yet, it is dropped and
+	 * the new one takes its place in the queue.
+	 * 
+	 * @param key Coalescing key.
+	 * @param msg The task to execute.
+	 */
+	public void enqueueLatest(Object key, Runnable msg) {
+		this.enqueueLatest(key, msg, MessagePriority.NORMAL);
+	}
+	
+	/**
+	 * Enqueues a new task, where only the latest task for the given key matters, with
+	 * the given priority.
+	 * 
+	 * @param key Coalescing key.
+	 * @param msg The task to execute.
+	 * @param priority Message priority.
+	 */
+	public void enqueueLatest(final Object key, Runnable msg, MessagePriority priority) {
+		this.checkNotTerminated();
+		if(null != this.latestMessages.put(key, msg)) {
+			// The consumer has not taken the previous task yet, and it will find ours.
+			AtomicLong num = this.coalescedMessages.get(key);
+			if(null == num) {
+				AtomicLong created = new AtomicLong();
+				num = this.coalescedMessages.putIfAbsent(key, created);
+				if(null == num) {
+					num = created;
+				}
+			}
+			num.incrementAndGet();
+			this.coalescedMessageNum.incrementAndGet();
+		} else {
+			this.enqueue(new Runnable() {
+				@Override
+				public void run() {
+					Runnable latest = latestMessages.remove(key);
+					if(null != latest) {
+						latest.run();
+					}
+				}
+			}, getMessageName(msg), priority);
 		}
-		this.lock.lock();
-		try {
-			this.messages.add(msg);
-			this.notEmpty.signal();
-		} finally {
-			this.lock.unlock();
+	}
+	
+	/**
+	 * @return Total number of the messages dropped by {@link #enqueueLatest}.
+	 */
+	public long getCoalescedMessageNum() {
+		return this.coalescedMessageNum.get();
+	}
+	
+	/**
+	 * @param key Coalescing key.
+	 * @return Number of the messages with the given key dropped by {@link #enqueueLatest}.
+	 */
+	public long getCoalescedMessageNum(Object key) {
+		AtomicLong num = this.coalescedMessages.get(key);
+		return null == num ? 0L : num.get();
+	}
+	
+	/**
+	 * @return Number of the messages waiting for the execution.
+	 */
+	public int getPendingMessageNum() {
+		int num = 0;
+		for(Queue<TimedMessage> queue: this.messages) {
+			num += queue.size();
 		}
+		return num;
+	}
+	
+	/**
+	 * @return Statistics of this message queue.
+	 */
+	public MessageQueueStatistics getStatistics() {
+		return this.statistics;
 	}
 	
 	/**
@@ -84,45 +200,57 @@ public abstract class AbstractMessageQueue extends AbstractExecutionThreadServic
 	}
 	
 	/**
-	 * Enqueues a new task to be executed by this message queue.
+	 * Enqueues a new task and returns its completion handle. The handle is completed
+	 * once the task is executed, and carries its exception, if any.
+	 * 
+	 * @param msg The task to execute.
+	 * @param priority Message priority.
+	 * @return Completion handle.
+	 */
+	public ListenableFuture<?> submit(Runnable msg, MessagePriority priority) {
+		ListenableFutureTask<Void> task = ListenableFutureTask.create(msg, null);
+		this.enqueue(task, getMessageName(msg), priority);
+		return task;
+	}
+	
+	/**
+	 * Enqueues a new task to be executed by this message queue and waits until it
+	 * is executed. The unchecked exceptions of the task are rethrown.
 	 *
-	 * @param request
+	 * @param msg The task to execute.
 	 */
 	public void enqueueAndWait(Runnable msg) throws InterruptedException {
-		if(this.state() == State.TERMINATED) {
-			throw new IllegalStateException("The scheduler '%s' is terminated.");
-		}
-		CountDownLatch latch = new CountDownLatch(1);
-		
-		this.lock.lock();
+		this.enqueueAndWait(msg, MessagePriority.NORMAL);
+	}
+	
+	/**
+	 * Enqueues a new task to be executed by this message queue with the given priority,
+	 * and waits until it is executed. The unchecked exceptions of the task are rethrown.
+	 *
+	 * @param msg The task to execute.
+	 * @param priority Message priority.
+	 */
+	public void enqueueAndWait(Runnable msg, MessagePriority priority) throws InterruptedException {
+		ListenableFuture<?> handle = this.submit(msg, priority);
 		try {
-			this.blockers.put(msg, latch);
-			this.messages.add(msg);
-			this.notEmpty.signal();
-		} finally {
-			this.lock.unlock();
+			handle.get();
+		} catch(ExecutionException exception) {
+			throw Throwables.propagate(exception.getCause());
 		}
-		latch.await();
 	}
 
-
 	@Override
 	public void run() {
-		if(this.state() == State.TERMINATED) {
-			throw new IllegalStateException("The scheduler '%s' is terminated.");
-		}
+		this.checkNotTerminated();
 		this.executionThread = Thread.currentThread();
 		try {
-			main:while(this.isRunning()) {
-				this.lock.lock();
+			while(this.isRunning()) {
 				try {
 					this.executeStep();
 				} catch(InterruptedException exception) {
 					if(!this.isRunning()) {
-						break main;
+						break;
 					}
-				} finally {
-					this.lock.unlock();
 				}
 			}
 		} finally {
@@ -130,18 +258,24 @@ public abstract class AbstractMessageQueue extends AbstractExecutionThreadServic
 		}
 	}
 	
+	/**
+	 * Wakes up the consumer, so that it notices the stop request.
+	 */
+	@Override
+	protected void triggerShutdown() {
+		Thread thread = this.executionThread;
+		if(null != thread) {
+			LockSupport.unpark(thread);
+		}
+	}
+	
 	/**
 	 * Clears the request buffer by executing all the remaining requests. This is done to avoid deadlocks when we terminate the
 	 * scheduler and there are some threads waiting on their future objects.
 	 */
 	@Override
 	protected void shutDown() {
-		this.lock.lock();
-		try {
-			this.processMessages();
-		} finally {
-			this.lock.unlock();
-		}
+		this.processMessages();
 	}
 	
 	/**
@@ -152,44 +286,105 @@ public abstract class AbstractMessageQueue extends AbstractExecutionThreadServic
 	abstract protected void executeStep() throws InterruptedException;
 	
 	/**
-	 * Suspends the execution of the thread until new requests are available.
+	 * Suspends the execution of the thread until new requests are available or the
+	 * service is stopped.
 	 */
 	protected void waitForMessages() throws InterruptedException {
-		while(this.messages.isEmpty()) {
-			this.notEmpty.await();
+		while(!this.hasMessages() && this.isRunning()) {
+			this.sleeping.set(true);
+			// Check again: the producer might have added a message before we set the flag.
+			if(this.hasMessages()) {
+				this.sleeping.set(false);
+				return;
+			}
+			LockSupport.park(this);
+			this.sleeping.set(false);
+			if(Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+	
+	/**
+	 * @return True, if any message awaits processing.
+	 */
+	protected boolean hasMessages() {
+		for(Queue<TimedMessage> queue: this.messages) {
+			if(!queue.isEmpty()) {
+				return true;
+			}
 		}
+		return false;
 	}
 	
 	/**
-	 * Processes all the messages in the queue.
+	 * Processes all the messages in the queue, the higher priorities first. The messages
+	 * that arrive in the meantime are processed, too.
 	 */
-	@GuardedBy("guard()")
 	protected void processMessages() {
-		while(!this.messages.isEmpty()) {
-			Runnable runnable = this.messages.remove(0);
+		TimedMessage message;
+		while(null != (message = this.nextMessage())) {
+			long start = System.nanoTime();
 			try {
-				runnable.run();
+				message.runnable.run();
 			} finally {
-				CountDownLatch latch = this.blockers.remove(runnable);
-				if(null != latch) {
-					latch.countDown();
-				}
+				this.statistics.messageExecuted(message.name, start - message.enqueueTime, System.nanoTime() - start);
 			}
 		}
 	}
 	
 	/**
-	 * Locks the messaging queue.
+	 * @return The next message to execute or null.
 	 */
-	protected void guard() {
-		this.lock.lock();
+	private TimedMessage nextMessage() {
+		for(Queue<TimedMessage> queue: this.messages) {
+			TimedMessage message = queue.poll();
+			if(null != message) {
+				this.statistics.messageDequeued();
+				return message;
+			}
+		}
+		return null;
+	}
+	
+	private static String getMessageName(Runnable msg) {
+		if(msg instanceof INamedMessage) {
+			return ((INamedMessage) msg).getMessageName();
+		}
+		return null;
 	}
 	
 	/**
-	 * Unlocks the messaging queue.
+	 * Wakes up the consumer after a message is enqueued. The subclasses that wait for
+	 * something else than the messages shall wake up from that, too.
 	 */
-	protected void unguard() {
-		this.lock.unlock();
+	protected void wakeUp() {
+		if(this.sleeping.compareAndSet(true, false)) {
+			LockSupport.unpark(this.executionThread);
+		}
+	}
+	
+	private void checkNotTerminated() {
+		if(this.state() == State.TERMINATED) {
+			throw new IllegalStateException("The scheduler '"+this.getClass().getSimpleName()+"' is terminated.");
+		}
 	}
 	
+	/**
+	 * The enqueued message together with its name and the time of enqueuing.
+	 */
+	private static final class TimedMessage {
+		final Runnable runnable;
+		final String name;
+		/**
+		 * [ns]
+		 */
+		final long enqueueTime;
+		
+		TimedMessage(Runnable runnable, String name, long enqueueTime) {
+			this.runnable = runnable;
+			this.name = name;
+			this.enqueueTime = enqueueTime;
+		}
+	}
 }
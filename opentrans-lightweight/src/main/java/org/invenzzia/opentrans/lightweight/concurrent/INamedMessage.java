@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.lightweight.concurrent;
+
+/**
+ * Message that tells its name to the message queue, so that the queue statistics
+ * could be grouped by it, i.e. by the intercepted method.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public interface INamedMessage extends Runnable {
+	/**
+	 * @return Name of the message shown in the statistics and in the slow message log.
+	 */
+	public String getMessageName();
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.lightweight.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Lock-free histogram of durations with logarithmic buckets: the bucket <tt>i</tt> counts
+ * the durations shorter than <tt>2^i</tt> microseconds, so that recording a sample costs
+ * a few atomic increments, regardless of the number of samples. The percentiles are
+ * therefore approximate: they return the upper bound of the bucket.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+@ThreadSafe
+public class LatencyHistogram {
+	/**
+	 * The last bucket counts everything longer than about 17 minutes.
+	 */
+	public static final int BUCKET_NUM = 31;
+	/**
+	 * Number of samples in each bucket.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_NUM);
+	private final AtomicLong sampleNum = new AtomicLong();
+	/**
+	 * Sum of all the samples [ns].
+	 */
+	private final AtomicLong totalTime = new AtomicLong();
+	/**
+	 * The longest sample [ns].
+	 */
+	private final AtomicLong maxTime = new AtomicLong();
+	
+	/**
+	 * Records a new sample.
+	 * 
+	 * @param time Duration [ns].
+	 */
+	public void record(long time) {
+		if(time < 0L) {
+			time = 0L;
+		}
+		long micros = time / 1000L;
+		int bucket = 64 - Long.numberOfLeadingZeros(micros);
+		this.buckets.incrementAndGet(Math.min(bucket, BUCKET_NUM - 1));
+		this.sampleNum.incrementAndGet();
+		this.totalTime.addAndGet(time);
+		long max;
+		while(time > (max = this.maxTime.get())) {
+			if(this.maxTime.compareAndSet(max, time)) {
+				break;
+			}
+		}
+	}
+	
+	public long getSampleNum() {
+		return this.sampleNum.get();
+	}
+	
+	/**
+	 * @return Mean duration [ns].
+	 */
+	public long getMeanTime() {
+		long num = this.sampleNum.get();
+		if(0L == num) {
+			return 0L;
+		}
+		return this.totalTime.get() / num;
+	}
+	
+	/**
+	 * @return The longest duration [ns].
+	 */
+	public long getMaxTime() {
+		return this.maxTime.get();
+	}
+	
+	/**
+	 * Returns the approximate percentile, i.e. the upper bound of the bucket that contains it.
+	 * The samples recorded concurrently may or may not be taken into account.
+	 * 
+	 * @param percentile Percentile from the range (0, 1].
+	 * @return Duration [ns].
+	 */
+	public long getPercentile(double percentile) {
+		long counts[] = new long[BUCKET_NUM];
+		long num = 0L;
+		for(int i = 0; i < BUCKET_NUM; i++) {
+			counts[i] = this.buckets.get(i);
+			num += counts[i];
+		}
+		if(0L == num) {
+			return 0L;
+		}
+		long threshold = (long) Math.ceil(percentile * num);
+		long sum = 0L;
+		for(int i = 0; i < BUCKET_NUM; i++) {
+			sum += counts[i];
+			if(sum >= threshold) {
+				return Math.min((1L << i) * 1000L, this.maxTime.get());
+			}
+		}
+		return this.maxTime.get();
+	}
+	
+	/**
+	 * Forgets all the samples.
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKET_NUM; i++) {
+			this.buckets.set(i, 0L);
+		}
+		this.sampleNum.set(0L);
+		this.totalTime.set(0L);
+		this.maxTime.set(0L);
+	}
+}
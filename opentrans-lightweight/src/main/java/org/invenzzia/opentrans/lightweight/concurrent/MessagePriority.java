@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.lightweight.concurrent;
+
+/**
+ * Priorities of the messages sent to the {@link AbstractMessageQueue}. The queue always
+ * executes the pending messages of a higher priority first, and keeps the order of the
+ * messages within the same priority.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public enum MessagePriority {
+	/**
+	 * The work driven directly by the user input, such as moving the camera.
+	 */
+	INTERACTIVE,
+	/**
+	 * The default priority.
+	 */
+	NORMAL,
+	/**
+	 * The work the user does not wait for, i.e. exports and refreshing the secondary views.
+	 */
+	BACKGROUND;
+}
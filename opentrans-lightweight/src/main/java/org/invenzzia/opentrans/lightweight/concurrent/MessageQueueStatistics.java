@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.lightweight.concurrent;
+
+import com.google.common.base.Preconditions;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the statistics of a single {@link AbstractMessageQueue} or of the calls passed to
+ * the Swing thread: the queue depth, the time the messages wait for the execution and the
+ * execution time, both in total and for every message name (i.e. the intercepted method, see
+ * {@link INamedMessage}). The messages that run longer than the threshold are logged together
+ * with their name, which helps finding the source of the UI freezes.
+ * 
+ * <p>Recording is lock-free, so that the queues can report from any thread. The statistics
+ * can be read from any thread, too, or accessed through JMX, once {@link #registerMBean()}
+ * is called.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+@ThreadSafe
+public class MessageQueueStatistics implements MessageQueueStatisticsMXBean {
+	/**
+	 * Default threshold of the slow message log [ms].
+	 */
+	public static final long DEFAULT_SLOW_MESSAGE_THRESHOLD = 100L;
+	/**
+	 * Name used for the messages that do not implement {@link INamedMessage}.
+	 */
+	public static final String UNNAMED_MESSAGE = "(unnamed)";
+	/**
+	 * Prefix of the JMX bean name; the queue name is appended.
+	 */
+	public static final String MBEAN_NAME = "org.invenzzia.opentrans:type=MessageQueue,name=";
+	private final Logger logger = LoggerFactory.getLogger(MessageQueueStatistics.class);
+	/**
+	 * Name of the observed queue.
+	 */
+	private final String queueName;
+	private final AtomicInteger pendingMessageNum = new AtomicInteger();
+	private final AtomicInteger maxPendingMessageNum = new AtomicInteger();
+	/**
+	 * Time between enqueuing and starting the execution.
+	 */
+	private final LatencyHistogram waitTimes = new LatencyHistogram();
+	private final LatencyHistogram executionTimes = new LatencyHistogram();
+	/**
+	 * Execution times per message name.
+	 */
+	private final ConcurrentMap<String, LatencyHistogram> messageTimes = new ConcurrentHashMap<>();
+	/**
+	 * Slow message threshold [ns].
+	 */
+	private volatile long slowMessageThreshold = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_MESSAGE_THRESHOLD);
+	private final AtomicLong slowMessageNum = new AtomicLong();
+	private volatile String lastSlowMessage;
+	
+	public MessageQueueStatistics(String queueName) {
+		this.queueName = Preconditions.checkNotNull(queueName);
+	}
+	
+	/**
+	 * Called by the queue, when a message is enqueued.
+	 */
+	public void messageEnqueued() {
+		int num = this.pendingMessageNum.incrementAndGet();
+		int max;
+		while(num > (max = this.maxPendingMessageNum.get())) {
+			if(this.maxPendingMessageNum.compareAndSet(max, num)) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Called by the queue, when a message is taken for the execution.
+	 */
+	public void messageDequeued() {
+		this.pendingMessageNum.decrementAndGet();
+	}
+	
+	/**
+	 * Called by the queue after executing a message.
+	 * 
+	 * @param name Message name, may be null.
+	 * @param waitTime Time between enqueuing and starting the execution [ns].
+	 * @param executionTime [ns]
+	 */
+	public void messageExecuted(String name, long waitTime, long executionTime) {
+		if(null == name) {
+			name = UNNAMED_MESSAGE;
+		}
+		this.waitTimes.record(waitTime);
+		this.executionTimes.record(executionTime);
+		LatencyHistogram histogram = this.messageTimes.get(name);
+		if(null == histogram) {
+			LatencyHistogram created = new LatencyHistogram();
+			histogram = this.messageTimes.putIfAbsent(name, created);
+			if(null == histogram) {
+				histogram = created;
+			}
+		}
+		histogram.record(executionTime);
+		if(executionTime > this.slowMessageThreshold) {
+			this.slowMessageNum.incrementAndGet();
+			String description = String.format("%s: %.1f ms, waited %.1f ms", name, toMillis(executionTime), toMillis(waitTime));
+			this.lastSlowMessage = description;
+			logger.warn("Slow message in {}: {}", this.queueName, description);
+		}
+	}
+	
+	@Override
+	public String getQueueName() {
+		return this.queueName;
+	}
+
+	@Override
+	public int getPendingMessageNum() {
+		return Math.max(this.pendingMessageNum.get(), 0);
+	}
+
+	@Override
+	public int getMaxPendingMessageNum() {
+		return this.maxPendingMessageNum.get();
+	}
+
+	@Override
+	public long getProcessedMessageNum() {
+		return this.executionTimes.getSampleNum();
+	}
+
+	@Override
+	public double getMeanWaitTime() {
+		return toMillis(this.waitTimes.getMeanTime());
+	}
+
+	@Override
+	public double getP99WaitTime() {
+		return toMillis(this.waitTimes.getPercentile(0.99));
+	}
+
+	@Override
+	public double getMaxWaitTime() {
+		return toMillis(this.waitTimes.getMaxTime());
+	}
+
+	@Override
+	public double getMeanExecutionTime() {
+		return toMillis(this.executionTimes.getMeanTime());
+	}
+
+	@Override
+	public double getP99ExecutionTime() {
+		return toMillis(this.executionTimes.getPercentile(0.99));
+	}
+
+	@Override
+	public double getMaxExecutionTime() {
+		return toMillis(this.executionTimes.getMaxTime());
+	}
+
+	@Override
+	public String[] getMessageNames() {
+		List<String> names = new ArrayList<>(this.messageTimes.keySet());
+		Collections.sort(names);
+		return names.toArray(new String[names.size()]);
+	}
+
+	@Override
+	public long[] getMessageCallNums() {
+		String names[] = this.getMessageNames();
+		long result[] = new long[names.length];
+		for(int i = 0; i < names.length; i++) {
+			result[i] = this.getMessageHistogram(names[i]).getSampleNum();
+		}
+		return result;
+	}
+
+	@Override
+	public double[] getMessageMeanExecutionTimes() {
+		String names[] = this.getMessageNames();
+		double result[] = new double[names.length];
+		for(int i = 0; i < names.length; i++) {
+			result[i] = toMillis(this.getMessageHistogram(names[i]).getMeanTime());
+		}
+		return result;
+	}
+
+	@Override
+	public double[] getMessageP99ExecutionTimes() {
+		String names[] = this.getMessageNames();
+		double result[] = new double[names.length];
+		for(int i = 0; i < names.length; i++) {
+			result[i] = toMillis(this.getMessageHistogram(names[i]).getPercentile(0.99));
+		}
+		return result;
+	}
+
+	@Override
+	public double[] getMessageMaxExecutionTimes() {
+		String names[] = this.getMessageNames();
+		double result[] = new double[names.length];
+		for(int i = 0; i < names.length; i++) {
+			result[i] = toMillis(this.getMessageHistogram(names[i]).getMaxTime());
+		}
+		return result;
+	}
+	
+	/**
+	 * @param name Message name.
+	 * @return Execution times of the messages with the given name; empty if there are none.
+	 */
+	public LatencyHistogram getMessageHistogram(String name) {
+		LatencyHistogram histogram = this.messageTimes.get(name);
+		return null == histogram ? new LatencyHistogram() : histogram;
+	}
+
+	@Override
+	public long getSlowMessageThreshold() {
+		return TimeUnit.NANOSECONDS.toMillis(this.slowMessageThreshold);
+	}
+
+	@Override
+	public void setSlowMessageThreshold(long threshold) {
+		Preconditions.checkArgument(threshold >= 0L, "The threshold cannot be negative.");
+		this.slowMessageThreshold = TimeUnit.MILLISECONDS.toNanos(threshold);
+	}
+
+	@Override
+	public long getSlowMessageNum() {
+		return this.slowMessageNum.get();
+	}
+
+	@Override
+	public String getLastSlowMessage() {
+		return this.lastSlowMessage;
+	}
+
+	@Override
+	public void reset() {
+		this.maxPendingMessageNum.set(this.getPendingMessageNum());
+		this.waitTimes.reset();
+		this.executionTimes.reset();
+		for(LatencyHistogram histogram: this.messageTimes.values()) {
+			histogram.reset();
+		}
+		this.slowMessageNum.set(0L);
+		this.lastSlowMessage = null;
+	}
+	
+	/**
+	 * Makes the statistics available through the platform MBean server under
+	 * {@link #MBEAN_NAME} followed by the queue name. Registering twice is harmless.
+	 */
+	public void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(MBEAN_NAME+ObjectName.quote(this.queueName));
+			if(!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch(JMException exception) {
+			logger.error("Cannot register the message queue statistics MBean.", exception);
+		}
+	}
+	
+	private static double toMillis(long time) {
+		return time / 1000000.0;
+	}
+}
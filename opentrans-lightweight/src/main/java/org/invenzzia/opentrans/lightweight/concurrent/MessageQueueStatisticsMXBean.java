@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.lightweight.concurrent;
+
+/**
+ * Management interface of the {@link MessageQueueStatistics}. The times are given in
+ * milliseconds, and the per-message arrays are ordered in the same way, as
+ * {@link #getMessageNames()}.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public interface MessageQueueStatisticsMXBean {
+	/**
+	 * @return Name of the message queue.
+	 */
+	public String getQueueName();
+	/**
+	 * @return Number of the messages waiting for the execution.
+	 */
+	public int getPendingMessageNum();
+	/**
+	 * @return The largest number of the waiting messages seen since the last reset.
+	 */
+	public int getMaxPendingMessageNum();
+	/**
+	 * @return Number of the messages executed since the last reset.
+	 */
+	public long getProcessedMessageNum();
+	/**
+	 * @return Mean time between enqueuing the message and starting its execution [ms].
+	 */
+	public double getMeanWaitTime();
+	public double getP99WaitTime();
+	public double getMaxWaitTime();
+	/**
+	 * @return Mean execution time of the messages [ms].
+	 */
+	public double getMeanExecutionTime();
+	public double getP99ExecutionTime();
+	public double getMaxExecutionTime();
+	/**
+	 * @return Names of the executed messages, i.e. the intercepted methods.
+	 */
+	public String[] getMessageNames();
+	public long[] getMessageCallNums();
+	public double[] getMessageMeanExecutionTimes();
+	public double[] getMessageP99ExecutionTimes();
+	public double[] getMessageMaxExecutionTimes();
+	/**
+	 * @return The messages that take longer are logged [ms].
+	 */
+	public long getSlowMessageThreshold();
+	public void setSlowMessageThreshold(long threshold);
+	/**
+	 * @return Number of the messages that exceeded the threshold since the last reset.
+	 */
+	public long getSlowMessageNum();
+	/**
+	 * @return Description of the most recent slow message or null.
+	 */
+	public String getLastSlowMessage();
+	/**
+	 * Forgets all the collected samples.
+	 */
+	public void reset();
+}
@@ -29,6 +29,7 @@ public class ModelThread extends AbstractMessageQueue {
 
 	@Override
 	protected void executeStep() throws InterruptedException {
+		this.waitForMessages();
 		this.processMessages();
 	}
 }
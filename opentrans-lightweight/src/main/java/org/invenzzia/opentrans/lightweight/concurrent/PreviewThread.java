@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.lightweight.concurrent;
+
+import com.google.inject.Singleton;
+
+/**
+ * Computes the previews of the edit operations (i.e. dragging a vertex), so that neither
+ * the Swing thread, nor the model thread wait for the transformations of the unit of work.
+ * The edit modes enqueue the previews with {@link #enqueueLatest}, so that the stale mouse
+ * positions are dropped, if the computations cannot keep up with the cursor.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+@Singleton
+public class PreviewThread extends AbstractMessageQueue {
+
+	@Override
+	protected void executeStep() throws InterruptedException {
+		this.waitForMessages();
+		this.processMessages();
+	}
+}
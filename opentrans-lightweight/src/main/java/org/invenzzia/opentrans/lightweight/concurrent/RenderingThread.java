@@ -17,68 +17,199 @@
 
 package org.invenzzia.opentrans.lightweight.concurrent;
 
+import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import java.util.concurrent.TimeUnit;
 import org.invenzzia.opentrans.lightweight.ui.netview.CameraView;
 import org.invenzzia.opentrans.visitons.render.Renderer;
+import org.invenzzia.opentrans.visitons.render.SceneManager;
+import org.invenzzia.opentrans.visitons.simulation.SimulationThread;
 
 /**
- * Rendering thread redraws the screen 25 times per second using the
- * {@link Renderer} instance from Visitons. After each repainting,
- * a proper notification is sent to Swing so that it could redraw
- * everything.
+ * Rendering thread redraws the screen using the {@link Renderer} instance
+ * from Visitons. A new frame is produced only if something in the
+ * {@link SceneManager} has changed (the camera, the hovered item or any other
+ * scene resource), and not more often than the frame time allows. While the
+ * simulation runs, or the steady mode is enabled, the frames are produced
+ * at a constant rate. After each repainting, a proper notification is sent
+ * to Swing so that it could redraw everything.
  * 
  * @author Tomasz Jędrzejewski
  */
 @Singleton
 public class RenderingThread extends AbstractMessageQueue {
-	private final static long FRAME_TIME = 25;
+	/**
+	 * Default minimum time between two frames [ms].
+	 */
+	public final static long FRAME_TIME = 25;
+	/**
+	 * How long the idle thread waits for a scene change before it checks the
+	 * steady mode and the simulation again [ms]. The frame requests and the messages
+	 * wake it up immediately.
+	 */
+	private final static long IDLE_TIME = 100;
 	/**
 	 * The Visitons renderer which prepares the image.
 	 */
 	private Renderer renderer;
+	/**
+	 * The scene the frames are rendered from.
+	 */
+	private final SceneManager sceneManager;
+	/**
+	 * While the simulation is running, the frames are produced at a steady rate.
+	 */
+	private final SimulationThread simulationThread;
 	/**
 	 * Send here the repaint requests on every frame.
 	 */
-	private CameraView cameraView;
+	private volatile CameraView cameraView;
 	/**
 	 * The rendering time of the previous frame.
 	 */
 	private long prevTime;
+	/**
+	 * Minimum time between two frames; limits the frame rate [ms].
+	 */
+	private volatile long frameTime = FRAME_TIME;
+	/**
+	 * If enabled, the frames are produced at a constant rate even if the scene does not change.
+	 */
+	private volatile boolean steadyMode = false;
+	/**
+	 * Forces producing the next frame.
+	 */
+	private volatile boolean frameRequested = true;
+	/**
+	 * Scene version used for the last frame.
+	 */
+	private long renderedVersion = -1L;
+	/**
+	 * Number of the produced frames.
+	 */
+	private volatile long frameNum;
 	
 	@Inject
-	public RenderingThread(Renderer renderer) {
+	public RenderingThread(Renderer renderer, SceneManager sceneManager, SimulationThread simulationThread) {
 		this.renderer = renderer;
+		this.sceneManager = Preconditions.checkNotNull(sceneManager);
+		this.simulationThread = simulationThread;
 	}
 	
 	public void setCameraView(CameraView cameraView) {
 		this.cameraView = cameraView;
+		this.requestFrame();
 	}
 	
 	public CameraView getCameraView() {
 		return this.cameraView;
 	}
+	
+	/**
+	 * Forces producing the next frame, even if the scene has not changed.
+	 */
+	public void requestFrame() {
+		this.frameRequested = true;
+		this.sceneManager.wakeUpWaiters();
+	}
+	
+	/**
+	 * Sets the minimum time between two frames, i.e. 25 ms caps the rendering at 40 fps.
+	 * 
+	 * @param frameTime Minimum frame time [ms].
+	 */
+	public void setFrameTime(long frameTime) {
+		Preconditions.checkArgument(frameTime > 0, "The frame time must be positive.");
+		this.frameTime = frameTime;
+	}
+	
+	public long getFrameTime() {
+		return this.frameTime;
+	}
+	
+	/**
+	 * In the steady mode, the frames are produced at a constant rate regardless of the
+	 * scene changes.
+	 * 
+	 * @param steadyMode 
+	 */
+	public void setSteadyMode(boolean steadyMode) {
+		this.steadyMode = steadyMode;
+	}
+	
+	public boolean isSteadyMode() {
+		return this.steadyMode;
+	}
+	
+	/**
+	 * @return Number of the frames produced so far.
+	 */
+	public long getFrameNum() {
+		return this.frameNum;
+	}
 
 	@Override
 	protected void executeStep() throws InterruptedException {
 		long d0 = System.currentTimeMillis();
+		// Read it before checking for the work, so that no wake-up is missed.
+		long wakeUpNum = this.sceneManager.getWakeUpNum();
 		// If there are any requests for this thread, process them.
 		this.processMessages();
-		// Render the current frame.
+		if(!this.isFrameNeeded()) {
+			if(!this.hasMessages()) {
+				this.sceneManager.awaitChange(this.renderedVersion, wakeUpNum, IDLE_TIME, TimeUnit.MILLISECONDS);
+			}
+			return;
+		}
+		// Render the current frame. The forced frames redraw all the layers to keep the animations running.
+		boolean forced = this.frameRequested || this.steadyMode;
+		this.frameRequested = false;
+		this.renderedVersion = this.sceneManager.getVersion();
 		if(null != this.renderer) {
+			if(forced) {
+				this.renderer.invalidateLayers();
+			}
 			this.renderer.render(this.prevTime);
 		}
+		this.frameNum++;
 		this.prevTime = System.currentTimeMillis() - d0;
 		// Send the repaint request to Swing
-		if(null != this.cameraView) {
-			this.cameraView.repaint();
+		CameraView view = this.cameraView;
+		if(null != view) {
+			view.repaint();
 		}
-		// Suspend the execution to provide a constant frame rate.
-		if(this.prevTime < FRAME_TIME) {
-			Thread.sleep(FRAME_TIME - this.prevTime);
+		// Suspend the execution to limit the frame rate.
+		long frame = this.frameTime;
+		if(this.prevTime < frame) {
+			Thread.sleep(frame - this.prevTime);
 		} else {
 			Thread.sleep(3);
 		}
 	}
-
+	
+	/**
+	 * The idle thread waits for the scene changes, so the new messages must wake it up there.
+	 */
+	@Override
+	protected void wakeUp() {
+		super.wakeUp();
+		this.sceneManager.wakeUpWaiters();
+	}
+	
+	@Override
+	protected void triggerShutdown() {
+		super.triggerShutdown();
+		this.sceneManager.wakeUpWaiters();
+	}
+	
+	/**
+	 * @return True, if the scene has changed since the last frame, or we must keep the frame rate.
+	 */
+	private boolean isFrameNeeded() {
+		if(this.frameRequested || this.steadyMode || this.sceneManager.getVersion() != this.renderedVersion) {
+			return true;
+		}
+		return null != this.simulationThread && this.simulationThread.isRunning() && !this.simulationThread.isPaused();
+	}
 }
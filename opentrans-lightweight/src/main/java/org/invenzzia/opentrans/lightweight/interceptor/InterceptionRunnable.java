@@ -19,6 +19,7 @@ package org.invenzzia.opentrans.lightweight.interceptor;
 
 import com.google.common.base.Preconditions;
 import org.aopalliance.intercept.MethodInvocation;
+import org.invenzzia.opentrans.lightweight.concurrent.INamedMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,7 +29,7 @@ import org.slf4j.LoggerFactory;
  * 
  * @author Tomasz Jędrzejewski
  */
-class InterceptionRunnable implements Runnable {
+class InterceptionRunnable implements INamedMessage {
 	private final Logger logger = LoggerFactory.getLogger(InterceptionRunnable.class);
 
 	private final MethodInvocation invocation;
@@ -46,6 +47,19 @@ class InterceptionRunnable implements Runnable {
 	public Object getResult() {
 		return this.result;
 	}
+	
+	@Override
+	public String getMessageName() {
+		return getMethodName(this.invocation);
+	}
+	
+	/**
+	 * @param invocation Method invocation.
+	 * @return Name of the invoked method for the statistics, i.e. <tt>SelectionMode.importTrack</tt>
+	 */
+	static String getMethodName(MethodInvocation invocation) {
+		return invocation.getMethod().getDeclaringClass().getSimpleName()+"."+invocation.getMethod().getName();
+	}
 
 	@Override
 	public void run() {
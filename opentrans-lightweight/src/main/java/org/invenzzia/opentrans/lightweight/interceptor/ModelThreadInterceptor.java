@@ -18,12 +18,20 @@
 package org.invenzzia.opentrans.lightweight.interceptor;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import java.util.Arrays;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.invenzzia.opentrans.lightweight.annotations.InModelThread;
+import org.invenzzia.opentrans.lightweight.concurrent.INamedMessage;
 import org.invenzzia.opentrans.lightweight.concurrent.ModelThread;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Forces the method to be called in the model thread.
@@ -31,6 +39,7 @@ import org.invenzzia.opentrans.lightweight.concurrent.ModelThread;
  * @author Tomasz Jędrzejewski
  */
 public class ModelThreadInterceptor implements MethodInterceptor {
+	private final Logger logger = LoggerFactory.getLogger(ModelThreadInterceptor.class);
 	@Inject
 	private ModelThread modelThread;
 
@@ -39,13 +48,19 @@ public class ModelThreadInterceptor implements MethodInterceptor {
 		if(this.modelThread.isIn()) {
 			return mi.proceed();
 		} else {
-			InterceptionRunnable runnable = new InterceptionRunnable(mi);
 			InModelThread annot = mi.getMethod().getAnnotation(InModelThread.class);
-			if(annot.asynchronous()) {
-				this.modelThread.enqueue(runnable);
+			if(ListenableFuture.class.isAssignableFrom(mi.getMethod().getReturnType())) {
+				return this.invokeWithFuture(mi, annot);
+			}
+			InterceptionRunnable runnable = new InterceptionRunnable(mi);
+			if(annot.asynchronous() && annot.coalesce()) {
+				this.modelThread.enqueueLatest(Arrays.asList(mi.getThis(), mi.getMethod()), runnable, annot.priority());
+				return null;
+			} else if(annot.asynchronous()) {
+				this.modelThread.enqueue(runnable, annot.priority());
 				return null;
 			} else {
-				this.modelThread.enqueueAndWait(runnable);
+				this.modelThread.enqueueAndWait(runnable, annot.priority());
 				if(null != runnable.getThrowable()) {
 					throw runnable.getThrowable();
 				} else {
@@ -54,4 +69,49 @@ public class ModelThreadInterceptor implements MethodInterceptor {
 			}
 		}
 	}
+	
+	/**
+	 * Enqueues the invocation and returns the future that completes, when the future
+	 * returned by the method completes.
+	 * 
+	 * @param mi Method invocation.
+	 * @param annot Annotation of the method.
+	 * @return Future of the method result.
+	 */
+	private ListenableFuture<Object> invokeWithFuture(final MethodInvocation mi, InModelThread annot) {
+		final SettableFuture<Object> result = SettableFuture.create();
+		this.modelThread.enqueue(new INamedMessage() {
+			@Override
+			public String getMessageName() {
+				return InterceptionRunnable.getMethodName(mi);
+			}
+			
+			@Override
+			@SuppressWarnings("unchecked")
+			public void run() {
+				try {
+					ListenableFuture<Object> future = (ListenableFuture<Object>) mi.proceed();
+					if(null == future) {
+						result.set(null);
+						return;
+					}
+					Futures.addCallback(future, new FutureCallback<Object>() {
+						@Override
+						public void onSuccess(Object value) {
+							result.set(value);
+						}
+
+						@Override
+						public void onFailure(Throwable thr) {
+							result.setException(thr);
+						}
+					});
+				} catch(Throwable thr) {
+					logger.error("An exception occurred in the thread queue.", thr);
+					result.setException(thr);
+				}
+			}
+		}, annot.priority());
+		return result;
+	}
 }
\ No newline at end of file
@@ -21,14 +21,28 @@ import javax.swing.SwingUtilities;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.invenzzia.opentrans.lightweight.annotations.InSwingThread;
+import org.invenzzia.opentrans.lightweight.concurrent.MessageQueueStatistics;
 
 /**
  * Forces the method to be always executed in Swing thread through the
- * interception technique.
+ * interception technique. The calls passed to the Swing thread are recorded
+ * in the statistics, like the messages of the other queues.
  * 
  * @author Tomasz Jędrzejewski
  */
 public class SwingThreadInterceptor implements MethodInterceptor {
+	/**
+	 * Latencies of the calls passed to the Swing thread.
+	 */
+	private final MessageQueueStatistics statistics = new MessageQueueStatistics("SwingThread");
+	
+	/**
+	 * @return Latencies of the calls passed to the Swing thread.
+	 */
+	public MessageQueueStatistics getStatistics() {
+		return this.statistics;
+	}
+	
 	@Override
 	public Object invoke(MethodInvocation mi) throws Throwable {
 		if(SwingUtilities.isEventDispatchThread()) {
@@ -36,11 +50,12 @@ public class SwingThreadInterceptor implements MethodInterceptor {
 		} else {
 			InterceptionRunnable runnable = new InterceptionRunnable(mi);
 			InSwingThread annot = mi.getMethod().getAnnotation(InSwingThread.class);
+			Runnable timed = this.createTimedRunnable(runnable);
 			if(annot.asynchronous()) {
-				SwingUtilities.invokeLater(runnable);
+				SwingUtilities.invokeLater(timed);
 				return null;
 			} else {
-				SwingUtilities.invokeAndWait(runnable);
+				SwingUtilities.invokeAndWait(timed);
 				if(null != runnable.getThrowable()) {
 					throw runnable.getThrowable();
 				} else {
@@ -49,4 +64,28 @@ public class SwingThreadInterceptor implements MethodInterceptor {
 			}
 		}
 	}
+	
+	/**
+	 * Wraps the call, so that the time spent in the Swing event queue and the execution
+	 * time are recorded.
+	 * 
+	 * @param runnable The intercepted call.
+	 * @return Wrapped call.
+	 */
+	private Runnable createTimedRunnable(final InterceptionRunnable runnable) {
+		final long enqueueTime = System.nanoTime();
+		this.statistics.messageEnqueued();
+		return new Runnable() {
+			@Override
+			public void run() {
+				statistics.messageDequeued();
+				long start = System.nanoTime();
+				try {
+					runnable.run();
+				} finally {
+					statistics.messageExecuted(runnable.getMessageName(), start - enqueueTime, System.nanoTime() - start);
+				}
+			}
+		};
+	}
 }
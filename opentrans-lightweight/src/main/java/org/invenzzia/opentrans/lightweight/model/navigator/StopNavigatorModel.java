@@ -20,6 +20,7 @@ package org.invenzzia.opentrans.lightweight.model.navigator;
 import java.util.LinkedList;
 import java.util.List;
 import org.invenzzia.opentrans.lightweight.annotations.InModelThread;
+import org.invenzzia.opentrans.lightweight.concurrent.MessagePriority;
 import org.invenzzia.opentrans.lightweight.ui.navigator.NavigatorModel;
 import org.invenzzia.opentrans.visitons.Project;
 import org.invenzzia.opentrans.visitons.data.Stop;
@@ -37,7 +38,7 @@ public class StopNavigatorModel extends NavigatorModel {
 	}
 
 	@Override
-	@InModelThread(asynchronous = true)
+	@InModelThread(asynchronous = true, priority = MessagePriority.BACKGROUND)
 	public void loadItems(Project project) {
 		List<StopRecord> stops = new LinkedList<>();
 		
@@ -36,6 +36,9 @@ import org.invenzzia.opentrans.lightweight.ui.toolbars.AbstractToolbar;
 import org.invenzzia.opentrans.lightweight.ui.toolbars.HistoryToolbar;
 import org.invenzzia.opentrans.lightweight.ui.toolbars.HistoryToolbarController;
 import org.invenzzia.opentrans.lightweight.ui.toolbars.ProjectToolbar;
+import org.invenzzia.opentrans.lightweight.ui.toolbars.ProjectToolbarController;
+import org.invenzzia.opentrans.lightweight.ui.toolbars.SimulationToolbar;
+import org.invenzzia.opentrans.lightweight.ui.toolbars.SimulationToolbarController;
 import org.invenzzia.opentrans.lightweight.ui.toolbars.ToolbarManager;
 import org.invenzzia.opentrans.lightweight.ui.workspace.DesktopManager;
 import org.invenzzia.opentrans.lightweight.ui.workspace.HistoryController;
@@ -77,6 +80,10 @@ public class CreateGuiTask implements ITask {
 	@Inject
 	private HistoryToolbarController historyToolbarController;
 	@Inject
+	private ProjectToolbarController projectToolbarController;
+	@Inject
+	private SimulationToolbarController simulationToolbarController;
+	@Inject
 	private MainMenuController mainMenuController;
 
 	@Override
@@ -148,6 +155,7 @@ public class CreateGuiTask implements ITask {
 	public final void createToolbars() {
 		ProjectToolbar projectToolbar = new ProjectToolbar();
 		projectToolbar.importIcons(this.iconService);
+		this.projectToolbarController.setView(projectToolbar);
 		this.setToolbarActivity(projectToolbar);
 		this.toolbarManager.addToolbar(projectToolbar);
 		
@@ -158,6 +166,10 @@ public class CreateGuiTask implements ITask {
 		this.setToolbarActivity(historyToolbar);
 		this.toolbarManager.addToolbar(historyToolbar);
 		
+		SimulationToolbar simulationToolbar = new SimulationToolbar();
+		this.simulationToolbarController.setView(simulationToolbar);
+		this.setToolbarActivity(simulationToolbar);
+		this.toolbarManager.addToolbar(simulationToolbar);
 	}
 	
 	/**
@@ -21,6 +21,7 @@ import com.google.common.eventbus.EventBus;
 import com.google.inject.Inject;
 import org.invenzzia.opentrans.lightweight.exception.TaskException;
 import org.invenzzia.opentrans.lightweight.app.CameraListener;
+import org.invenzzia.opentrans.lightweight.ui.toolbars.SimulationToolbarController;
 
 /**
  * Place for registering all listeners in the event bus.
@@ -32,15 +33,19 @@ public class ListenerTask implements ITask {
 	private EventBus eventBus;
 	@Inject
 	private CameraListener cameraListener;
+	@Inject
+	private SimulationToolbarController simulationToolbarController;
 
 	@Override
 	public void startup() throws TaskException {
 		this.eventBus.register(this.cameraListener);
+		this.eventBus.register(this.simulationToolbarController);
 	}
 
 	@Override
 	public void shutdown() throws TaskException {
 		this.eventBus.unregister(this.cameraListener);
+		this.eventBus.unregister(this.simulationToolbarController);
 	}
 
 }
@@ -19,8 +19,10 @@ package org.invenzzia.opentrans.lightweight.tasks;
 
 import com.google.common.eventbus.EventBus;
 import com.google.inject.Inject;
+import java.io.IOException;
 import org.invenzzia.opentrans.lightweight.Application;
 import org.invenzzia.opentrans.lightweight.app.IProjectFactory;
+import org.invenzzia.opentrans.lightweight.app.ProjectFactory;
 import org.invenzzia.opentrans.lightweight.exception.TaskException;
 import org.invenzzia.opentrans.lightweight.binding.NewProject;
 
@@ -34,6 +36,8 @@ public class ProjectTask implements ITask {
 	@NewProject
 	private IProjectFactory projectFactory;
 	@Inject
+	private ProjectFactory existingProjectFactory;
+	@Inject
 	private EventBus eventBus;
 	@Inject
 	private Application application;
@@ -43,8 +47,11 @@ public class ProjectTask implements ITask {
 		if(this.application.getStartupMode() == Application.STARTUP_EMPTY_PROJECT) {
 			application.setCurrentProject(this.projectFactory.createProject());
 		} else {
-			application.setCurrentProject(this.projectFactory.createProject());
-		//	application.setCurrentProject(this.projectFactory.openExistingProject(application.getProjectPath()));
+			try {
+				application.setCurrentProject(this.existingProjectFactory.openExistingProject(application.getProjectPath()));
+			} catch(IOException exception) {
+				throw new TaskException("Cannot open the project '"+application.getProjectPath()+"'.", exception);
+			}
 		}
 	}
 
@@ -19,8 +19,11 @@ package org.invenzzia.opentrans.lightweight.tasks;
 
 import com.google.inject.Inject;
 import org.invenzzia.opentrans.lightweight.exception.TaskException;
+import org.invenzzia.opentrans.visitons.render.FrameProfiler;
 import org.invenzzia.opentrans.visitons.render.Renderer;
+import org.invenzzia.opentrans.visitons.render.RenderingLayer;
 import org.invenzzia.opentrans.visitons.render.stream.DebugPointStream;
+import org.invenzzia.opentrans.visitons.render.stream.FrameProfilerStream;
 import org.invenzzia.opentrans.visitons.render.stream.GridStream;
 import org.invenzzia.opentrans.visitons.render.stream.SegmentBitmapStream;
 import org.invenzzia.opentrans.visitons.render.stream.SelectionStream;
@@ -54,20 +57,27 @@ public class RendererTask implements ITask {
 	private TrackObjectStream trackObjectStream;
 	@Inject
 	private VehicleStream vehicleStream;
+	@Inject
+	private FrameProfilerStream frameProfilerStream;
+	@Inject
+	private FrameProfiler frameProfiler;
 
 	@Override
 	public void startup() throws TaskException {
-		this.renderer.addRenderingStream(this.bitmapStream);
-		this.renderer.addRenderingStream(this.gridStream);
-		this.renderer.addRenderingStream(this.trackStream);
-		this.renderer.addRenderingStream(this.trackObjectStream);
-		this.renderer.addRenderingStream(this.stopLabelStream);
-		this.renderer.addRenderingStream(this.selectionStream);
-		this.renderer.addRenderingStream(this.debugStream);
-		this.renderer.addRenderingStream(this.vehicleStream);
+		this.renderer.addRenderingStream(RenderingLayer.BACKGROUND, this.bitmapStream);
+		this.renderer.addRenderingStream(RenderingLayer.BACKGROUND, this.gridStream);
+		this.renderer.addRenderingStream(RenderingLayer.TRACKS, this.trackStream);
+		this.renderer.addRenderingStream(RenderingLayer.TRACK_OBJECTS, this.trackObjectStream);
+		this.renderer.addRenderingStream(RenderingLayer.TRACK_OBJECTS, this.stopLabelStream);
+		this.renderer.addRenderingStream(RenderingLayer.VEHICLES, this.vehicleStream);
+		this.renderer.addRenderingStream(RenderingLayer.OVERLAY, this.selectionStream);
+		this.renderer.addRenderingStream(RenderingLayer.OVERLAY, this.debugStream);
+		this.renderer.addRenderingStream(RenderingLayer.OVERLAY, this.frameProfilerStream);
+		this.frameProfiler.registerMBean();
 	}
 
 	@Override
 	public void shutdown() throws TaskException {
+		this.renderer.shutdown();
 	}
 }
@@ -19,9 +19,12 @@ package org.invenzzia.opentrans.lightweight.tasks;
 
 import com.google.inject.Inject;
 import org.invenzzia.opentrans.lightweight.concurrent.ModelThread;
+import org.invenzzia.opentrans.lightweight.concurrent.PreviewThread;
 import org.invenzzia.opentrans.lightweight.concurrent.RenderingThread;
 import org.invenzzia.opentrans.lightweight.exception.TaskException;
+import org.invenzzia.opentrans.lightweight.interceptor.SwingThreadInterceptor;
 import org.invenzzia.opentrans.visitons.render.CameraModel;
+import org.invenzzia.opentrans.visitons.simulation.SimulationThread;
 
 /**
  * Description here.
@@ -35,17 +38,30 @@ public class ThreadTask implements ITask {
 	private RenderingThread renderingThread;
 	@Inject
 	private ModelThread modelThread;
+	@Inject
+	private PreviewThread previewThread;
+	@Inject
+	private SwingThreadInterceptor swingThreadInterceptor;
+	@Inject
+	private SimulationThread simulationThread;
 
 	@Override
 	public void startup() throws TaskException {
+		this.modelThread.getStatistics().registerMBean();
+		this.renderingThread.getStatistics().registerMBean();
+		this.previewThread.getStatistics().registerMBean();
+		this.swingThreadInterceptor.getStatistics().registerMBean();
 		this.modelThread.start();
+		this.previewThread.start();
 		this.renderingThread.start();
+		this.simulationThread.start();
 	}
 
 	@Override
 	public void shutdown() throws TaskException {
+		this.simulationThread.stopAndWait();
 		this.renderingThread.stopAndWait();
+		this.previewThread.stopAndWait();
 		this.modelThread.stopAndWait();
-		
 	}
 }
@@ -17,7 +17,11 @@
 package org.invenzzia.opentrans.lightweight.ui;
 
 import com.google.inject.Singleton;
+import java.awt.Color;
+import java.awt.Dimension;
+import javax.swing.Box;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import org.invenzzia.opentrans.lightweight.annotations.Action;
@@ -30,11 +34,22 @@ import org.invenzzia.opentrans.lightweight.annotations.Action;
  */
 @Singleton
 public class MainWindow extends JFrame {
+	/**
+	 * Shows the state of the model thread queue on the status bar.
+	 */
+	private JLabel queueBox;
+	
 	/**
 	 * Creates new form MainWindow
 	 */
 	public MainWindow() {
 		this.initComponents();
+		this.queueBox = new JLabel(" ");
+		this.queueBox.setMinimumSize(new Dimension(130, 15));
+		this.queueBox.setPreferredSize(new Dimension(130, 15));
+		this.queueBox.setMaximumSize(new Dimension(130, 15));
+		this.statusPanel.add(Box.createRigidArea(new Dimension(10, 0)));
+		this.statusPanel.add(this.queueBox);
 	}
 
 	/**
@@ -102,6 +117,19 @@ public class MainWindow extends JFrame {
 		this.secondLocationBox.setText("Y: "+y);
 	}
 	
+	/**
+	 * Shows the state of the model thread queue on the status bar.
+	 * 
+	 * @param message Short information about the queue.
+	 * @param details Shown in the tooltip.
+	 * @param warning Highlights the information, i.e. when slow messages appear.
+	 */
+	public void setQueueInfo(String message, String details, boolean warning) {
+		this.queueBox.setText(message);
+		this.queueBox.setToolTipText(details);
+		this.queueBox.setForeground(warning ? Color.RED : this.statusBox.getForeground());
+	}
+	
 	/**
 	 * Adds a new tab selection item to the main menu.
 	 * 
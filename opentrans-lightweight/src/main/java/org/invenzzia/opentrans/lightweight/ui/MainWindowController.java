@@ -22,10 +22,15 @@ import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import javax.swing.Timer;
 import org.invenzzia.opentrans.lightweight.Application;
 import org.invenzzia.opentrans.lightweight.IProjectHolder;
+import org.invenzzia.opentrans.lightweight.concurrent.MessageQueueStatistics;
+import org.invenzzia.opentrans.lightweight.concurrent.ModelThread;
 import org.invenzzia.opentrans.lightweight.events.ApplicationCloseEvent;
 import org.invenzzia.opentrans.lightweight.events.StatusEvent;
 import org.invenzzia.opentrans.lightweight.model.branding.BrandingModel;
@@ -43,6 +48,10 @@ import org.invenzzia.opentrans.visitons.events.ProjectEvent;
 @Singleton
 public class MainWindowController {
 	private static final String EXIT_QUESTION_MESSAGE = "Do you really want to exit OpenTrans? Unsaved changes will be lost.";
+	/**
+	 * How often the model thread queue information is refreshed on the status bar [ms].
+	 */
+	private static final int QUEUE_INFO_INTERVAL = 1000;
 	
 	@Inject
 	private IProjectHolder projectHolder;
@@ -56,6 +65,8 @@ public class MainWindowController {
 	private Application application;
 	@Inject
 	private Provider<ResizeDialogController> resizeDialogControllerProvider;
+	@Inject
+	private ModelThread modelThread;
 	/**
 	 * Main window view managed by this controller.
 	 */
@@ -64,7 +75,10 @@ public class MainWindowController {
 	 * Handles main window closing process.
 	 */
 	private MainWindowListener mainWindowListener = new MainWindowListener();
-
+	/**
+	 * Refreshes the model thread queue information.
+	 */
+	private Timer queueInfoTimer = new Timer(QUEUE_INFO_INTERVAL, new QueueInfoListener());
 	
 	/**
 	 * Sets the new main window for the application.
@@ -75,6 +89,7 @@ public class MainWindowController {
 		if(null != this.mainWindow) {
 			this.mainWindow.removeWindowListener(this.mainWindowListener);
 			this.eventBus.unregister(this);
+			this.queueInfoTimer.stop();
 		}
 		this.mainWindow = mainWindow;
 		if(null != this.mainWindow) {
@@ -86,6 +101,7 @@ public class MainWindowController {
 			record.importData(currentProject, currentProject);
 			this.createWindowTitle(record);
 			this.eventBus.register(this);
+			this.queueInfoTimer.start();
 		}
 	}
 	
@@ -119,6 +135,7 @@ public class MainWindowController {
 	public void handleClosing() {
 		if(this.dialogBuilder.showConfirmDialog("Exit OpenTrans", EXIT_QUESTION_MESSAGE)) {
 			this.eventBus.post(new ApplicationCloseEvent());
+			this.queueInfoTimer.stop();
 			this.mainWindow.dispose();
 			this.application.close();
 		}
@@ -140,4 +157,28 @@ public class MainWindowController {
 			handleClosing();
 		}
 	}
+	
+	/**
+	 * Shows the depth of the model thread queue and highlights it, when new slow messages
+	 * appear, so that the planners can tell us what they were doing during a freeze.
+	 */
+	class QueueInfoListener implements ActionListener {
+		private long slowMessageNum;
+		
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if(null == mainWindow) {
+				return;
+			}
+			MessageQueueStatistics statistics = modelThread.getStatistics();
+			long currentSlowMessageNum = statistics.getSlowMessageNum();
+			String details = String.format("Wait time 99%%: %.1f ms, execution time 99%%: %.1f ms, slow messages: %d",
+				statistics.getP99WaitTime(), statistics.getP99ExecutionTime(), currentSlowMessageNum);
+			if(null != statistics.getLastSlowMessage()) {
+				details += ", last: "+statistics.getLastSlowMessage();
+			}
+			mainWindow.setQueueInfo("Model queue: "+statistics.getPendingMessageNum(), details, currentSlowMessageNum > this.slowMessageNum);
+			this.slowMessageNum = currentSlowMessageNum;
+		}
+	}
 }
@@ -19,14 +19,23 @@ package org.invenzzia.opentrans.lightweight.ui.tabs.world;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import org.invenzzia.helium.exception.CommandExecutionException;
 import org.invenzzia.helium.history.History;
 import org.invenzzia.opentrans.lightweight.IProjectHolder;
+import org.invenzzia.opentrans.lightweight.annotations.InModelThread;
+import org.invenzzia.opentrans.lightweight.annotations.InSwingThread;
+import org.invenzzia.opentrans.lightweight.concurrent.INamedMessage;
+import org.invenzzia.opentrans.lightweight.concurrent.MessagePriority;
+import org.invenzzia.opentrans.lightweight.concurrent.PreviewThread;
 import org.invenzzia.opentrans.visitons.Project;
 import org.invenzzia.opentrans.visitons.bindings.ActualImporter;
 import org.invenzzia.opentrans.visitons.editing.ICommand;
 import org.invenzzia.opentrans.visitons.editing.network.NetworkLayoutChangeCmd;
+import org.invenzzia.opentrans.visitons.network.IVertex;
 import org.invenzzia.opentrans.visitons.network.IVertexRecord;
+import org.invenzzia.opentrans.visitons.network.TrackPoint;
 import org.invenzzia.opentrans.visitons.network.TrackRecord;
 import org.invenzzia.opentrans.visitons.network.VertexRecord;
 import org.invenzzia.opentrans.visitons.network.World;
@@ -39,6 +48,8 @@ import org.invenzzia.opentrans.visitons.render.scene.DebugPointSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.EditableTrackSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.HoveredItemSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.IgnoreHoverSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Common code shared by most of the edit modes used for drawing tracks.
@@ -46,6 +57,15 @@ import org.invenzzia.opentrans.visitons.render.scene.IgnoreHoverSnapshot;
  * @author Tomasz Jędrzejewski
  */
 public abstract class AbstractTrackModeAPI {
+	/**
+	 * How far from the cursor the vertices and tracks are snapped [px].
+	 */
+	protected static final int SNAP_RADIUS = 8;
+	/**
+	 * How many nearest items are checked, so that the ignored ones can be skipped.
+	 */
+	private static final int SNAP_CANDIDATES = 3;
+	private final Logger logger = LoggerFactory.getLogger(AbstractTrackModeAPI.class);
 	@Inject
 	protected Provider<NetworkUnitOfWork> unitOfWorkProvider;
 	@Inject
@@ -61,19 +81,44 @@ public abstract class AbstractTrackModeAPI {
 	@Inject
 	@ActualImporter
 	protected IRecordImporter recordImporter;	
+	@Inject
+	protected PreviewThread previewThread;
 	/**
 	 * Controller API for edit modes.
 	 */
 	protected IEditModeAPI api;
 	/**
-	 * Currently constructed unit of work.
+	 * Currently constructed unit of work. It belongs to the Swing thread, but it is lent to
+	 * the preview thread by {@link #schedulePreview(Runnable)}, until {@link #finishPreviews()}.
 	 */
 	protected NetworkUnitOfWork currentUnit;
+	/**
+	 * Number of the scheduled previews; only the result of the newest one is exported.
+	 */
+	private final AtomicLong previewNum = new AtomicLong();
+	/**
+	 * Whether some previews have been scheduled since the last {@link #finishPreviews()}.
+	 * Accessed only by the Swing thread.
+	 */
+	private boolean previewsScheduled;
+	/**
+	 * The last snap target found in the model thread. Accessed only by the Swing thread.
+	 */
+	private HoveredItemSnapshot snapTarget;
+	/**
+	 * Cursor position, for which the last snap target was found.
+	 */
+	private double snapTargetX = Double.NaN;
+	/**
+	 * Cursor position, for which the last snap target was found.
+	 */
+	private double snapTargetY = Double.NaN;
 	
 	/**
 	 * Creates a new unit of work. You must first check whether the unit of work exists.
 	 */
 	protected void createUnitOfWork() {
+		this.finishPreviews();
 		this.currentUnit = this.unitOfWorkProvider.get();
 		this.transformEngine.setUnitOfWork(this.currentUnit);
 		this.transformEngine.setWorld(this.api.getWorldRecord());
@@ -92,6 +137,7 @@ public abstract class AbstractTrackModeAPI {
 	 * Clears the unit of work.
 	 */
 	protected void resetUnitOfWork() {
+		this.finishPreviews();
 		this.currentUnit = null;
 		this.transformEngine.setUnitOfWork(null);
 	}
@@ -107,6 +153,14 @@ public abstract class AbstractTrackModeAPI {
 	//	world.exportScene(this.sceneManager, this.cameraModel, false);
 	}
 	
+	/**
+	 * Exports the current unit of work to the renderer, once the scheduled previews are finished.
+	 */
+	protected void exportUnit() {
+		this.finishPreviews();
+		this.currentUnit.exportScene(this.sceneManager);
+	}
+	
 	/**
 	 * Clears the editable track snapshot in the renderer.
 	 */
@@ -148,6 +202,72 @@ public abstract class AbstractTrackModeAPI {
 		return this.sceneManager.getResource(HoveredItemSnapshot.class, HoveredItemSnapshot.class);
 	}
 	
+	/**
+	 * Finds the vertex or the track the cursor should snap to. The world is queried for
+	 * the nearest items, so the snapping does not depend on hitting the exact pixels of
+	 * the rendered track. The vertices take precedence over the tracks.
+	 * 
+	 * <p>The Swing thread does not wait for the query. It is scheduled in the model thread,
+	 * and the method returns the result of the last completed query, if it was made close
+	 * enough to the current position. Otherwise, it falls back to the hovered item reported
+	 * by the renderer.</p>
+	 * 
+	 * @param worldX Cursor position in the world coordinates.
+	 * @param worldY Cursor position in the world coordinates.
+	 * @return Snapshot describing the item to snap to, or null.
+	 */
+	protected HoveredItemSnapshot getSnapTarget(double worldX, double worldY) {
+		double radius = this.cameraModel.worldDistance(SNAP_RADIUS);
+		this.findSnapTarget(this.getWorld(), worldX, worldY, radius);
+		if(null != this.snapTarget && Math.abs(this.snapTargetX - worldX) <= radius && Math.abs(this.snapTargetY - worldY) <= radius) {
+			return this.snapTarget;
+		}
+		return this.getHoveredItemSnapshot();
+	}
+	
+	/**
+	 * Looks for the snap target in the model thread. If the mouse moves faster than the queries
+	 * are executed, only the query for the latest position is made.
+	 * 
+	 * @param world The world.
+	 * @param worldX Cursor position in the world coordinates.
+	 * @param worldY Cursor position in the world coordinates.
+	 * @param radius Maximum distance of the snap target.
+	 */
+	@InModelThread(asynchronous = true, coalesce = true, priority = MessagePriority.INTERACTIVE)
+	public void findSnapTarget(final World world, double worldX, double worldY, double radius) {
+		IgnoreHoverSnapshot ignored = this.sceneManager.getResource(IgnoreHoverSnapshot.class, IgnoreHoverSnapshot.class);
+		List<IVertex> vertices = world.findNearestVertices(worldX, worldY, SNAP_CANDIDATES, radius);
+		for(IVertex vertex: vertices) {
+			if(null == ignored || ignored.getVertexId() != vertex.getId()) {
+				this.snapTargetFound(worldX, worldY, new HoveredItemSnapshot(HoveredItemSnapshot.TYPE_VERTEX, vertex.getId(), 0, 0.0));
+				return;
+			}
+		}
+		List<TrackPoint> points = world.findNearestTrackPoints(worldX, worldY, SNAP_CANDIDATES, radius);
+		for(TrackPoint point: points) {
+			if(null == ignored || ignored.getTrackId() != point.getTrack().getId()) {
+				this.snapTargetFound(worldX, worldY, new HoveredItemSnapshot(HoveredItemSnapshot.TYPE_TRACK, point.getTrack().getId(), 0, point.getPosition()));
+				return;
+			}
+		}
+		this.snapTargetFound(worldX, worldY, null);
+	}
+	
+	/**
+	 * Remembers the result of the snap target query for the next calls of {@link #getSnapTarget(double, double)}.
+	 * 
+	 * @param worldX Cursor position, for which the target was found.
+	 * @param worldY Cursor position, for which the target was found.
+	 * @param target The found snap target or null.
+	 */
+	@InSwingThread(asynchronous = true)
+	public void snapTargetFound(double worldX, double worldY, HoveredItemSnapshot target) {
+		this.snapTargetX = worldX;
+		this.snapTargetY = worldY;
+		this.snapTarget = target;
+	}
+	
 	/**
 	 * Adds the given vertex and track for ignoring while looking for hovered vertex/track.
 	 * 
@@ -166,11 +286,74 @@ public abstract class AbstractTrackModeAPI {
 	}
 	
 	/**
-	 * Creates a history command and executes it.
+	 * Transforms the current unit of work in the preview thread and exports the result to
+	 * the scene, so that the Swing thread does not wait for the transformation engine while
+	 * the user drags something. If the previous preview has not started yet, it is dropped,
+	 * and the result is exported only if no newer preview has been scheduled in the meantime.
+	 * Until {@link #finishPreviews()} is called, the unit of work must not be touched by the
+	 * calling thread, so every handler which reads or writes it, calls it first, directly or
+	 * through {@link #createUnitOfWork()}, {@link #resetUnitOfWork()}, {@link #exportUnit()}
+	 * or {@link #applyChanges(String)}.
+	 * 
+	 * @param preview Transformation of the current unit of work.
+	 */
+	protected void schedulePreview(final Runnable preview) {
+		final NetworkUnitOfWork unit = this.currentUnit;
+		final long number = this.previewNum.incrementAndGet();
+		this.previewsScheduled = true;
+		Class<?> type = this.getClass();
+		while(type.getName().contains("$$")) {
+			// Skip the classes generated by Guice for the interceptors.
+			type = type.getSuperclass();
+		}
+		final String name = type.getSimpleName()+".preview";
+		this.previewThread.enqueueLatest(this, new INamedMessage() {
+			@Override
+			public String getMessageName() {
+				return name;
+			}
+
+			@Override
+			public void run() {
+				try {
+					preview.run();
+					if(number == previewNum.get()) {
+						unit.exportScene(sceneManager);
+					}
+				} catch(Throwable thr) {
+					logger.error("Exception occurred while computing the preview.", thr);
+				}
+			}
+		}, MessagePriority.INTERACTIVE);
+	}
+	
+	/**
+	 * Waits until the scheduled previews are computed, so that the current unit of work
+	 * can be used by the calling thread again.
+	 */
+	protected void finishPreviews() {
+		if(!this.previewsScheduled || this.previewThread.isIn() || !this.previewThread.isRunning()) {
+			return;
+		}
+		this.previewsScheduled = false;
+		try {
+			this.previewThread.enqueueAndWait(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}, MessagePriority.INTERACTIVE);
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Creates a history command and executes it. The scheduled previews are finished first.
 	 * 
 	 * @param commandName The name of the command for the history panel.
 	 */
 	protected void applyChanges(String commandName) {
+		this.finishPreviews();
 		if(!this.currentUnit.isEmpty()) {
 			try {
 				this.history.execute(new NetworkLayoutChangeCmd(this.currentUnit, commandName));
@@ -20,6 +20,9 @@ package org.invenzzia.opentrans.lightweight.ui.tabs.world;
 import com.google.common.base.Preconditions;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -122,7 +125,7 @@ public class WorldTabController implements AdjustmentListener, IZoomListener, IW
 	
 	public void setWorldTab(WorldTab worldTab) {
 		if(null != this.worldTab) {
-			if(null != this.currentEditMode) {
+			if(null != this.currentEditMode && null != this.worldRecord) {
 				this.currentEditMode.modeDisabled();
 			}
 			this.worldTab.removeWorldTabListener(this);
@@ -136,7 +139,19 @@ public class WorldTabController implements AdjustmentListener, IZoomListener, IW
 		}
 		this.worldTab = worldTab;
 		if(null != this.worldTab) {
-			this.worldRecord = this.createWorldRecord();
+			this.worldRecord = null;
+			final WorldTab tab = this.worldTab;
+			Futures.addCallback(this.createWorldRecord(), new FutureCallback<WorldRecord>() {
+				@Override
+				public void onSuccess(WorldRecord record) {
+					worldRecordCreated(tab, record);
+				}
+
+				@Override
+				public void onFailure(Throwable thr) {
+					logger.error("Cannot create the world record.", thr);
+				}
+			});
 			if(null == this.mouseListener) {
 				this.mouseListener = new CameraMouseMotionListener();
 			}
@@ -149,9 +164,6 @@ public class WorldTabController implements AdjustmentListener, IZoomListener, IW
 			this.worldTab.getNetworkView().addAdjustmentListener(this);
 			this.worldTab.getNetworkView().getCameraView().setRenderer(this.renderer);
 			this.worldTab.getNetworkView().getCameraView().addComponentListener(new CameraViewListener());
-			this.worldTab.getNetworkView().getCameraView().addMouseListener(this.mouseListener);
-			this.worldTab.getNetworkView().getCameraView().addMouseMotionListener(this.mouseListener);
-			this.worldTab.getNetworkView().getCameraView().addKeyListener(this.keyListener);
 			this.worldTab.getZoomField().addZoomListener(this);
 			this.worldTab.getNetworkView().getCameraView().revalidate();
 			this.worldTab.getNetworkView().injectSnapshot(new CameraModelSnapshot(this.cameraModel));
@@ -163,7 +175,7 @@ public class WorldTabController implements AdjustmentListener, IZoomListener, IW
 			if(null == this.currentEditMode) {
 				throw new IllegalStateException("Unknown edit mode: "+this.worldTab.getSelectedMode());
 			}
-			this.currentEditMode.modeEnabled(this);
+			// The edit mode and the input listeners are enabled, once the world record arrives.
 		}
 	}
 
@@ -192,6 +204,10 @@ public class WorldTabController implements AdjustmentListener, IZoomListener, IW
 	@Subscribe
 	@InSwingThread(asynchronous = true)
 	public void notifyExternalWorldSizeChange(WorldSizeChangedEvent event) {
+		if(null == this.worldRecord) {
+			// The initial record has not arrived yet; the edit mode is still disabled.
+			return;
+		}
 		this.worldRecord = event.getWorld();
 		this.worldTab.getNetworkView().updateScrollbarPositions();
 		this.currentEditMode.modeDisabled();
@@ -213,20 +229,47 @@ public class WorldTabController implements AdjustmentListener, IZoomListener, IW
 		this.worldTab.getNetworkView().updateScrollbarPositions();
 	}
 	
-	@InModelThread(asynchronous = false)
-	public WorldRecord createWorldRecord() {
-		return new WorldRecord(this.worldProvider.get());
+	/**
+	 * Creates the record of the world in the model thread. The caller does not wait for it;
+	 * the record is delivered through the future.
+	 * 
+	 * @return Future of the world record.
+	 */
+	@InModelThread
+	public ListenableFuture<WorldRecord> createWorldRecord() {
+		return Futures.immediateFuture(new WorldRecord(this.worldProvider.get()));
+	}
+	
+	/**
+	 * Installs the created world record, enables the current edit mode and starts passing the
+	 * user input to it. If the world tab has been changed in the meantime, the record is dropped.
+	 * 
+	 * @param tab The world tab the record was created for.
+	 * @param record The world record.
+	 */
+	@InSwingThread(asynchronous = true)
+	public void worldRecordCreated(WorldTab tab, WorldRecord record) {
+		if(tab != this.worldTab || null != this.worldRecord) {
+			return;
+		}
+		this.worldRecord = record;
+		if(null != this.currentEditMode) {
+			this.currentEditMode.modeEnabled(this);
+		}
+		this.worldTab.getNetworkView().getCameraView().addMouseListener(this.mouseListener);
+		this.worldTab.getNetworkView().getCameraView().addMouseMotionListener(this.mouseListener);
+		this.worldTab.getNetworkView().getCameraView().addKeyListener(this.keyListener);
 	}
 
 	@Override
 	public void modeChanged(WorldTab.WorldTabEvent event) {
-		if(null != this.currentEditMode) {
+		if(null != this.currentEditMode && null != this.worldRecord) {
 			this.popupBuilder = null;
 			this.currentEditMode.modeDisabled();
 			this.currentEditMode = null;
 		}
 		this.currentEditMode = this.editModes.get(event.getMode());
-		if(null != this.currentEditMode) {
+		if(null != this.currentEditMode && null != this.worldRecord) {
 			this.currentEditMode.modeEnabled(this);
 		}
 	}
@@ -88,7 +88,7 @@ public class ConnectTracksMode extends AbstractEditMode {
 
 	@Override
 	public void leftActionPerformed(double worldX, double worldY, boolean altDown, boolean ctrlDown) {
-		HoveredItemSnapshot snapshot = sceneManager.getResource(HoveredItemSnapshot.class, HoveredItemSnapshot.class);
+		HoveredItemSnapshot snapshot = this.getSnapTarget(worldX, worldY);
 		if(null != snapshot) {
 			if(snapshot.getType() == HoveredItemSnapshot.TYPE_VERTEX) {
 				if(null == this.firstVertex) {
@@ -98,7 +98,7 @@ public class ConnectTracksMode extends AbstractEditMode {
 					} else {
 						this.api.setStatusMessage(ONLY_SINGLE_TRACK);
 					}
-					this.currentUnit.exportScene(this.sceneManager);
+					this.exportUnit();
 				} else {
 					this.secondVertex = this.importFreeVertex(this.getProject(), snapshot.getId());
 					this.transformEngine.op(BindVertices.class).bind(this.firstVertex, this.secondVertex);
@@ -92,6 +92,7 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 	}
 	
 	public void resetState() {
+		this.finishPreviews();
 		this.currentUnit = null;
 		this.boundVertex = null;
 		this.resetIgnoring();
@@ -152,7 +153,7 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 		
 		@Override
 		public void mouseMoves(double worldX, double worldY, boolean altDown, boolean ctrlDown) {
-			HoveredItemSnapshot snapshot = sceneManager.getResource(HoveredItemSnapshot.class, HoveredItemSnapshot.class);
+			HoveredItemSnapshot snapshot = getSnapTarget(worldX, worldY);
 			if(null == snapshot) {
 				if(this.cursorChanged) {
 					api.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
@@ -175,7 +176,7 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 		
 		@Override
 		public void leftActionPerformed(double worldX, double worldY, boolean altDown, boolean ctrlDown) {
-			HoveredItemSnapshot snapshot = getHoveredItemSnapshot();
+			HoveredItemSnapshot snapshot = getSnapTarget(worldX, worldY);
 			if(null == snapshot) {
 				setState(STATE_NEW_TRACK);
 			} else if(snapshot.getType() == HoveredItemSnapshot.TYPE_VERTEX) {
@@ -246,7 +247,7 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 				logger.debug("STATE_JUNCTION: creating the unit of work.");
 				createUnitOfWork();
 			}
-			HoveredItemSnapshot snapshot = getHoveredItemSnapshot();
+			HoveredItemSnapshot snapshot = getSnapTarget(worldX, worldY);
 			this.masterTrack = currentUnit.importTrack(getWorld(), snapshot.getId());
 			this.position = snapshot.getPosition();
 			this.started = true;
@@ -284,10 +285,10 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 		
 		@Override
 		public void leftActionPerformed(double worldX, double worldY, boolean altDown, boolean ctrlDown) {
-			HoveredItemSnapshot snapshot = getHoveredItemSnapshot();
+			HoveredItemSnapshot snapshot = getSnapTarget(worldX, worldY);
 			if(importFreeVertex(projectHolder.getCurrentProject(), snapshot.getId())) {
 				this.started = true;
-				currentUnit.exportScene(sceneManager);
+				exportUnit();
 			} else {
 				setState(STATE_CURSOR_FREE);
 			}
@@ -296,12 +297,13 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 		@Override
 		public void mouseMoves(double worldX, double worldY, boolean altDown, boolean ctrlDown) {
 			Preconditions.checkState(null != boundVertex);
+			finishPreviews();
 			try {
 				boundVertex = transformEngine.op(ExtendTrack.class).extend(boundVertex, worldX, worldY,
 						(altDown ? NetworkConst.MODE_ALT1 : NetworkConst.MODE_DEFAULT)
 					);
 				addForIgnoring(boundVertex.getTrack(), boundVertex);
-				currentUnit.exportScene(sceneManager);
+				exportUnit();
 				setState(STATE_DRAWING);
 			} finally {
 				this.started = false;
@@ -318,8 +320,9 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 		
 		@Override
 		public void leftActionPerformed(double worldX, double worldY, boolean altDown, boolean ctrlDown) {
+			finishPreviews();
 			if(null != boundVertex) {
-				HoveredItemSnapshot snapshot = getHoveredItemSnapshot();
+				HoveredItemSnapshot snapshot = getSnapTarget(worldX, worldY);
 				if(null != snapshot) {
 					TrackRecord importedTrack = null;
 					if(snapshot.getType() == HoveredItemSnapshot.TYPE_TRACK) {
@@ -345,7 +348,7 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 				logger.debug("STATE_DRAWING: finalizing the position of previous track.");
 				transformEngine.op(MoveVertex.class).move(boundVertex, worldX, worldY, (ctrlDown ? NetworkConst.MODE_ALT1 : NetworkConst.MODE_DEFAULT));
 				this.started = true; // Inform that by the next move, we start a new track.
-				currentUnit.exportScene(sceneManager);
+				exportUnit();
 			}
 		}
 		
@@ -360,20 +363,29 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 			if(this.started) {
 				logger.debug("STATE_DRAWING: extending the track.");
 				this.started = false;
+				finishPreviews();
 				boundVertex = transformEngine.op(ExtendTrack.class).extend(boundVertex, worldX, worldY,
 						(altDown ? NetworkConst.MODE_ALT1 : NetworkConst.MODE_DEFAULT)
 					);
 				addForIgnoring(boundVertex.getTrack(), boundVertex);
+				exportUnit();
 			} else {
-				transformEngine.op(MoveVertex.class).move(boundVertex, worldX, worldY,
-					(ctrlDown ? NetworkConst.MODE_ALT1 : NetworkConst.MODE_DEFAULT)
-				);
+				final VertexRecord vertex = boundVertex;
+				final double x = worldX;
+				final double y = worldY;
+				final byte mode = (ctrlDown ? NetworkConst.MODE_ALT1 : NetworkConst.MODE_DEFAULT);
+				schedulePreview(new Runnable() {
+					@Override
+					public void run() {
+						transformEngine.op(MoveVertex.class).move(vertex, x, y, mode);
+					}
+				});
 			}
-			currentUnit.exportScene(sceneManager);
 		}
 		
 		@Override
 		public void rightActionPerformed(double worldX, double worldY, boolean altDown, boolean ctrlDown) {
+			finishPreviews();
 			try {
 				logger.debug("STATE_DRAWING: finishing the construction and saving the data to the world model.");
 				if(this.started) {
@@ -390,6 +402,7 @@ public class DrawTrackMode extends AbstractStateMachineEditMode {
 		
 		@Override
 		public void rPressed(double worldX, double worldY) {
+			finishPreviews();
 			if(null != boundVertex) {
 				TrackRecord tr = boundVertex.getTrack();
 				if(tr.getOppositeVertex(boundVertex) instanceof JunctionRecord) {
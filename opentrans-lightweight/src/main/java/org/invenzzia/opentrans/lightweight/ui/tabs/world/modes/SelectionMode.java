@@ -17,13 +17,21 @@
 
 package org.invenzzia.opentrans.lightweight.ui.tabs.world.modes;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import java.awt.Cursor;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import org.invenzzia.helium.exception.CommandExecutionException;
 import org.invenzzia.opentrans.lightweight.annotations.InModelThread;
+import org.invenzzia.opentrans.lightweight.annotations.InSwingThread;
 import org.invenzzia.opentrans.lightweight.ui.tabs.world.AbstractEditMode;
 import org.invenzzia.opentrans.lightweight.ui.tabs.world.IEditModeAPI;
 import org.invenzzia.opentrans.lightweight.ui.tabs.world.PopupBuilder;
@@ -35,10 +43,13 @@ import org.invenzzia.opentrans.visitons.network.NetworkConst;
 import org.invenzzia.opentrans.visitons.network.Track;
 import org.invenzzia.opentrans.visitons.network.TrackRecord;
 import org.invenzzia.opentrans.visitons.network.World;
+import org.invenzzia.opentrans.visitons.network.transform.NetworkUnitOfWork;
+import org.invenzzia.opentrans.visitons.network.transform.TransformEngine;
 import org.invenzzia.opentrans.visitons.network.transform.ops.MoveGroup;
 import org.invenzzia.opentrans.visitons.network.transform.ops.MoveVertex;
 import org.invenzzia.opentrans.visitons.render.scene.HoveredItemSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.SelectionSnapshot;
+import org.invenzzia.opentrans.visitons.utils.collections.LongSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,8 +88,21 @@ public class SelectionMode extends AbstractEditMode {
 	
 	private double dragInitialPosX;
 	private double dragInitialPosY;
+	/**
+	 * Total movement of the dragged group requested so far.
+	 */
+	private double groupDeltaX;
+	private double groupDeltaY;
+	/**
+	 * The group dragged at the moment. Once created, it is used only by the previews.
+	 */
+	private DraggedGroup draggedGroup;
 	
 	private int selectionMode = NOTHING;
+	/**
+	 * The imports started by the Swing thread, which are not merged into the current unit of work yet.
+	 */
+	private final LinkedList<PendingImport> pendingImports = new LinkedList<>();
 	
 	public SelectionMode() {
 		this.selectedVertices = new LinkedHashSet<>();
@@ -102,32 +126,142 @@ public class SelectionMode extends AbstractEditMode {
 	@Override
 	public void modeDisabled() {
 		logger.debug("SelectionMode disabled.");
+		this.finishPreviews();
 		this.resetState();
 	}
 	
 	private void resetState() {
+		this.pendingImports.clear();
 		this.selectedTracks.clear();
 		this.selectedVertices.clear();
 		this.resetUnitOfWork();
 		this.resetRenderingStream();
 	}
 	
-	@InModelThread(asynchronous = false)
-	public IVertexRecord importVertex(long vertexId) {
-		return this.currentUnit.importVertex(this.getWorld(), vertexId);
+	/**
+	 * Imports the clicked vertex in the model thread. The records are imported into a separate
+	 * unit of work, because the current one belongs to the Swing thread.
+	 * 
+	 * @param world The world.
+	 * @param vertexIds ID-s of the vertices in the current unit of work.
+	 * @param vertexId The ID of the clicked vertex.
+	 * @return Future of the imported records.
+	 */
+	@InModelThread
+	public ListenableFuture<ImportedRecords> importVertex(World world, LongSet vertexIds, long vertexId) {
+		NetworkUnitOfWork records = new NetworkUnitOfWork();
+		records.importVertex(world, vertexId);
+		records.importConnectingTracks(world, vertexIds);
+		return Futures.immediateFuture(new ImportedRecords(records, new long[] { vertexId }, new long[0]));
 	}
 	
-	@InModelThread(asynchronous = false)
-	public TrackRecord importTrack(long trackId) {
-		return this.currentUnit.importTrack(this.getWorld(), trackId);
+	/**
+	 * Imports the clicked track in the model thread. The records are imported into a separate
+	 * unit of work, because the current one belongs to the Swing thread.
+	 * 
+	 * @param world The world.
+	 * @param vertexIds ID-s of the vertices in the current unit of work.
+	 * @param trackId The ID of the clicked track.
+	 * @return Future of the imported records.
+	 */
+	@InModelThread
+	public ListenableFuture<ImportedRecords> importTrack(World world, LongSet vertexIds, long trackId) {
+		NetworkUnitOfWork records = new NetworkUnitOfWork();
+		records.importTrack(world, trackId);
+		records.importConnectingTracks(world, vertexIds);
+		return Futures.immediateFuture(new ImportedRecords(records, new long[0], new long[] { trackId }));
 	}
 	
-	
-	@InModelThread(asynchronous = false)
-	public void importTracksFromSelection(World world, double x1, double y1, double x2, double y2) {
-		Set<Track> tracks = world.findTracksInArea(x1, y1, x2, y2);
+	/**
+	 * Imports the tracks from the selected area in the model thread. The records are imported
+	 * into a separate unit of work, because the current one belongs to the Swing thread.
+	 * 
+	 * @param world The world.
+	 * @return Future of the imported records.
+	 */
+	@InModelThread
+	public ListenableFuture<ImportedRecords> importTracksFromSelection(World world, double x1, double y1, double x2, double y2) {
+		List<Track> tracks = world.findTracksCrossingArea(x1, y1, x2, y2);
+		NetworkUnitOfWork records = new NetworkUnitOfWork();
+		long trackIds[] = new long[tracks.size()];
+		int i = 0;
 		for(Track track: tracks) {
-			this.selectedTracks.add(this.currentUnit.importTrack(world, track));
+			records.importTrack(world, track);
+			trackIds[i++] = track.getId();
+		}
+		return Futures.immediateFuture(new ImportedRecords(records, new long[0], trackIds));
+	}
+	
+	/**
+	 * Remembers the started import. The imported records are merged into the current unit of work
+	 * in the Swing thread, once the import is finished.
+	 * 
+	 * @param future Future of the imported records.
+	 */
+	private void startImport(ListenableFuture<ImportedRecords> future) {
+		this.pendingImports.add(new PendingImport(this.currentUnit, future));
+		Futures.addCallback(future, new FutureCallback<ImportedRecords>() {
+			@Override
+			public void onSuccess(ImportedRecords records) {
+				importFinished();
+			}
+
+			@Override
+			public void onFailure(Throwable thr) {
+				logger.error("Cannot import the selected items.", thr);
+				importFinished();
+			}
+		});
+	}
+	
+	/**
+	 * Merges the finished imports into the current unit of work.
+	 */
+	@InSwingThread(asynchronous = true)
+	public void importFinished() {
+		this.applyImports(false);
+	}
+	
+	/**
+	 * Merges the finished imports into the current unit of work and adds the imported items to the
+	 * selection, in the order the imports were started. The imports made for another unit of work
+	 * are dropped. The gestures which depend on the selection must wait for all the imports first.
+	 * 
+	 * @param wait Whether to wait for the imports which are still running.
+	 */
+	private void applyImports(boolean wait) {
+		boolean applied = false;
+		while(!this.pendingImports.isEmpty()) {
+			PendingImport pending = this.pendingImports.getFirst();
+			if(!wait && !pending.future.isDone()) {
+				break;
+			}
+			this.pendingImports.removeFirst();
+			ImportedRecords imported;
+			try {
+				imported = Futures.getUnchecked(pending.future);
+			} catch(UncheckedExecutionException exception) {
+				continue;
+			}
+			if(pending.unit != this.currentUnit) {
+				continue;
+			}
+			applied = true;
+			this.finishPreviews();
+			this.currentUnit.merge(imported.getRecords());
+			for(long id: imported.getVertexIds()) {
+				this.selectedVertices.add(this.currentUnit.findVertex(id));
+			}
+			for(long id: imported.getTrackIds()) {
+				this.selectedTracks.add(this.currentUnit.findTrack(id));
+			}
+		}
+		if(applied) {
+			if(this.currentUnit.isEmpty()) {
+				this.resetState();
+			} else {
+				this.exportUnit();
+			}
 		}
 	}
 	
@@ -140,18 +274,20 @@ public class SelectionMode extends AbstractEditMode {
 	public void leftActionPerformed(double worldX, double worldY, boolean altDown, boolean ctrlDown) {
 		HoveredItemSnapshot hovered = this.getHoveredItemSnapshot();
 		if(null != hovered) {
+			// The new records are linked with the ones already imported, so they must be known.
+			this.finishPreviews();
+			this.applyImports(true);
 			if(!this.hasUnitOfWork()) {
 				this.createUnitOfWork();
 			}
 			switch(hovered.getType()) {
 				case HoveredItemSnapshot.TYPE_VERTEX:
-					this.selectedVertices.add(this.importVertex(hovered.getId()));
+					this.startImport(this.importVertex(this.getWorld(), this.currentUnit.getVertexIds(), hovered.getId()));
 					break;
 				case HoveredItemSnapshot.TYPE_TRACK:
-					this.selectedTracks.add(this.importTrack(hovered.getId()));
+					this.startImport(this.importTrack(this.getWorld(), this.currentUnit.getVertexIds(), hovered.getId()));
 					break;
 			}
-			this.currentUnit.exportScene(this.sceneManager);
 		}
 	}
 	
@@ -163,6 +299,8 @@ public class SelectionMode extends AbstractEditMode {
 	
 	@Override
 	public void mouseStartsDragging(double worldX, double worldY, boolean altDown, boolean ctrlDown) {
+		this.finishPreviews();
+		this.applyImports(true);
 		int selectedVerticesNum = this.selectedVertices.size();
 		int selectedTracksNum = this.selectedTracks.size();
 		this.api.setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
@@ -177,6 +315,9 @@ public class SelectionMode extends AbstractEditMode {
 			this.dragInitialPosY = worldY;
 		} else if(selectedTracksNum > 0) {
 			this.selectionMode = DRAG_GROUP;
+			this.groupDeltaX = 0.0;
+			this.groupDeltaY = 0.0;
+			this.draggedGroup = new DraggedGroup(ImmutableSet.copyOf(this.selectedTracks));
 		} else {
 			this.selectionMode = NOTHING;
 		}
@@ -187,13 +328,28 @@ public class SelectionMode extends AbstractEditMode {
 		if(this.selectionMode == SELECT_AREA) {
 			this.sceneManager.updateResource(SelectionSnapshot.class, new SelectionSnapshot(this.dragInitialPosX, this.dragInitialPosY, worldX, worldY));
 		} else if(selectionMode == DRAG_VERTEX) {
-			this.transformEngine.op(MoveVertex.class).move(this.selectedVertices.iterator().next(), worldX, worldY,
-				(ctrlDown ? (altDown ? NetworkConst.MODE_ALT2 : NetworkConst.MODE_ALT1) : NetworkConst.MODE_DEFAULT)
-			);
-			this.currentUnit.exportScene(this.sceneManager);
+			final IVertexRecord vertex = this.selectedVertices.iterator().next();
+			final double x = worldX;
+			final double y = worldY;
+			final byte mode = (ctrlDown ? (altDown ? NetworkConst.MODE_ALT2 : NetworkConst.MODE_ALT1) : NetworkConst.MODE_DEFAULT);
+			this.schedulePreview(new Runnable() {
+				@Override
+				public void run() {
+					transformEngine.op(MoveVertex.class).move(vertex, x, y, mode);
+				}
+			});
 		} else if(selectionMode == DRAG_GROUP) {
-			this.transformEngine.op(MoveGroup.class).moveByDelta(this.selectedTracks, deltaX, deltaY);
-			this.currentUnit.exportScene(this.sceneManager);
+			this.groupDeltaX += deltaX;
+			this.groupDeltaY += deltaY;
+			final DraggedGroup group = this.draggedGroup;
+			final double totalX = this.groupDeltaX;
+			final double totalY = this.groupDeltaY;
+			this.schedulePreview(new Runnable() {
+				@Override
+				public void run() {
+					group.moveTo(transformEngine, totalX, totalY);
+				}
+			});
 		}
 	}
 	
@@ -202,12 +358,7 @@ public class SelectionMode extends AbstractEditMode {
 		this.api.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
 		if(this.selectionMode == SELECT_AREA) {
 			this.createUnitOfWork();
-			this.importTracksFromSelection(this.getWorld(), this.dragInitialPosX, this.dragInitialPosY, worldX, worldY);
-			if(this.currentUnit.isEmpty()) {
-				this.resetState();
-			} else {
-				this.currentUnit.exportScene(this.sceneManager);
-			}
+			this.startImport(this.importTracksFromSelection(this.getWorld(), this.dragInitialPosX, this.dragInitialPosY, worldX, worldY));
 			this.selectionMode = NOTHING;
 			this.sceneManager.updateResource(SelectionSnapshot.class, null);
 		} else if(this.selectionMode == DRAG_VERTEX) {
@@ -217,6 +368,7 @@ public class SelectionMode extends AbstractEditMode {
 		} else if(this.selectionMode == DRAG_GROUP) {
 			logger.debug("Dragging of group stopped.");
 			this.applyChanges("Move tracks");
+			this.draggedGroup = null;
 			this.resetState();
 			this.selectionMode = NOTHING; 
 		}
@@ -224,6 +376,8 @@ public class SelectionMode extends AbstractEditMode {
 	
 	@Override
 	public void deletePressed(double worldX, double worldY) {
+		this.finishPreviews();
+		this.applyImports(true);
 		if(this.selectedTracks.size() > 0) {
 			for(TrackRecord tr: this.selectedTracks) {
 				this.currentUnit.removeTrack(tr);
@@ -244,4 +398,74 @@ public class SelectionMode extends AbstractEditMode {
 	protected void handleCommandExecutionError(CommandExecutionException exception) {
 		logger.error("Exception occurred while saving the network unit of work.", exception);
 	}
+	
+	/**
+	 * Records imported by the model thread into a separate unit of work, and the ID-s of
+	 * the items to select.
+	 */
+	public static class ImportedRecords {
+		private final NetworkUnitOfWork records;
+		private final long vertexIds[];
+		private final long trackIds[];
+		
+		public ImportedRecords(NetworkUnitOfWork records, long vertexIds[], long trackIds[]) {
+			this.records = records;
+			this.vertexIds = vertexIds;
+			this.trackIds = trackIds;
+		}
+		
+		public NetworkUnitOfWork getRecords() {
+			return this.records;
+		}
+		
+		public long[] getVertexIds() {
+			return this.vertexIds;
+		}
+		
+		public long[] getTrackIds() {
+			return this.trackIds;
+		}
+	}
+	
+	/**
+	 * The tracks dragged by the user, copied when the drag starts. The movement already
+	 * applied is kept here, because it is known only to the previews, which are executed
+	 * one after another by the preview thread.
+	 */
+	static class DraggedGroup {
+		private final Set<TrackRecord> tracks;
+		private double appliedDeltaX;
+		private double appliedDeltaY;
+		
+		public DraggedGroup(Set<TrackRecord> tracks) {
+			this.tracks = tracks;
+		}
+		
+		/**
+		 * Moves the group, so that the total movement from the start of the drag is equal
+		 * to the given one. The previews may be dropped, so we do not pass the last delta.
+		 * 
+		 * @param engine Transformation engine.
+		 * @param totalX Total movement along the X axis.
+		 * @param totalY Total movement along the Y axis.
+		 */
+		public void moveTo(TransformEngine engine, double totalX, double totalY) {
+			engine.op(MoveGroup.class).moveByDelta(this.tracks, totalX - this.appliedDeltaX, totalY - this.appliedDeltaY);
+			this.appliedDeltaX = totalX;
+			this.appliedDeltaY = totalY;
+		}
+	}
+	
+	/**
+	 * The import started for the given unit of work.
+	 */
+	static class PendingImport {
+		final NetworkUnitOfWork unit;
+		final ListenableFuture<ImportedRecords> future;
+		
+		public PendingImport(NetworkUnitOfWork unit, ListenableFuture<ImportedRecords> future) {
+			this.unit = unit;
+			this.future = future;
+		}
+	}
 }
@@ -19,6 +19,7 @@ package org.invenzzia.opentrans.lightweight.ui.toolbars;
 
 import java.awt.Dimension;
 import javax.swing.JButton;
+import org.invenzzia.opentrans.lightweight.annotations.Action;
 import org.invenzzia.opentrans.lightweight.lf.icons.IconService;
 
 /**
@@ -34,10 +35,12 @@ public class ProjectToolbar extends AbstractToolbar {
 	/**
 	 * Button for opening a project.
 	 */
+	@Action("openProject")
 	private JButton openProjectButton;
 	/**
 	 * Button for saving the project.
 	 */
+	@Action("saveProject")
 	private JButton saveProjectButton;
 	
 	public ProjectToolbar() {
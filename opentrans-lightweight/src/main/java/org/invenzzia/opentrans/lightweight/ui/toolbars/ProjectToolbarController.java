@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.lightweight.ui.toolbars;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import org.invenzzia.helium.history.History;
+import org.invenzzia.opentrans.lightweight.Application;
+import org.invenzzia.opentrans.lightweight.annotations.Action;
+import org.invenzzia.opentrans.lightweight.annotations.InModelThread;
+import org.invenzzia.opentrans.lightweight.app.ProjectFactory;
+import org.invenzzia.opentrans.lightweight.controllers.IActionScanner;
+import org.invenzzia.opentrans.lightweight.ui.IDialogBuilder;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.editing.ICommand;
+import org.invenzzia.opentrans.visitons.io.ProjectFormat;
+
+/**
+ * The controller manages the 'Open' and 'Save' buttons visible on the project
+ * toolbar. The project files are read and written in the model thread.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+@Singleton
+public class ProjectToolbarController {
+	@Inject
+	private Application application;
+	@Inject
+	private ProjectFactory projectFactory;
+	@Inject
+	private History<ICommand> history;
+	@Inject
+	private IDialogBuilder dialogBuilder;
+	@Inject
+	private IActionScanner actionScanner;
+	/**
+	 * The current view.
+	 */
+	private ProjectToolbar view;
+	
+	/**
+	 * Sets the toolbar view.
+	 * 
+	 * @param toolbar 
+	 */
+	public void setView(ProjectToolbar toolbar) {
+		this.view = toolbar;
+		this.actionScanner.discoverActions(ProjectToolbarController.class, this);
+		this.actionScanner.bindComponents(ProjectToolbar.class, this.view);
+	}
+	
+	public ProjectToolbar getView() {
+		return this.view;
+	}
+	
+	@Action("openProject")
+	public void openProjectAction() {
+		JFileChooser fc = this.createFileChooser();
+		if(this.dialogBuilder.showOpenDialog(fc)) {
+			try {
+				this.openProject(fc.getSelectedFile().getAbsolutePath());
+			} catch(IOException exception) {
+				this.dialogBuilder.showError("Cannot open the project", exception);
+			}
+		}
+	}
+	
+	@Action("saveProject")
+	public void saveProjectAction() {
+		String path = this.application.getProjectPath();
+		if(null == path) {
+			JFileChooser fc = this.createFileChooser();
+			if(!this.dialogBuilder.showSaveDialog(fc)) {
+				return;
+			}
+			path = fc.getSelectedFile().getAbsolutePath();
+			if(!path.endsWith("."+ProjectFormat.EXTENSION)) {
+				path = path + "."+ProjectFormat.EXTENSION;
+			}
+		}
+		try {
+			this.saveProject(path);
+		} catch(IOException exception) {
+			this.dialogBuilder.showError("Cannot save the project", exception);
+		}
+	}
+	
+	/**
+	 * Replaces the current project with the one loaded from the file. The history
+	 * is cleared, because the commands refer to the old project.
+	 * 
+	 * @param path Path to the project file.
+	 * @throws IOException 
+	 */
+	@InModelThread(asynchronous = false)
+	public void openProject(String path) throws IOException {
+		Project project = this.projectFactory.openExistingProject(path);
+		this.history.clear();
+		this.application.setProjectPath(path);
+		this.application.setCurrentProject(project);
+	}
+	
+	/**
+	 * Writes the current project to the file.
+	 * 
+	 * @param path Path to the project file.
+	 * @throws IOException 
+	 */
+	@InModelThread(asynchronous = false)
+	public void saveProject(String path) throws IOException {
+		this.projectFactory.saveProject(this.application.getCurrentProject(), path);
+		this.application.setProjectPath(path);
+	}
+	
+	private JFileChooser createFileChooser() {
+		JFileChooser fc = new JFileChooser();
+		if(null != this.application.getProjectPath()) {
+			fc.setCurrentDirectory(new File(this.application.getProjectPath()).getParentFile());
+		}
+		fc.setDragEnabled(false);
+		fc.setMultiSelectionEnabled(false);
+		fc.setFileSelectionMode(JFileChooser.FILES_ONLY);
+		fc.setFileFilter(new FileNameExtensionFilter("OpenTrans projects", ProjectFormat.EXTENSION));
+		return fc;
+	}
+}
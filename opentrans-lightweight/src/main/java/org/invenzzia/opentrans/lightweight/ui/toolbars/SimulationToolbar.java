@@ -17,11 +17,67 @@
 
 package org.invenzzia.opentrans.lightweight.ui.toolbars;
 
+import java.awt.Dimension;
+import javax.swing.JButton;
+import org.invenzzia.opentrans.lightweight.annotations.Action;
+
 /**
- * Description here.
+ * This toolbar shows the buttons that start and pause the simulation.
  * 
  * @author Tomasz Jędrzejewski
  */
-public class SimulationToolbar {
+public class SimulationToolbar extends AbstractToolbar {
+	/**
+	 * Button for starting the simulation.
+	 */
+	@Action("startSimulation")
+	private JButton startButton;
+	/**
+	 * Button for pausing the simulation.
+	 */
+	@Action("pauseSimulation")
+	private JButton pauseButton;
 
+	public SimulationToolbar() {
+		super();
+		this.initProperties(3);
+		this.initComponents();
+	}
+	
+	@Override
+	public String getToolbarName() {
+		return "Simulation toolbar";
+	}
+	
+	@Override
+	public String getToolbarPreferenceKey() {
+		return "opentrans.gui.toolbar.simulation";
+	}
+	
+	/**
+	 * Initializes the toolbar buttons.
+	 */
+	private void initComponents() {
+		this.startButton = new JButton("Start");
+		this.startButton.setToolTipText("Start the simulation");
+		this.startButton.setPreferredSize(new Dimension(60, 40));
+		
+		this.pauseButton = new JButton("Pause");
+		this.pauseButton.setToolTipText("Pause the simulation");
+		this.pauseButton.setPreferredSize(new Dimension(60, 40));
+		
+		this.add(this.startButton);
+		this.add(this.pauseButton);
+		this.setRunning(false);
+	}
+	
+	/**
+	 * Enables the button which makes sense in the current simulation state.
+	 * 
+	 * @param running Is the simulation running?
+	 */
+	public void setRunning(boolean running) {
+		this.startButton.setEnabled(!running);
+		this.pauseButton.setEnabled(running);
+	}
 }
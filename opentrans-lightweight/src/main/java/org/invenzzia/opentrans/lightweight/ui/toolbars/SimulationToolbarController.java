@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.lightweight.ui.toolbars;
+
+import com.google.common.eventbus.Subscribe;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.Timer;
+import org.invenzzia.opentrans.lightweight.IProjectHolder;
+import org.invenzzia.opentrans.lightweight.annotations.Action;
+import org.invenzzia.opentrans.lightweight.annotations.InModelThread;
+import org.invenzzia.opentrans.lightweight.annotations.InSwingThread;
+import org.invenzzia.opentrans.lightweight.controllers.IActionScanner;
+import org.invenzzia.opentrans.visitons.events.NewProjectEvent;
+import org.invenzzia.opentrans.visitons.render.CameraModel;
+import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
+import org.invenzzia.opentrans.visitons.render.SceneManager;
+import org.invenzzia.opentrans.visitons.simulation.SimulationThread;
+
+/**
+ * The controller manages the 'Start' and 'Pause' buttons visible on the simulation
+ * toolbar. The simulation runs in its own thread, but the project is loaded into it
+ * and the vehicle positions are written back in the model thread. While the simulation
+ * is running, the positions are published to the scene several times per second.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+@Singleton
+public class SimulationToolbarController {
+	/**
+	 * How often the vehicle positions are published to the scene [ms].
+	 */
+	private static final int PUBLISH_INTERVAL = 40;
+	@Inject
+	private SimulationThread simulationThread;
+	@Inject
+	private IProjectHolder projectHolder;
+	@Inject
+	private SceneManager sceneManager;
+	@Inject
+	private CameraModel cameraModel;
+	@Inject
+	private IActionScanner actionScanner;
+	/**
+	 * The current view.
+	 */
+	private SimulationToolbar view;
+	/**
+	 * Publishes the vehicle positions while the simulation is running.
+	 */
+	private Timer publishTimer = new Timer(PUBLISH_INTERVAL, new PublishListener());
+	
+	/**
+	 * Sets the toolbar view.
+	 * 
+	 * @param toolbar 
+	 */
+	public void setView(SimulationToolbar toolbar) {
+		this.view = toolbar;
+		this.actionScanner.discoverActions(SimulationToolbarController.class, this);
+		this.actionScanner.bindComponents(SimulationToolbar.class, this.view);
+		this.view.setRunning(!this.simulationThread.isPaused());
+	}
+	
+	public SimulationToolbar getView() {
+		return this.view;
+	}
+	
+	@Action("startSimulation")
+	public void startSimulationAction() {
+		this.view.setRunning(true);
+		this.startSimulation();
+		this.publishTimer.start();
+	}
+	
+	@Action("pauseSimulation")
+	public void pauseSimulationAction() {
+		this.publishTimer.stop();
+		this.view.setRunning(false);
+		this.pauseSimulation(new CameraModelSnapshot(this.cameraModel));
+	}
+	
+	/**
+	 * Loads the new project into the simulation, which is paused then.
+	 * 
+	 * @param event 
+	 */
+	@Subscribe
+	@InModelThread(asynchronous = true)
+	public void notifyProjectLoaded(NewProjectEvent event) {
+		this.simulationThread.load(this.projectHolder.getCurrentProject());
+		this.simulationPaused();
+	}
+	
+	/**
+	 * Reloads the project into the simulation, so that it sees the changes made while
+	 * it was paused, and resumes it. The vehicles continue from the positions written
+	 * back to the model on pause.
+	 */
+	@InModelThread(asynchronous = true)
+	public void startSimulation() {
+		this.simulationThread.load(this.projectHolder.getCurrentProject());
+		this.simulationThread.setPaused(false);
+	}
+	
+	/**
+	 * Pauses the simulation and writes the final vehicle positions back to the model.
+	 * 
+	 * @param camera Snapshot of the camera taken by the Swing thread.
+	 */
+	@InModelThread(asynchronous = true)
+	public void pauseSimulation(CameraModelSnapshot camera) {
+		this.simulationThread.setPaused(true);
+		this.publishPositions(camera);
+	}
+	
+	/**
+	 * Writes the current vehicle positions back to the model and exports them to
+	 * the scene. The camera model belongs to the Swing thread, so the visible part
+	 * of the world is selected with its snapshot.
+	 * 
+	 * @param camera Snapshot of the camera taken by the Swing thread.
+	 */
+	@InModelThread(asynchronous = true, coalesce = true)
+	public void publishPositions(CameraModelSnapshot camera) {
+		this.simulationThread.commit();
+		this.projectHolder.getCurrentProject().getWorld().exportScene(this.sceneManager, camera, false);
+	}
+	
+	@InSwingThread(asynchronous = true)
+	public void simulationPaused() {
+		this.publishTimer.stop();
+		if(null != this.view) {
+			this.view.setRunning(false);
+		}
+	}
+	
+	/**
+	 * Publishes the vehicle positions on every tick of the timer.
+	 */
+	class PublishListener implements ActionListener {
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			publishPositions(new CameraModelSnapshot(cameraModel));
+		}
+	}
+}
@@ -18,16 +18,22 @@
 package org.invenzzia.opentrans.lightweight.visitons;
 
 import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import org.invenzzia.opentrans.lightweight.annotations.InModelThread;
 import org.invenzzia.opentrans.visitons.bindings.DefaultImporter;
 import org.invenzzia.opentrans.visitons.network.IVertexRecord;
+import org.invenzzia.opentrans.visitons.network.transform.DefaultRecordImporter;
 import org.invenzzia.opentrans.visitons.network.transform.IRecordImporter;
 import org.invenzzia.opentrans.visitons.network.transform.NetworkUnitOfWork;
 
 /**
  * Record importer that delegates the calls to the model thread, using the
- * default Visitons importer.
+ * default Visitons importer. The vertices that have all their neighbours imported
+ * are filtered out in the calling thread, so that the calls with nothing to import
+ * do not wait for the model thread at all.
  * 
  * @author Tomasz Jędrzejewski
  */
@@ -37,24 +43,40 @@ public class ConcurrentRecordImporter implements IRecordImporter {
 	private IRecordImporter defaultImporter;
 
 	@Override
-	@InModelThread(asynchronous = false)
 	public void importAllMissingNeighbors(NetworkUnitOfWork populatedUnit, IVertexRecord... vertices) {
-		this.defaultImporter.importAllMissingNeighbors(populatedUnit, vertices);
+		this.importAllMissingNeighbors(populatedUnit, Arrays.asList(vertices));
 	}
 
 	@Override
-	@InModelThread(asynchronous = false)
 	public void importAllMissingNeighbors(NetworkUnitOfWork populatedUnit, Collection<IVertexRecord> vertices) {
-		this.defaultImporter.importAllMissingNeighbors(populatedUnit, vertices);
+		List<IVertexRecord> missing = new ArrayList<>(vertices.size());
+		for(IVertexRecord rec: vertices) {
+			if(null != rec && DefaultRecordImporter.hasMissingNeighbors(rec)) {
+				missing.add(rec);
+			}
+		}
+		if(!missing.isEmpty()) {
+			this.delegateImporting(populatedUnit, missing);
+		}
 	}
 
 	@Override
 	public void importMissingNeighboursSmarter(NetworkUnitOfWork populatedUnit, IVertexRecord rootVertex) {
-		this.delegateImporting(populatedUnit, rootVertex);
+		if(DefaultRecordImporter.hasMissingNeighborsSmarter(rootVertex)) {
+			this.delegateImporting(populatedUnit, rootVertex);
+		}
+	}
+	
+	/**
+	 * Imports all the vertices in a single trip to the model thread.
+	 */
+	@InModelThread(asynchronous = false)
+	public void delegateImporting(NetworkUnitOfWork populatedUnit, Collection<IVertexRecord> vertices) {
+		this.defaultImporter.importAllMissingNeighbors(populatedUnit, vertices);
 	}
 	
 	@InModelThread(asynchronous = false)
-	private void delegateImporting(NetworkUnitOfWork populatedUnit, IVertexRecord rootVertex) {
+	public void delegateImporting(NetworkUnitOfWork populatedUnit, IVertexRecord rootVertex) {
 		this.defaultImporter.importMissingNeighboursSmarter(populatedUnit, rootVertex);
 	}
 }
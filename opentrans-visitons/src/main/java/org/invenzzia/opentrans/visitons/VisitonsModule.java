@@ -39,14 +39,18 @@ import org.invenzzia.opentrans.visitons.provider.CameraModelProvider;
 import org.invenzzia.opentrans.visitons.provider.SceneManagerProvider;
 import org.invenzzia.opentrans.visitons.provider.TransformEngineProvider;
 import org.invenzzia.opentrans.visitons.render.CameraModel;
+import org.invenzzia.opentrans.visitons.render.FrameProfiler;
 import org.invenzzia.opentrans.visitons.render.HoverCollector;
+import org.invenzzia.opentrans.visitons.render.LevelOfDetail;
 import org.invenzzia.opentrans.visitons.render.Renderer;
 import org.invenzzia.opentrans.visitons.render.SceneManager;
+import org.invenzzia.opentrans.visitons.render.SegmentBitmapCache;
 import org.invenzzia.opentrans.visitons.render.listeners.SceneCameraListener;
 import org.invenzzia.opentrans.visitons.render.stream.DebugPointStream;
 import org.invenzzia.opentrans.visitons.render.stream.GridStream;
 import org.invenzzia.opentrans.visitons.render.stream.SegmentBitmapStream;
 import org.invenzzia.opentrans.visitons.render.stream.TrackStream;
+import org.invenzzia.opentrans.visitons.simulation.SimulationThread;
 
 /**
  * The module that defines the dependencies for Visi
@@ -61,6 +65,9 @@ public class VisitonsModule extends AbstractModule {
 		this.bind(SceneManager.class).toProvider(SceneManagerProvider.class).in(Singleton.class);
 		this.bind(Renderer.class);
 		this.bind(HoverCollector.class);
+		this.bind(SegmentBitmapCache.class).in(Singleton.class);
+		this.bind(LevelOfDetail.class).in(Singleton.class);
+		this.bind(FrameProfiler.class).in(Singleton.class);
 		
 		this.bind(GridStream.class).in(Singleton.class);
 		this.bind(SegmentBitmapStream.class).in(Singleton.class);
@@ -68,6 +75,7 @@ public class VisitonsModule extends AbstractModule {
 		this.bind(DebugPointStream.class).in(Singleton.class);
 		this.bind(NetworkUnitOfWork.class);
 		this.bind(TransformEngine.class).toProvider(TransformEngineProvider.class);
+		this.bind(SimulationThread.class).in(Singleton.class);
 		
 		VisitonsExtensions.bindTransformOperations(this.binder(),
 			CreateNewTrack.class,
@@ -131,6 +131,9 @@ public final class Stop extends StopBase implements IMemento<Project> {
 	 */
 	void restorePlatform(Platform platform) {
 		this.platforms.put(platform.getNumber(), platform);
+		if(platform.getNumber() >= this.nextPlatformId) {
+			this.nextPlatformId = platform.getNumber() + 1;
+		}
 	}
 	
 	/**
@@ -288,9 +288,6 @@ public class Vehicle extends VehicleBase implements IMemento<Project>, INamedTra
 		
 		@Override
 		public void exportData(Vehicle original, Project domainModel) {
-			if(this.vehicleTypeId == IIdentifiable.NEUTRAL_ID) {
-				throw new IllegalStateException("Invalid vehicle type ID.");
-			}
 			if(null == original.getName() && IIdentifiable.NEUTRAL_ID == original.getId()) {
 				original.setName(this.getName());
 			} else if(!this.getName().equals(original.getName())) {
@@ -303,7 +300,11 @@ public class Vehicle extends VehicleBase implements IMemento<Project>, INamedTra
 		public void importData(Vehicle original, Project domainModel) {
 			this.id = original.getId();
 			this.setName(original.getName());
-			this.setVehicleTypeId(original.getVehicleType().get().getId());
+			if(original.getVehicleType().isDefined()) {
+				this.setVehicleTypeId(original.getVehicleType().get().getId());
+			} else {
+				this.setVehicleTypeId(IIdentifiable.NEUTRAL_ID);
+			}
 		}
 	}
 }
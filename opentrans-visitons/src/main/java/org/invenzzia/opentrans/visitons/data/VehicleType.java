@@ -229,9 +229,6 @@ public final class VehicleType extends VehicleTypeBase implements IMemento<Proje
 		
 		@Override
 		public void exportData(VehicleType original, Project project) {
-			if(this.meanOfTransportId == IIdentifiable.NEUTRAL_ID) {
-				throw new IllegalStateException("Invalid mean of transport");
-			}
 			original.setName(this.getName());
 			original.setLength(this.getLength());
 			original.setMass(this.getMass());
@@ -252,7 +249,11 @@ public final class VehicleType extends VehicleTypeBase implements IMemento<Proje
 			this.setMaximumCapacity(original.getMaximumCapacity());
 			this.setNumberOfSegments(original.getNumberOfSegments());
 			this.setPassengerExchangeRatio(original.getPassengerExchangeRatio());
-			this.meanOfTransportId = original.getMeanOfTransport().get().getId();
+			if(original.getMeanOfTransport().isDefined()) {
+				this.meanOfTransportId = original.getMeanOfTransport().get().getId();
+			} else {
+				this.meanOfTransportId = IIdentifiable.NEUTRAL_ID;
+			}
 			this.hasVehicles = !original.getVehicles().isEmpty();
 		}
 	}
@@ -54,6 +54,7 @@ public class RouteManager extends AbstractDataManager<Route> implements IManager
 		Route route = new Route();
 		route.restoreMemento(object, this.project);
 		this.addObject(route.getId(), route);
+		this.routes.add(route);
 	}
 
 	@Override
@@ -18,8 +18,6 @@
 package org.invenzzia.opentrans.visitons.editing.network;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.google.common.eventbus.EventBus;
 import java.util.Iterator;
 import org.invenzzia.helium.data.interfaces.IIdentifiable;
@@ -38,6 +36,7 @@ import org.invenzzia.opentrans.visitons.network.VertexRecord;
 import org.invenzzia.opentrans.visitons.network.World;
 import org.invenzzia.opentrans.visitons.network.WorldRecord;
 import org.invenzzia.opentrans.visitons.network.transform.NetworkUnitOfWork;
+import org.invenzzia.opentrans.visitons.utils.collections.LongBiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,11 +60,11 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 	/**
 	 * Mapping of temporary ID-s to actual ID-s.
 	 */
-	private final BiMap<Long, Long> trackMapping;
+	private final LongBiMap trackMapping;
 	/**
 	 * Mapping of temporary ID-s to actual ID-s.
 	 */
-	private final BiMap<Long, Long> vertexMapping;
+	private final LongBiMap vertexMapping;
 	/**
 	 * Old state of our tracks and vertices. 
 	 */
@@ -83,8 +82,8 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 	 */
 	public NetworkLayoutChangeCmd(NetworkUnitOfWork uw, String commandName) {
 		this.uw = Preconditions.checkNotNull(uw);
-		this.trackMapping = HashBiMap.create();
-		this.vertexMapping = HashBiMap.create();
+		this.trackMapping = new LongBiMap(IIdentifiable.NEUTRAL_ID);
+		this.vertexMapping = new LongBiMap(IIdentifiable.NEUTRAL_ID);
 		this.commandName = commandName;
 	}
 
@@ -139,7 +138,7 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 				memento.importVertex(world, vr.getId());
 			}
 		}
-		for(Long removedVertexId: this.uw.getRemovedVertices()) {
+		for(long removedVertexId: this.uw.getRemovedVertices()) {
 			memento.importVertex(world, removedVertexId);
 		}
 		Iterator<TrackRecord> tri = this.uw.overTracks();
@@ -149,7 +148,7 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 				memento.importTrack(world, tr.getId());
 			}
 		}
-		for(Long removedTrackId: this.uw.getRemovedTracks()) {
+		for(long removedTrackId: this.uw.getRemovedTracks()) {
 			memento.importVertex(world, removedTrackId);
 		}
 		return memento;
@@ -161,10 +160,10 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 	 * @param memento The memento to finalize.
 	 */
 	private void finishMemento(NetworkUnitOfWork memento) {
-		for(Long id: this.vertexMapping.values()) {
+		for(long id: this.vertexMapping.valueArray()) {
 			memento.addRemovedVertexId(id);
 		}
-		for(Long id: this.trackMapping.values()) {
+		for(long id: this.trackMapping.valueArray()) {
 			memento.addRemovedTrackId(id);
 		}
 	}
@@ -199,13 +198,13 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 			this.importTrackConnections(tr, dieWelt);
 		}
 		
-		for(Long removedTrackId: unit.getRemovedTracks()) {
+		for(long removedTrackId: unit.getRemovedTracks()) {
 			Track t = dieWelt.findTrack(removedTrackId);
 			if(null != t) {
 				dieWelt.removeTrack(t);
 			}
 		}
-		for(Long removedVertexId: unit.getRemovedVertices()) {
+		for(long removedVertexId: unit.getRemovedVertices()) {
 			IVertex v = dieWelt.findVertex(removedVertexId);
 			if(null != v) {
 				dieWelt.removeVertex(v);
@@ -220,6 +219,19 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 			}
 			Track track = dieWelt.findTrack(id);
 			track.importJunctions(tr.getJunctions(), this.vertexMapping, dieWelt);
+			// The geometry and the vertices are final only now.
+			dieWelt.updateTrackGeometry(track);
+		}
+		vri = unit.overVertices();
+		while(vri.hasNext()) {
+			long id = vri.next().getId();
+			if(this.vertexMapping.containsKey(id)) {
+				id = this.vertexMapping.get(id);
+			}
+			IVertex vertex = dieWelt.findVertex(id);
+			if(null != vertex) {
+				dieWelt.updateVertexPosition(vertex);
+			}
 		}
 		
 		eventBus.post(new WorldSegmentUsageChangedEvent(new WorldRecord(dieWelt)));
@@ -234,7 +246,7 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 	private void importVertex(IVertexRecord vr, Project project) {
 		if(vr.getId() < IIdentifiable.NEUTRAL_ID) {
 			// New vertex
-			Long tempId = vr.getId();
+			long tempId = vr.getId();
 			IVertex vertex;
 			if(vr instanceof VertexRecord) {
 				Vertex theVertex = new Vertex();
@@ -251,7 +263,7 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 				project.getWorld().addVertex(vertex);
 			} else {
 				project.getWorld().addVertex(vertex);
-				this.vertexMapping.put(tempId, Long.valueOf(vertex.getId()));
+				this.vertexMapping.put(tempId, vertex.getId());
 			}
 		} else {
 			// Existing vertex
@@ -288,7 +300,7 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 	 */
 	private void importTrack(TrackRecord tr, Project project) {
 		if(tr.getId() < IIdentifiable.NEUTRAL_ID) {
-			Long tempId = tr.getId();
+			long tempId = tr.getId();
 			Track track = new Track();
 			track.importFrom(tr, project.getWorld(), this.vertexMapping);
 			if(this.trackMapping.containsKey(tempId)) {
@@ -296,7 +308,7 @@ public class NetworkLayoutChangeCmd implements ICommand, ICommandDetails {
 				project.getWorld().addTrack(track);
 			} else {
 				project.getWorld().addTrack(track);
-				this.trackMapping.put(Long.valueOf(tempId), Long.valueOf(track.getId()));
+				this.trackMapping.put(tempId, track.getId());
 			}
 		} else {
 			Track track = project.getWorld().findTrack(tr.getId());
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.io;
+
+/**
+ * Constants of the binary project file format. The file is written in the big-endian
+ * byte order and consists of the following sections:
+ * 
+ * <ol>
+ *  <li>header: magic number and the format version,</li>
+ *  <li>project information: name, author and description,</li>
+ *  <li>world: dimensions, ID counters and the segment bitmaps,</li>
+ *  <li>vertices: packed arrays of types, ID-s, coordinates, tangents and track ID-s,</li>
+ *  <li>tracks: packed arrays of ID-s, types, vertex ID-s, lengths, metadata and junctions,</li>
+ *  <li>means of transport, vehicle types, stops, vehicles and routes.</li>
+ * </ol>
+ * 
+ * <p>The network data, which is the largest part of the file, is kept in primitive arrays
+ * so that the reader can copy it from the memory-mapped file in bulk.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class ProjectFormat {
+	/**
+	 * Identifies the OpenTrans project file: <tt>OTRP</tt>.
+	 */
+	public static final int MAGIC = 0x4F545250;
+	/**
+	 * Current version of the format.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Default extension of the project files.
+	 */
+	public static final String EXTENSION = "otp";
+	/**
+	 * Vertex type: ordinary vertex.
+	 */
+	public static final byte VERTEX_FREE = 0;
+	/**
+	 * Vertex type: junction.
+	 */
+	public static final byte VERTEX_JUNCTION = 1;
+	/**
+	 * Marks the NULL strings.
+	 */
+	static final int NULL_STRING = -1;
+}
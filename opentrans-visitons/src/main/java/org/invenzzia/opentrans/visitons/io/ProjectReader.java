@@ -0,0 +1,435 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.io;
+
+import com.google.common.base.Charsets;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import org.invenzzia.helium.data.interfaces.IIdentifiable;
+import org.invenzzia.helium.exception.ModelException;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.data.MeanOfTransport;
+import org.invenzzia.opentrans.visitons.data.MeanOfTransport.MeanOfTransportRecord;
+import org.invenzzia.opentrans.visitons.data.Platform;
+import org.invenzzia.opentrans.visitons.data.Platform.PlatformRecord;
+import org.invenzzia.opentrans.visitons.data.Route.RouteRecord;
+import org.invenzzia.opentrans.visitons.data.Stop;
+import org.invenzzia.opentrans.visitons.data.Stop.StopRecord;
+import org.invenzzia.opentrans.visitons.data.Vehicle;
+import org.invenzzia.opentrans.visitons.data.Vehicle.VehicleRecord;
+import org.invenzzia.opentrans.visitons.data.VehicleType;
+import org.invenzzia.opentrans.visitons.data.VehicleType.VehicleTypeRecord;
+import org.invenzzia.opentrans.visitons.exception.ProjectFormatException;
+import org.invenzzia.opentrans.visitons.network.IVertex;
+import org.invenzzia.opentrans.visitons.network.Junction;
+import org.invenzzia.opentrans.visitons.network.Segment;
+import org.invenzzia.opentrans.visitons.network.Track;
+import org.invenzzia.opentrans.visitons.network.Vertex;
+import org.invenzzia.opentrans.visitons.network.World;
+import org.invenzzia.opentrans.visitons.network.objects.TrackObject;
+import org.invenzzia.opentrans.visitons.types.RouteNumber;
+
+/**
+ * Reads the project from the binary file described by {@link ProjectFormat}. The file is
+ * mapped into the memory, and the packed network arrays are copied from it in bulk, so
+ * that the loading time depends mostly on building the object graph.
+ * 
+ * <p>The reader produces a new project instance. It can be used in any thread, provided
+ * that the project is not published to other threads before the method returns.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class ProjectReader {
+	/**
+	 * Reads the project from the given file.
+	 * 
+	 * @param file Project file.
+	 * @return The loaded project.
+	 * @throws ProjectFormatException If the file is damaged or has an unsupported format.
+	 * @throws IOException If the file cannot be read.
+	 */
+	public Project read(File file) throws IOException {
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return this.read(buffer);
+		}
+	}
+	
+	/**
+	 * Reads the project from the buffer that contains the entire project file.
+	 * 
+	 * @param buffer The buffer positioned at the beginning of the file.
+	 * @return The loaded project.
+	 * @throws ProjectFormatException If the data are damaged or have an unsupported format.
+	 */
+	public Project read(ByteBuffer buffer) throws ProjectFormatException {
+		try {
+			if(buffer.getInt() != ProjectFormat.MAGIC) {
+				throw new ProjectFormatException("This is not an OpenTrans project file.");
+			}
+			int version = buffer.getInt();
+			if(version != ProjectFormat.VERSION) {
+				throw new ProjectFormatException("Unsupported project file version: "+version);
+			}
+			Project project = new Project();
+			project.setName(this.readString(buffer));
+			project.setAuthor(this.readString(buffer));
+			project.setDescription(this.readString(buffer));
+			
+			World world = project.getWorld();
+			this.readWorld(buffer, world);
+			this.readNetwork(buffer, world);
+			this.readMeansOfTransport(buffer, project);
+			this.readVehicleTypes(buffer, project);
+			this.readStops(buffer, project);
+			this.readVehicles(buffer, project);
+			this.readRoutes(buffer, project);
+			return project;
+		} catch(BufferUnderflowException exception) {
+			throw new ProjectFormatException("Unexpected end of the project file.", exception);
+		} catch(IllegalArgumentException | IllegalStateException exception) {
+			throw new ProjectFormatException("The project file is damaged: "+exception.getMessage(), exception);
+		}
+	}
+	
+	private void readWorld(ByteBuffer buffer, World world) throws ProjectFormatException {
+		int dimX = buffer.getInt();
+		int dimY = buffer.getInt();
+		if(dimX < 1 || dimY < 1) {
+			throw new ProjectFormatException("Invalid world dimensions: "+dimX+"x"+dimY);
+		}
+		world.construct(dimX, dimY);
+		world.setNextVertexId(buffer.getLong());
+		world.setNextTrackId(buffer.getLong());
+		
+		int images = this.readCount(buffer, 8);
+		for(int i = 0; i < images; i++) {
+			int x = buffer.getInt();
+			int y = buffer.getInt();
+			Segment segment = world.findSegment(x, y);
+			if(null == segment) {
+				throw new ProjectFormatException("The segment bitmap refers to an unknown segment: "+x+", "+y);
+			}
+			segment.setImagePath(this.readString(buffer));
+		}
+	}
+	
+	private void readNetwork(ByteBuffer buffer, World world) throws ProjectFormatException {
+		int vertexNum = this.readCount(buffer, 49);
+		byte vertexTypes[] = new byte[vertexNum];
+		buffer.get(vertexTypes);
+		long vertexIds[] = this.readLongs(buffer, vertexNum);
+		double coordinates[] = this.readDoubles(buffer, vertexNum * 2);
+		double tangents[] = this.readDoubles(buffer, vertexNum * 2);
+		long vertexTrackIds[] = this.readLongs(buffer, vertexNum * 2);
+		
+		IVertex vertices[] = new IVertex[vertexNum];
+		for(int i = 0; i < vertexNum; i++) {
+			switch(vertexTypes[i]) {
+				case ProjectFormat.VERTEX_FREE:
+					Vertex vertex = new Vertex();
+					vertex.setId(vertexIds[i]);
+					vertex.restore(world.findPosition(coordinates[i * 2], coordinates[i * 2 + 1]), tangents[i * 2], tangents[i * 2 + 1]);
+					vertices[i] = vertex;
+					break;
+				case ProjectFormat.VERTEX_JUNCTION:
+					Junction junction = new Junction();
+					junction.setId(vertexIds[i]);
+					junction.restore(world.findPosition(coordinates[i * 2], coordinates[i * 2 + 1]), tangents[i * 2], tangents[i * 2 + 1]);
+					vertices[i] = junction;
+					break;
+				default:
+					throw new ProjectFormatException("Unknown type of the vertex #"+vertexIds[i]+": "+vertexTypes[i]);
+			}
+			world.addVertex(vertices[i]);
+		}
+		
+		int trackNum = this.readCount(buffer, 41);
+		long trackIds[] = this.readLongs(buffer, trackNum);
+		byte trackTypes[] = new byte[trackNum];
+		buffer.get(trackTypes);
+		long trackVertexIds[] = this.readLongs(buffer, trackNum * 2);
+		double lengths[] = this.readDoubles(buffer, trackNum);
+		int metadataOffsets[] = this.readInts(buffer, trackNum + 1);
+		double metadata[] = this.readDoubles(buffer, this.checkOffsets(metadataOffsets));
+		int junctionOffsets[] = this.readInts(buffer, trackNum + 1);
+		long junctionIds[] = this.readLongs(buffer, this.checkOffsets(junctionOffsets));
+		
+		Track tracks[] = new Track[trackNum];
+		for(int i = 0; i < trackNum; i++) {
+			double trackMetadata[] = null;
+			int metadataSize = metadataOffsets[i + 1] - metadataOffsets[i];
+			if(metadataSize > 0) {
+				trackMetadata = new double[metadataSize];
+				System.arraycopy(metadata, metadataOffsets[i], trackMetadata, 0, metadataSize);
+			}
+			tracks[i] = new Track();
+			tracks[i].setId(trackIds[i]);
+			tracks[i].restore(
+				trackTypes[i],
+				this.findVertex(world, trackVertexIds[i * 2]),
+				this.findVertex(world, trackVertexIds[i * 2 + 1]),
+				lengths[i],
+				trackMetadata
+			);
+			world.addTrack(tracks[i]);
+		}
+		
+		// Connections can be restored once all the tracks are known.
+		for(int i = 0; i < vertexNum; i++) {
+			Track first = this.findTrack(world, vertexTrackIds[i * 2]);
+			Track second = this.findTrack(world, vertexTrackIds[i * 2 + 1]);
+			if(vertices[i] instanceof Junction) {
+				if(null == first) {
+					throw new ProjectFormatException("The junction #"+vertexIds[i]+" does not lie on any track.");
+				}
+				((Junction) vertices[i]).restoreTracks(first, second);
+			} else {
+				((Vertex) vertices[i]).restoreTracks(first, second);
+			}
+		}
+		for(int i = 0; i < trackNum; i++) {
+			int junctionNum = junctionOffsets[i + 1] - junctionOffsets[i];
+			if(junctionNum > 0) {
+				Junction junctions[] = new Junction[junctionNum];
+				for(int j = 0; j < junctionNum; j++) {
+					IVertex vertex = this.findVertex(world, junctionIds[junctionOffsets[i] + j]);
+					if(!(vertex instanceof Junction)) {
+						throw new ProjectFormatException("The vertex #"+vertex.getId()+" was expected to be a junction.");
+					}
+					junctions[j] = (Junction) vertex;
+				}
+				tracks[i].restoreJunctions(Arrays.asList(junctions));
+			}
+		}
+	}
+	
+	private void readMeansOfTransport(ByteBuffer buffer, Project project) throws ProjectFormatException {
+		int size = this.readCount(buffer, 37);
+		for(int i = 0; i < size; i++) {
+			MeanOfTransportRecord record = new MeanOfTransportRecord();
+			record.setId(buffer.getLong());
+			record.setName(this.readString(buffer));
+			record.setRollingFrictionCoefficient(buffer.getDouble());
+			record.setMaxSafeSpeedRadiusCoefficient(buffer.getDouble());
+			record.setOvertakingPunishment(buffer.getDouble());
+			record.setOvertakingAllowed(buffer.get() != 0);
+			project.getMeanOfTransportManager().restoreMemento(record);
+		}
+	}
+	
+	private void readVehicleTypes(ByteBuffer buffer, Project project) throws ProjectFormatException {
+		int size = this.readCount(buffer, 48);
+		for(int i = 0; i < size; i++) {
+			VehicleTypeRecord record = new VehicleTypeRecord();
+			record.setId(buffer.getLong());
+			record.setName(this.readString(buffer));
+			long meanOfTransportId = buffer.getLong();
+			MeanOfTransport mot = project.getMeanOfTransportManager().findById(meanOfTransportId);
+			if(null == mot && IIdentifiable.NEUTRAL_ID != meanOfTransportId) {
+				throw new ProjectFormatException("The vehicle type '"+record.getName()+"' refers to an unknown mean of transport #"+meanOfTransportId);
+			}
+			record.setMeanOfTransport(meanOfTransportId);
+			record.setLength(buffer.getDouble());
+			record.setMass(buffer.getInt());
+			record.setEnginePower(buffer.getInt());
+			record.setMaximumCapacity(buffer.getInt());
+			record.setNumberOfSegments(buffer.getInt());
+			record.setPassengerExchangeRatio(buffer.getInt());
+			project.getVehicleTypeManager().restoreMemento(record);
+			
+			VehicleType vt = project.getVehicleTypeManager().findById(record.getId());
+			if(null == mot) {
+				continue;
+			}
+			try {
+				mot.getVehicleTypes().attach(vt);
+			} catch(ModelException exception) {
+				throw new ProjectFormatException("Cannot attach the vehicle type '"+vt.getName()+"' to its mean of transport.", exception);
+			}
+		}
+	}
+	
+	private void readStops(ByteBuffer buffer, Project project) throws ProjectFormatException {
+		World world = project.getWorld();
+		int size = this.readCount(buffer, 16);
+		for(int i = 0; i < size; i++) {
+			StopRecord record = new StopRecord();
+			record.setId(buffer.getLong());
+			record.setName(this.readString(buffer));
+			project.getStopManager().restoreMemento(record);
+			
+			Stop stop = project.getStopManager().findById(record.getId());
+			int platformNum = this.readCount(buffer, 25);
+			for(int j = 0; j < platformNum; j++) {
+				PlatformRecord platformRecord = new PlatformRecord(record);
+				platformRecord.setNumber(buffer.getInt());
+				platformRecord.setName(this.readString(buffer));
+				TrackObject<Platform> trackObject = new TrackObject<>();
+				Track track = this.readTrackObject(buffer, world, trackObject);
+				if(null == track) {
+					throw new ProjectFormatException("The platform #"+platformRecord.getNumber()+" of the stop '"+stop.getName()+"' does not lie on any track.");
+				}
+				new Platform(stop, platformRecord, trackObject);
+				track.addTrackObject(trackObject);
+			}
+		}
+	}
+	
+	private void readVehicles(ByteBuffer buffer, Project project) throws ProjectFormatException {
+		World world = project.getWorld();
+		int size = this.readCount(buffer, 37);
+		for(int i = 0; i < size; i++) {
+			VehicleRecord record = new VehicleRecord();
+			record.setId(buffer.getLong());
+			record.setName(this.readString(buffer));
+			long vehicleTypeId = buffer.getLong();
+			if(null == project.getVehicleTypeManager().findById(vehicleTypeId) && IIdentifiable.NEUTRAL_ID != vehicleTypeId) {
+				throw new ProjectFormatException("The vehicle '"+record.getName()+"' refers to an unknown vehicle type #"+vehicleTypeId);
+			}
+			record.setVehicleTypeId(vehicleTypeId);
+			project.getVehicleManager().restoreMemento(record);
+			
+			Vehicle vehicle = project.getVehicleManager().findById(record.getId());
+			TrackObject<Vehicle> trackObject = new TrackObject<>();
+			Track track = this.readTrackObject(buffer, world, trackObject);
+			if(null != track) {
+				vehicle.setTrackObject(trackObject);
+				track.addTrackObject(trackObject);
+			}
+		}
+	}
+	
+	private void readRoutes(ByteBuffer buffer, Project project) throws ProjectFormatException {
+		int size = this.readCount(buffer, 16);
+		for(int i = 0; i < size; i++) {
+			RouteRecord record = new RouteRecord();
+			record.setId(buffer.getLong());
+			String number = this.readString(buffer);
+			if(null != number) {
+				record.setNumber(RouteNumber.parseString(number));
+			}
+			record.setDescription(this.readString(buffer));
+			project.getRouteManager().restoreMemento(record);
+		}
+	}
+	
+	/**
+	 * Reads the location of the track object.
+	 * 
+	 * @return The track, where the object should be placed, or NULL.
+	 */
+	private Track readTrackObject(ByteBuffer buffer, World world, TrackObject trackObject) throws ProjectFormatException {
+		long trackId = buffer.getLong();
+		trackObject.setPosition(buffer.getDouble());
+		trackObject.setOrientation(buffer.get());
+		return this.findTrack(world, trackId);
+	}
+	
+	private IVertex findVertex(World world, long id) throws ProjectFormatException {
+		IVertex vertex = world.findVertex(id);
+		if(null == vertex) {
+			throw new ProjectFormatException("Reference to an unknown vertex #"+id);
+		}
+		return vertex;
+	}
+	
+	private Track findTrack(World world, long id) throws ProjectFormatException {
+		if(IIdentifiable.NEUTRAL_ID == id) {
+			return null;
+		}
+		Track track = world.findTrack(id);
+		if(null == track) {
+			throw new ProjectFormatException("Reference to an unknown track #"+id);
+		}
+		return track;
+	}
+	
+	/**
+	 * Reads the number of items in the section, and verifies that it is not larger than
+	 * the rest of the file.
+	 * 
+	 * @param buffer
+	 * @param minItemSize Minimum number of bytes occupied by a single item.
+	 * @return Number of items.
+	 */
+	private int readCount(ByteBuffer buffer, int minItemSize) throws ProjectFormatException {
+		int count = buffer.getInt();
+		if(count < 0 || (long) count * minItemSize > buffer.remaining()) {
+			throw new ProjectFormatException("Invalid number of items: "+count);
+		}
+		return count;
+	}
+	
+	/**
+	 * Verifies that the offsets are increasing.
+	 * 
+	 * @param offsets
+	 * @return The total number of items.
+	 */
+	private int checkOffsets(int offsets[]) throws ProjectFormatException {
+		for(int i = 1; i < offsets.length; i++) {
+			if(offsets[i] < offsets[i - 1]) {
+				throw new ProjectFormatException("Invalid offset table.");
+			}
+		}
+		if(offsets.length > 0 && offsets[0] != 0) {
+			throw new ProjectFormatException("Invalid offset table.");
+		}
+		return offsets[offsets.length - 1];
+	}
+	
+	private String readString(ByteBuffer buffer) throws ProjectFormatException {
+		int length = buffer.getInt();
+		if(ProjectFormat.NULL_STRING == length) {
+			return null;
+		}
+		if(length < 0 || length > buffer.remaining()) {
+			throw new ProjectFormatException("Invalid string length: "+length);
+		}
+		byte bytes[] = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+	
+	private int[] readInts(ByteBuffer buffer, int size) {
+		int values[] = new int[size];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + size * 4);
+		return values;
+	}
+	
+	private long[] readLongs(ByteBuffer buffer, int size) {
+		long values[] = new long[size];
+		buffer.asLongBuffer().get(values);
+		buffer.position(buffer.position() + size * 8);
+		return values;
+	}
+	
+	private double[] readDoubles(ByteBuffer buffer, int size) {
+		double values[] = new double[size];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + size * 8);
+		return values;
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.io;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.invenzzia.helium.data.Parent;
+import org.invenzzia.helium.data.interfaces.IIdentifiable;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.data.MeanOfTransport;
+import org.invenzzia.opentrans.visitons.data.Platform;
+import org.invenzzia.opentrans.visitons.data.Route;
+import org.invenzzia.opentrans.visitons.data.Stop;
+import org.invenzzia.opentrans.visitons.data.Vehicle;
+import org.invenzzia.opentrans.visitons.data.VehicleType;
+import org.invenzzia.opentrans.visitons.network.IVertex;
+import org.invenzzia.opentrans.visitons.network.Junction;
+import org.invenzzia.opentrans.visitons.network.Segment;
+import org.invenzzia.opentrans.visitons.network.Track;
+import org.invenzzia.opentrans.visitons.network.Vertex;
+import org.invenzzia.opentrans.visitons.network.World;
+import org.invenzzia.opentrans.visitons.network.objects.TrackObject;
+
+/**
+ * Writes the project to the binary file described by {@link ProjectFormat}. The writer
+ * must be used within the model thread.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class ProjectWriter {
+	/**
+	 * Size of the output buffer in bytes.
+	 */
+	private static final int BUFFER_SIZE = 65536;
+	
+	/**
+	 * Writes the project to the given file. The existing file is overwritten.
+	 * 
+	 * @param project The project to write.
+	 * @param file Output file.
+	 * @throws IOException 
+	 */
+	public void write(Project project, File file) throws IOException {
+		Preconditions.checkNotNull(project, "The project to write cannot be NULL.");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE))) {
+			out.writeInt(ProjectFormat.MAGIC);
+			out.writeInt(ProjectFormat.VERSION);
+			this.writeString(out, project.getName());
+			this.writeString(out, project.getAuthor());
+			this.writeString(out, project.getDescription());
+			
+			this.writeWorld(out, project.getWorld());
+			this.writeVertices(out, project.getWorld().getVertices());
+			this.writeTracks(out, project.getWorld());
+			this.writeMeansOfTransport(out, project.getMeanOfTransportManager().getRecords());
+			this.writeVehicleTypes(out, project.getVehicleTypeManager().getRecords());
+			this.writeStops(out, project.getStopManager().getRecords());
+			this.writeVehicles(out, project.getVehicleManager().getRecords());
+			this.writeRoutes(out, project.getRouteManager().getRecords());
+		}
+	}
+	
+	private void writeWorld(DataOutputStream out, World world) throws IOException {
+		out.writeInt(world.getX());
+		out.writeInt(world.getY());
+		out.writeLong(world.getNextVertexId());
+		out.writeLong(world.getNextTrackId());
+		
+		List<Segment> segmentsWithImages = new ArrayList<>();
+		for(int x = 0; x < world.getX(); x++) {
+			for(int y = 0; y < world.getY(); y++) {
+				Segment segment = world.findResidentSegment(x, y);
+				if(null != segment && null != segment.getImagePath()) {
+					segmentsWithImages.add(segment);
+				}
+			}
+		}
+		out.writeInt(segmentsWithImages.size());
+		for(Segment segment: segmentsWithImages) {
+			out.writeInt(segment.getX());
+			out.writeInt(segment.getY());
+			this.writeString(out, segment.getImagePath());
+		}
+	}
+	
+	private void writeVertices(DataOutputStream out, Collection<IVertex> vertices) throws IOException {
+		int size = vertices.size();
+		byte types[] = new byte[size];
+		long ids[] = new long[size];
+		double coordinates[] = new double[size * 2];
+		double tangents[] = new double[size * 2];
+		long trackIds[] = new long[size * 2];
+		int i = 0;
+		for(IVertex vertex: vertices) {
+			ids[i] = vertex.getId();
+			coordinates[i * 2] = vertex.pos().getAbsoluteX();
+			coordinates[i * 2 + 1] = vertex.pos().getAbsoluteY();
+			if(vertex instanceof Junction) {
+				Junction junction = (Junction) vertex;
+				types[i] = ProjectFormat.VERTEX_JUNCTION;
+				tangents[i * 2] = junction.position();
+				tangents[i * 2 + 1] = junction.tangent();
+				trackIds[i * 2] = this.idOf(junction.getMasterTrack());
+				trackIds[i * 2 + 1] = this.idOf(junction.getSlaveTrack());
+			} else {
+				Vertex v = (Vertex) vertex;
+				types[i] = ProjectFormat.VERTEX_FREE;
+				tangents[i * 2] = v.firstTangent();
+				tangents[i * 2 + 1] = v.secondTangent();
+				trackIds[i * 2] = this.idOf(v.getFirstTrack());
+				trackIds[i * 2 + 1] = this.idOf(v.getSecondTrack());
+			}
+			i++;
+		}
+		out.writeInt(size);
+		out.write(types);
+		this.writeLongs(out, ids);
+		this.writeDoubles(out, coordinates);
+		this.writeDoubles(out, tangents);
+		this.writeLongs(out, trackIds);
+	}
+	
+	private void writeTracks(DataOutputStream out, World world) throws IOException {
+		List<Track> tracks = this.findConnectedTracks(world);
+		int size = tracks.size();
+		long ids[] = new long[size];
+		byte types[] = new byte[size];
+		long vertexIds[] = new long[size * 2];
+		double lengths[] = new double[size];
+		int metadataOffsets[] = new int[size + 1];
+		int junctionOffsets[] = new int[size + 1];
+		int metadataSize = 0;
+		int junctionNum = 0;
+		int i = 0;
+		for(Track track: tracks) {
+			ids[i] = track.getId();
+			types[i] = track.getType();
+			vertexIds[i * 2] = track.getFirstVertex().getId();
+			vertexIds[i * 2 + 1] = track.getSecondVertex().getId();
+			lengths[i] = track.getLength();
+			metadataOffsets[i] = metadataSize;
+			junctionOffsets[i] = junctionNum;
+			if(null != track.getMetadata()) {
+				metadataSize += track.getMetadata().length;
+			}
+			for(Junction junction: track.getJunctions()) {
+				if(world.findVertex(junction.getId()) == junction) {
+					junctionNum++;
+				}
+			}
+			i++;
+		}
+		metadataOffsets[size] = metadataSize;
+		junctionOffsets[size] = junctionNum;
+		
+		double metadata[] = new double[metadataSize];
+		long junctionIds[] = new long[junctionNum];
+		i = 0;
+		for(Track track: tracks) {
+			if(null != track.getMetadata()) {
+				System.arraycopy(track.getMetadata(), 0, metadata, metadataOffsets[i], track.getMetadata().length);
+			}
+			int j = junctionOffsets[i];
+			for(Junction junction: track.getJunctions()) {
+				if(world.findVertex(junction.getId()) == junction) {
+					junctionIds[j++] = junction.getId();
+				}
+			}
+			i++;
+		}
+		out.writeInt(size);
+		this.writeLongs(out, ids);
+		out.write(types);
+		this.writeLongs(out, vertexIds);
+		this.writeDoubles(out, lengths);
+		this.writeInts(out, metadataOffsets);
+		this.writeDoubles(out, metadata);
+		this.writeInts(out, junctionOffsets);
+		this.writeLongs(out, junctionIds);
+	}
+	
+	private void writeMeansOfTransport(DataOutputStream out, List<MeanOfTransport> means) throws IOException {
+		out.writeInt(means.size());
+		for(MeanOfTransport mot: means) {
+			out.writeLong(mot.getId());
+			this.writeString(out, mot.getName());
+			out.writeDouble(mot.getRollingFrictionCoefficient());
+			out.writeDouble(mot.getMaxSafeSpeedRadiusCoefficient());
+			out.writeDouble(mot.getOvertakingPunishment());
+			out.writeBoolean(mot.isOvertakingAllowed());
+		}
+	}
+	
+	private void writeVehicleTypes(DataOutputStream out, List<VehicleType> vehicleTypes) throws IOException {
+		out.writeInt(vehicleTypes.size());
+		for(VehicleType vt: vehicleTypes) {
+			out.writeLong(vt.getId());
+			this.writeString(out, vt.getName());
+			out.writeLong(this.idOf(vt.getMeanOfTransport()));
+			out.writeDouble(vt.getLength());
+			out.writeInt(vt.getMass());
+			out.writeInt(vt.getEnginePower());
+			out.writeInt(vt.getMaximumCapacity());
+			out.writeInt(vt.getNumberOfSegments());
+			out.writeInt(vt.getPassengerExchangeRatio());
+		}
+	}
+	
+	private void writeStops(DataOutputStream out, List<Stop> stops) throws IOException {
+		out.writeInt(stops.size());
+		for(Stop stop: stops) {
+			out.writeLong(stop.getId());
+			this.writeString(out, stop.getName());
+			out.writeInt(stop.getPlatforms().size());
+			for(Platform platform: stop.getPlatforms()) {
+				out.writeInt(platform.getNumber());
+				this.writeString(out, platform.getName());
+				this.writeTrackObject(out, platform.getTrackObject());
+			}
+		}
+	}
+	
+	private void writeVehicles(DataOutputStream out, List<Vehicle> vehicles) throws IOException {
+		out.writeInt(vehicles.size());
+		for(Vehicle vehicle: vehicles) {
+			out.writeLong(vehicle.getId());
+			this.writeString(out, vehicle.getName());
+			out.writeLong(this.idOf(vehicle.getVehicleType()));
+			this.writeTrackObject(out, vehicle.getTrackObject());
+		}
+	}
+	
+	private void writeRoutes(DataOutputStream out, List<Route> routes) throws IOException {
+		out.writeInt(routes.size());
+		for(Route route: routes) {
+			out.writeLong(route.getId());
+			this.writeString(out, null == route.getNumber() ? null : route.getNumber().toString());
+			this.writeString(out, route.getDescription());
+		}
+	}
+	
+	/**
+	 * The removed tracks are still kept by the world for the undo operation, but they
+	 * shall not be saved. We recognize them by checking the connections of the first
+	 * vertex.
+	 * 
+	 * @param world
+	 * @return Tracks that really belong to the network.
+	 */
+	private List<Track> findConnectedTracks(World world) {
+		List<Track> tracks = new ArrayList<>(world.getTracks().size());
+		for(Track track: world.getTracks()) {
+			IVertex vertex = track.getFirstVertex();
+			if(null != vertex && (vertex.getFirstTrack() == track || vertex.getSecondTrack() == track)) {
+				tracks.add(track);
+			}
+		}
+		return tracks;
+	}
+	
+	private void writeTrackObject(DataOutputStream out, TrackObject trackObject) throws IOException {
+		if(null == trackObject || null == trackObject.getTrack()) {
+			out.writeLong(IIdentifiable.NEUTRAL_ID);
+			out.writeDouble(0.0);
+			out.writeByte(0);
+		} else {
+			out.writeLong(trackObject.getTrack().getId());
+			out.writeDouble(trackObject.getPosition());
+			out.writeByte(trackObject.getOrientation());
+		}
+	}
+	
+	/**
+	 * The parent reference may be absent, which is a valid state of the model.
+	 * 
+	 * @param parent
+	 * @return ID of the referenced item or {@link IIdentifiable#NEUTRAL_ID}.
+	 */
+	private long idOf(Parent<? extends IIdentifiable> parent) {
+		if(!parent.isDefined()) {
+			return IIdentifiable.NEUTRAL_ID;
+		}
+		return parent.get().getId();
+	}
+	
+	private long idOf(Track track) {
+		if(null == track) {
+			return IIdentifiable.NEUTRAL_ID;
+		}
+		return track.getId();
+	}
+	
+	private void writeString(DataOutputStream out, String value) throws IOException {
+		if(null == value) {
+			out.writeInt(ProjectFormat.NULL_STRING);
+		} else {
+			byte bytes[] = value.getBytes(Charsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+	
+	private void writeInts(DataOutputStream out, int values[]) throws IOException {
+		for(int value: values) {
+			out.writeInt(value);
+		}
+	}
+	
+	private void writeLongs(DataOutputStream out, long values[]) throws IOException {
+		for(long value: values) {
+			out.writeLong(value);
+		}
+	}
+	
+	private void writeDoubles(DataOutputStream out, double values[]) throws IOException {
+		for(double value: values) {
+			out.writeDouble(value);
+		}
+	}
+}
@@ -57,4 +57,13 @@ public abstract class AbstractVertex implements IVertex {
 	public SegmentCoordinate pos() {
 		return this.pos;
 	}
+	
+	/**
+	 * Notifies the segment that the tracks connected to this vertex have changed.
+	 */
+	protected void markSegmentDirty() {
+		if(null != this.pos) {
+			this.pos.getSegment().markDirty();
+		}
+	}
 }
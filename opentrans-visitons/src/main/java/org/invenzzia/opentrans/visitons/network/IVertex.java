@@ -17,10 +17,10 @@
 
 package org.invenzzia.opentrans.visitons.network;
 
-import com.google.common.collect.BiMap;
 import org.invenzzia.helium.data.interfaces.IIdentifiable;
 import org.invenzzia.opentrans.visitons.network.transform.NetworkUnitOfWork;
 import org.invenzzia.opentrans.visitons.utils.SegmentCoordinate;
+import org.invenzzia.opentrans.visitons.utils.collections.LongBiMap;
 
 /**
  * Common interface for junctions and vertices. Allows treating them as
@@ -100,5 +100,5 @@ public interface IVertex extends IIdentifiable {
 	 * @param world
 	 * @param trackMapping 
 	 */
-	public void importConnections(IVertexRecord vr, World world, BiMap<Long, Long> trackMapping);
+	public void importConnections(IVertexRecord vr, World world, LongBiMap trackMapping);
 }
@@ -17,9 +17,11 @@
 
 package org.invenzzia.opentrans.visitons.network;
 
-import com.google.common.collect.BiMap;
+import com.google.common.base.Preconditions;
 import org.invenzzia.helium.data.interfaces.IIdentifiable;
 import org.invenzzia.opentrans.visitons.network.transform.NetworkUnitOfWork;
+import org.invenzzia.opentrans.visitons.utils.SegmentCoordinate;
+import org.invenzzia.opentrans.visitons.utils.collections.LongBiMap;
 
 /**
  * Junction is a special type of vertex that has exactly one track connected,
@@ -86,6 +88,7 @@ public class Junction extends AbstractVertex {
 		if(track == this.slaveTrack) {
 			this.slaveTrack = null;
 		}
+		this.markSegmentDirty();
 	}
 
 	@Override
@@ -110,6 +113,35 @@ public class Junction extends AbstractVertex {
 		return this.position;
 	}
 
+	/**
+	 * Restores the position of the junction loaded from the project file. The method shall
+	 * be used only by the I/O reader.
+	 * 
+	 * @param pos Junction position.
+	 * @param position Position on the master track.
+	 * @param tangent Tangent towards the slave track.
+	 */
+	public void restore(SegmentCoordinate pos, double position, double tangent) {
+		Preconditions.checkState(this.pos == null, "The position is already set.");
+		this.pos = Preconditions.checkNotNull(pos);
+		this.pos.getSegment().addVertex(this);
+		this.position = position;
+		this.tangent = tangent;
+	}
+	
+	/**
+	 * Restores the connections to the tracks loaded from the project file. The method shall
+	 * be used only by the I/O reader.
+	 * 
+	 * @param masterTrack The track the junction lies on.
+	 * @param slaveTrack The track connected to the junction or NULL.
+	 */
+	public void restoreTracks(Track masterTrack, Track slaveTrack) {
+		this.masterTrack = Preconditions.checkNotNull(masterTrack);
+		this.slaveTrack = slaveTrack;
+		this.markSegmentDirty();
+	}
+	
 	/**
 	 * Imports the vertex data from the junction record.
 	 * 
@@ -127,7 +159,7 @@ public class Junction extends AbstractVertex {
 	}
 	
 	@Override
-	public void importConnections(IVertexRecord vr, World world, BiMap<Long, Long> trackMapping) {
+	public void importConnections(IVertexRecord vr, World world, LongBiMap trackMapping) {
 		JunctionRecord jr = (JunctionRecord) vr;
 		long idMaster = jr.getMasterTrack().getId();
 		long idSlave = jr.getFirstTrackActualId();
@@ -140,5 +172,6 @@ public class Junction extends AbstractVertex {
 		}
 		this.masterTrack = world.findTrack(idMaster);
 		this.slaveTrack = world.findTrack(idSlave);		
+		this.markSegmentDirty();
 	}
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.network;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.invenzzia.opentrans.visitons.utils.collections.IItemDistance;
+import org.invenzzia.opentrans.visitons.utils.collections.RTree;
+
+/**
+ * Spatial index of the committed network: the bounding boxes of the tracks and the positions
+ * of the vertices in the world coordinates. It is updated by the {@link World} on every change
+ * of the network, so that the area queries do not have to scan the segments and all their
+ * vertices. The index may be used only in the model thread.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class NetworkIndex {
+	/**
+	 * Tracks connected to both vertices, indexed by their bounding boxes.
+	 */
+	private final RTree<Track> tracks = new RTree<>();
+	/**
+	 * Vertices, indexed by their positions.
+	 */
+	private final RTree<IVertex> vertices = new RTree<>();
+	/**
+	 * Exact distance between the track and a point.
+	 */
+	private final IItemDistance<Track> trackDistance = new IItemDistance<Track>() {
+		@Override
+		public double distance(Track item, double x, double y) {
+			return TrackShapes.findNearestPoint(item, x, y).getDistance();
+		}
+	};
+	
+	/**
+	 * Indexes the track with its current geometry. The tracks without both vertices are
+	 * removed from the index.
+	 * 
+	 * @param track The track.
+	 */
+	public void updateTrack(Track track) {
+		if(null == track.getFirstVertex() || null == track.getSecondVertex()) {
+			this.tracks.remove(track);
+			return;
+		}
+		Rectangle2D bounds = TrackShapes.getBounds(track);
+		this.tracks.insert(track, bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+	}
+	
+	public void removeTrack(Track track) {
+		this.tracks.remove(track);
+	}
+	
+	/**
+	 * Indexes the vertex at its current position.
+	 * 
+	 * @param vertex The vertex.
+	 */
+	public void updateVertex(IVertex vertex) {
+		if(null == vertex.pos()) {
+			this.vertices.remove(vertex);
+			return;
+		}
+		double x = vertex.pos().getAbsoluteX();
+		double y = vertex.pos().getAbsoluteY();
+		this.vertices.insert(vertex, x, y, x, y);
+	}
+	
+	public void removeVertex(IVertex vertex) {
+		this.vertices.remove(vertex);
+	}
+	
+	/**
+	 * Recalculates all the entries. It must be called when the absolute coordinates change,
+	 * i.e. after resizing the world.
+	 */
+	public void refresh() {
+		for(Track track: this.tracks.items()) {
+			this.updateTrack(track);
+		}
+		for(IVertex vertex: this.vertices.items()) {
+			this.updateVertex(vertex);
+		}
+	}
+	
+	public void clear() {
+		this.tracks.clear();
+		this.vertices.clear();
+	}
+	
+	public int getTrackNum() {
+		return this.tracks.size();
+	}
+	
+	public int getVertexNum() {
+		return this.vertices.size();
+	}
+	
+	/**
+	 * Finds the tracks whose bounding boxes intersect the area. The caller shall apply
+	 * the exact test, if necessary.
+	 * 
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @param output The found tracks are added here.
+	 */
+	public void findTrackCandidates(double x1, double y1, double x2, double y2, Collection<? super Track> output) {
+		this.tracks.search(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2), output);
+	}
+	
+	/**
+	 * Finds the tracks that cross or lie inside the area.
+	 * 
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @return Tracks in the area.
+	 */
+	public List<Track> findTracks(double x1, double y1, double x2, double y2) {
+		List<Track> candidates = new ArrayList<>();
+		this.findTrackCandidates(x1, y1, x2, y2, candidates);
+		Rectangle2D area = new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1));
+		List<Track> result = new ArrayList<>(candidates.size());
+		for(Track track: candidates) {
+			if(TrackShapes.intersects(track, area)) {
+				result.add(track);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Finds up to <tt>k</tt> vertices nearest to the point, within the given radius.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param k Maximum number of the vertices.
+	 * @param radius Maximum distance.
+	 * @return Vertices, from the nearest one.
+	 */
+	public List<IVertex> findNearestVertices(double x, double y, int k, double radius) {
+		List<IVertex> result = new ArrayList<>(k);
+		this.vertices.nearest(x, y, k, radius, null, result);
+		return result;
+	}
+	
+	/**
+	 * Finds up to <tt>k</tt> tracks nearest to the point, within the given radius, together
+	 * with their points nearest to it.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param k Maximum number of the tracks.
+	 * @param radius Maximum distance.
+	 * @return Track points, from the nearest one.
+	 */
+	public List<TrackPoint> findNearestTrackPoints(double x, double y, int k, double radius) {
+		List<Track> found = new ArrayList<>(k);
+		this.tracks.nearest(x, y, k, radius, this.trackDistance, found);
+		List<TrackPoint> result = new ArrayList<>(found.size());
+		for(Track track: found) {
+			result.add(TrackShapes.findNearestPoint(track, x, y));
+		}
+		return result;
+	}
+}
@@ -57,6 +57,23 @@ public final class Segment {
 	 * Vertices within this segment.
 	 */
 	private Set<IVertex> vertices = new LinkedHashSet<>();
+	/**
+	 * Set, when the vertices or their connections have changed since the scene data
+	 * was exported for the last time.
+	 */
+	private boolean sceneDirty = true;
+	/**
+	 * Cached absolute vertex coordinates for the scene: X at even, Y at odd indices.
+	 */
+	private double scenePoints[];
+	/**
+	 * Cached vertex identifiers for the scene.
+	 */
+	private long sceneIds[];
+	/**
+	 * Cached tracks connected to the vertices of this segment.
+	 */
+	private Track sceneTracks[];
 	
 	public Segment() {
 	}
@@ -79,6 +96,9 @@ public final class Segment {
 	 * @return Fluent interface.
 	 */
 	public Segment setPosition(int x, int y) {
+		if(x != this.positionX || y != this.positionY) {
+			this.sceneDirty = true;
+		}
 		this.positionX = x;
 		this.positionY = y;
 		return this;
@@ -125,6 +145,7 @@ public final class Segment {
 	void addVertex(IVertex vertex) {
 		Preconditions.checkNotNull(vertex, "Attempt to add an empty vertex to the segment.");
 		this.vertices.add(vertex);
+		this.sceneDirty = true;
 	}
 
 	/**
@@ -135,6 +156,7 @@ public final class Segment {
 	void removeVertex(IVertex vertex) {
 		Preconditions.checkNotNull(vertex, "Attempt to add an empty vertex to the segment.");
 		this.vertices.remove(vertex);
+		this.sceneDirty = true;
 	}
 	
 	/**
@@ -152,4 +174,63 @@ public final class Segment {
 	Iterable<IVertex> getVertices() {
 		return this.vertices;
 	}
+	
+	/**
+	 * Marks that the vertex connections in this segment have changed, and the scene
+	 * data must be exported again.
+	 */
+	void markDirty() {
+		this.sceneDirty = true;
+	}
+	
+	/**
+	 * Rebuilds the cached scene data, if the segment has changed since the last export.
+	 */
+	void refreshSceneData() {
+		if(!this.sceneDirty) {
+			return;
+		}
+		int size = this.vertices.size();
+		double points[] = new double[size * 2];
+		long ids[] = new long[size];
+		Set<Track> tracks = new LinkedHashSet<>();
+		int i = 0;
+		for(IVertex vertex: this.vertices) {
+			ids[i] = vertex.getId();
+			points[i * 2] = vertex.pos().getAbsoluteX();
+			points[i * 2 + 1] = vertex.pos().getAbsoluteY();
+			if(null != vertex.getFirstTrack()) {
+				tracks.add(vertex.getFirstTrack());
+			}
+			if(null != vertex.getSecondTrack()) {
+				tracks.add(vertex.getSecondTrack());
+			}
+			i++;
+		}
+		this.scenePoints = points;
+		this.sceneIds = ids;
+		this.sceneTracks = tracks.toArray(new Track[tracks.size()]);
+		this.sceneDirty = false;
+	}
+	
+	/**
+	 * @return Vertex coordinates exported by {@link #refreshSceneData()}.
+	 */
+	double[] getScenePoints() {
+		return this.scenePoints;
+	}
+	
+	/**
+	 * @return Vertex identifiers exported by {@link #refreshSceneData()}.
+	 */
+	long[] getSceneIds() {
+		return this.sceneIds;
+	}
+	
+	/**
+	 * @return Tracks exported by {@link #refreshSceneData()}. 
+	 */
+	Track[] getSceneTracks() {
+		return this.sceneTracks;
+	}
 }
\ No newline at end of file
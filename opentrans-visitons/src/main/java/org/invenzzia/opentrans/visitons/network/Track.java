@@ -19,7 +19,6 @@ package org.invenzzia.opentrans.visitons.network;
 
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.BiMap;
 import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.LinkedList;
@@ -31,6 +30,7 @@ import org.invenzzia.opentrans.visitons.geometry.Geometry;
 import org.invenzzia.opentrans.visitons.geometry.LineOps;
 import org.invenzzia.opentrans.visitons.network.objects.ITrackObject;
 import org.invenzzia.opentrans.visitons.network.objects.TrackObject;
+import org.invenzzia.opentrans.visitons.utils.collections.LongBiMap;
 
 /**
  * Represents a track in the network infrastructure graph. Tracks are created from
@@ -135,6 +135,25 @@ public class Track {
 		this.length = length;
 	}
 	
+	/**
+	 * Restores the track geometry loaded from the project file. The metadata must be already
+	 * given in the coordinates relative to the first vertex. The method shall be used only
+	 * by the I/O reader.
+	 * 
+	 * @param type Track type.
+	 * @param v1 First vertex.
+	 * @param v2 Second vertex.
+	 * @param length Track length.
+	 * @param metadata Relative metadata.
+	 */
+	public void restore(byte type, IVertex v1, IVertex v2, double length, double metadata[]) {
+		this.type = type;
+		this.v1 = Preconditions.checkNotNull(v1);
+		this.v2 = Preconditions.checkNotNull(v2);
+		this.length = length;
+		this.metadata = metadata;
+	}
+	
 	/**
 	 * Returns the vertex on the opposite side of the track.
 	 * 
@@ -240,7 +259,7 @@ public class Track {
 	 * @param records List of junction records.
 	 * @param world World instance used for finding the actual entity.
 	 */
-	public void importJunctions(List<JunctionRecord> records, BiMap<Long, Long> vertexMapping, World world) {
+	public void importJunctions(List<JunctionRecord> records, LongBiMap vertexMapping, World world) {
 		if(records.isEmpty()) {
 			this.junctions = ImmutableList.of();
 		}
@@ -260,6 +279,16 @@ public class Track {
 		this.junctions = ImmutableList.copyOf(juncs);
 	}
 
+	/**
+	 * Restores the junctions lying on this track, loaded from the project file. The method
+	 * shall be used only by the I/O reader.
+	 * 
+	 * @param junctions Junctions on this track.
+	 */
+	public void restoreJunctions(List<Junction> junctions) {
+		this.junctions = ImmutableList.copyOf(junctions);
+	}
+
 	/**
 	 * @return Immutable collection of junctions. 
 	 */
@@ -320,18 +349,18 @@ public class Track {
 	 * @param world Find the actual vertex instances here.
 	 * @param vertexMapping Vertices in track record may be new - we need a mapping to the actual ID-s.
 	 */
-	public void importFrom(TrackRecord tr, World world, BiMap<Long, Long> vertexMapping) {
+	public void importFrom(TrackRecord tr, World world, LongBiMap vertexMapping) {
 		this.type = tr.getType();		
 		
 		this.metadata = tr.getMetadata();
 		long actualId = tr.getFirstVertex().getId();
 		if(actualId < IIdentifiable.NEUTRAL_ID) {
-			actualId = vertexMapping.get(Long.valueOf(actualId));
+			actualId = vertexMapping.get(actualId);
 		}
 		this.v1 = world.findVertex(actualId);
 		actualId = tr.getSecondVertex().getId();
 		if(actualId < IIdentifiable.NEUTRAL_ID) {
-			actualId = vertexMapping.get(Long.valueOf(actualId));
+			actualId = vertexMapping.get(actualId);
 		}
 		this.v2 = world.findVertex(actualId);
 		
@@ -388,7 +417,7 @@ public class Track {
 	 * @param world
 	 * @param vertexMapping 
 	 */
-	public void importConnections(TrackRecord tr, World world, BiMap<Long, Long> vertexMapping) {
+	public void importConnections(TrackRecord tr, World world, LongBiMap vertexMapping) {
 		long id1 = tr.getFirstVertex().getId();
 		long id2 = tr.getSecondVertex().getId();
 		if(id1 < IIdentifiable.NEUTRAL_ID) {
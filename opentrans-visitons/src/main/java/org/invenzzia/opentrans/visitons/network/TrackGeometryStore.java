@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.network;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import org.invenzzia.opentrans.visitons.utils.collections.LongLongMap;
+
+/**
+ * Columnar copy of the committed track geometry. Each column is a packed array indexed by
+ * a dense track index, so that the passes over all the tracks scan a few arrays instead
+ * of visiting the track objects, their vertices and metadata arrays scattered around
+ * the heap. The endpoints are stored in the absolute coordinates, and the curve parameters
+ * are the relative metadata of the track (see {@link Track#getMetadata()}), packed one
+ * after another into a single array.
+ * 
+ * <p>The dense indices are not stable: when a track is removed, the last track takes
+ * its place. The store is owned by the {@link World} and may be used only in the model
+ * thread.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class TrackGeometryStore {
+	/**
+	 * Returned by {@link #indexOf(long)} for the unknown tracks.
+	 */
+	public static final int NO_TRACK = -1;
+	private static final int DEFAULT_CAPACITY = 64;
+	/**
+	 * Track ID to the dense index.
+	 */
+	private final LongLongMap indices = new LongLongMap(NO_TRACK);
+	/**
+	 * Number of the stored tracks.
+	 */
+	private int size;
+	private long ids[];
+	private byte types[];
+	private double lengths[];
+	/**
+	 * Absolute coordinates of the first and the second vertex.
+	 */
+	private double x1[];
+	private double y1[];
+	private double x2[];
+	private double y2[];
+	/**
+	 * Where the curve parameters of the track start in {@link #params}.
+	 */
+	private int paramOffsets[];
+	/**
+	 * Number of the curve parameters of the track.
+	 */
+	private int paramNums[];
+	/**
+	 * Curve parameters of all the tracks.
+	 */
+	private double params[];
+	/**
+	 * Used part of the parameter array, including the abandoned parameters.
+	 */
+	private int paramUsed;
+	/**
+	 * Number of the abandoned parameters, which are reclaimed by the compaction.
+	 */
+	private int paramGarbage;
+	
+	public TrackGeometryStore() {
+		this.ids = new long[DEFAULT_CAPACITY];
+		this.types = new byte[DEFAULT_CAPACITY];
+		this.lengths = new double[DEFAULT_CAPACITY];
+		this.x1 = new double[DEFAULT_CAPACITY];
+		this.y1 = new double[DEFAULT_CAPACITY];
+		this.x2 = new double[DEFAULT_CAPACITY];
+		this.y2 = new double[DEFAULT_CAPACITY];
+		this.paramOffsets = new int[DEFAULT_CAPACITY];
+		this.paramNums = new int[DEFAULT_CAPACITY];
+		this.params = new double[DEFAULT_CAPACITY * 8];
+	}
+	
+	/**
+	 * @return Number of the stored tracks.
+	 */
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * @param id Track ID.
+	 * @return Dense index of the track or {@link #NO_TRACK}.
+	 */
+	public int indexOf(long id) {
+		return (int) this.indices.get(id);
+	}
+	
+	public long getId(int index) {
+		return this.ids[this.checkIndex(index)];
+	}
+	
+	public byte getType(int index) {
+		return this.types[this.checkIndex(index)];
+	}
+	
+	public double getLength(int index) {
+		return this.lengths[this.checkIndex(index)];
+	}
+	
+	public double getX1(int index) {
+		return this.x1[this.checkIndex(index)];
+	}
+	
+	public double getY1(int index) {
+		return this.y1[this.checkIndex(index)];
+	}
+	
+	public double getX2(int index) {
+		return this.x2[this.checkIndex(index)];
+	}
+	
+	public double getY2(int index) {
+		return this.y2[this.checkIndex(index)];
+	}
+	
+	/**
+	 * @param index Dense track index.
+	 * @return Number of the curve parameters of the track.
+	 */
+	public int getParamNum(int index) {
+		return this.paramNums[this.checkIndex(index)];
+	}
+	
+	/**
+	 * Returns the curve parameter of the track, with the same meaning as the element
+	 * of {@link Track#getMetadata()}.
+	 * 
+	 * @param index Dense track index.
+	 * @param param Parameter number.
+	 * @return Parameter value.
+	 */
+	public double getParam(int index, int param) {
+		Preconditions.checkElementIndex(param, this.paramNums[this.checkIndex(index)]);
+		return this.params[this.paramOffsets[index] + param];
+	}
+	
+	/**
+	 * @return Total length of all the tracks [m].
+	 */
+	public double getTotalLength() {
+		double total = 0.0;
+		double lengths[] = this.lengths;
+		for(int i = 0; i < this.size; i++) {
+			total += lengths[i];
+		}
+		return total;
+	}
+	
+	/**
+	 * @param type One of the <tt>NetworkConst.TRACK_*</tt> constants.
+	 * @return Number of the tracks of the given type.
+	 */
+	public int countTracks(byte type) {
+		int count = 0;
+		byte types[] = this.types;
+		for(int i = 0; i < this.size; i++) {
+			if(types[i] == type) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Copies the current geometry of the track into the store. If the track is already
+	 * there, it keeps its index. The track must be connected to both of its vertices.
+	 * 
+	 * @param track The track to store.
+	 * @return Dense index of the track.
+	 */
+	public int update(Track track) {
+		IVertex v1 = Preconditions.checkNotNull(track.getFirstVertex(), "The track #%s has no first vertex.", track.getId());
+		IVertex v2 = Preconditions.checkNotNull(track.getSecondVertex(), "The track #%s has no second vertex.", track.getId());
+		int index = this.indexOf(track.getId());
+		if(NO_TRACK == index) {
+			index = this.size;
+			if(index == this.ids.length) {
+				this.grow(index * 2);
+			}
+			this.ids[index] = track.getId();
+			this.paramNums[index] = 0;
+			this.indices.put(track.getId(), index);
+			this.size++;
+		}
+		this.types[index] = track.getType();
+		this.lengths[index] = track.getLength();
+		this.x1[index] = v1.pos().getAbsoluteX();
+		this.y1[index] = v1.pos().getAbsoluteY();
+		this.x2[index] = v2.pos().getAbsoluteX();
+		this.y2[index] = v2.pos().getAbsoluteY();
+		this.storeParams(index, track.getMetadata());
+		return index;
+	}
+	
+	/**
+	 * Removes the track from the store. The last track is moved into its place.
+	 * 
+	 * @param id ID of the track to remove.
+	 * @return True, if the track was present.
+	 */
+	public boolean remove(long id) {
+		int index = this.indexOf(id);
+		if(NO_TRACK == index) {
+			return false;
+		}
+		this.indices.remove(id);
+		this.paramGarbage += this.paramNums[index];
+		int last = --this.size;
+		if(index != last) {
+			this.ids[index] = this.ids[last];
+			this.types[index] = this.types[last];
+			this.lengths[index] = this.lengths[last];
+			this.x1[index] = this.x1[last];
+			this.y1[index] = this.y1[last];
+			this.x2[index] = this.x2[last];
+			this.y2[index] = this.y2[last];
+			this.paramOffsets[index] = this.paramOffsets[last];
+			this.paramNums[index] = this.paramNums[last];
+			this.indices.put(this.ids[index], index);
+		}
+		if(0 == this.size) {
+			this.paramUsed = 0;
+			this.paramGarbage = 0;
+		}
+		return true;
+	}
+	
+	/**
+	 * Creates an independent copy of the store. The copy keeps the dense indices, and can be
+	 * read by another thread, while the original one follows the changes of the world.
+	 * 
+	 * @return Copy of the store.
+	 */
+	public TrackGeometryStore copy() {
+		TrackGeometryStore copy = new TrackGeometryStore();
+		copy.grow(Math.max(DEFAULT_CAPACITY, this.size));
+		System.arraycopy(this.ids, 0, copy.ids, 0, this.size);
+		System.arraycopy(this.types, 0, copy.types, 0, this.size);
+		System.arraycopy(this.lengths, 0, copy.lengths, 0, this.size);
+		System.arraycopy(this.x1, 0, copy.x1, 0, this.size);
+		System.arraycopy(this.y1, 0, copy.y1, 0, this.size);
+		System.arraycopy(this.x2, 0, copy.x2, 0, this.size);
+		System.arraycopy(this.y2, 0, copy.y2, 0, this.size);
+		System.arraycopy(this.paramOffsets, 0, copy.paramOffsets, 0, this.size);
+		System.arraycopy(this.paramNums, 0, copy.paramNums, 0, this.size);
+		copy.params = Arrays.copyOf(this.params, this.params.length);
+		copy.paramUsed = this.paramUsed;
+		copy.paramGarbage = this.paramGarbage;
+		copy.size = this.size;
+		for(int i = 0; i < this.size; i++) {
+			copy.indices.put(this.ids[i], i);
+		}
+		return copy;
+	}
+	
+	public void clear() {
+		this.indices.clear();
+		this.size = 0;
+		this.paramUsed = 0;
+		this.paramGarbage = 0;
+	}
+	
+	/**
+	 * Writes the parameters in place, if their number has not changed. Otherwise, they
+	 * are appended to the end of the parameter array.
+	 */
+	private void storeParams(int index, double metadata[]) {
+		int num = (null == metadata ? 0 : metadata.length);
+		if(num != this.paramNums[index]) {
+			this.paramGarbage += this.paramNums[index];
+			this.paramNums[index] = 0;
+			if(this.paramUsed + num > this.params.length) {
+				this.compactParams(num);
+			}
+			this.paramOffsets[index] = this.paramUsed;
+			this.paramNums[index] = num;
+			this.paramUsed += num;
+		}
+		if(num > 0) {
+			System.arraycopy(metadata, 0, this.params, this.paramOffsets[index], num);
+		}
+	}
+	
+	/**
+	 * Reclaims the abandoned parameters and makes room for the given number of the new ones.
+	 * The parameters are rewritten in the order of the dense indices.
+	 */
+	private void compactParams(int required) {
+		int live = this.paramUsed - this.paramGarbage;
+		int capacity = this.params.length;
+		while(live + required > capacity / 2) {
+			capacity *= 2;
+		}
+		double compacted[] = new double[capacity];
+		int used = 0;
+		for(int i = 0; i < this.size; i++) {
+			int num = this.paramNums[i];
+			System.arraycopy(this.params, this.paramOffsets[i], compacted, used, num);
+			this.paramOffsets[i] = used;
+			used += num;
+		}
+		this.params = compacted;
+		this.paramUsed = used;
+		this.paramGarbage = 0;
+	}
+	
+	private void grow(int capacity) {
+		this.ids = Arrays.copyOf(this.ids, capacity);
+		this.types = Arrays.copyOf(this.types, capacity);
+		this.lengths = Arrays.copyOf(this.lengths, capacity);
+		this.x1 = Arrays.copyOf(this.x1, capacity);
+		this.y1 = Arrays.copyOf(this.y1, capacity);
+		this.x2 = Arrays.copyOf(this.x2, capacity);
+		this.y2 = Arrays.copyOf(this.y2, capacity);
+		this.paramOffsets = Arrays.copyOf(this.paramOffsets, capacity);
+		this.paramNums = Arrays.copyOf(this.paramNums, capacity);
+	}
+	
+	private int checkIndex(int index) {
+		return Preconditions.checkElementIndex(index, this.size);
+	}
+}
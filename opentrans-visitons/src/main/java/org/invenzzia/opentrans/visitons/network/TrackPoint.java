@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.network;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The point on a track that is the nearest to some other point, i.e. to the mouse cursor.
+ * The position uses the same parametrization, as {@link Track#getPointCharacteristics(double)}.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public final class TrackPoint {
+	private final Track track;
+	/**
+	 * Position on the track from the range <tt>[0.0, 1.0]</tt>.
+	 */
+	private final double position;
+	private final double x;
+	private final double y;
+	/**
+	 * Distance between the track point and the queried point.
+	 */
+	private final double distance;
+	
+	public TrackPoint(Track track, double position, double x, double y, double distance) {
+		this.track = Preconditions.checkNotNull(track);
+		this.position = position;
+		this.x = x;
+		this.y = y;
+		this.distance = distance;
+	}
+	
+	public Track getTrack() {
+		return this.track;
+	}
+	
+	public double getPosition() {
+		return this.position;
+	}
+	
+	public double getX() {
+		return this.x;
+	}
+	
+	public double getY() {
+		return this.y;
+	}
+	
+	public double getDistance() {
+		return this.distance;
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.network;
+
+import java.awt.Shape;
+import java.awt.geom.Arc2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import org.invenzzia.opentrans.visitons.geometry.ArcOps;
+import org.invenzzia.opentrans.visitons.geometry.LineOps;
+
+/**
+ * Geometric helpers that turn the track metadata into the shapes in the world coordinates.
+ * The metadata is relative to the position of the first vertex (see {@link Track#getMetadata()}),
+ * so the methods add the absolute position of the first vertex.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class TrackShapes {
+	/**
+	 * Maximum distance between the arc and its flattened approximation [m].
+	 */
+	private static final double FLATNESS = 0.05;
+	
+	private TrackShapes() {
+	}
+	
+	/**
+	 * Creates the tight bounding box of the track in the world coordinates. The track
+	 * must be connected to both vertices.
+	 * 
+	 * @param track The track.
+	 * @return Bounding box.
+	 */
+	public static Rectangle2D getBounds(Track track) {
+		double x1 = track.getFirstVertex().pos().getAbsoluteX();
+		double y1 = track.getFirstVertex().pos().getAbsoluteY();
+		double x2 = track.getSecondVertex().pos().getAbsoluteX();
+		double y2 = track.getSecondVertex().pos().getAbsoluteY();
+		Rectangle2D bounds = new Rectangle2D.Double(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1), Math.abs(y2 - y1));
+		double metadata[] = track.getMetadata();
+		if(null == metadata) {
+			return bounds;
+		}
+		switch(track.getType()) {
+			case NetworkConst.TRACK_CURVED:
+				Rectangle2D.union(bounds, createArc(metadata, 0, x1, y1).getBounds2D(), bounds);
+				break;
+			case NetworkConst.TRACK_FREE:
+				Rectangle2D.union(bounds, createArc(metadata, 0, x1, y1).getBounds2D(), bounds);
+				Rectangle2D.union(bounds, createArc(metadata, 8, x1, y1).getBounds2D(), bounds);
+				break;
+		}
+		return bounds;
+	}
+	
+	/**
+	 * Checks whether the track crosses or lies inside the given rectangle. The arcs are
+	 * approximated with line segments.
+	 * 
+	 * @param track The track connected to both vertices.
+	 * @param area The tested area in the world coordinates.
+	 * @return True, if any part of the track is in the area.
+	 */
+	public static boolean intersects(Track track, Rectangle2D area) {
+		double x1 = track.getFirstVertex().pos().getAbsoluteX();
+		double y1 = track.getFirstVertex().pos().getAbsoluteY();
+		double metadata[] = track.getMetadata();
+		if(null == metadata || track.getType() == NetworkConst.TRACK_STRAIGHT) {
+			return area.intersectsLine(x1, y1,
+				track.getSecondVertex().pos().getAbsoluteX(), track.getSecondVertex().pos().getAbsoluteY());
+		}
+		if(intersects(createArc(metadata, 0, x1, y1), area)) {
+			return true;
+		}
+		if(track.getType() == NetworkConst.TRACK_FREE) {
+			return intersects(createArc(metadata, 8, x1, y1), area);
+		}
+		return false;
+	}
+	
+	/**
+	 * Finds the point of the track that is the nearest to the given point.
+	 * 
+	 * @param track The track connected to both vertices.
+	 * @param x Point X in the world coordinates.
+	 * @param y Point Y in the world coordinates.
+	 * @return The nearest track point.
+	 */
+	public static TrackPoint findNearestPoint(Track track, double x, double y) {
+		double ax = track.getFirstVertex().pos().getAbsoluteX();
+		double ay = track.getFirstVertex().pos().getAbsoluteY();
+		double metadata[] = track.getMetadata();
+		double result[] = new double[4];
+		if(null == metadata || track.getType() == NetworkConst.TRACK_STRAIGHT) {
+			nearestOnLine(ax, ay, track.getSecondVertex().pos().getAbsoluteX(), track.getSecondVertex().pos().getAbsoluteY(), x, y, result);
+		} else if(track.getType() == NetworkConst.TRACK_CURVED) {
+			nearestOnArc(metadata, 0, metadata[8] + ax, metadata[9] + ay, ax, ay, x, y, result);
+		} else {
+			// The free track consists of two arcs; each of them covers one half of the range.
+			nearestOnArc(metadata, 0, metadata[16] + ax, metadata[17] + ay, ax, ay, x, y, result);
+			double first[] = new double[] { result[0] / 2.0, result[1], result[2], result[3] };
+			nearestOnArc(metadata, 8, metadata[18] + ax, metadata[19] + ay, ax, ay, x, y, result);
+			if(first[3] <= result[3]) {
+				System.arraycopy(first, 0, result, 0, 4);
+			} else {
+				result[0] = result[0] / 2.0 + 0.5;
+			}
+		}
+		return new TrackPoint(track, result[0], result[1], result[2], result[3]);
+	}
+	
+	/**
+	 * Writes the position, the coordinates and the distance of the nearest point of a line
+	 * segment.
+	 */
+	private static void nearestOnLine(double x1, double y1, double x2, double y2, double px, double py, double result[]) {
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double lengthSq = dx * dx + dy * dy;
+		double t = 0.0;
+		if(lengthSq > 0.0) {
+			t = Math.min(1.0, Math.max(0.0, ((px - x1) * dx + (py - y1) * dy) / lengthSq));
+		}
+		result[0] = t;
+		result[1] = x1 + t * dx;
+		result[2] = y1 + t * dy;
+		result[3] = LineOps.distance(result[1], result[2], px, py);
+	}
+	
+	/**
+	 * Writes the position, the coordinates and the distance of the nearest point of an arc.
+	 * Beyond the ends of the arc, the nearer end is taken.
+	 * 
+	 * @param metadata Track metadata.
+	 * @param offset Where the arc description starts: 8 values, as in {@link #createArc(double[], int, double, double)}.
+	 * @param sx Absolute X of the point where the arc starts.
+	 * @param sy Absolute Y of the point where the arc starts.
+	 * @param ax Absolute X of the first vertex.
+	 * @param ay Absolute Y of the first vertex.
+	 */
+	private static void nearestOnArc(double metadata[], int offset, double sx, double sy, double ax, double ay, double px, double py, double result[]) {
+		double cx = metadata[offset + 6] + ax;
+		double cy = metadata[offset + 7] + ay;
+		double radius = metadata[offset + 2] / 2.0;
+		double tangent = metadata[offset + 3];
+		double extent = metadata[offset + 5];
+		double toPoint = LineOps.distance(cx, cy, px, py);
+		if(toPoint > 0.0 && extent > 0.0) {
+			double t = ArcOps.coord2Param(cx, cy, sx, sy, tangent, px, py) / extent;
+			if(t >= 0.0 && t <= 1.0) {
+				result[0] = t;
+				result[1] = cx + (px - cx) * radius / toPoint;
+				result[2] = cy + (py - cy) * radius / toPoint;
+				result[3] = Math.abs(toPoint - radius);
+				return;
+			}
+		}
+		double k = ArcOps.param2Angle(1.0, cx, cy, sx, sy, tangent, extent);
+		double ex = Math.cos(k) * radius + cx;
+		double ey = Math.sin(k) * radius + cy;
+		double toStart = LineOps.distance(sx, sy, px, py);
+		double toEnd = LineOps.distance(ex, ey, px, py);
+		if(toStart <= toEnd) {
+			result[0] = 0.0;
+			result[1] = sx;
+			result[2] = sy;
+			result[3] = toStart;
+		} else {
+			result[0] = 1.0;
+			result[1] = ex;
+			result[2] = ey;
+			result[3] = toEnd;
+		}
+	}
+	
+	/**
+	 * Creates the arc described by the eight metadata values, starting from the given offset:
+	 * the top-left corner of the bounding box, the diameter, the start angle and the extent.
+	 * 
+	 * @param metadata Track metadata.
+	 * @param offset Where the arc description starts.
+	 * @param x Absolute X position of the first vertex.
+	 * @param y Absolute Y position of the first vertex.
+	 * @return Arc in the world coordinates.
+	 */
+	public static Arc2D createArc(double metadata[], int offset, double x, double y) {
+		return new Arc2D.Double(
+			metadata[offset] + x, metadata[offset + 1] + y, metadata[offset + 2], metadata[offset + 2],
+			Math.toDegrees(metadata[offset + 4]), Math.toDegrees(metadata[offset + 5]), Arc2D.OPEN
+		);
+	}
+	
+	private static boolean intersects(Shape shape, Rectangle2D area) {
+		PathIterator it = shape.getPathIterator(null, FLATNESS);
+		double coords[] = new double[6];
+		double lastX = 0.0, lastY = 0.0;
+		while(!it.isDone()) {
+			int type = it.currentSegment(coords);
+			if(type == PathIterator.SEG_LINETO) {
+				if(area.intersectsLine(lastX, lastY, coords[0], coords[1])) {
+					return true;
+				}
+			}
+			lastX = coords[0];
+			lastY = coords[1];
+			it.next();
+		}
+		return false;
+	}
+}
@@ -18,10 +18,10 @@
 package org.invenzzia.opentrans.visitons.network;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.BiMap;
 import org.invenzzia.helium.data.interfaces.IIdentifiable;
 import org.invenzzia.opentrans.visitons.network.transform.NetworkUnitOfWork;
 import org.invenzzia.opentrans.visitons.utils.SegmentCoordinate;
+import org.invenzzia.opentrans.visitons.utils.collections.LongBiMap;
 
 /**
  * This is the default implementation of 'free' vertex, which can be
@@ -163,6 +163,7 @@ public class Vertex extends AbstractVertex {
 		} else if(this.secondTrack == track) {
 			this.secondTrack = null;
 		}
+		this.markSegmentDirty();
 	}
 	
 	/**
@@ -176,6 +177,36 @@ public class Vertex extends AbstractVertex {
 	public void setTracks(Track t1, Track t2) {
 		this.firstTrack = t1;
 		this.secondTrack = t2;
+		this.markSegmentDirty();
+	}
+	
+	/**
+	 * Restores the position and the tangents of the vertex loaded from the project file.
+	 * The method shall be used only by the I/O reader.
+	 * 
+	 * @param pos Vertex position.
+	 * @param t1 Tangent for the first track.
+	 * @param t2 Tangent for the second track.
+	 */
+	public void restore(SegmentCoordinate pos, double t1, double t2) {
+		Preconditions.checkState(this.pos == null, "The position is already set.");
+		this.pos = Preconditions.checkNotNull(pos);
+		this.pos.getSegment().addVertex(this);
+		this.t1 = t1;
+		this.t2 = t2;
+	}
+	
+	/**
+	 * Restores the connections to the tracks loaded from the project file. The method shall
+	 * be used only by the I/O reader.
+	 * 
+	 * @param firstTrack The first connected track or NULL.
+	 * @param secondTrack The second connected track or NULL.
+	 */
+	public void restoreTracks(Track firstTrack, Track secondTrack) {
+		this.firstTrack = firstTrack;
+		this.secondTrack = secondTrack;
+		this.markSegmentDirty();
 	}
 	
 	/**
@@ -203,7 +234,7 @@ public class Vertex extends AbstractVertex {
 	 * @param trackMapping 
 	 */
 	@Override
-	public void importConnections(IVertexRecord vr, World world, BiMap<Long, Long> trackMapping) {
+	public void importConnections(IVertexRecord vr, World world, LongBiMap trackMapping) {
 		long id1 = vr.getFirstTrackActualId();
 		long id2 = vr.getSecondTrackActualId();
 		if(id1 < IIdentifiable.NEUTRAL_ID) {
@@ -214,5 +245,6 @@ public class Vertex extends AbstractVertex {
 		}
 		this.firstTrack = world.findTrack(id1);
 		this.secondTrack = world.findTrack(id2);
+		this.markSegmentDirty();
 	}
 }
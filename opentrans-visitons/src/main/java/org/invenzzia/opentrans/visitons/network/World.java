@@ -18,17 +18,16 @@
 package org.invenzzia.opentrans.visitons.network;
 
 import com.google.common.base.Preconditions;
-import java.awt.Image;
-import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import javax.imageio.ImageIO;
 import org.invenzzia.helium.data.interfaces.IIdentifiable;
 import org.invenzzia.opentrans.visitons.data.Platform;
 import org.invenzzia.opentrans.visitons.data.Stop;
@@ -37,9 +36,7 @@ import org.invenzzia.opentrans.visitons.exception.WorldException;
 import org.invenzzia.opentrans.visitons.network.objects.TrackObject;
 import org.invenzzia.opentrans.visitons.render.AbstractCameraModelFoundation;
 import org.invenzzia.opentrans.visitons.render.SceneManager;
-import org.invenzzia.opentrans.visitons.render.painters.CurvedTrackPainter;
-import org.invenzzia.opentrans.visitons.render.painters.FreeTrackPainter;
-import org.invenzzia.opentrans.visitons.render.painters.StraightTrackPainter;
+import org.invenzzia.opentrans.visitons.render.painters.CachedTrackPainter;
 import org.invenzzia.opentrans.visitons.render.scene.CommittedTrackObjectSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.CommittedTrackSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.StopSnapshot;
@@ -47,6 +44,7 @@ import org.invenzzia.opentrans.visitons.render.scene.VehicleSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot.SegmentInfo;
 import org.invenzzia.opentrans.visitons.utils.SegmentCoordinate;
+import org.invenzzia.opentrans.visitons.utils.collections.LongMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +58,11 @@ import org.slf4j.LoggerFactory;
  * 
  * <p>In addition, the object of this class keeps the counters for generating
  * the ID of tracks and vertices.
+ * 
+ * <p>The segment objects are allocated lazily, when some code asks for them for
+ * the first time, so that a large, mostly empty world does not allocate all of its
+ * segments upfront. Once allocated, the segment stays in the memory together with
+ * the vertices and tracks.
  *
  * @author Tomasz Jędrzejewski
  */
@@ -87,9 +90,14 @@ public class World {
 	 */
 	protected int dimY;
 	/**
-	 * Segment database.
+	 * Segment database. The cells of the segments that are not allocated yet
+	 * are NULL.
 	 */
 	protected Segment segments[][];
+	/**
+	 * Number of the allocated segments.
+	 */
+	private int residentSegmentNum = 0;
 	/**
 	 * Incrementator for generating the vertex ID.
 	 */
@@ -101,15 +109,24 @@ public class World {
 	/**
 	 * All the vertices managed by the project.
 	 */
-	private Map<Long, IVertex> vertices;
+	private LongMap<IVertex> vertices;
 	/**
 	 * All the tracks managed by the project.
 	 */
-	private Map<Long, Track> tracks;
+	private LongMap<Track> tracks;
 	/**
-	 * Buffer for pre-loaded segment bitmaps.
+	 * Columnar copy of the geometry of the tracks connected to the network.
 	 */
-	private Map<String, Image> loadedSegmentBitmaps;
+	private final TrackGeometryStore trackGeometry = new TrackGeometryStore();
+	/**
+	 * Spatial index of the tracks and vertices connected to the network.
+	 */
+	private final NetworkIndex networkIndex = new NetworkIndex();
+	/**
+	 * Painters of the tracks exported in the last scene, reused until the track geometry
+	 * changes.
+	 */
+	private Map<Track, CachedTrackPainter> trackPainters = new HashMap<>();
 
 	/**
 	 * Initializes an empty world with the dimensions 1x1.
@@ -117,9 +134,8 @@ public class World {
 	public World() {
 		this.dimX = 1;
 		this.dimY = 1;
-		this.vertices = new LinkedHashMap<>();
-		this.tracks = new LinkedHashMap<>();
-		this.loadedSegmentBitmaps = new LinkedHashMap<>();
+		this.vertices = new LongMap<>();
+		this.tracks = new LongMap<>();
 		this.createWorld();
 	}
 
@@ -161,11 +177,14 @@ public class World {
 	 */
 	final protected void createWorld() {
 		this.segments = new Segment[this.dimX][this.dimY];
-		for(int x = 0; x < this.dimX; x++) {
-			for(int y = 0; y < this.dimY; y++) {
-				this.segments[x][y] = new Segment().setPosition(x, y);
-			}
-		}
+		this.residentSegmentNum = 0;
+	}
+	
+	/**
+	 * @return Number of currently allocated segments.
+	 */
+	public int getResidentSegmentNum() {
+		return this.residentSegmentNum;
 	}
 	
 	/**
@@ -230,17 +249,12 @@ public class World {
 		Segment[][] newSegments = new Segment[dimX + 1][dimY];
 		if(where == HorizontalDir.LEFT) {
 			this.copySegmentsExt(newSegments, 1, 0);
-			for(int i = 0; i < dimY; i++) {
-				newSegments[0][i] = new Segment().setPosition(0, i);
-			}
 		} else {
 			this.copySegmentsExt(newSegments, 0, 0);
-			for(int i = 0; i < dimY; i++) {
-				newSegments[dimX][i] = new Segment().setPosition(dimX, i);
-			}
 		}
 		this.segments = newSegments;
 		this.dimX++;
+		this.refreshGeometry();
 		return this;
 	}
 
@@ -254,17 +268,12 @@ public class World {
 		Segment[][] newSegments = new Segment[dimX][dimY + 1];
 		if(where == VerticalDir.UP) {
 			this.copySegmentsExt(newSegments, 0, 1);
-			for(int i = 0; i < dimX; i++) {
-				newSegments[i][0] = new Segment().setPosition(i, 0);
-			}
 		} else {
 			this.copySegmentsExt(newSegments, 0, 0);
-			for(int i = 0; i < dimX; i++) {
-				newSegments[i][dimY] = new Segment().setPosition(i, dimY);
-			}
 		}
 		this.segments = newSegments;
 		this.dimY++;
+		this.refreshGeometry();
 		return this;
 	}
 	
@@ -294,15 +303,17 @@ public class World {
 			offset = 0;
 		}
 		for(int i = 0; i < this.dimX; i++) {
-			if(this.segments[i][y].isUsed()) {
+			if(this.isSegmentUsed(i, y)) {
 				throw new WorldException("There are segments in use in the reduced side of the world.", this);
 			}
 		}
 		// OK, now actual resize
 		Segment[][] newSegments = new Segment[dimX - 1][dimY];
 		this.copySegmentsShr(newSegments, offset, 0, dimX - 1, dimY);
+		this.releaseRemovedSegments(newSegments);
 		this.segments = newSegments;
 		this.dimX--;
+		this.refreshGeometry();
 		return this;
 	}
 	
@@ -332,17 +343,33 @@ public class World {
 			offset = 0;
 		}
 		for(int i = 0; i < this.dimY; i++) {
-			if(this.segments[x][i].isUsed()) {
+			if(this.isSegmentUsed(x, i)) {
 				throw new WorldException("There are segments in use in the reduced side of the world.", this);
 			}
 		}
 		// OK, now actual resize
 		Segment[][] newSegments = new Segment[dimX][dimY - 1];
 		this.copySegmentsShr(newSegments, 0, offset, dimX, dimY - 1);
+		this.releaseRemovedSegments(newSegments);
 		this.segments = newSegments;
 		this.dimY--;
+		this.refreshGeometry();
 		return this;
 	}
+	
+	/**
+	 * Resizing the world shifts the segments, and therefore all the absolute coordinates.
+	 * The columnar geometry and the spatial index must be recalculated.
+	 */
+	private void refreshGeometry() {
+		for(int i = 0, size = this.trackGeometry.size(); i < size; i++) {
+			Track track = this.tracks.get(this.trackGeometry.getId(i));
+			if(null != track) {
+				this.trackGeometry.update(track);
+			}
+		}
+		this.networkIndex.refresh();
+	}
 
 	/**
 	 * A helper method used to copy the contents of the segment array to a new one.
@@ -356,7 +383,9 @@ public class World {
 			for(int y = 0; y < this.dimY; y++) {
 				int dx = x + deltaX;
 				int dy = y + deltaY;
-				newArray[dx][dy] = this.segments[x][y].setPosition(dx, dy);
+				if(null != this.segments[x][y]) {
+					newArray[dx][dy] = this.segments[x][y].setPosition(dx, dy);
+				}
 			}
 		}
 	}
@@ -373,26 +402,78 @@ public class World {
 			for(int y = 0; y < newY; y++) {
 				int dx = x + deltaX;
 				int dy = y + deltaY;
-				newArray[x][y] = this.segments[dx][dy].setPosition(x, y);
+				if(null != this.segments[dx][dy]) {
+					newArray[x][y] = this.segments[dx][dy].setPosition(x, y);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Recounts the allocated segments after shrinking the world.
+	 * 
+	 * @param newArray The new segment array.
+	 */
+	private void releaseRemovedSegments(Segment[][] newArray) {
+		int num = 0;
+		for(Segment column[]: newArray) {
+			for(Segment segment: column) {
+				if(null != segment) {
+					num++;
+				}
 			}
 		}
+		this.residentSegmentNum = num;
 	}
 	
 	/**
 	 * Returns the segment object with the given coordinates or NULL, if the segment does not
-	 * exist.
+	 * exist. The segment is allocated, if it is not resident yet.
 	 * 
 	 * @param x
 	 * @param y
 	 * @return Segment object or NULL
 	 */
 	public Segment findSegment(int x, int y) {
+		if(x >= 0 && x < this.dimX && y >= 0 && y < this.dimY) {
+			Segment segment = this.segments[x][y];
+			if(null == segment) {
+				segment = new Segment().setPosition(x, y);
+				this.segments[x][y] = segment;
+				this.residentSegmentNum++;
+			}
+			return segment;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the segment object with the given coordinates only if it is already allocated.
+	 * Use it for scanning the world without bringing all the segments into the memory.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return Segment object or NULL
+	 */
+	public Segment findResidentSegment(int x, int y) {
 		if(x >= 0 && x < this.dimX && y >= 0 && y < this.dimY) {
 			return this.segments[x][y];
 		}
 		return null;
 	}
 	
+	/**
+	 * Checks whether the segment contains some infrastructure without allocating it.
+	 * 
+	 * @param x
+	 * @param y
+	 * @return True, if the segment is in use.
+	 */
+	private boolean isSegmentUsed(int x, int y) {
+		Segment segment = this.segments[x][y];
+		return null != segment && segment.isUsed();
+	}
+	
 	/**
 	 * Translates the absolute world coordinates into the relative <tt>(segment,x,y)</tt>
 	 * used in the world data model.
@@ -408,7 +489,7 @@ public class World {
 		if(sx >= 0 && sx < this.dimX && sy >= 0 && sy < this.dimY) {
 			x -= (sx * Segment.SIZE);
 			y -= (sy * Segment.SIZE);
-			return new SegmentCoordinate(this.segments[sx][sy], x, y);
+			return new SegmentCoordinate(this.findSegment(sx, sy), x, y);
 		}
 		throw new IllegalArgumentException("The coordinates '"+x+"', '"+y+"' are outside the world (sx: "+sx+", sy: "+sy+").");
 	}
@@ -423,7 +504,8 @@ public class World {
 		if(vertex.getId() == IIdentifiable.NEUTRAL_ID) {
 			vertex.setId(this.nextVertexId++);
 		}
-		this.vertices.put(Long.valueOf(vertex.getId()), vertex);
+		this.vertices.put(vertex.getId(), vertex);
+		this.networkIndex.updateVertex(vertex);
 		return this;
 	}
 	
@@ -437,6 +519,16 @@ public class World {
 		return this.vertices.get(id);
 	}
 
+	/**
+	 * Returns an unmodifiable view of all the vertices. The method shall be used only when
+	 * writing the state to the disk.
+	 * 
+	 * @return All the vertices.
+	 */
+	public Collection<IVertex> getVertices() {
+		return Collections.unmodifiableCollection(this.vertices.values());
+	}
+	
 	/**
 	 * Removes the vertex from the world, updating the proper segment.
 	 *
@@ -452,7 +544,8 @@ public class World {
 			this.removeTrack(vertex.getSecondTrack());
 		}
 
-		this.vertices.remove(Long.valueOf(vertex.getId()));
+		this.vertices.remove(vertex.getId());
+		this.networkIndex.removeVertex(vertex);
 		vertex.pos().getSegment().removeVertex(vertex);
 		return this;
 	}
@@ -467,7 +560,11 @@ public class World {
 		if(track.getId() == IIdentifiable.NEUTRAL_ID) {
 			track.setId(this.nextTrackId++);
 		}
-		this.tracks.put(Long.valueOf(track.getId()), track);
+		this.tracks.put(track.getId(), track);
+		if(null != track.getFirstVertex() && null != track.getSecondVertex()) {
+			this.trackGeometry.update(track);
+			this.networkIndex.updateTrack(track);
+		}
 		return this;
 	}
 	
@@ -481,6 +578,65 @@ public class World {
 		return this.tracks.get(id);
 	}
 	
+	/**
+	 * Returns an unmodifiable view of all the tracks. Note that the removed tracks are kept
+	 * here for the sake of the undo operation. Such a track is no longer connected to its
+	 * vertices. The method shall be used only when writing the state to the disk.
+	 * 
+	 * @return All the tracks.
+	 */
+	public Collection<Track> getTracks() {
+		return Collections.unmodifiableCollection(this.tracks.values());
+	}
+	
+	/**
+	 * Returns the columnar copy of the geometry of the tracks connected to the network.
+	 * The removed tracks are not there. The method shall be used only in the model thread.
+	 * 
+	 * @return Track geometry store.
+	 */
+	public TrackGeometryStore getTrackGeometry() {
+		return this.trackGeometry;
+	}
+	
+	/**
+	 * Copies the current geometry of the track into the {@link TrackGeometryStore} and
+	 * the {@link NetworkIndex}. It must be called whenever the track or its vertices are
+	 * modified.
+	 * 
+	 * @param track The modified track.
+	 * @return Fluent interface.
+	 */
+	public World updateTrackGeometry(Track track) {
+		this.trackGeometry.update(track);
+		this.networkIndex.updateTrack(track);
+		return this;
+	}
+	
+	/**
+	 * Moves the vertex in the {@link NetworkIndex} to its current position. It must be called
+	 * whenever an existing vertex is moved.
+	 * 
+	 * @param vertex The modified vertex.
+	 * @return Fluent interface.
+	 */
+	public World updateVertexPosition(IVertex vertex) {
+		if(this.vertices.containsKey(vertex.getId())) {
+			this.networkIndex.updateVertex(vertex);
+		}
+		return this;
+	}
+	
+	/**
+	 * Returns the spatial index of the network. The method shall be used only in the model
+	 * thread.
+	 * 
+	 * @return Network index.
+	 */
+	public NetworkIndex getNetworkIndex() {
+		return this.networkIndex;
+	}
+	
 	/**
 	 * Removes the track from the world model.
 	 * 
@@ -492,13 +648,17 @@ public class World {
 		IVertex firstVertex = track.getFirstVertex();
 		IVertex secondVertex = track.getSecondVertex();
 		track.removeFromVertices();
+		this.trackGeometry.remove(track.getId());
+		this.networkIndex.removeTrack(track);
 		
 		if(firstVertex.hasNoTracks()) {
 			this.vertices.remove(firstVertex.getId());
+			this.networkIndex.removeVertex(firstVertex);
 			firstVertex.pos().getSegment().removeVertex(firstVertex);
 		}
 		if(secondVertex.hasNoTracks()) {
 			this.vertices.remove(secondVertex.getId());
+			this.networkIndex.removeVertex(secondVertex);
 			secondVertex.pos().getSegment().removeVertex(secondVertex);
 		}
 		return this;
@@ -516,7 +676,7 @@ public class World {
 		
 		for(int i = 0; i < this.dimX; i++) {
 			for(int j = 0; j < this.dimY; j++) {
-				map[i][j] = this.segments[i][j].isUsed();
+				map[i][j] = this.isSegmentUsed(i, j);
 			}
 		}
 		
@@ -524,25 +684,24 @@ public class World {
 	}
 	
 	/**
-	 * Produces the list of visible segments, using the information from the camera model. The method
-	 * must be called within the model thread.
+	 * Produces the list of the resident visible segments, using the information from the camera
+	 * model. The visible cells without a resident segment are skipped, so that zooming out does
+	 * not bring the whole world into the memory; they are empty anyway. The method must be called
+	 * within the model thread.
 	 * 
 	 * @param camera Camera information.
-	 * @return List of segments visible in this camera.
+	 * @return List of the resident segments visible in this camera.
 	 */
 	public Collection<Segment> getVisibleSegments(AbstractCameraModelFoundation camera) {
 		Collection<Segment> collection = new LinkedList<>();
-		int whereStartsX = (int) Math.round(Math.floor(camera.getPosX() / Segment.SIZE_D));
-		int whereStartsY = (int) Math.round(Math.floor(camera.getPosY() / Segment.SIZE_D));
-		
-		int whereEndsX = (int) Math.round(Math.floor((camera.getPosX() + camera.getViewportWidth()) / Segment.SIZE_D));
-		int whereEndsY = (int) Math.round(Math.floor((camera.getPosY() + camera.getViewportHeight()) / Segment.SIZE_D));
-		
-		int size = (int)((whereEndsX - whereStartsX + 1) * (whereEndsY - whereStartsY + 1));
+		int whereStartsX = Math.max(0, (int) Math.floor(camera.getPosX() / Segment.SIZE_D));
+		int whereStartsY = Math.max(0, (int) Math.floor(camera.getPosY() / Segment.SIZE_D));
+		int whereEndsX = Math.min(this.dimX - 1, (int) Math.floor((camera.getPosX() + camera.getViewportWidth()) / Segment.SIZE_D));
+		int whereEndsY = Math.min(this.dimY - 1, (int) Math.floor((camera.getPosY() + camera.getViewportHeight()) / Segment.SIZE_D));
 		
 		for(int x = whereStartsX; x <= whereEndsX; x++) {
 			for(int y = whereStartsY; y <= whereEndsY; y++) {
-				Segment s = this.findSegment(x, y);
+				Segment s = this.segments[x][y];
 				if(null != s) {
 					collection.add(s);
 				}
@@ -551,9 +710,37 @@ public class World {
 		return collection;
 	}
 	
+	/**
+	 * Describes all the visible segments for the renderer, including the cells without
+	 * a resident segment. Such cells are described only by their position, so no segment
+	 * is allocated for them. The method must be called within the model thread.
+	 * 
+	 * @param camera Camera information.
+	 * @return Snapshot of the visible segments.
+	 */
+	public VisibleSegmentSnapshot exportVisibleSegments(AbstractCameraModelFoundation camera) {
+		VisibleSegmentSnapshot vss = new VisibleSegmentSnapshot();
+		int whereStartsX = Math.max(0, (int) Math.floor(camera.getPosX() / Segment.SIZE_D));
+		int whereStartsY = Math.max(0, (int) Math.floor(camera.getPosY() / Segment.SIZE_D));
+		int whereEndsX = Math.min(this.dimX - 1, (int) Math.floor((camera.getPosX() + camera.getViewportWidth()) / Segment.SIZE_D));
+		int whereEndsY = Math.min(this.dimY - 1, (int) Math.floor((camera.getPosY() + camera.getViewportHeight()) / Segment.SIZE_D));
+		
+		for(int x = whereStartsX; x <= whereEndsX; x++) {
+			for(int y = whereStartsY; y <= whereEndsY; y++) {
+				Segment s = this.segments[x][y];
+				if(null != s) {
+					vss.addSegmentInfo(new SegmentInfo(s));
+				} else {
+					vss.addSegmentInfo(new SegmentInfo(x, y));
+				}
+			}
+		}
+		return vss;
+	}
+	
 	/**
 	 * Searches for all tracks that are within the given area. The track is considered to be
-	 * in the area, if it has both vertices in it.
+	 * in the area, if it has both vertices in it. The candidates come from the {@link NetworkIndex}.
 	 * 
 	 * @param x1
 	 * @param y1
@@ -573,51 +760,91 @@ public class World {
 			y2 = tmp;
 		}
 		
+		List<Track> candidates = new ArrayList<>();
+		this.networkIndex.findTrackCandidates(x1, y1, x2, y2, candidates);
 		LinkedHashSet<Track> selectedTracks = new LinkedHashSet<>();
-		int whereStartsX = (int) Math.round(Math.floor(x1 / Segment.SIZE_D));
-		int whereStartsY = (int) Math.round(Math.floor(y1 / Segment.SIZE_D));
-		
-		int whereEndsX = (int) Math.round(Math.floor(x2 / Segment.SIZE_D));
-		int whereEndsY = (int) Math.round(Math.floor(y2 / Segment.SIZE_D));
-
-		for(int x = whereStartsX; x <= whereEndsX; x++) {
-			for(int y = whereStartsY; y <= whereEndsY; y++) {
-				Segment s = this.findSegment(x, y);
-				if(null != s) {
-					for(IVertex vertex: s.getVertices()) {
-						double ox = vertex.pos().getAbsoluteX();
-						double oy = vertex.pos().getAbsoluteY();
-						
-						if(!(x1 <= ox && ox <= x2 && y1 <= oy && oy <= y2)) {
-							continue;
-						} else {
-						}
-						
-						Track t1 = vertex.getFirstTrack();
-						Track t2 = vertex.getSecondTrack();
-						if(null != t1) {
-							IVertex opposite = t1.getOppositeVertex(vertex);
-							ox = opposite.pos().getAbsoluteX();
-							oy = opposite.pos().getAbsoluteY();
-							if(x1 <= ox && ox <= x2 && y1 <= oy && oy <= y2) {
-								selectedTracks.add(t1);
-							}
-						}
-						if(null != t2) {
-							IVertex opposite = t2.getOppositeVertex(vertex);
-							ox = opposite.pos().getAbsoluteX();
-							oy = opposite.pos().getAbsoluteY();
-							if(x1 <= ox && ox <= x2 && y1 <= oy && oy <= y2) {
-								selectedTracks.add(t2);
-							}
-						}
-					}
-				}
+		for(Track track: candidates) {
+			if(isInArea(track.getFirstVertex(), x1, y1, x2, y2) && isInArea(track.getSecondVertex(), x1, y1, x2, y2)) {
+				selectedTracks.add(track);
 			}
 		}
 		return selectedTracks;
 	}
 	
+	/**
+	 * Searches for all tracks that cross the given area or lie inside it.
+	 * 
+	 * @param x1
+	 * @param y1
+	 * @param x2
+	 * @param y2
+	 * @return List of matching tracks.
+	 */
+	public List<Track> findTracksCrossingArea(double x1, double y1, double x2, double y2) {
+		return this.networkIndex.findTracks(x1, y1, x2, y2);
+	}
+	
+	/**
+	 * Finds the vertex nearest to the given point. The query uses the {@link NetworkIndex},
+	 * so it is cheap enough to be called on every mouse move.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param radius Maximum distance of the vertex.
+	 * @return The nearest vertex or null, if there is none within the radius.
+	 */
+	public IVertex findNearestVertex(double x, double y, double radius) {
+		List<IVertex> found = this.networkIndex.findNearestVertices(x, y, 1, radius);
+		return found.isEmpty() ? null : found.get(0);
+	}
+	
+	/**
+	 * Finds up to <tt>k</tt> vertices nearest to the given point.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param k Maximum number of the vertices.
+	 * @param radius Maximum distance of the vertices.
+	 * @return Vertices, from the nearest one.
+	 */
+	public List<IVertex> findNearestVertices(double x, double y, int k, double radius) {
+		return this.networkIndex.findNearestVertices(x, y, k, radius);
+	}
+	
+	/**
+	 * Finds the track point nearest to the given point. The position of the point on the
+	 * track can be passed to {@link Track#getPointCharacteristics(double)}.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param radius Maximum distance of the track.
+	 * @return The nearest track point or null, if there is no track within the radius.
+	 */
+	public TrackPoint findNearestTrackPoint(double x, double y, double radius) {
+		List<TrackPoint> found = this.networkIndex.findNearestTrackPoints(x, y, 1, radius);
+		return found.isEmpty() ? null : found.get(0);
+	}
+	
+	/**
+	 * Finds the points of up to <tt>k</tt> tracks nearest to the given point, one point
+	 * per track.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param k Maximum number of the tracks.
+	 * @param radius Maximum distance of the tracks.
+	 * @return Track points, from the nearest one.
+	 */
+	public List<TrackPoint> findNearestTrackPoints(double x, double y, int k, double radius) {
+		return this.networkIndex.findNearestTrackPoints(x, y, k, radius);
+	}
+	
+	private static boolean isInArea(IVertex vertex, double x1, double y1, double x2, double y2) {
+		double x = vertex.pos().getAbsoluteX();
+		double y = vertex.pos().getAbsoluteY();
+		return x1 <= x && x <= x2 && y1 <= y && y <= y2;
+	}
+	
 	/**
 	 * Exports the editable part of the world to the scene manager.
 	 * 
@@ -626,45 +853,44 @@ public class World {
 	 * @param batch Are we in the batch mode?
 	 */
 	public void exportScene(SceneManager sm, AbstractCameraModelFoundation camera, boolean batch) {
+		this.exportScene(sm, camera, batch, true);
+	}
+	
+	/**
+	 * Exports the visible part of the world with new track painters, which are not shared
+	 * with the interactive scene. Such a scene can be drawn by another thread, with another
+	 * camera, i.e. for exporting the map to an image. Like the other export, it must be
+	 * called by the thread that owns the world.
+	 * 
+	 * @param sm Scene manager.
+	 * @param camera Camera that selects the exported segments.
+	 */
+	public void exportDetachedScene(SceneManager sm, AbstractCameraModelFoundation camera) {
+		this.exportScene(sm, camera, false, false);
+	}
+	
+	private void exportScene(SceneManager sm, AbstractCameraModelFoundation camera, boolean batch, boolean reusePainters) {
 		Collection<Segment> visibleSegments = this.getVisibleSegments(camera);
+		// The bitmaps are loaded by the renderer through SegmentBitmapCache.
+		VisibleSegmentSnapshot vss = this.exportVisibleSegments(camera);
 		
 		int vertexNum = 0;
-		VisibleSegmentSnapshot vss = new VisibleSegmentSnapshot();
 		for(Segment segment: visibleSegments) {
-			// TODO: Add some smarter buffering that recovers the unused segment image memory.
-			vertexNum += segment.getVertexNum();
-			Image img = null;
-			if(null != segment.getImagePath()) {
-				img = this.loadedSegmentBitmaps.get(segment.getImagePath());
-				if(null == img) {
-					try {
-						img = ImageIO.read(new File(segment.getImagePath()));
-						this.loadedSegmentBitmaps.put(segment.getImagePath(), img);
-					} catch(IOException exception) {
-						logger.error("Exception occurred while loading the segment bitmap.", exception);
-					}
-				}
-			}
-			vss.addSegmentInfo(new SegmentInfo(segment, img));
+			segment.refreshSceneData();
+			vertexNum += segment.getSceneIds().length;
 		}
 		
+		// The segments keep their vertices and tracks exported, until they change.
 		double points[] = new double[vertexNum * 2];
 		long ids[] = new long[vertexNum];
 		int i = 0;
-		int j = 0;
 		Set<Track> visibleTracks = new HashSet<>();
 		for(Segment segment: visibleSegments) {
-			for(IVertex vertex: segment.getVertices()) {
-				ids[j++] = vertex.getId();
-				points[i++] = vertex.pos().getAbsoluteX();
-				points[i++] = vertex.pos().getAbsoluteY();
-				if(null != vertex.getFirstTrack()) {
-					visibleTracks.add(vertex.getFirstTrack());
-				}
-				if(null != vertex.getSecondTrack()) {
-					visibleTracks.add(vertex.getSecondTrack());
-				}
-			}
+			long segmentIds[] = segment.getSceneIds();
+			System.arraycopy(segmentIds, 0, ids, i, segmentIds.length);
+			System.arraycopy(segment.getScenePoints(), 0, points, i * 2, segmentIds.length * 2);
+			i += segmentIds.length;
+			Collections.addAll(visibleTracks, segment.getSceneTracks());
 		}
 		CommittedTrackSnapshot snap = new CommittedTrackSnapshot(visibleTracks.size());
 		CommittedTrackObjectSnapshot trackObjectSnap = null;
@@ -672,21 +898,23 @@ public class World {
 		Set<Stop> stops = new HashSet<>();
 		snap.setVertexArray(points, ids);
 		i = 0;
+		Map<Track, CachedTrackPainter> painters = new HashMap<>(visibleTracks.size() * 2);
+		TrackGeometryStore geometry = this.trackGeometry;
 		for(Track track: visibleTracks) {
-			// calculate deltas for the metadata - here, they are given in the relative coordinates.
-			Segment segment = track.getFirstVertex().pos().getSegment();
-			double dx = track.getFirstVertex().pos().getAbsoluteX();
-			double dy = track.getFirstVertex().pos().getAbsoluteY();
-			switch(track.getType()) {
-				case NetworkConst.TRACK_STRAIGHT:
-					snap.setTrackPainter(i++, new StraightTrackPainter(track.getId(), track.getMetadata(), dx, dy));
-					break;
-				case NetworkConst.TRACK_CURVED:
-					snap.setTrackPainter(i++, new CurvedTrackPainter(track.getId(), track.getMetadata(), dx, dy));
-					break;
-				case NetworkConst.TRACK_FREE:
-					snap.setTrackPainter(i++, new FreeTrackPainter(track.getId(), track.getMetadata(), dx, dy));
-					break;
+			int index = geometry.indexOf(track.getId());
+			if(TrackGeometryStore.NO_TRACK != index) {
+				// The metadata are given in the coordinates relative to the first vertex.
+				byte type = geometry.getType(index);
+				double dx = geometry.getX1(index);
+				double dy = geometry.getY1(index);
+				CachedTrackPainter cached = (reusePainters ? this.trackPainters.get(track) : null);
+				if(null == cached || !cached.isValidFor(type, track.getMetadata(), dx, dy)) {
+					cached = new CachedTrackPainter(track.getId(), type, track.getMetadata(), dx, dy);
+				}
+				if(null != cached.getPainter()) {
+					painters.put(track, cached);
+					snap.setTrackPainter(i++, cached.getPainter());
+				}
 			}
 			if(track.hasTrackObjects()) {
 				if(null == trackObjectSnap) {
@@ -707,6 +935,10 @@ public class World {
 				}
 			}
 		}
+		// Painters of the tracks that left the viewport are forgotten.
+		if(reusePainters) {
+			this.trackPainters = painters;
+		}
 		if(!batch) {
 			sm.guard();
 		}
@@ -56,6 +56,44 @@ public class DefaultRecordImporter implements IRecordImporter {
 		}
 	}
 	
+	/**
+	 * Checks whether the vertex refers to some tracks only by their ID-s. The importers that
+	 * must switch the threads can skip the vertices, for which this method returns false.
+	 * 
+	 * @param rec The vertex record.
+	 * @return True, if {@link #importAllMissingNeighbors} would import something for this vertex.
+	 */
+	public static boolean hasMissingNeighbors(IVertexRecord rec) {
+		return (rec.getFirstTrack() == null && rec.getFirstTrackId() != IIdentifiable.NEUTRAL_ID) ||
+			(rec.getSecondTrack() == null && rec.getSecondTrackId() != IIdentifiable.NEUTRAL_ID);
+	}
+	
+	/**
+	 * Checks whether {@link #importMissingNeighboursSmarter} would import something for this
+	 * vertex, looking also at the vertices on the opposite ends of its tracks.
+	 * 
+	 * @param rootVertex The vertex record.
+	 * @return True, if something is missing.
+	 */
+	public static boolean hasMissingNeighborsSmarter(IVertexRecord rootVertex) {
+		if(hasMissingNeighbors(rootVertex)) {
+			return true;
+		}
+		if(null != rootVertex.getFirstTrack()) {
+			IVertexRecord lev1a = rootVertex.getFirstTrack().getOppositeVertex(rootVertex);
+			if(lev1a.hasAllTracks() && hasMissingNeighbors(lev1a)) {
+				return true;
+			}
+		}
+		if(null != rootVertex.getSecondTrack()) {
+			IVertexRecord lev1b = rootVertex.getSecondTrack().getOppositeVertex(rootVertex);
+			if(lev1b.hasAllTracks() && hasMissingNeighbors(lev1b)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	private void processSingleRecord(NetworkUnitOfWork populatedUnit, World world, IVertexRecord rec) {
 		if(rec.getFirstTrack() == null && rec.getFirstTrackId() != IIdentifiable.NEUTRAL_ID) {
 			TrackRecord tr = populatedUnit.importTrack(world, rec.getFirstTrackId());
@@ -40,7 +40,10 @@ public interface IRecordImporter {
 	public void importAllMissingNeighbors(NetworkUnitOfWork populatedUnit, IVertexRecord ... vertices);
 	/**
 	 * For each vertex, this method should analyze the tracks, and if there is only
-	 * their ID, the appropriate track records should be created.
+	 * their ID, the appropriate track records should be created. This is the batched
+	 * variant: the operations that touch many vertices should collect them and call
+	 * it once, because the implementations that delegate the work to another thread
+	 * handle the whole collection in a single hop.
 	 * 
 	 * @param populatedUnit
 	 * @param vertices 
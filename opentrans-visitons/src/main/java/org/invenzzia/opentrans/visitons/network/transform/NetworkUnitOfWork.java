@@ -18,17 +18,13 @@
 package org.invenzzia.opentrans.visitons.network.transform;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.List;
 import org.invenzzia.helium.data.interfaces.IIdentifiable;
 import org.invenzzia.opentrans.visitons.network.IVertex;
 import org.invenzzia.opentrans.visitons.network.IVertexRecord;
 import org.invenzzia.opentrans.visitons.network.Junction;
-import org.invenzzia.opentrans.visitons.network.NetworkConst;
 import org.invenzzia.opentrans.visitons.network.Track;
 import org.invenzzia.opentrans.visitons.network.TrackRecord;
 import org.invenzzia.opentrans.visitons.network.Vertex;
@@ -36,11 +32,11 @@ import org.invenzzia.opentrans.visitons.network.VertexRecord;
 import org.invenzzia.opentrans.visitons.network.World;
 import org.invenzzia.opentrans.visitons.network.objects.TrackObject.TrackObjectRecord;
 import org.invenzzia.opentrans.visitons.render.SceneManager;
-import org.invenzzia.opentrans.visitons.render.painters.CurvedTrackPainter;
-import org.invenzzia.opentrans.visitons.render.painters.FreeTrackPainter;
-import org.invenzzia.opentrans.visitons.render.painters.StraightTrackPainter;
+import org.invenzzia.opentrans.visitons.render.painters.CachedTrackPainter;
 import org.invenzzia.opentrans.visitons.render.scene.EditableTrackObjectSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.EditableTrackSnapshot;
+import org.invenzzia.opentrans.visitons.utils.collections.LongMap;
+import org.invenzzia.opentrans.visitons.utils.collections.LongSet;
 
 /**
  * Network unit of work is similar in its purpose to ordinary {@link UnitOfWork}
@@ -54,19 +50,19 @@ public class NetworkUnitOfWork {
 	/**
 	 * List of the tracks modified or added in this session.
 	 */
-	private Map<Long, TrackRecord> tracks;
+	private LongMap<TrackRecord> tracks;
 	/**
 	 * List of vertices modified or added in this session.
 	 */
-	private Map<Long, IVertexRecord> vertices;
+	private LongMap<IVertexRecord> vertices;
 	/**
 	 * Removed existing tracks - to be deleted from the world model.
 	 */
-	private Set<Long> removedTracks;
+	private LongSet removedTracks;
 	/**
 	 * Removed existing vertices - to be deleted from the world model.
 	 */
-	private Set<Long> removedVertices;
+	private LongSet removedVertices;
 	/**
 	 * Identify new tracks with negative ID-s to distinguish them from the
 	 * existing tracks.
@@ -77,12 +73,16 @@ public class NetworkUnitOfWork {
 	 * the existing tracks.
 	 */
 	private long nextVertexId = -IIdentifiable.INCREMENTATION_START;
+	/**
+	 * Painters from the previous export; the painters of the unchanged tracks are reused.
+	 */
+	private LongMap<CachedTrackPainter> exportedPainters = new LongMap<>();
 	
 	public NetworkUnitOfWork() {
-		this.tracks = new LinkedHashMap<>();
-		this.vertices = new LinkedHashMap<>();
-		this.removedTracks = new LinkedHashSet<>();
-		this.removedVertices = new LinkedHashSet<>();
+		this.tracks = new LongMap<>();
+		this.vertices = new LongMap<>();
+		this.removedTracks = new LongSet();
+		this.removedVertices = new LongSet();
 	}
 	
 	/**
@@ -133,7 +133,7 @@ public class NetworkUnitOfWork {
 		if(track.getId() == IIdentifiable.NEUTRAL_ID) {
 			track.setId(this.nextTrackId--);
 		}
-		this.tracks.put(Long.valueOf(track.getId()), track);
+		this.tracks.put(track.getId(), track);
 		return this;
 	}
 	
@@ -147,7 +147,7 @@ public class NetworkUnitOfWork {
 		if(vertex.getId() == IIdentifiable.NEUTRAL_ID) {
 			vertex.setId(this.nextVertexId--);
 		}
-		this.vertices.put(Long.valueOf(vertex.getId()), vertex);
+		this.vertices.put(vertex.getId(), vertex);
 		return this;
 	}
 	
@@ -171,6 +171,20 @@ public class NetworkUnitOfWork {
 		return this.tracks.get(id);
 	}
 	
+	/**
+	 * Returns the ID-s of all the vertices in this unit of work. The set is a copy, so it
+	 * can be passed to another thread.
+	 * 
+	 * @return Copy of the vertex ID-s.
+	 */
+	public LongSet getVertexIds() {
+		LongSet ids = new LongSet(this.vertices.size());
+		for(IVertexRecord record: this.vertices.values()) {
+			ids.add(record.getId());
+		}
+		return ids;
+	}
+	
 	/**
 	 * Imports the vertex from the domain model. This method may be called only in the
 	 * model thread. If the record with the given ID is alread in the unit of work, no
@@ -180,7 +194,7 @@ public class NetworkUnitOfWork {
 	 * @return Importex or existing track record.
 	 */
 	public IVertexRecord importVertex(World world, IVertex vertex) {
-		IVertexRecord record = this.vertices.get(Long.valueOf(vertex.getId()));
+		IVertexRecord record = this.vertices.get(vertex.getId());
 		if(null != record) {
 			return record;
 		}
@@ -188,7 +202,7 @@ public class NetworkUnitOfWork {
 			this.importTrack(world, ((Junction) vertex).getMasterTrack());
 		}
 		record = vertex.createRecord(this);
-		this.vertices.put(Long.valueOf(vertex.getId()), record);
+		this.vertices.put(vertex.getId(), record);
 		this.commonVertexImport(world, vertex, record);
 		return record;
 	}
@@ -203,7 +217,7 @@ public class NetworkUnitOfWork {
 	 * @return Importex or existing track record.
 	 */
 	public IVertexRecord importVertex(World world, long vertexId) {
-		IVertexRecord record = this.vertices.get(Long.valueOf(vertexId));
+		IVertexRecord record = this.vertices.get(vertexId);
 		if(null != record) {
 			return record;
 		}
@@ -214,7 +228,7 @@ public class NetworkUnitOfWork {
 		}
 		
 		record = vertex.createRecord(this);
-		this.vertices.put(Long.valueOf(vertex.getId()), record);
+		this.vertices.put(vertex.getId(), record);
 		this.commonVertexImport(world, vertex, record);
 		
 		return record;
@@ -230,7 +244,7 @@ public class NetworkUnitOfWork {
 	private void commonVertexImport(World world, IVertex vertex, IVertexRecord record) {
 		if(null != vertex.getFirstTrack()) {
 			IVertex another = vertex.getFirstTrack().getOppositeVertex(vertex);
-			IVertexRecord anotherRecord = this.vertices.get(Long.valueOf(another.getId()));
+			IVertexRecord anotherRecord = this.vertices.get(another.getId());
 			if(null != anotherRecord) {
 				TrackRecord tr = this.importTrack(world, vertex.getFirstTrack().getId());
 				record.replaceReferenceWithRecord(tr);
@@ -239,7 +253,7 @@ public class NetworkUnitOfWork {
 		}
 		if(null != vertex.getSecondTrack()) {
 			IVertex another = vertex.getSecondTrack().getOppositeVertex(vertex);
-			IVertexRecord anotherRecord = this.vertices.get(Long.valueOf(another.getId()));
+			IVertexRecord anotherRecord = this.vertices.get(another.getId());
 			if(null != anotherRecord) {
 				TrackRecord tr = this.importTrack(world, vertex.getSecondTrack().getId());
 				record.replaceReferenceWithRecord(tr);
@@ -258,7 +272,7 @@ public class NetworkUnitOfWork {
 	 * @return Imported or existing track record.
 	 */
 	public TrackRecord importTrack(World world, long trackId) {
-		TrackRecord record = this.tracks.get(Long.valueOf(trackId));
+		TrackRecord record = this.tracks.get(trackId);
 		if(null != record) {
 			return record;
 		}
@@ -290,7 +304,7 @@ public class NetworkUnitOfWork {
 	 * @return Imported or existing track record.
 	 */
 	public TrackRecord importTrack(World world, Track track) {
-		TrackRecord record = this.tracks.get(Long.valueOf(track.getId()));
+		TrackRecord record = this.tracks.get(track.getId());
 		if(null != record) {
 			return record;
 		}
@@ -311,6 +325,75 @@ public class NetworkUnitOfWork {
 		return record;
 	}
 
+	/**
+	 * Imports the tracks that connect the vertices of this unit of work with the given vertices.
+	 * Together with {@link #merge(NetworkUnitOfWork)}, it allows importing the records into
+	 * a separate unit of work in the model thread, without touching the unit of work which is
+	 * used by another thread: the records end up linked in the same way, as if they were
+	 * imported directly. The method may be called only in the model thread.
+	 * 
+	 * @param world The world.
+	 * @param vertexIds ID-s of the vertices in the unit of work, where the records will be merged.
+	 */
+	public void importConnectingTracks(World world, LongSet vertexIds) {
+		List<IVertexRecord> records = new ArrayList<>(this.vertices.values());
+		for(IVertexRecord record: records) {
+			if(record.hasUnimportedTracks()) {
+				IVertex vertex = world.findVertex(record.getId());
+				this.importConnectingTrack(world, vertex, record.getFirstTrackId(), vertexIds);
+				this.importConnectingTrack(world, vertex, record.getSecondTrackId(), vertexIds);
+			}
+		}
+	}
+	
+	private void importConnectingTrack(World world, IVertex vertex, long trackId, LongSet vertexIds) {
+		if(IIdentifiable.NEUTRAL_ID != trackId) {
+			Track track = world.findTrack(trackId);
+			if(vertexIds.contains(track.getOppositeVertex(vertex).getId())) {
+				this.importTrack(world, track);
+			}
+		}
+	}
+	
+	/**
+	 * Moves the records imported into another unit of work to this one. The records which
+	 * are already here are kept, and the new tracks are linked to them. The other unit of
+	 * work must contain only the imported records, and must not be used afterwards.
+	 * 
+	 * @param imported Unit of work with the imported records.
+	 */
+	public void merge(NetworkUnitOfWork imported) {
+		Preconditions.checkArgument(imported.removedTracks.isEmpty() && imported.removedVertices.isEmpty(), "Only the imported records can be merged.");
+		List<TrackRecord> newTracks = new ArrayList<>(imported.tracks.size());
+		for(TrackRecord track: imported.tracks.values()) {
+			Preconditions.checkArgument(track.isPersisted(), "Only the imported records can be merged.");
+			if(!this.tracks.containsKey(track.getId())) {
+				this.tracks.put(track.getId(), track);
+				newTracks.add(track);
+			}
+		}
+		for(IVertexRecord vertex: imported.vertices.values()) {
+			Preconditions.checkArgument(vertex.isPersisted(), "Only the imported records can be merged.");
+			if(!this.vertices.containsKey(vertex.getId())) {
+				this.vertices.put(vertex.getId(), vertex);
+			}
+		}
+		// A record missing here can reference only other missing records, with the exception
+		// of the vertices of the new tracks.
+		for(TrackRecord track: newTracks) {
+			this.linkVertex(track, track.getFirstVertex());
+			this.linkVertex(track, track.getSecondVertex());
+		}
+	}
+	
+	private void linkVertex(TrackRecord track, IVertexRecord vertex) {
+		IVertexRecord existing = this.vertices.get(vertex.getId());
+		if(existing != vertex) {
+			track.replaceVertex(vertex, existing);
+			existing.replaceReferenceWithRecord(track);
+		}
+	}
+
 	/**
 	 * We can remove a previously added track from the unit of work. The method
 	 * performs the detaching from the neighbouring vertices as well. If the track
@@ -354,7 +437,7 @@ public class NetworkUnitOfWork {
 		if(vertex.getSecondTrack() != null) {
 			this.removeTrack(vertex.getSecondTrack());
 		}
-		Long theId = Long.valueOf(vertex.getId());
+		long theId = vertex.getId();
 		this.vertices.remove(theId);
 		this.addRemovedVertexId(theId);
 	}
@@ -419,21 +502,21 @@ public class NetworkUnitOfWork {
 	}
 	
 	/**
-	 * Returns the set of all existing, but removed track ID-s.
+	 * Returns the ID-s of all existing, but removed tracks, in the order of removal.
 	 * 
-	 * @return 
+	 * @return Copy of the removed track ID-s.
 	 */
-	public Set<Long> getRemovedTracks() {
-		return ImmutableSet.copyOf(this.removedTracks);
+	public long[] getRemovedTracks() {
+		return this.removedTracks.toArray();
 	}
 	
 	/**
-	 * Returns the set of all existing, but removed vertex ID-s.
+	 * Returns the ID-s of all existing, but removed vertices, in the order of removal.
 	 * 
-	 * @return 
+	 * @return Copy of the removed vertex ID-s.
 	 */
-	public Set<Long> getRemovedVertices() {
-		return ImmutableSet.copyOf(this.removedVertices);
+	public long[] getRemovedVertices() {
+		return this.removedVertices.toArray();
 	}
 	
 	/**
@@ -445,18 +528,17 @@ public class NetworkUnitOfWork {
 		EditableTrackSnapshot snap = new EditableTrackSnapshot(tracks.size());
 		EditableTrackObjectSnapshot trackObjectSnap = null;
 		int i = 0;
+		LongMap<CachedTrackPainter> painters = new LongMap<>(this.tracks.size());
 		for(TrackRecord rec: this.tracks.values()) {
 			Preconditions.checkState(rec.getId() != IIdentifiable.NEUTRAL_ID, "Track record has a neutral ID.");
-			switch(rec.getType()) {
-				case NetworkConst.TRACK_STRAIGHT:
-					snap.setTrackPainter(i++, new StraightTrackPainter(rec.getId(), rec.getMetadata()));
-					break;
-				case NetworkConst.TRACK_CURVED:
-					snap.setTrackPainter(i++, new CurvedTrackPainter(rec.getId(), rec.getMetadata()));
-					break;
-				case NetworkConst.TRACK_FREE:
-					snap.setTrackPainter(i++, new FreeTrackPainter(rec.getId(), rec.getMetadata()));
-					break;
+			long id = rec.getId();
+			CachedTrackPainter cached = this.exportedPainters.get(id);
+			if(null == cached || !cached.isValidFor(rec.getType(), rec.getMetadata(), 0.0, 0.0)) {
+				cached = new CachedTrackPainter(rec.getId(), rec.getType(), rec.getMetadata(), 0.0, 0.0);
+			}
+			if(null != cached.getPainter()) {
+				painters.put(id, cached);
+				snap.setTrackPainter(i++, cached.getPainter());
 			}
 			if(rec.hasTrackObjects()) {
 				if(null == trackObjectSnap) {
@@ -488,6 +570,7 @@ public class NetworkUnitOfWork {
 		//snap.setVertexDebugBuf1(tangents1);
 		//snap.setVertexDebugBuf2(tangents2);
 		snap.setVertexArray(points, ids);
+		this.exportedPainters = painters;
 		sm.guard();
 		try {
 			sm.batchUpdateResource(EditableTrackSnapshot.class, snap);
@@ -181,7 +181,8 @@ public class TransformEngine {
 			double tv1 = Geometry.normalizeAngle(v1.oppositeTangentFor(tr) + Math.PI);
 			double tv2;
 			if(v2.hasOneTrack()) {
-				tv2 = LineOps.getTangent(v2.x(), v2.y(), v1.x(), v1.y());
+				// The open end keeps its direction; the curve is bent between the vertices.
+				tv2 = v2.tangentFor(tr);
 			} else {
 				tv2 = Geometry.normalizeAngle(v2.oppositeTangentFor(tr) + Math.PI);
 			}
@@ -191,25 +192,33 @@ public class TransformEngine {
 			
 			double metadata[] = new double[20];
 			if(LineOps.areParallel(tv1, tv2)) {
-				// If the lines are parallel, we need a special handling.
-				double buf[] = new double[22];
-				LineOps.toGeneral(v1.x(), v1.y(), v1.tangent(), 0, buf);
-				LineOps.toGeneral(v2.x(), v2.y(), v2.tangent(), 3, buf);
+				// If the lines are parallel, we need a special handling: both arcs meet in the
+				// middle point G, and their centers lie on the orthogonals in the vertices.
+				double buf[] = new double[29];
+				LineOps.toGeneral(v1.x(), v1.y(), tv1, 0, buf);
+				LineOps.toGeneral(v2.x(), v2.y(), tv2, 3, buf);
 				LineOps.toOrthogonal(0, 6, buf, v1.x(), v1.y());
 				LineOps.toOrthogonal(3, 9, buf, v2.x(), v2.y());
 
 				LineOps.middlePoint(v1.x(), v1.y(), v2.x(), v2.y(), 13, buf); // I'm G: 13
+				LineOps.middlePoint(v1.x(), v1.y(), 13, 15, buf);	// K
+				LineOps.middlePoint(v2.x(), v2.y(), 13, 17, buf);	// L
+				
+				LineOps.toOrthogonal(v1.x(), v1.y(), 15, 19, buf);
+				LineOps.toOrthogonal(v2.x(), v2.y(), 17, 22, buf);
+				LineOps.intersection(6, 19, 25, buf); // M point - center of the first arc
+				LineOps.intersection(9, 22, 27, buf); // N point - center of the second arc
 				mx = buf[13];
 				my = buf[14];
-				c1x = buf[15];
-				c1y = buf[16];
-				c2x = buf[17];
-				c2y = buf[18];
+				c1x = buf[25];
+				c1y = buf[26];
+				c2x = buf[27];
+				c2y = buf[28];
 			} else {
 				double buf[] = new double[60];
 				// Find points E and F
-				LineOps.toGeneral(v1.x(), v1.y(), v1.tangent(), 0, buf);
-				LineOps.toGeneral(v2.x(), v2.y(), v2.tangent(), 3, buf);
+				LineOps.toGeneral(v1.x(), v1.y(), tv1, 0, buf);
+				LineOps.toGeneral(v2.x(), v2.y(), tv2, 3, buf);
 				LineOps.toOrthogonal(0, 6, buf, v1.x(), v1.y());
 				LineOps.toOrthogonal(3, 9, buf, v2.x(), v2.y());
 				LineOps.intersection(0, 3, 12, buf); // I'm E: 12 (generals)
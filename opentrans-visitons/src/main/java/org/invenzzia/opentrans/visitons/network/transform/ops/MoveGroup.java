@@ -18,12 +18,17 @@
 package org.invenzzia.opentrans.visitons.network.transform.ops;
 
 import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import org.invenzzia.opentrans.visitons.network.IVertexRecord;
 import org.invenzzia.opentrans.visitons.network.NetworkConst;
 import org.invenzzia.opentrans.visitons.network.TrackRecord;
-import org.invenzzia.opentrans.visitons.network.Vertex;
 import org.invenzzia.opentrans.visitons.network.VertexRecord;
+import org.invenzzia.opentrans.visitons.network.transform.DefaultRecordImporter;
 import org.invenzzia.opentrans.visitons.network.transform.ITransformAPI;
 
 /**
@@ -49,32 +54,46 @@ public class MoveGroup implements IOperation {
 				return false;
 			}
 		}
-		// Move all vertices.
-		Set<Object> updatedElements = new LinkedHashSet<>();
+		// Move all vertices, and collect the ones whose neighbours must be imported.
+		Set<VertexRecord> updatedVertices = new LinkedHashSet<>();
+		Map<VertexRecord, TrackRecord> connectedVertices = new LinkedHashMap<>();
 		for(TrackRecord tr: tracks) {
 			tr.moveMetadataPointsByDelta(dx, dy);
 			if(tr.getFirstVertex() instanceof VertexRecord) {
-				this.updatePosition((VertexRecord) tr.getFirstVertex(), tr, dx, dy, updatedElements, tracks);
+				this.updatePosition((VertexRecord) tr.getFirstVertex(), tr, dx, dy, updatedVertices, connectedVertices);
 			}
 			if(tr.getSecondVertex() instanceof VertexRecord) {
-				this.updatePosition((VertexRecord) tr.getSecondVertex(), tr, dx, dy, updatedElements, tracks);
+				this.updatePosition((VertexRecord) tr.getSecondVertex(), tr, dx, dy, updatedVertices, connectedVertices);
+			}
+		}
+		if(connectedVertices.isEmpty()) {
+			return true;
+		}
+		// Import all the missing neighbours at once, then bend the tracks outside the group.
+		List<IVertexRecord> missing = new ArrayList<>(connectedVertices.size());
+		for(VertexRecord vertex: connectedVertices.keySet()) {
+			if(DefaultRecordImporter.hasMissingNeighbors(vertex)) {
+				missing.add(vertex);
+			}
+		}
+		if(!missing.isEmpty()) {
+			this.api.getRecordImporter().importAllMissingNeighbors(this.api.getUnitOfWork(), missing);
+		}
+		for(Map.Entry<VertexRecord, TrackRecord> entry: connectedVertices.entrySet()) {
+			TrackRecord opposite = entry.getKey().getOppositeTrack(entry.getValue());
+			if(!tracks.contains(opposite)) {
+				opposite.setType(NetworkConst.TRACK_FREE);
+				this.api.calculateFreeCurve(opposite);
 			}
 		}
-
 		return true;
 	}
 
-	private void updatePosition(VertexRecord vertex, TrackRecord examinedTrack, double dx, double dy, Set<Object> updatedVertices, Set<TrackRecord> tracks) {
-		if(!updatedVertices.contains(vertex)) {
+	private void updatePosition(VertexRecord vertex, TrackRecord examinedTrack, double dx, double dy, Set<VertexRecord> updatedVertices, Map<VertexRecord, TrackRecord> connectedVertices) {
+		if(updatedVertices.add(vertex)) {
 			vertex.setPosition(vertex.x() + dx, vertex.y() + dy);
-			updatedVertices.add(vertex);
 			if(vertex.hasAllTracks()) {
-				this.api.getRecordImporter().importAllMissingNeighbors(this.api.getUnitOfWork(), vertex);
-				TrackRecord opposite = vertex.getOppositeTrack(examinedTrack);
-				if(!tracks.contains(opposite)) {
-					opposite.setType(NetworkConst.TRACK_FREE);
-					this.api.calculateFreeCurve(opposite);
-				}
+				connectedVertices.put(vertex, examinedTrack);
 			}
 		}
 	}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Singleton;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures how long each rendering stream takes to draw, and counts the drawn painters,
+ * vertices and vehicles. The renderer reports the times of every frame, and the streams
+ * report what they have drawn. The last {@link #SAMPLE_NUM} samples are kept in ring
+ * buffers allocated when the streams are registered, so that the rendering loop does not
+ * allocate anything. The percentiles are recomputed every {@link #SUMMARY_INTERVAL} frames.
+ * 
+ * <p>The layers that are not redrawn keep their previous image, so their streams do not
+ * report anything. They do not get a new sample then, and their last counts of the drawn
+ * items are still included in the frame totals. The counts are attributed to the stream
+ * that the reporting thread has rendered since its previous {@link #recordStream}.</p>
+ * 
+ * <p>The statistics can be read from any thread, drawn by the {@link org.invenzzia.opentrans.visitons.render.stream.FrameProfilerStream}
+ * or accessed through JMX, once {@link #registerMBean()} is called.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+@Singleton
+@ThreadSafe
+public class FrameProfiler implements FrameProfilerMXBean {
+	/**
+	 * Number of the recent frames used to compute the statistics.
+	 */
+	public static final int SAMPLE_NUM = 128;
+	/**
+	 * How often the percentiles are recomputed [frames].
+	 */
+	public static final int SUMMARY_INTERVAL = 16;
+	/**
+	 * Name of the JMX bean.
+	 */
+	public static final String MBEAN_NAME = "org.invenzzia.opentrans:type=FrameProfiler";
+	/**
+	 * Marks the streams that have not been drawn in the current frame.
+	 */
+	private static final long NOT_DRAWN = -1L;
+	private static final int PAINTERS = 0;
+	private static final int VERTICES = 1;
+	private static final int VEHICLES = 2;
+	private static final int COUNTER_NUM = 3;
+	private final Logger logger = LoggerFactory.getLogger(FrameProfiler.class);
+	/**
+	 * Names of the rendering streams, in the rendering order.
+	 */
+	@GuardedBy("this")
+	private String streamNames[] = new String[0];
+	/**
+	 * Ring buffers of durations [ns]. The last buffer is for the whole frame.
+	 */
+	@GuardedBy("this")
+	private long samples[][] = new long[1][SAMPLE_NUM];
+	/**
+	 * Sum of each ring buffer, to compute the mean without iterating.
+	 */
+	@GuardedBy("this")
+	private long sums[] = new long[1];
+	@GuardedBy("this")
+	private long lastTimes[] = new long[1];
+	@GuardedBy("this")
+	private long p99Times[] = new long[1];
+	/**
+	 * Durations of the frame being rendered [ns]. Each stream writes its own entry.
+	 */
+	private volatile long current[] = new long[1];
+	/**
+	 * Sorting buffer for the percentiles.
+	 */
+	@GuardedBy("this")
+	private final long scratch[] = new long[SAMPLE_NUM];
+	/**
+	 * Number of the filled samples in each ring buffer.
+	 */
+	@GuardedBy("this")
+	private int sampleNums[] = new int[1];
+	/**
+	 * Where the next sample of each ring buffer goes.
+	 */
+	@GuardedBy("this")
+	private int positions[] = new int[1];
+	@GuardedBy("this")
+	private long frameNum;
+	/**
+	 * Items counted by the current thread since its last {@link #recordStream}: painters,
+	 * vertices and vehicles. The layers may be drawn by several threads.
+	 */
+	private final ThreadLocal<int[]> threadCounts = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[COUNTER_NUM];
+		}
+	};
+	/**
+	 * Items drawn by each stream in the frame being rendered, {@link #COUNTER_NUM} per stream.
+	 * The entries of the streams that do not report are left untouched.
+	 */
+	private volatile int currentCounts[] = new int[0];
+	/**
+	 * Items drawn by each stream, when it was redrawn for the last time.
+	 */
+	@GuardedBy("this")
+	private int streamCounts[] = new int[0];
+	@GuardedBy("this")
+	private int painterNum;
+	@GuardedBy("this")
+	private int vertexNum;
+	@GuardedBy("this")
+	private int vehicleNum;
+	/**
+	 * Shall the {@link FrameProfilerStream} draw the statistics?
+	 */
+	private volatile boolean overlayVisible = false;
+	
+	/**
+	 * Registers the next rendering stream. All the collected samples are forgotten.
+	 * 
+	 * @param name Name of the stream shown in the statistics.
+	 */
+	public synchronized void addStream(String name) {
+		Preconditions.checkNotNull(name);
+		String names[] = Arrays.copyOf(this.streamNames, this.streamNames.length + 1);
+		names[this.streamNames.length] = name;
+		this.allocate(names);
+	}
+	
+	/**
+	 * Removes all the registered streams.
+	 */
+	public synchronized void clearStreams() {
+		this.allocate(new String[0]);
+	}
+	
+	@GuardedBy("this")
+	private void allocate(String names[]) {
+		int size = names.length + 1;
+		this.streamNames = names;
+		this.samples = new long[size][SAMPLE_NUM];
+		this.sums = new long[size];
+		this.lastTimes = new long[size];
+		this.p99Times = new long[size];
+		this.current = new long[size];
+		this.sampleNums = new int[size];
+		this.positions = new int[size];
+		this.currentCounts = new int[names.length * COUNTER_NUM];
+		this.streamCounts = new int[names.length * COUNTER_NUM];
+	}
+	
+	/**
+	 * Called by the renderer before drawing the frame.
+	 */
+	public void beginFrame() {
+		Arrays.fill(this.current, NOT_DRAWN);
+		Arrays.fill(this.threadCounts.get(), 0);
+	}
+	
+	/**
+	 * Called by the renderer after each stream. The streams of different layers may
+	 * report from different threads; the renderer waits for all of them before
+	 * {@link #endFrame(long)}.
+	 * 
+	 * @param stream Index of the stream in the rendering order.
+	 * @param time Time spent in the stream [ns].
+	 */
+	public void recordStream(int stream, long time) {
+		long frame[] = this.current;
+		int counts[] = this.currentCounts;
+		int thread[] = this.threadCounts.get();
+		if(stream < frame.length - 1 && (stream + 1) * COUNTER_NUM <= counts.length) {
+			frame[stream] = time;
+			System.arraycopy(thread, 0, counts, stream * COUNTER_NUM, COUNTER_NUM);
+		}
+		Arrays.fill(thread, 0);
+	}
+	
+	public void countPainters(int num) {
+		this.threadCounts.get()[PAINTERS] += num;
+	}
+	
+	public void countVertices(int num) {
+		this.threadCounts.get()[VERTICES] += num;
+	}
+	
+	public void countVehicles(int num) {
+		this.threadCounts.get()[VEHICLES] += num;
+	}
+	
+	/**
+	 * Called by the renderer after drawing the frame. Moves the collected data to the
+	 * statistics.
+	 * 
+	 * @param time Duration of the whole frame [ns].
+	 */
+	public synchronized void endFrame(long time) {
+		long frame[] = this.current;
+		if(frame.length != this.samples.length) {
+			return;
+		}
+		frame[frame.length - 1] = time;
+		for(int i = 0; i < frame.length; i++) {
+			if(NOT_DRAWN == frame[i]) {
+				continue;
+			}
+			int pos = this.positions[i];
+			long ring[] = this.samples[i];
+			this.sums[i] += frame[i] - ring[pos];
+			ring[pos] = frame[i];
+			this.lastTimes[i] = frame[i];
+			this.positions[i] = (pos + 1) % SAMPLE_NUM;
+			if(this.sampleNums[i] < SAMPLE_NUM) {
+				this.sampleNums[i]++;
+			}
+		}
+		// The counts of the streams that were not redrawn are still on the screen.
+		int counts[] = this.currentCounts;
+		System.arraycopy(counts, 0, this.streamCounts, 0, Math.min(counts.length, this.streamCounts.length));
+		int thread[] = this.threadCounts.get();
+		this.painterNum = thread[PAINTERS];
+		this.vertexNum = thread[VERTICES];
+		this.vehicleNum = thread[VEHICLES];
+		Arrays.fill(thread, 0);
+		for(int i = 0; i < this.streamCounts.length; i += COUNTER_NUM) {
+			this.painterNum += this.streamCounts[i + PAINTERS];
+			this.vertexNum += this.streamCounts[i + VERTICES];
+			this.vehicleNum += this.streamCounts[i + VEHICLES];
+		}
+		if((this.frameNum++ % SUMMARY_INTERVAL) == 0) {
+			for(int i = 0; i < frame.length; i++) {
+				this.p99Times[i] = this.computePercentile(this.samples[i], this.sampleNums[i], 0.99);
+			}
+		}
+	}
+	
+	@GuardedBy("this")
+	private long computePercentile(long ring[], int num, double percentile) {
+		if(0 == num) {
+			return 0L;
+		}
+		System.arraycopy(ring, 0, this.scratch, 0, num);
+		Arrays.sort(this.scratch, 0, num);
+		int idx = (int) Math.ceil(percentile * num) - 1;
+		return this.scratch[Math.max(idx, 0)];
+	}
+	
+	/**
+	 * @return Number of the registered streams.
+	 */
+	public synchronized int getStreamNum() {
+		return this.streamNames.length;
+	}
+	
+	public synchronized String getStreamName(int stream) {
+		return this.streamNames[stream];
+	}
+	
+	/**
+	 * @param stream Stream index.
+	 * @return Time spent in the stream in the last frame [ns].
+	 */
+	public synchronized long getLastTime(int stream) {
+		Preconditions.checkElementIndex(stream, this.streamNames.length);
+		return this.lastTimes[stream];
+	}
+	
+	/**
+	 * @param stream Stream index.
+	 * @return Mean time spent in the stream in the recent frames [ns].
+	 */
+	public synchronized long getMeanTime(int stream) {
+		Preconditions.checkElementIndex(stream, this.streamNames.length);
+		return this.mean(stream);
+	}
+	
+	/**
+	 * @param stream Stream index.
+	 * @return 99th percentile of the time spent in the stream in the recent frames [ns].
+	 */
+	public synchronized long getP99Time(int stream) {
+		Preconditions.checkElementIndex(stream, this.streamNames.length);
+		return this.p99Times[stream];
+	}
+	
+	@GuardedBy("this")
+	private long mean(int idx) {
+		if(0 == this.sampleNums[idx]) {
+			return 0L;
+		}
+		return this.sums[idx] / this.sampleNums[idx];
+	}
+	
+	@GuardedBy("this")
+	private double[] toMillis(long values[], boolean withFrame) {
+		int size = withFrame ? values.length : values.length - 1;
+		double result[] = new double[size];
+		for(int i = 0; i < size; i++) {
+			result[i] = values[i] / 1000000.0;
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized long getFrameNum() {
+		return this.frameNum;
+	}
+
+	@Override
+	public synchronized double getLastFrameTime() {
+		return this.lastTimes[this.streamNames.length] / 1000000.0;
+	}
+
+	@Override
+	public synchronized double getMeanFrameTime() {
+		return this.mean(this.streamNames.length) / 1000000.0;
+	}
+
+	@Override
+	public synchronized double getP99FrameTime() {
+		return this.p99Times[this.streamNames.length] / 1000000.0;
+	}
+
+	@Override
+	public synchronized String[] getStreamNames() {
+		return this.streamNames.clone();
+	}
+
+	@Override
+	public synchronized double[] getStreamLastTimes() {
+		return this.toMillis(this.lastTimes, false);
+	}
+
+	@Override
+	public synchronized double[] getStreamMeanTimes() {
+		double result[] = new double[this.streamNames.length];
+		for(int i = 0; i < result.length; i++) {
+			result[i] = this.mean(i) / 1000000.0;
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized double[] getStreamP99Times() {
+		return this.toMillis(this.p99Times, false);
+	}
+
+	@Override
+	public synchronized int getPainterNum() {
+		return this.painterNum;
+	}
+
+	@Override
+	public synchronized int getVertexNum() {
+		return this.vertexNum;
+	}
+
+	@Override
+	public synchronized int getVehicleNum() {
+		return this.vehicleNum;
+	}
+
+	@Override
+	public boolean isOverlayVisible() {
+		return this.overlayVisible;
+	}
+
+	@Override
+	public void setOverlayVisible(boolean overlayVisible) {
+		this.overlayVisible = overlayVisible;
+	}
+
+	@Override
+	public synchronized void reset() {
+		this.allocate(this.streamNames);
+		this.frameNum = 0;
+		this.painterNum = 0;
+		this.vertexNum = 0;
+		this.vehicleNum = 0;
+	}
+	
+	/**
+	 * Makes the statistics available through the platform MBean server under
+	 * {@link #MBEAN_NAME}. Registering twice is harmless.
+	 */
+	public void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			if(!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch(JMException exception) {
+			logger.error("Cannot register the frame profiler MBean.", exception);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render;
+
+/**
+ * Management interface of the {@link FrameProfiler}. The times are given in milliseconds,
+ * and the per-stream arrays are ordered in the same way, as {@link #getStreamNames()}.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public interface FrameProfilerMXBean {
+	/**
+	 * @return Number of frames profiled since the last reset.
+	 */
+	public long getFrameNum();
+	/**
+	 * @return Duration of the last frame [ms].
+	 */
+	public double getLastFrameTime();
+	/**
+	 * @return Mean duration of the recent frames [ms].
+	 */
+	public double getMeanFrameTime();
+	/**
+	 * @return 99th percentile of the recent frame durations [ms].
+	 */
+	public double getP99FrameTime();
+	/**
+	 * @return Names of the rendering streams.
+	 */
+	public String[] getStreamNames();
+	public double[] getStreamLastTimes();
+	public double[] getStreamMeanTimes();
+	public double[] getStreamP99Times();
+	/**
+	 * @return Number of track painters drawn in the last frame.
+	 */
+	public int getPainterNum();
+	/**
+	 * @return Number of vertices drawn in the last frame.
+	 */
+	public int getVertexNum();
+	/**
+	 * @return Number of vehicles drawn in the last frame.
+	 */
+	public int getVehicleNum();
+	public boolean isOverlayVisible();
+	public void setOverlayVisible(boolean overlayVisible);
+	/**
+	 * Forgets all the collected samples.
+	 */
+	public void reset();
+}
@@ -46,6 +46,11 @@ public class HoverCollector {
 	 * Additional information about the hover, i.e. which part is actually selected.
 	 */
 	private double position;
+	/**
+	 * The last emitted snapshot. The scene is updated only if the hovered item changes,
+	 * so that the renderer is not woken up for nothing.
+	 */
+	private HoveredItemSnapshot emitted;
 	
 	public void resetHoveredItem() {
 		this.type = 0;
@@ -68,10 +73,31 @@ public class HoverCollector {
 		this.position = position;
 	}
 	
+	/**
+	 * Takes the hovered item from another collector, if it has registered any. The
+	 * renderer uses one collector per layer and merges them in the drawing order.
+	 * 
+	 * @param collector The collector of a single layer.
+	 */
+	public void copyFrom(HoverCollector collector) {
+		if(IIdentifiable.NEUTRAL_ID != collector.id) {
+			this.type = collector.type;
+			this.id = collector.id;
+			this.number = collector.number;
+			this.position = collector.position;
+		}
+	}
+	
 	public void emitSnapshot(SceneManager sceneManager) {
 		if(IIdentifiable.NEUTRAL_ID != this.id) {
-			sceneManager.updateResource(HoveredItemSnapshot.class, new HoveredItemSnapshot(this.type, this.id, this.number, this.position));
-		} else {
+			if(null != this.emitted && this.emitted.getType() == this.type && this.emitted.getId() == this.id &&
+				this.emitted.getNumber() == this.number && this.emitted.getPosition() == this.position) {
+				return;
+			}
+			this.emitted = new HoveredItemSnapshot(this.type, this.id, this.number, this.position);
+			sceneManager.updateResource(HoveredItemSnapshot.class, this.emitted);
+		} else if(null != this.emitted) {
+			this.emitted = null;
 			sceneManager.updateResource(HoveredItemSnapshot.class, null);
 		}
 	}
@@ -38,6 +38,13 @@ public interface IRenderingStream {
 	 */
 	public void setFontRepository(FontRepository fontRepository);
 	
+	/**
+	 * The streams report the number of the drawn items here.
+	 * 
+	 * @param profiler 
+	 */
+	public void setFrameProfiler(FrameProfiler profiler);
+	
 	/**
 	 * Renders a single frame of the animation using the given graphics device and viewport
 	 * settings. For animations, the actual time of rendering the previous frame is given.
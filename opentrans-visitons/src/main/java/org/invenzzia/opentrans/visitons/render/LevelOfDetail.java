@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.invenzzia.opentrans.visitons.render;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Singleton;
+
+/**
+ * Decides how detailed the network should be drawn at the current zoom level. The
+ * thresholds are given as the size of a single segment on the screen in pixels:
+ * when the segment gets smaller than the threshold, the given kind of detail is
+ * simplified or skipped. The settings are read by the rendering thread, and may be
+ * changed from other threads.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+@Singleton
+public class LevelOfDetail {
+	public static final double DEFAULT_OUTLINE_SEGMENT_SIZE = 32.0;
+	public static final double DEFAULT_SIMPLIFIED_SEGMENT_SIZE = 160.0;
+	public static final double DEFAULT_VERTEX_SEGMENT_SIZE = 320.0;
+	public static final double DEFAULT_TRACK_OBJECT_SEGMENT_SIZE = 200.0;
+	public static final double DEFAULT_STOP_LABEL_SEGMENT_SIZE = 100.0;
+	/**
+	 * Below this size, the used segments are drawn as filled squares instead of tracks [px].
+	 */
+	private volatile double outlineSegmentSize = DEFAULT_OUTLINE_SEGMENT_SIZE;
+	/**
+	 * Below this size, the tracks are drawn as a single thin polyline [px].
+	 */
+	private volatile double simplifiedSegmentSize = DEFAULT_SIMPLIFIED_SEGMENT_SIZE;
+	/**
+	 * Below this size, the vertices are not drawn [px].
+	 */
+	private volatile double vertexSegmentSize = DEFAULT_VERTEX_SEGMENT_SIZE;
+	/**
+	 * Below this size, the track objects are not drawn [px].
+	 */
+	private volatile double trackObjectSegmentSize = DEFAULT_TRACK_OBJECT_SEGMENT_SIZE;
+	/**
+	 * Below this size, the stop labels are not drawn [px].
+	 */
+	private volatile double stopLabelSegmentSize = DEFAULT_STOP_LABEL_SEGMENT_SIZE;
+	
+	/**
+	 * @param camera Camera snapshot.
+	 * @return Size of a single segment on the screen [px].
+	 */
+	public static double getSegmentSize(CameraModelSnapshot camera) {
+		return CameraModelSnapshot.SEGMENT_SIZE / camera.getMpp();
+	}
+	
+	/**
+	 * Checks whether the given point, extended by the margin, falls into the viewport.
+	 * 
+	 * @param camera Camera snapshot.
+	 * @param x Screen X coordinate [px].
+	 * @param y Screen Y coordinate [px].
+	 * @param margin Size of the drawn item around the point [px].
+	 * @return True, if the item might be visible.
+	 */
+	public static boolean isOnScreen(CameraModelSnapshot camera, int x, int y, int margin) {
+		return x + margin >= 0 && y + margin >= 0 && x - margin <= camera.getViewportWidthPx() && y - margin <= camera.getViewportHeightPx();
+	}
+	
+	public boolean isOutlineLevel(CameraModelSnapshot camera) {
+		return getSegmentSize(camera) < this.outlineSegmentSize;
+	}
+	
+	public boolean isSimplifiedLevel(CameraModelSnapshot camera) {
+		return getSegmentSize(camera) < this.simplifiedSegmentSize;
+	}
+	
+	public boolean areVerticesVisible(CameraModelSnapshot camera) {
+		return getSegmentSize(camera) >= this.vertexSegmentSize;
+	}
+	
+	public boolean areTrackObjectsVisible(CameraModelSnapshot camera) {
+		return getSegmentSize(camera) >= this.trackObjectSegmentSize;
+	}
+	
+	public boolean areStopLabelsVisible(CameraModelSnapshot camera) {
+		return getSegmentSize(camera) >= this.stopLabelSegmentSize;
+	}
+
+	public double getOutlineSegmentSize() {
+		return this.outlineSegmentSize;
+	}
+
+	public void setOutlineSegmentSize(double outlineSegmentSize) {
+		this.outlineSegmentSize = this.checkSize(outlineSegmentSize);
+	}
+
+	public double getSimplifiedSegmentSize() {
+		return this.simplifiedSegmentSize;
+	}
+
+	public void setSimplifiedSegmentSize(double simplifiedSegmentSize) {
+		this.simplifiedSegmentSize = this.checkSize(simplifiedSegmentSize);
+	}
+
+	public double getVertexSegmentSize() {
+		return this.vertexSegmentSize;
+	}
+
+	public void setVertexSegmentSize(double vertexSegmentSize) {
+		this.vertexSegmentSize = this.checkSize(vertexSegmentSize);
+	}
+
+	public double getTrackObjectSegmentSize() {
+		return this.trackObjectSegmentSize;
+	}
+
+	public void setTrackObjectSegmentSize(double trackObjectSegmentSize) {
+		this.trackObjectSegmentSize = this.checkSize(trackObjectSegmentSize);
+	}
+
+	public double getStopLabelSegmentSize() {
+		return this.stopLabelSegmentSize;
+	}
+
+	public void setStopLabelSegmentSize(double stopLabelSegmentSize) {
+		this.stopLabelSegmentSize = this.checkSize(stopLabelSegmentSize);
+	}
+	
+	private double checkSize(double size) {
+		Preconditions.checkArgument(size >= 0.0, "The segment size threshold cannot be negative.");
+		return size;
+	}
+}
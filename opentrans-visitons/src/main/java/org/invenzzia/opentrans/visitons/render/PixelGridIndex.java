@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.invenzzia.opentrans.visitons.render;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the rectangles in the pixel space, used for finding the objects
+ * under the mouse cursor without checking all of them. The index is immutable: it is
+ * built once, when the painters recalculate their shapes for the new camera position,
+ * and queried on every frame.
+ * 
+ * <p>The rectangles are identified by their indices in the source arrays, and the
+ * query returns the candidates in the ascending order, so that the caller can keep
+ * the drawing order when deciding which object is hovered. Rectangles with NaN
+ * coordinates are not indexed. The instance is not thread-safe; it is meant to be
+ * used by the rendering thread.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class PixelGridIndex {
+	/**
+	 * Minimum size of a single grid cell [px].
+	 */
+	public static final double CELL_SIZE = 64.0;
+	/**
+	 * Maximum number of the cells in a single row or column.
+	 */
+	private static final int MAX_DIMENSION = 256;
+	/**
+	 * Rectangles spanning more cells are not put into the grid, but checked on every
+	 * query, so that a huge arc does not fill the whole grid.
+	 */
+	private static final int MAX_ITEM_CELLS = 64;
+	
+	private final double minX[];
+	private final double minY[];
+	private final double maxX[];
+	private final double maxY[];
+	/**
+	 * Grid origin in the pixel space.
+	 */
+	private double originX, originY;
+	private double cellSize = CELL_SIZE;
+	private int cols, rows;
+	/**
+	 * Offsets of the cell item lists in {@link #cellItems}; the list of the cell
+	 * <tt>c</tt> spans from <tt>cellStart[c]</tt> to <tt>cellStart[c + 1]</tt>.
+	 */
+	private int cellStart[];
+	private int cellItems[];
+	/**
+	 * Rectangles too big to put them into the grid.
+	 */
+	private int largeItems[];
+	/**
+	 * Marks the items already reported by the current query.
+	 */
+	private final int stamps[];
+	private int currentStamp;
+	/**
+	 * The results of the last query.
+	 */
+	private int results[];
+	private int resultNum;
+	
+	public PixelGridIndex(double minX[], double minY[], double maxX[], double maxY[]) {
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.stamps = new int[minX.length];
+		this.results = new int[16];
+		this.build();
+	}
+	
+	/**
+	 * Returns the number of the indexed rectangles, including those that were skipped.
+	 * 
+	 * @return Number of rectangles.
+	 */
+	public int size() {
+		return this.minX.length;
+	}
+	
+	/**
+	 * Finds all the rectangles that intersect the given area. The results can be read with
+	 * {@link #getResult(int)} until the next query.
+	 * 
+	 * @return Number of the found rectangles.
+	 */
+	public int query(double x0, double y0, double x1, double y1) {
+		this.resultNum = 0;
+		if(++this.currentStamp == 0) {
+			Arrays.fill(this.stamps, 0);
+			this.currentStamp = 1;
+		}
+		if(this.cols > 0) {
+			int c0 = Math.max(0, this.col(x0));
+			int c1 = Math.min(this.cols - 1, this.col(x1));
+			int r0 = Math.max(0, this.row(y0));
+			int r1 = Math.min(this.rows - 1, this.row(y1));
+			for(int r = r0; r <= r1; r++) {
+				for(int c = c0; c <= c1; c++) {
+					int cell = r * this.cols + c;
+					for(int i = this.cellStart[cell]; i < this.cellStart[cell + 1]; i++) {
+						this.check(this.cellItems[i], x0, y0, x1, y1);
+					}
+				}
+			}
+		}
+		for(int item: this.largeItems) {
+			this.check(item, x0, y0, x1, y1);
+		}
+		Arrays.sort(this.results, 0, this.resultNum);
+		return this.resultNum;
+	}
+	
+	/**
+	 * @param i Result number, from 0 to the value returned by {@link #query}.
+	 * @return Index of the found rectangle.
+	 */
+	public int getResult(int i) {
+		return this.results[i];
+	}
+	
+	private void check(int item, double x0, double y0, double x1, double y1) {
+		if(this.stamps[item] == this.currentStamp) {
+			return;
+		}
+		this.stamps[item] = this.currentStamp;
+		if(this.minX[item] <= x1 && this.maxX[item] >= x0 && this.minY[item] <= y1 && this.maxY[item] >= y0) {
+			if(this.resultNum == this.results.length) {
+				this.results = Arrays.copyOf(this.results, this.resultNum * 2);
+			}
+			this.results[this.resultNum++] = item;
+		}
+	}
+	
+	private int col(double x) {
+		return (int) Math.floor((x - this.originX) / this.cellSize);
+	}
+	
+	private int row(double y) {
+		return (int) Math.floor((y - this.originY) / this.cellSize);
+	}
+	
+	private boolean isValid(int item) {
+		return !(Double.isNaN(this.minX[item]) || Double.isNaN(this.minY[item]) || Double.isNaN(this.maxX[item]) || Double.isNaN(this.maxY[item]));
+	}
+	
+	private boolean isLarge(int item) {
+		long w = this.col(this.maxX[item]) - this.col(this.minX[item]) + 1;
+		long h = this.row(this.maxY[item]) - this.row(this.minY[item]) + 1;
+		return w * h > MAX_ITEM_CELLS;
+	}
+	
+	/**
+	 * Two passes: the first one counts the items in every cell, the second one fills the
+	 * flat item array.
+	 */
+	private void build() {
+		int num = this.minX.length;
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < num; i++) {
+			if(this.isValid(i)) {
+				x0 = Math.min(x0, this.minX[i]);
+				y0 = Math.min(y0, this.minY[i]);
+				x1 = Math.max(x1, this.maxX[i]);
+				y1 = Math.max(y1, this.maxY[i]);
+			}
+		}
+		if(x0 > x1) {
+			this.cellStart = new int[1];
+			this.cellItems = new int[0];
+			this.largeItems = new int[0];
+			return;
+		}
+		this.originX = x0;
+		this.originY = y0;
+		this.cellSize = Math.max(CELL_SIZE, Math.max(x1 - x0, y1 - y0) / MAX_DIMENSION);
+		this.cols = this.col(x1) + 1;
+		this.rows = this.row(y1) + 1;
+		
+		int cells = this.cols * this.rows;
+		this.cellStart = new int[cells + 1];
+		int largeNum = 0;
+		for(int i = 0; i < num; i++) {
+			if(!this.isValid(i)) {
+				continue;
+			}
+			if(this.isLarge(i)) {
+				largeNum++;
+				continue;
+			}
+			for(int r = this.row(this.minY[i]); r <= this.row(this.maxY[i]); r++) {
+				for(int c = this.col(this.minX[i]); c <= this.col(this.maxX[i]); c++) {
+					this.cellStart[r * this.cols + c + 1]++;
+				}
+			}
+		}
+		for(int c = 0; c < cells; c++) {
+			this.cellStart[c + 1] += this.cellStart[c];
+		}
+		this.cellItems = new int[this.cellStart[cells]];
+		this.largeItems = new int[largeNum];
+		int cursor[] = Arrays.copyOf(this.cellStart, cells);
+		largeNum = 0;
+		for(int i = 0; i < num; i++) {
+			if(!this.isValid(i)) {
+				continue;
+			}
+			if(this.isLarge(i)) {
+				this.largeItems[largeNum++] = i;
+				continue;
+			}
+			for(int r = this.row(this.minY[i]); r <= this.row(this.maxY[i]); r++) {
+				for(int c = this.col(this.minX[i]); c <= this.col(this.maxX[i]); c++) {
+					this.cellItems[cursor[r * this.cols + c]++] = i;
+				}
+			}
+		}
+	}
+}
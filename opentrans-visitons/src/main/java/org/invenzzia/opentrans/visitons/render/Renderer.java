@@ -18,16 +18,25 @@
 package org.invenzzia.opentrans.visitons.render;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.invenzzia.opentrans.visitons.network.Segment;
 
 /**
@@ -39,6 +48,13 @@ import org.invenzzia.opentrans.visitons.network.Segment;
  * the annotation on the listener method which guarantees us that the {@link cameraUpdated}
  * method will be updated within the same thread, as the renderer.
  * 
+ * The streams are grouped into {@link RenderingLayer layers}. Each layer has its own
+ * buffer and hover collector, and is redrawn only if its scene resources have changed.
+ * If several layers must be redrawn in one frame, they are drawn in parallel by a small
+ * worker pool, and the rendering thread draws one of them by itself. The buffers are put
+ * together in {@link #swapBuffers(java.util.Map)}. A stream must not be registered in more
+ * than one layer, because it may be called from different threads.
+ * 
  * @author Tomasz Jędrzejewski
  */
 @Singleton
@@ -64,9 +80,21 @@ public final class Renderer {
 	 */
 	private CameraModelSnapshot previousModel;
 	/**
-	 * Rendering streams that paint sequentially on the device in each frame.
+	 * Layers of the rendering streams, in the drawing order.
+	 */
+	private final Layer layers[];
+	/**
+	 * Layers to redraw in the current frame.
 	 */
-	private List<IRenderingStream> renderingStreams = new LinkedList<>();
+	private final Layer redrawnLayers[];
+	/**
+	 * Number of the registered streams; used for numbering them in the profiler.
+	 */
+	private int streamNum;
+	/**
+	 * Draws the layers in parallel to the rendering thread. Created on the first use.
+	 */
+	private ExecutorService layerPool;
 	/**
 	 * List of visible segments, updated every time we change the view port.
 	 */
@@ -79,11 +107,22 @@ public final class Renderer {
 	 * Storage for the fonts that supports size scaling.
 	 */
 	private FontRepository fontRepository;
+	/**
+	 * Measures the time spent in the rendering streams.
+	 */
+	private final FrameProfiler frameProfiler;
 	
 	@Inject
-	public Renderer(SceneManager sceneManager, Provider<HoverCollector> hoverCollectorProvider) {
+	public Renderer(SceneManager sceneManager, Provider<HoverCollector> hoverCollectorProvider, FrameProfiler frameProfiler) {
 		this.sceneManager = Preconditions.checkNotNull(sceneManager, "The renderer cannot operate without a scene manager.");
 		this.hoverCollector = Preconditions.checkNotNull(hoverCollectorProvider, "The hover collector cannot be empty.").get();
+		this.frameProfiler = Preconditions.checkNotNull(frameProfiler);
+		RenderingLayer types[] = RenderingLayer.values();
+		this.layers = new Layer[types.length];
+		this.redrawnLayers = new Layer[types.length];
+		for(RenderingLayer type: types) {
+			this.layers[type.ordinal()] = new Layer(type, hoverCollectorProvider.get());
+		}
 		this.createBuffers();
 		this.createFontRepository();
 	}
@@ -127,9 +166,19 @@ public final class Renderer {
 	 * Initializes the font repository.
 	 */
 	private void createFontRepository() {
-		this.fontRepository = new FontRepository();
-		this.fontRepository.addFont("platform-name", "Verdana", 3, true);
-		this.fontRepository.addFont("stop-name", "Tahoma", 6, true);
+		this.fontRepository = createDefaultFontRepository();
+	}
+	
+	/**
+	 * Creates the repository with the fonts used by the standard rendering streams.
+	 * 
+	 * @return New font repository.
+	 */
+	public static FontRepository createDefaultFontRepository() {
+		FontRepository repository = new FontRepository();
+		repository.addFont("platform-name", "Verdana", 3, true);
+		repository.addFont("stop-name", "Tahoma", 6, true);
+		return repository;
 	}
 	
 	/**
@@ -139,6 +188,18 @@ public final class Renderer {
 	public void swapBuffers(Map<Object, Object> snapshot) {
 		CameraModelSnapshot model = (CameraModelSnapshot) snapshot.get(CameraModelSnapshot.class);
 		
+		Graphics2D g = this.drawnImage.createGraphics();
+		try {
+			g.setColor(Renderer.BACKGROUND_COLOR);
+			g.fillRect(0, 0, this.drawnImage.getWidth(), this.drawnImage.getHeight());
+			for(Layer layer: this.layers) {
+				if(null != layer.buffer && !layer.streams.isEmpty()) {
+					g.drawImage(layer.buffer, 0, 0, null);
+				}
+			}
+		} finally {
+			g.dispose();
+		}
 		BufferedImage tmp = this.servedImage;
 		this.servedImage = this.drawnImage;
 		this.drawnImage = tmp;
@@ -146,17 +207,54 @@ public final class Renderer {
 	}
 	
 	/**
-	 * Appends a new stream to the rendering queue.
+	 * Appends a new stream to the {@link RenderingLayer#OVERLAY} layer, which is
+	 * redrawn in every frame.
 	 */
 	public void addRenderingStream(IRenderingStream stream) {
-		this.renderingStreams.add(Preconditions.checkNotNull(stream, "Attempt to register a NULL rendering stream."));
+		this.addRenderingStream(RenderingLayer.OVERLAY, stream);
+	}
+	
+	/**
+	 * Appends a new stream to the given layer. Within a layer, the streams paint
+	 * sequentially in the order of registration.
+	 * 
+	 * @param layer The layer that repaints the stream.
+	 * @param stream The rendering stream.
+	 */
+	public void addRenderingStream(RenderingLayer layer, IRenderingStream stream) {
+		Preconditions.checkNotNull(layer, "Attempt to register a rendering stream in a NULL layer.");
+		this.layers[layer.ordinal()].addStream(Preconditions.checkNotNull(stream, "Attempt to register a NULL rendering stream."), this.streamNum++);
+		this.frameProfiler.addStream(stream.getClass().getSimpleName());
 	}
 	
 	/**
 	 * Clears the list of rendering streams.
 	 */
 	public void clearRenderingStreams() {
-		this.renderingStreams.clear();
+		for(Layer layer: this.layers) {
+			layer.clear();
+		}
+		this.streamNum = 0;
+		this.frameProfiler.clearStreams();
+	}
+	
+	/**
+	 * Forces redrawing all the layers in the next frame, i.e. to keep the animations running.
+	 */
+	public void invalidateLayers() {
+		for(Layer layer: this.layers) {
+			layer.invalidated = true;
+		}
+	}
+	
+	/**
+	 * Stops the threads that draw the layers.
+	 */
+	public void shutdown() {
+		if(null != this.layerPool) {
+			this.layerPool.shutdownNow();
+			this.layerPool = null;
+		}
 	}
 	
 	/**
@@ -177,26 +275,204 @@ public final class Renderer {
 	 * @param prevFrameTime Actual rendering time of the previous frame.
 	 */
 	public void render(long prevFrameTime) {
+		long frameStart = System.nanoTime();
+		this.frameProfiler.beginFrame();
 		Map<Object, Object> snapshot = this.sceneManager.getSnapshot();
 		this.updateBuffers(snapshot);
-		this.hoverCollector.resetHoveredItem();
 		
 		CameraModelSnapshot camera = (CameraModelSnapshot) snapshot.get(CameraModelSnapshot.class);
 		this.fontRepository.recalculateFonts(camera.getMpp());
 		
-		Graphics2D g = (Graphics2D) this.drawnImage.getGraphics();
-		g.setColor(Renderer.BACKGROUND_COLOR);
-		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		g.fillRect(0, 0, this.drawnImage.getWidth(), this.drawnImage.getHeight());
-		
-		// Run the rendering streams.
+		// Find the layers whose resources have changed.
 		long current = System.currentTimeMillis();
-		for(IRenderingStream stream: this.renderingStreams) {
-			stream.setFontRepository(this.fontRepository);
-			stream.render((Graphics2D) g, snapshot, this.hoverCollector, current);
+		int width = this.drawnImage.getWidth();
+		int height = this.drawnImage.getHeight();
+		int redrawnNum = 0;
+		for(Layer layer: this.layers) {
+			if(!layer.streams.isEmpty() && layer.needsRedraw(snapshot, width, height)) {
+				layer.prepare(snapshot, current, width, height);
+				this.redrawnLayers[redrawnNum++] = layer;
+			}
+		}
+		this.drawLayers(redrawnNum);
+		
+		// The layers that have not been redrawn still remember their hovered items.
+		this.hoverCollector.resetHoveredItem();
+		for(Layer layer: this.layers) {
+			if(!layer.streams.isEmpty()) {
+				this.hoverCollector.copyFrom(layer.hoverCollector);
+			}
 		}
 		this.hoverCollector.emitSnapshot(this.sceneManager);
 		this.swapBuffers(snapshot);
+		this.frameProfiler.endFrame(System.nanoTime() - frameStart);
+	}
+
+	/**
+	 * Draws the given number of layers from {@link #redrawnLayers}. The first one is drawn
+	 * by the calling thread, and the rest by the worker pool. The method returns when all
+	 * of them are finished.
+	 * 
+	 * @param redrawnNum Number of the layers to draw.
+	 */
+	private void drawLayers(int redrawnNum) {
+		if(0 == redrawnNum) {
+			return;
+		}
+		if(1 == redrawnNum) {
+			this.redrawnLayers[0].draw();
+			return;
+		}
+		CountDownLatch latch = new CountDownLatch(redrawnNum - 1);
+		ExecutorService pool = this.getLayerPool();
+		for(int i = 1; i < redrawnNum; i++) {
+			this.redrawnLayers[i].latch = latch;
+			pool.execute(this.redrawnLayers[i]);
+		}
+		try {
+			this.redrawnLayers[0].draw();
+		} finally {
+			Uninterruptibles.awaitUninterruptibly(latch);
+		}
+		for(int i = 1; i < redrawnNum; i++) {
+			Layer layer = this.redrawnLayers[i];
+			layer.latch = null;
+			if(null != layer.failure) {
+				RuntimeException failure = layer.failure;
+				layer.failure = null;
+				throw failure;
+			}
+		}
+	}
+	
+	private ExecutorService getLayerPool() {
+		if(null == this.layerPool) {
+			int threads = Math.max(1, Math.min(this.layers.length - 1, Runtime.getRuntime().availableProcessors() - 1));
+			this.layerPool = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setNameFormat("render-layer-%d").setDaemon(true).build());
+		}
+		return this.layerPool;
+	}
+	
+	/**
+	 * A group of streams drawn together into a single buffer.
+	 */
+	private final class Layer implements Runnable {
+		private final RenderingLayer type;
+		private final List<IRenderingStream> streams = new ArrayList<>();
+		/**
+		 * Indices of the streams in the profiler.
+		 */
+		private int profilerIndices[] = new int[0];
+		/**
+		 * Hovered item found by the streams of this layer during its last drawing.
+		 */
+		private final HoverCollector hoverCollector;
+		/**
+		 * The scene resources the buffer has been drawn from.
+		 */
+		private final Object drawnDependencies[];
+		/**
+		 * The layer image with the transparent background.
+		 */
+		private BufferedImage buffer;
+		/**
+		 * True, if the buffer has been drawn successfully.
+		 */
+		private boolean valid;
+		/**
+		 * Set by {@link Renderer#invalidateLayers()} from any thread.
+		 */
+		private volatile boolean invalidated;
+		private Map<Object, Object> snapshot;
+		private long current;
+		private CountDownLatch latch;
+		/**
+		 * Exception thrown while drawing by a worker thread.
+		 */
+		private RuntimeException failure;
+		
+		public Layer(RenderingLayer type, HoverCollector hoverCollector) {
+			this.type = type;
+			this.hoverCollector = Preconditions.checkNotNull(hoverCollector);
+			this.drawnDependencies = new Object[type.getDependencyNum()];
+		}
+		
+		public void addStream(IRenderingStream stream, int profilerIndex) {
+			this.streams.add(stream);
+			this.profilerIndices = Arrays.copyOf(this.profilerIndices, this.profilerIndices.length + 1);
+			this.profilerIndices[this.profilerIndices.length - 1] = profilerIndex;
+			this.invalidated = true;
+		}
+		
+		public void clear() {
+			this.streams.clear();
+			this.profilerIndices = new int[0];
+			this.hoverCollector.resetHoveredItem();
+			this.buffer = null;
+			this.valid = false;
+		}
+		
+		public boolean needsRedraw(Map<Object, Object> snapshot, int width, int height) {
+			if(this.invalidated || !this.valid || this.type.isVolatile() || null == this.buffer ||
+				this.buffer.getWidth() != width || this.buffer.getHeight() != height) {
+				return true;
+			}
+			for(int i = 0; i < this.drawnDependencies.length; i++) {
+				if(snapshot.get(this.type.getDependency(i)) != this.drawnDependencies[i]) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		public void prepare(Map<Object, Object> snapshot, long current, int width, int height) {
+			this.invalidated = false;
+			this.snapshot = snapshot;
+			this.current = current;
+			for(int i = 0; i < this.drawnDependencies.length; i++) {
+				this.drawnDependencies[i] = snapshot.get(this.type.getDependency(i));
+			}
+			if(null == this.buffer || this.buffer.getWidth() != width || this.buffer.getHeight() != height) {
+				this.buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+			}
+		}
+		
+		public void draw() {
+			this.valid = false;
+			this.hoverCollector.resetHoveredItem();
+			Graphics2D g = this.buffer.createGraphics();
+			try {
+				Composite composite = g.getComposite();
+				g.setComposite(AlphaComposite.Clear);
+				g.fillRect(0, 0, this.buffer.getWidth(), this.buffer.getHeight());
+				g.setComposite(composite);
+				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				for(int i = 0; i < this.streams.size(); i++) {
+					IRenderingStream stream = this.streams.get(i);
+					long streamStart = System.nanoTime();
+					stream.setFontRepository(fontRepository);
+					stream.setFrameProfiler(frameProfiler);
+					stream.render(g, this.snapshot, this.hoverCollector, this.current);
+					frameProfiler.recordStream(this.profilerIndices[i], System.nanoTime() - streamStart);
+				}
+				this.valid = true;
+			} finally {
+				g.dispose();
+				this.snapshot = null;
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				this.draw();
+			} catch(RuntimeException exception) {
+				this.failure = exception;
+			} finally {
+				this.latch.countDown();
+			}
+		}
 	}
 
 	/**
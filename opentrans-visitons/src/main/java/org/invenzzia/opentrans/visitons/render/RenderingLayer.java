@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render;
+
+import org.invenzzia.opentrans.visitons.render.scene.CommittedTrackObjectSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.CommittedTrackSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.EditableTrackObjectSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.EditableTrackSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.IgnoreHoverSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.MouseSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.SelectedTrackObjectSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.StopSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.VehicleSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot;
+
+/**
+ * The renderer draws each layer into its own buffer, possibly in parallel, and then
+ * puts the buffers one on another in the order of declaration. A layer is redrawn
+ * only if one of the scene resources it depends on has been replaced since the last
+ * frame. A layer without the dependencies is redrawn in every frame.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public enum RenderingLayer {
+	/**
+	 * Segment bitmaps and the grid.
+	 */
+	BACKGROUND(CameraModelSnapshot.class, VisibleSegmentSnapshot.class, SegmentBitmapCache.class),
+	/**
+	 * Committed and edited tracks with the vertices.
+	 */
+	TRACKS(CameraModelSnapshot.class, VisibleSegmentSnapshot.class, CommittedTrackSnapshot.class, EditableTrackSnapshot.class,
+		MouseSnapshot.class, IgnoreHoverSnapshot.class),
+	/**
+	 * Track objects and the stop labels.
+	 */
+	TRACK_OBJECTS(CameraModelSnapshot.class, CommittedTrackObjectSnapshot.class, EditableTrackObjectSnapshot.class,
+		SelectedTrackObjectSnapshot.class, StopSnapshot.class, MouseSnapshot.class),
+	/**
+	 * Vehicles.
+	 */
+	VEHICLES(CameraModelSnapshot.class, VehicleSnapshot.class, SelectedTrackObjectSnapshot.class, MouseSnapshot.class),
+	/**
+	 * Selection, debug information and everything else that is cheap to draw.
+	 */
+	OVERLAY();
+	
+	/**
+	 * Scene resource keys that the streams of this layer read.
+	 */
+	private final Object dependencies[];
+	
+	private RenderingLayer(Object... dependencies) {
+		this.dependencies = dependencies;
+	}
+	
+	/**
+	 * @return Number of the dependencies; the keys are returned by {@link #getDependency(int)}.
+	 */
+	public int getDependencyNum() {
+		return this.dependencies.length;
+	}
+	
+	public Object getDependency(int idx) {
+		return this.dependencies[idx];
+	}
+	
+	/**
+	 * @return True, if the layer must be redrawn in every frame.
+	 */
+	public boolean isVolatile() {
+		return this.dependencies.length == 0;
+	}
+}
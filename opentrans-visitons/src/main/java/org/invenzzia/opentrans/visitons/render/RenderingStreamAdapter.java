@@ -33,12 +33,21 @@ public abstract class RenderingStreamAdapter implements IRenderingStream {
 	 * Provides access to all the fonts in the application.
 	 */
 	protected FontRepository fontRepository;
+	/**
+	 * Collects the rendering statistics.
+	 */
+	protected FrameProfiler frameProfiler;
 	
 	@Override
 	public void setFontRepository(FontRepository repository) {
 		this.fontRepository = repository;
 	}
 	
+	@Override
+	public void setFrameProfiler(FrameProfiler profiler) {
+		this.frameProfiler = profiler;
+	}
+	
 	/**
 	 * Helps extracting the data from the scene manager snapshot by casting
 	 * them to the destination object. The method assumes that the key is
@@ -24,11 +24,12 @@ import com.google.common.collect.Multimap;
 import com.google.inject.Singleton;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Scene manager serves as a bridge between the renderer and the other
@@ -36,33 +37,58 @@ import org.slf4j.LoggerFactory;
  * the updated snapshot which replaces the old copy. The renderer will
  * take it during the next run.
  * 
+ * <p>The scene is published as an immutable map. Writers build the next
+ * version aside and replace the reference at once, so that the readers
+ * always get a consistent version without locking or copying. The lock
+ * is used only to serialize the writers.</p>
+ * 
  * @author Tomasz Jędrzejewski
  */
 @Singleton
 @ThreadSafe
 public class SceneManager implements ISceneManagerOperations {
 	/**
-	 * List of objects on the scene.
+	 * The currently published version of the scene.
+	 */
+	private volatile ImmutableMap<Object, Object> scene;
+	/**
+	 * Number of the published versions of the scene, so that the renderer can
+	 * find out whether there is anything new to draw.
+	 */
+	private volatile long version;
+	/**
+	 * Number of the wake-up requests, see {@link #wakeUpWaiters()}.
+	 */
+	private volatile long wakeUpNum;
+	/**
+	 * The next version of the scene, built during the batch update.
 	 */
-	private Map<Object, Object> scene;
+	@GuardedBy("lock")
+	private Map<Object, Object> pendingScene;
 	/**
 	 * Is batch mode for updating data enabled? Batch mode allows updating
-	 * several objects within a single lock.
+	 * several objects within a single lock and publishing them at once.
 	 */
+	@GuardedBy("lock")
 	private boolean batch = false;
 	/**
-	 * Data structure lock for synchronization between the rendering thread
-	 * and the other threads.
+	 * Serializes the writers. The readers never take it.
+	 */
+	private final Lock lock;
+	/**
+	 * For signalling the publication of the new version.
 	 */
-	private Lock lock;
+	private final Condition published;
 	/**
 	 * Listeners that are activated, when a certain key is updated.
 	 */
-	private Multimap<Object, ISceneManagerListener> listeners;
+	@GuardedBy("lock")
+	private final Multimap<Object, ISceneManagerListener> listeners;
 
 	public SceneManager() {
 		this.lock = new ReentrantLock();
-		this.scene = new LinkedHashMap<>();
+		this.published = this.lock.newCondition();
+		this.scene = ImmutableMap.of();
 		this.listeners = LinkedListMultimap.create();
 	}
 	
@@ -73,8 +99,8 @@ public class SceneManager implements ISceneManagerOperations {
 	 * @param listener The registered listener.
 	 */
 	public void addSceneManagerListener(Object key, ISceneManagerListener listener) {
+		this.lock.lock();
 		try {
-			this.lock.lock();
 			this.listeners.put(key, Preconditions.checkNotNull(listener, "The listener cannot be empty."));
 		} finally {
 			this.lock.unlock();
@@ -83,11 +109,14 @@ public class SceneManager implements ISceneManagerOperations {
 	
 	/**
 	 * Perform a lock for batch update of several keys at once. Call {@link unguard} when
-	 * the updating is finished.
+	 * the updating is finished. The changes are not visible to the readers until then.
 	 */
 	public void guard() {
 		this.lock.lock();
-		this.batch = true;
+		if(!this.batch) {
+			this.pendingScene = new LinkedHashMap<>(this.scene);
+			this.batch = true;
+		}
 	}
 	
 	/**
@@ -100,16 +129,14 @@ public class SceneManager implements ISceneManagerOperations {
 	 * @param value 
 	 */
 	public void updateResource(Object key, Object value) {
+		this.lock.lock();
 		try {
-			this.lock.lock();
 			if(this.batch) {
 				throw new IllegalStateException("Call of the updateResource() method in batch mode!");
 			}
-			if(null == value) {
-				this.scene.remove(key);
-			} else {
-				this.scene.put(key, value);
-			}
+			Map<Object, Object> next = new LinkedHashMap<>(this.scene);
+			this.put(next, key, value);
+			this.publish(next);
 			this.notifyListenersForKey(key);
 		} finally {
 			this.lock.unlock();
@@ -129,54 +156,132 @@ public class SceneManager implements ISceneManagerOperations {
 		if(!this.batch) {
 			throw new IllegalStateException("Call of the batchUpdateResource() method in normal mode!");
 		}
-		if(null == value) {
-			this.scene.remove(key);
-		} else {
-			this.scene.put(key, value);
-		}
+		this.put(this.pendingScene, key, value);
 		this.notifyListenersForKey(key);
 		return this;
 	}
 	
 	/**
-	 * Unlocks the model after the batch update.
+	 * Publishes the changes made during the batch update and unlocks the model.
 	 */
 	public void unguard() {
 		if(true == this.batch) {
+			this.publish(this.pendingScene);
+			this.pendingScene = null;
 			this.batch = false;
 			this.lock.unlock();
 		}
 	}
 
 	/**
-	 * Returns the current snapshot of objects for drawing the scene.
+	 * Returns the current snapshot of objects for drawing the scene. The method does
+	 * not block and does not copy anything.
 	 * 
 	 * @return Immutable map of scene objects.
 	 */
 	public Map<Object, Object> getSnapshot() {
+		return this.scene;
+	}
+	
+	/**
+	 * Returns the number of the published scene versions. If it has not changed since
+	 * the last frame, the scene looks the same.
+	 * 
+	 * @return Version of the current snapshot.
+	 */
+	public long getVersion() {
+		return this.version;
+	}
+	
+	/**
+	 * Blocks the calling thread until a version newer than the given one is published,
+	 * or the timeout elapses.
+	 * 
+	 * @param knownVersion The version the caller has already seen.
+	 * @param timeout Maximum waiting time.
+	 * @param unit Time unit of the timeout.
+	 * @return True, if a newer version is available.
+	 * @throws InterruptedException 
+	 */
+	public boolean awaitVersion(long knownVersion, long timeout, TimeUnit unit) throws InterruptedException {
+		if(this.version != knownVersion) {
+			return true;
+		}
+		long nanos = unit.toNanos(timeout);
+		this.lock.lock();
 		try {
-			this.lock.lock();
-			return ImmutableMap.copyOf(this.scene);
+			while(this.version == knownVersion) {
+				if(nanos <= 0L) {
+					return false;
+				}
+				nanos = this.published.awaitNanos(nanos);
+			}
+			return true;
 		} finally {
 			this.lock.unlock();
 		}
 	}
 	
 	/**
-	 * Do not use this method inside the rendering loop. Use snapshot instead.
+	 * Blocks the calling thread until a version newer than the given one is published,
+	 * {@link #wakeUpWaiters()} is called, or the timeout elapses. To avoid missing the
+	 * wake-up, the caller shall read {@link #getWakeUpNum()} before checking whether it
+	 * has anything to do.
 	 * 
-	 * @param key Key to return.
-	 * @return Object assigned to this key.
+	 * @param knownVersion The version the caller has already seen.
+	 * @param knownWakeUpNum The number of wake-ups the caller has already seen.
+	 * @param timeout Maximum waiting time.
+	 * @param unit Time unit of the timeout.
+	 * @return True, if a newer version is available or the waiter was woken up.
+	 * @throws InterruptedException 
 	 */
-	public Object getResource(Object key) {
+	public boolean awaitChange(long knownVersion, long knownWakeUpNum, long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		this.lock.lock();
 		try {
-			this.lock.lock();
-			return this.scene.get(key);
+			while(this.version == knownVersion && this.wakeUpNum == knownWakeUpNum) {
+				if(nanos <= 0L) {
+					return false;
+				}
+				nanos = this.published.awaitNanos(nanos);
+			}
+			return true;
 		} finally {
 			this.lock.unlock();
 		}
 	}
 	
+	/**
+	 * Wakes up the threads waiting in {@link #awaitChange}, even though nothing has been
+	 * published, i.e. because the renderer has got a message.
+	 */
+	public void wakeUpWaiters() {
+		this.lock.lock();
+		try {
+			this.wakeUpNum++;
+			this.published.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return Number of the wake-up requests so far.
+	 */
+	public long getWakeUpNum() {
+		return this.wakeUpNum;
+	}
+	
+	/**
+	 * Do not use this method inside the rendering loop. Use snapshot instead.
+	 * 
+	 * @param key Key to return.
+	 * @return Object assigned to this key.
+	 */
+	public Object getResource(Object key) {
+		return this.scene.get(key);
+	}
+	
 	/**
 	 * Do not use this method inside the rendering loop. Use snapshot instead.
 	 * 
@@ -185,22 +290,55 @@ public class SceneManager implements ISceneManagerOperations {
 	 * @return Object assigned to this key.
 	 */
 	public <T> T getResource(Object key, Class<T> cast) {
+		return (T) this.scene.get(key);
+	}
+	
+	/**
+	 * Returns the resource as seen by the writers, i.e. by the listeners called during
+	 * the batch update: the pending version, if the batch is in progress. The method takes
+	 * the writer lock; the renderer shall use {@link #getSnapshot()} instead.
+	 * 
+	 * @param key Key to return.
+	 * @return Object assigned to this key.
+	 */
+	@Override
+	public Object getSceneResource(Object key) {
+		this.lock.lock();
 		try {
-			this.lock.lock();
-			return (T) this.scene.get(key);
+			if(this.batch) {
+				return this.pendingScene.get(key);
+			}
+			return this.scene.get(key);
 		} finally {
 			this.lock.unlock();
 		}
 	}
 	
 	@Override
-	public Object getSceneResource(Object key) {
-		return this.scene.get(key);
+	public <T> T getSceneResource(Object key, Class<T> cast) {
+		return (T) this.getSceneResource(key);
 	}
 	
-	@Override
-	public <T> T getSceneResource(Object key, Class<T> cast) {
-		return (T) this.scene.get(key);
+	/**
+	 * Replaces the published scene with the new version and wakes up the waiting
+	 * readers. Must be called by the writer holding the lock.
+	 */
+	private void publish(Map<Object, Object> next) {
+		this.scene = ImmutableMap.copyOf(next);
+		this.version++;
+		this.published.signalAll();
+	}
+	
+	/**
+	 * Puts the value into the scene version being built; <strong>null</strong> removes
+	 * the key.
+	 */
+	private void put(Map<Object, Object> version, Object key, Object value) {
+		if(null == value) {
+			version.remove(key);
+		} else {
+			version.put(key, value);
+		}
 	}
 	
 	/**
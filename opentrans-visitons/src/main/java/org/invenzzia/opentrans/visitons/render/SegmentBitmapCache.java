@@ -0,0 +1,329 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.invenzzia.opentrans.visitons.render;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the decoded segment bitmaps in memory within the given limit of bytes, evicting
+ * the least recently used ones. The bitmaps are decoded on a background I/O pool, so
+ * neither the model thread nor the rendering thread waits for the disk. Once a bitmap
+ * is ready, the cache publishes a new version of its resource in the scene manager,
+ * so that the renderer draws a new frame.
+ * 
+ * <p>For every bitmap, the cache keeps only the mip level needed for the current zoom:
+ * the image is decoded with the source subsampling by the largest power of two that keeps
+ * it not smaller than the segment on the screen, so that the image is scaled only a bit,
+ * and the full-size image is never decoded, unless it is really needed. When the zoom
+ * changes, the bitmap is decoded again in the background, and until then the previous
+ * level is returned.</p>
+ * 
+ * <p>The bitmaps used in the current and the previous frame (see {@link #beginFrame()})
+ * are never evicted. If they do not fit into the limit, the limit is exceeded, rather
+ * than decoding the same bitmaps again and again.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+@Singleton
+@ThreadSafe
+public class SegmentBitmapCache {
+	private final Logger logger = LoggerFactory.getLogger(SegmentBitmapCache.class);
+	/**
+	 * Default memory limit, unless the heap is too small for it [bytes].
+	 */
+	public static final long DEFAULT_MAX_BYTES = 256L * 1024L * 1024L;
+	/**
+	 * The bitmaps are not subsampled below this size [px].
+	 */
+	public static final int MIN_LEVEL_SIZE = 64;
+	/**
+	 * Number of the I/O threads decoding the bitmaps.
+	 */
+	private static final int IO_THREADS = 2;
+	/**
+	 * Publishes the loaded bitmaps.
+	 */
+	private final SceneManager sceneManager;
+	/**
+	 * Decodes the bitmaps.
+	 */
+	private final ExecutorService ioPool;
+	/**
+	 * Decoded bitmaps in the LRU order.
+	 */
+	@GuardedBy("this")
+	private final Map<String, BitmapEntry> bitmaps = new LinkedHashMap<>(16, 0.75f, true);
+	/**
+	 * Bitmaps being decoded at the moment.
+	 */
+	@GuardedBy("this")
+	private final Set<String> loading = new HashSet<>();
+	/**
+	 * Bitmaps that could not be decoded; we do not retry them.
+	 */
+	@GuardedBy("this")
+	private final Set<String> failed = new HashSet<>();
+	/**
+	 * Memory limit [bytes].
+	 */
+	@GuardedBy("this")
+	private long maxBytes;
+	/**
+	 * Memory occupied by the decoded bitmaps [bytes].
+	 */
+	@GuardedBy("this")
+	private long usedBytes;
+	/**
+	 * Number of the decoded bitmaps so far; published as the scene resource.
+	 */
+	@GuardedBy("this")
+	private long loadedNum;
+	/**
+	 * Number of the current frame; the bitmaps used in it are pinned.
+	 */
+	@GuardedBy("this")
+	private long frame;
+	
+	@Inject
+	public SegmentBitmapCache(SceneManager sceneManager) {
+		this.sceneManager = Preconditions.checkNotNull(sceneManager);
+		this.ioPool = Executors.newFixedThreadPool(IO_THREADS,
+			new ThreadFactoryBuilder().setNameFormat("segment-bitmap-io-%d").setDaemon(true).build());
+		this.maxBytes = Math.min(DEFAULT_MAX_BYTES, Runtime.getRuntime().maxMemory() / 4);
+	}
+	
+	public synchronized void setMaxBytes(long maxBytes) {
+		Preconditions.checkArgument(maxBytes > 0, "The memory limit must be positive.");
+		this.maxBytes = maxBytes;
+		this.evict(null);
+	}
+	
+	public synchronized long getMaxBytes() {
+		return this.maxBytes;
+	}
+	
+	public synchronized long getUsedBytes() {
+		return this.usedBytes;
+	}
+	
+	/**
+	 * Starts a new frame. The bitmaps returned by {@link #getImage(String, int)} in this and
+	 * the previous frame are not evicted. The bitmaps used only in the older frames can be.
+	 */
+	public synchronized void beginFrame() {
+		this.frame++;
+	}
+	
+	/**
+	 * Returns the bitmap for drawing it in the given size. If the bitmap is not decoded yet,
+	 * the method schedules decoding and returns <strong>null</strong>; the bitmap will be
+	 * available in one of the next frames. If the bitmap is decoded in a different level,
+	 * the method returns it, and schedules decoding the right one.
+	 * 
+	 * @param path Path to the bitmap file.
+	 * @param size The size of the segment on the screen [px].
+	 * @return The best decoded mip level for this size, or null.
+	 */
+	public synchronized BufferedImage getImage(String path, int size) {
+		BitmapEntry entry = this.bitmaps.get(path);
+		if(null != entry) {
+			entry.frame = this.frame;
+			if(entry.subsampling != subsampling(entry.width, entry.height, size)) {
+				this.schedule(path, size);
+			}
+			return entry.image;
+		}
+		this.schedule(path, size);
+		return null;
+	}
+	
+	/**
+	 * Removes all the bitmaps from the memory.
+	 */
+	public synchronized void clear() {
+		this.bitmaps.clear();
+		this.failed.clear();
+		this.usedBytes = 0L;
+	}
+	
+	/**
+	 * Stops the I/O threads.
+	 */
+	public void shutdown() {
+		this.ioPool.shutdownNow();
+	}
+	
+	@GuardedBy("this")
+	private void schedule(final String path, final int size) {
+		if(!this.failed.contains(path) && this.loading.add(path)) {
+			this.ioPool.execute(new Runnable() {
+				@Override
+				public void run() {
+					load(path, size);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Executed by the I/O pool.
+	 */
+	private void load(String path, int size) {
+		BitmapEntry entry = null;
+		try {
+			entry = decode(new File(path), size);
+		} catch(IOException exception) {
+			logger.error("Exception occurred while loading the segment bitmap.", exception);
+		}
+		long version;
+		synchronized(this) {
+			this.loading.remove(path);
+			if(null == entry) {
+				this.failed.add(path);
+				return;
+			}
+			BitmapEntry previous = this.bitmaps.put(path, entry);
+			if(null != previous) {
+				this.usedBytes -= previous.bytes;
+			}
+			entry.frame = this.frame;
+			this.usedBytes += entry.bytes;
+			this.evict(entry);
+			version = ++this.loadedNum;
+		}
+		this.sceneManager.updateResource(SegmentBitmapCache.class, Long.valueOf(version));
+	}
+	
+	/**
+	 * Removes the least recently used bitmaps until we fit into the limit. The bitmaps used
+	 * in the current and the previous frame are kept.
+	 * 
+	 * @param keep The bitmap that must stay.
+	 */
+	@GuardedBy("this")
+	private void evict(BitmapEntry keep) {
+		Iterator<BitmapEntry> it = this.bitmaps.values().iterator();
+		while(this.usedBytes > this.maxBytes && it.hasNext()) {
+			BitmapEntry entry = it.next();
+			if(entry != keep && entry.frame < this.frame - 1) {
+				this.usedBytes -= entry.bytes;
+				it.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Decodes the image, skipping the pixels that are not needed for the given size.
+	 * 
+	 * @param file Image file.
+	 * @param size Requested size [px].
+	 * @return Decoded bitmap.
+	 * @throws IOException 
+	 */
+	static BitmapEntry decode(File file, int size) throws IOException {
+		ImageInputStream input = ImageIO.createImageInputStream(file);
+		if(null == input) {
+			throw new IOException("Cannot open the image: "+file.getPath());
+		}
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+			if(!readers.hasNext()) {
+				throw new IOException("Unsupported image format: "+file.getPath());
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				int subsampling = subsampling(width, height, size);
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				return new BitmapEntry(reader.read(0, param), width, height, subsampling);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			input.close();
+		}
+	}
+	
+	/**
+	 * Finds the largest power of two, by which the image can be subsampled, so that it is
+	 * not smaller than the requested size, and not smaller than {@link #MIN_LEVEL_SIZE}.
+	 * 
+	 * @param width Full image width [px].
+	 * @param height Full image height [px].
+	 * @param size Requested size [px].
+	 * @return Subsampling factor.
+	 */
+	static int subsampling(int width, int height, int size) {
+		int factor = 1;
+		while(width / (factor * 2) >= Math.max(size, MIN_LEVEL_SIZE) && height / (factor * 2) >= MIN_LEVEL_SIZE) {
+			factor *= 2;
+		}
+		return factor;
+	}
+	
+	/**
+	 * The decoded mip level of a single bitmap.
+	 */
+	static final class BitmapEntry {
+		private final BufferedImage image;
+		/**
+		 * Full image size [px].
+		 */
+		private final int width;
+		private final int height;
+		private final int subsampling;
+		private final long bytes;
+		/**
+		 * The last frame the bitmap was used in.
+		 */
+		private long frame;
+		
+		public BitmapEntry(BufferedImage image, int width, int height, int subsampling) {
+			this.image = image;
+			this.width = width;
+			this.height = height;
+			this.subsampling = subsampling;
+			this.bytes = (long) image.getWidth() * image.getHeight() * 4L;
+		}
+	}
+}
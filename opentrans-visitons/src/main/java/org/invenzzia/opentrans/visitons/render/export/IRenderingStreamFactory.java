@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render.export;
+
+import java.util.List;
+import org.invenzzia.opentrans.visitons.render.IRenderingStream;
+
+/**
+ * Creates the rendering streams for the map exporter. Each rendering thread of the
+ * exporter gets its own set of streams, because the streams keep their state between
+ * the calls.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public interface IRenderingStreamFactory {
+	/**
+	 * Creates a new set of streams in the drawing order.
+	 * 
+	 * @return New streams.
+	 */
+	public List<IRenderingStream> createStreams();
+}
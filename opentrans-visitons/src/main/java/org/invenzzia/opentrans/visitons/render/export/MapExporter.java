@@ -0,0 +1,520 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render.export;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.network.World;
+import org.invenzzia.opentrans.visitons.render.AbstractCameraModelFoundation;
+import org.invenzzia.opentrans.visitons.render.CameraModel;
+import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
+import org.invenzzia.opentrans.visitons.render.FontRepository;
+import org.invenzzia.opentrans.visitons.render.FrameProfiler;
+import org.invenzzia.opentrans.visitons.render.HoverCollector;
+import org.invenzzia.opentrans.visitons.render.IRenderingStream;
+import org.invenzzia.opentrans.visitons.render.Renderer;
+import org.invenzzia.opentrans.visitons.render.SceneManager;
+import org.invenzzia.opentrans.visitons.render.scene.MouseSnapshot;
+import org.invenzzia.opentrans.visitons.render.stream.StopLabelStream;
+import org.invenzzia.opentrans.visitons.render.stream.TrackObjectStream;
+import org.invenzzia.opentrans.visitons.render.stream.TrackStream;
+import org.invenzzia.opentrans.visitons.render.stream.VehicleStream;
+import org.invenzzia.opentrans.visitons.simulation.IProjectLoader;
+
+/**
+ * Renders the world into images much larger than the screen, without any user interface.
+ * The map is divided into tiles. For each tile, the exporter creates a synthetic camera,
+ * exports the scene of the segments under it and draws it with the standard rendering
+ * streams, just like the interactive renderer does. The tiles are drawn in parallel, and
+ * either saved as separate PNG files, or joined into stripes and streamed into a single
+ * PNG image. In both cases, only a few tiles are kept in the memory at once.
+ * 
+ * <p>The scenes are exported by the calling thread, which must own the world. The
+ * background bitmaps of the segments are not exported.</p>
+ * 
+ * <p>Usage:</p>
+ * <pre>
+ * MapExporter --loader class.name (--output file.png | --tiles directory) [--mpp 1.0] [--tile 512] [--area x0,y0,x1,y1] [--threads N]
+ * </pre>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class MapExporter {
+	public static final double DEFAULT_MPP = 1.0;
+	public static final int DEFAULT_TILE_SIZE = 512;
+	/**
+	 * Position of the mouse cursor in the exported scenes, so that nothing is hovered.
+	 */
+	private static final int NO_MOUSE = -100000;
+	/**
+	 * The tracks of the neighbouring segments can reach the tile, so the segments
+	 * within this distance are exported, too [m].
+	 */
+	private static final double SELECTION_MARGIN = AbstractCameraModelFoundation.SEGMENT_SIZE;
+	/**
+	 * How many tiles per thread can wait for being saved.
+	 */
+	private static final int TILES_PER_THREAD = 2;
+	/**
+	 * The exported world.
+	 */
+	private final World world;
+	/**
+	 * Creates the streams for each rendering thread.
+	 */
+	private final IRenderingStreamFactory streamFactory;
+	/**
+	 * Zoom level of the exported map (metres per pixel).
+	 */
+	private double mpp = DEFAULT_MPP;
+	/**
+	 * Size of a single tile [px].
+	 */
+	private int tileSize = DEFAULT_TILE_SIZE;
+	/**
+	 * Number of the rendering threads.
+	 */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	/**
+	 * Exported area in the world units (metres).
+	 */
+	private double x0;
+	private double y0;
+	private double x1;
+	private double y1;
+	
+	public MapExporter(World world) {
+		this(world, new DefaultStreamFactory());
+	}
+	
+	public MapExporter(World world, IRenderingStreamFactory streamFactory) {
+		this.world = Preconditions.checkNotNull(world);
+		this.streamFactory = Preconditions.checkNotNull(streamFactory);
+		this.x1 = world.getX() * AbstractCameraModelFoundation.SEGMENT_SIZE;
+		this.y1 = world.getY() * AbstractCameraModelFoundation.SEGMENT_SIZE;
+	}
+	
+	public static void main(String args[]) {
+		String loaderName = null;
+		File output = null;
+		File tiles = null;
+		double mpp = DEFAULT_MPP;
+		int tileSize = DEFAULT_TILE_SIZE;
+		int threads = Runtime.getRuntime().availableProcessors();
+		double area[] = null;
+		try {
+			int size = args.length;
+			for(int i = 0; i < size; i++) {
+				switch(args[i]) {
+					case "--loader":
+						loaderName = args[++i];
+						break;
+					case "--output":
+						output = new File(args[++i]);
+						break;
+					case "--tiles":
+						tiles = new File(args[++i]);
+						break;
+					case "--mpp":
+						mpp = Double.parseDouble(args[++i]);
+						break;
+					case "--tile":
+						tileSize = Integer.parseInt(args[++i]);
+						break;
+					case "--threads":
+						threads = Integer.parseInt(args[++i]);
+						break;
+					case "--area":
+						area = parseArea(args[++i]);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option: "+args[i]);
+				}
+			}
+			if(null == loaderName) {
+				throw new IllegalArgumentException("The project loader is not specified.");
+			}
+			if((null == output) == (null == tiles)) {
+				throw new IllegalArgumentException("Specify either the output file or the tile directory.");
+			}
+		} catch(IllegalArgumentException | ArrayIndexOutOfBoundsException exception) {
+			System.err.println(exception.getMessage());
+			printHelp();
+			System.exit(1);
+		}
+		
+		try {
+			IProjectLoader loader = (IProjectLoader) Class.forName(loaderName).newInstance();
+			Project project = loader.loadProject();
+			MapExporter exporter = new MapExporter(project.getWorld());
+			exporter.setMpp(mpp);
+			exporter.setTileSize(tileSize);
+			exporter.setThreads(threads);
+			if(null != area) {
+				exporter.setArea(area[0], area[1], area[2], area[3]);
+			}
+			long start = System.nanoTime();
+			if(null != output) {
+				exporter.exportImage(output);
+			} else {
+				exporter.exportTiles(tiles);
+			}
+			System.out.println("Exported "+exporter.getWidthPx()+" x "+exporter.getHeightPx()+" px in "
+				+String.format("%.3f", (System.nanoTime() - start) / 1000000000.0)+" s");
+		} catch(Exception exception) {
+			System.err.println("The export failed: "+exception.getMessage());
+			exception.printStackTrace(System.err);
+			System.exit(2);
+		}
+	}
+	
+	/**
+	 * Parses the area in the format <tt>x0,y0,x1,y1</tt> (metres).
+	 * 
+	 * @param area The area definition.
+	 * @return Array of four coordinates.
+	 */
+	public static double[] parseArea(String area) {
+		String parts[] = area.split(",");
+		if(parts.length != 4) {
+			throw new IllegalArgumentException("Invalid area format: "+area);
+		}
+		double coordinates[] = new double[4];
+		for(int i = 0; i < 4; i++) {
+			coordinates[i] = Double.parseDouble(parts[i].trim());
+		}
+		return coordinates;
+	}
+	
+	public void setMpp(double mpp) {
+		Preconditions.checkArgument(mpp > 0.0, "The zoom level must be positive.");
+		this.mpp = mpp;
+	}
+	
+	public double getMpp() {
+		return this.mpp;
+	}
+	
+	public void setTileSize(int tileSize) {
+		Preconditions.checkArgument(tileSize > 0, "The tile size must be positive.");
+		this.tileSize = tileSize;
+	}
+	
+	public int getTileSize() {
+		return this.tileSize;
+	}
+	
+	public void setThreads(int threads) {
+		Preconditions.checkArgument(threads > 0, "At least one rendering thread is necessary.");
+		this.threads = threads;
+	}
+	
+	public int getThreads() {
+		return this.threads;
+	}
+	
+	/**
+	 * Selects the exported area. By default, the whole world is exported.
+	 * 
+	 * @param x0 Left edge (metres).
+	 * @param y0 Top edge (metres).
+	 * @param x1 Right edge (metres).
+	 * @param y1 Bottom edge (metres).
+	 */
+	public void setArea(double x0, double y0, double x1, double y1) {
+		Preconditions.checkArgument(x1 > x0 && y1 > y0, "The exported area cannot be empty.");
+		this.x0 = x0;
+		this.y0 = y0;
+		this.x1 = x1;
+		this.y1 = y1;
+	}
+	
+	/**
+	 * @return Width of the exported image [px].
+	 */
+	public int getWidthPx() {
+		return (int) Math.ceil((this.x1 - this.x0) / this.mpp);
+	}
+	
+	/**
+	 * @return Height of the exported image [px].
+	 */
+	public int getHeightPx() {
+		return (int) Math.ceil((this.y1 - this.y0) / this.mpp);
+	}
+	
+	/**
+	 * @return Number of the tile columns.
+	 */
+	public int getColumnNum() {
+		return (this.getWidthPx() + this.tileSize - 1) / this.tileSize;
+	}
+	
+	/**
+	 * @return Number of the tile rows.
+	 */
+	public int getRowNum() {
+		return (this.getHeightPx() + this.tileSize - 1) / this.tileSize;
+	}
+	
+	/**
+	 * Saves each tile as a separate PNG file <tt>column_row.png</tt> in the given directory.
+	 * 
+	 * @param directory The output directory.
+	 * @throws IOException 
+	 */
+	public void exportTiles(final File directory) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create the directory: "+directory);
+		}
+		ExecutorService pool = this.createPool();
+		try {
+			Deque<Future<BufferedImage>> pending = new ArrayDeque<>();
+			int columns = this.getColumnNum();
+			int rows = this.getRowNum();
+			for(int row = 0; row < rows; row++) {
+				for(int column = 0; column < columns; column++) {
+					final File file = new File(directory, column+"_"+row+".png");
+					pending.add(pool.submit(new TileTask(this.exportTileScene(column, row)) {
+						@Override
+						protected BufferedImage process(BufferedImage tile) throws IOException {
+							ImageIO.write(tile, "png", file);
+							return null;
+						}
+					}));
+					while(pending.size() >= this.threads * TILES_PER_THREAD) {
+						this.await(pending.poll());
+					}
+				}
+			}
+			while(!pending.isEmpty()) {
+				this.await(pending.poll());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Saves the map as a single PNG image. The tiles are joined into stripes, which are
+	 * written to the file as soon as they are complete.
+	 * 
+	 * @param file The output file.
+	 * @throws IOException 
+	 */
+	public void exportImage(File file) throws IOException {
+		int width = this.getWidthPx();
+		int height = this.getHeightPx();
+		int columns = this.getColumnNum();
+		int rows = this.getRowNum();
+		BufferedImage stripe = new BufferedImage(width, Math.min(this.tileSize, height), BufferedImage.TYPE_INT_RGB);
+		ExecutorService pool = this.createPool();
+		try(StripedPngWriter writer = new StripedPngWriter(new BufferedOutputStream(new FileOutputStream(file)), width, height)) {
+			Deque<Future<BufferedImage>> pending = new ArrayDeque<>();
+			int submitted = 0;
+			int collected = 0;
+			int total = columns * rows;
+			while(collected < total) {
+				while(submitted < total && pending.size() < this.threads * TILES_PER_THREAD) {
+					pending.add(pool.submit(new TileTask(this.exportTileScene(submitted % columns, submitted / columns))));
+					submitted++;
+				}
+				BufferedImage tile = this.await(pending.poll());
+				int column = collected % columns;
+				stripe.setRGB(column * this.tileSize, 0, tile.getWidth(), tile.getHeight(),
+					tile.getRGB(0, 0, tile.getWidth(), tile.getHeight(), null, 0, tile.getWidth()), 0, tile.getWidth());
+				collected++;
+				if(column == columns - 1) {
+					writer.writeRows(stripe, tile.getHeight());
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	private ExecutorService createPool() {
+		return Executors.newFixedThreadPool(this.threads,
+			new ThreadFactoryBuilder().setNameFormat("map-export-%d").setDaemon(true).build());
+	}
+	
+	/**
+	 * Waits for the tile and rethrows the rendering errors.
+	 * 
+	 * @param future The rendered tile.
+	 * @return The result of the tile task.
+	 * @throws IOException 
+	 */
+	private BufferedImage await(Future<BufferedImage> future) throws IOException {
+		try {
+			return future.get();
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			throw new IOException("The export has been interrupted.", exception);
+		} catch(ExecutionException exception) {
+			Throwables.propagateIfPossible(exception.getCause(), IOException.class);
+			throw new IOException("The tile cannot be rendered.", exception.getCause());
+		}
+	}
+	
+	/**
+	 * Exports the scene of the given tile. The camera shows the tile, but the scene
+	 * is selected with a larger area, so that the tracks that cross the tile edges
+	 * are not cut.
+	 * 
+	 * @param column Tile column.
+	 * @param row Tile row.
+	 * @return Scene snapshot of the tile.
+	 */
+	private Map<Object, Object> exportTileScene(int column, int row) {
+		int width = Math.min(this.tileSize, this.getWidthPx() - column * this.tileSize);
+		int height = Math.min(this.tileSize, this.getHeightPx() - row * this.tileSize);
+		double posX = this.x0 + column * this.tileSize * this.mpp;
+		double posY = this.y0 + row * this.tileSize * this.mpp;
+		
+		CameraModel camera = new CameraModel();
+		camera.setWorldSize(this.world.getX(), this.world.getY());
+		camera.setMpp(this.mpp);
+		camera.setViewportDimensionPx(width, height);
+		camera.setPos(posX, posY);
+		
+		CameraModel selection = new CameraModel();
+		selection.setWorldSize(this.world.getX(), this.world.getY());
+		selection.setMpp(1.0);
+		selection.setViewportDimensionPx((int) Math.ceil(width * this.mpp + 2.0 * SELECTION_MARGIN),
+			(int) Math.ceil(height * this.mpp + 2.0 * SELECTION_MARGIN));
+		selection.setPos(posX - SELECTION_MARGIN, posY - SELECTION_MARGIN);
+		
+		SceneManager sceneManager = new SceneManager();
+		sceneManager.updateResource(CameraModelSnapshot.class, new CameraModelSnapshot(camera));
+		sceneManager.updateResource(MouseSnapshot.class, new MouseSnapshot(NO_MOUSE, NO_MOUSE));
+		this.world.exportDetachedScene(sceneManager, selection);
+		return sceneManager.getSnapshot();
+	}
+	
+	/**
+	 * Draws a single tile in the pool thread.
+	 */
+	private class TileTask implements Callable<BufferedImage> {
+		private final Map<Object, Object> scene;
+		
+		public TileTask(Map<Object, Object> scene) {
+			this.scene = scene;
+		}
+		
+		@Override
+		public BufferedImage call() throws Exception {
+			return this.process(tileRenderer.get().render(this.scene));
+		}
+		
+		protected BufferedImage process(BufferedImage tile) throws IOException {
+			return tile;
+		}
+	}
+	
+	/**
+	 * Each pool thread has its own streams.
+	 */
+	private final ThreadLocal<TileRenderer> tileRenderer = new ThreadLocal<TileRenderer>() {
+		@Override
+		protected TileRenderer initialValue() {
+			return new TileRenderer(streamFactory.createStreams());
+		}
+	};
+	
+	/**
+	 * Draws the scenes with a fixed set of streams.
+	 */
+	private static class TileRenderer {
+		private final List<IRenderingStream> streams;
+		private final FontRepository fontRepository;
+		private final HoverCollector hoverCollector;
+		private final FrameProfiler frameProfiler;
+		
+		public TileRenderer(List<IRenderingStream> streams) {
+			this.streams = ImmutableList.copyOf(streams);
+			this.fontRepository = Renderer.createDefaultFontRepository();
+			this.hoverCollector = new HoverCollector();
+			this.frameProfiler = new FrameProfiler();
+		}
+		
+		public BufferedImage render(Map<Object, Object> scene) {
+			CameraModelSnapshot camera = (CameraModelSnapshot) scene.get(CameraModelSnapshot.class);
+			BufferedImage tile = new BufferedImage(camera.getViewportWidthPx(), camera.getViewportHeightPx(), BufferedImage.TYPE_INT_RGB);
+			this.fontRepository.recalculateFonts(camera.getMpp());
+			Graphics2D g = tile.createGraphics();
+			try {
+				g.setColor(Renderer.BACKGROUND_COLOR);
+				g.fillRect(0, 0, tile.getWidth(), tile.getHeight());
+				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				long current = System.currentTimeMillis();
+				for(IRenderingStream stream: this.streams) {
+					stream.setFontRepository(this.fontRepository);
+					stream.setFrameProfiler(this.frameProfiler);
+					stream.render(g, scene, this.hoverCollector, current);
+				}
+			} finally {
+				g.dispose();
+			}
+			return tile;
+		}
+	}
+	
+	/**
+	 * Draws the tracks, track objects, stop labels and vehicles.
+	 */
+	public static class DefaultStreamFactory implements IRenderingStreamFactory {
+		@Override
+		public List<IRenderingStream> createStreams() {
+			TrackStream trackStream = new TrackStream();
+			trackStream.setTileCacheEnabled(false);
+			return ImmutableList.<IRenderingStream>of(trackStream, new TrackObjectStream(), new StopLabelStream(), new VehicleStream());
+		}
+	}
+	
+	private static void printHelp() {
+		System.out.println("Usage: MapExporter --loader class.name (--output file.png | --tiles directory) [options]");
+		System.out.println("  --loader class.name  implementation of IProjectLoader that delivers the project");
+		System.out.println("  --output file.png    save the map as a single image");
+		System.out.println("  --tiles directory    save the map as separate tiles");
+		System.out.println("  --mpp N              zoom level in metres per pixel (default 1.0)");
+		System.out.println("  --tile N             tile size in pixels (default 512)");
+		System.out.println("  --area x0,y0,x1,y1   exported area in metres (default: the whole world)");
+		System.out.println("  --threads N          number of the rendering threads (default: number of cores)");
+	}
+}
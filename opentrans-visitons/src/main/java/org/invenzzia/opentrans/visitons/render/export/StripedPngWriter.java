@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render.export;
+
+import com.google.common.base.Preconditions;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG image row by row, so that images much larger than the heap can be
+ * produced. The rows are taken from the stripes rendered by the caller, and only the
+ * compressed data are buffered. The image is saved as 8-bit RGB, without transparency.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class StripedPngWriter implements Closeable {
+	private static final byte SIGNATURE[] = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+	private static final int COLOR_TYPE_RGB = 2;
+	/**
+	 * PNG filter which stores the difference to the pixel on the left.
+	 */
+	private static final int FILTER_SUB = 1;
+	/**
+	 * Maximum size of a single IDAT chunk [bytes].
+	 */
+	private static final int CHUNK_SIZE = 65536;
+	private final DataOutputStream output;
+	private final int width;
+	private final int height;
+	/**
+	 * Number of the rows written so far.
+	 */
+	private int writtenRows;
+	private final Deflater deflater;
+	private final DeflaterOutputStream compressed;
+	/**
+	 * Buffers for a single row.
+	 */
+	private final int pixels[];
+	private final byte row[];
+	private boolean closed;
+	
+	public StripedPngWriter(OutputStream output, int width, int height) throws IOException {
+		Preconditions.checkArgument(width > 0 && height > 0, "The image size must be positive.");
+		this.output = new DataOutputStream(Preconditions.checkNotNull(output));
+		this.width = width;
+		this.height = height;
+		this.pixels = new int[width];
+		this.row = new byte[width * 3 + 1];
+		this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		this.compressed = new DeflaterOutputStream(new ChunkOutputStream(), this.deflater, CHUNK_SIZE);
+		
+		this.output.write(SIGNATURE);
+		DataChunk header = new DataChunk("IHDR", 13);
+		header.writeInt(width);
+		header.writeInt(height);
+		header.write(8);
+		header.write(COLOR_TYPE_RGB);
+		header.write(0);
+		header.write(0);
+		header.write(0);
+		this.writeChunk(header);
+	}
+	
+	public int getWidth() {
+		return this.width;
+	}
+	
+	public int getHeight() {
+		return this.height;
+	}
+	
+	/**
+	 * @return Number of the rows written so far.
+	 */
+	public int getWrittenRows() {
+		return this.writtenRows;
+	}
+	
+	/**
+	 * Appends the first <tt>rows</tt> rows of the given stripe to the image. The stripe
+	 * must be as wide as the image.
+	 * 
+	 * @param stripe The rendered rows.
+	 * @param rows Number of the rows to take.
+	 * @throws IOException 
+	 */
+	public void writeRows(BufferedImage stripe, int rows) throws IOException {
+		Preconditions.checkState(!this.closed, "The writer is closed.");
+		Preconditions.checkArgument(stripe.getWidth() == this.width, "The stripe width does not match the image width.");
+		Preconditions.checkArgument(rows >= 0 && rows <= stripe.getHeight(), "Invalid number of rows.");
+		Preconditions.checkState(this.writtenRows + rows <= this.height, "Too many rows for this image.");
+		for(int y = 0; y < rows; y++) {
+			stripe.getRGB(0, y, this.width, 1, this.pixels, 0, this.width);
+			this.row[0] = FILTER_SUB;
+			int previous = 0;
+			for(int x = 0, i = 1; x < this.width; x++) {
+				int pixel = this.pixels[x];
+				this.row[i++] = (byte) ((pixel >> 16) - (previous >> 16));
+				this.row[i++] = (byte) ((pixel >> 8) - (previous >> 8));
+				this.row[i++] = (byte) (pixel - previous);
+				previous = pixel;
+			}
+			this.compressed.write(this.row);
+		}
+		this.writtenRows += rows;
+	}
+	
+	/**
+	 * Finishes the image. All the rows must be written before.
+	 * 
+	 * @throws IOException 
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			if(this.writtenRows != this.height) {
+				throw new IOException("The image is incomplete: "+this.writtenRows+" of "+this.height+" rows written.");
+			}
+			this.compressed.close();
+			this.writeChunk(new DataChunk("IEND", 0));
+		} finally {
+			this.deflater.end();
+			this.output.close();
+		}
+	}
+	
+	private void writeChunk(DataChunk chunk) throws IOException {
+		this.writeChunk(chunk.type, chunk.data, chunk.size);
+	}
+	
+	private void writeChunk(byte type[], byte data[], int size) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(data, 0, size);
+		this.output.writeInt(size);
+		this.output.write(type);
+		this.output.write(data, 0, size);
+		this.output.writeInt((int) crc.getValue());
+	}
+	
+	/**
+	 * Data of a small chunk.
+	 */
+	private static class DataChunk {
+		private final byte type[];
+		private final byte data[];
+		private int size;
+		
+		public DataChunk(String type, int capacity) {
+			this.type = type.getBytes(StandardCharsets.US_ASCII);
+			this.data = new byte[capacity];
+		}
+		
+		public void write(int value) {
+			this.data[this.size++] = (byte) value;
+		}
+		
+		public void writeInt(int value) {
+			this.write(value >>> 24);
+			this.write(value >>> 16);
+			this.write(value >>> 8);
+			this.write(value);
+		}
+	}
+	
+	/**
+	 * Splits the compressed data into IDAT chunks.
+	 */
+	private class ChunkOutputStream extends OutputStream {
+		private final byte type[] = "IDAT".getBytes(StandardCharsets.US_ASCII);
+		private final byte buffer[] = new byte[CHUNK_SIZE];
+		private int size;
+
+		@Override
+		public void write(int b) throws IOException {
+			if(this.size == CHUNK_SIZE) {
+				this.flushChunk();
+			}
+			this.buffer[this.size++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte data[], int offset, int length) throws IOException {
+			while(length > 0) {
+				if(this.size == CHUNK_SIZE) {
+					this.flushChunk();
+				}
+				int copied = Math.min(length, CHUNK_SIZE - this.size);
+				System.arraycopy(data, offset, this.buffer, this.size, copied);
+				this.size += copied;
+				offset += copied;
+				length -= copied;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.flushChunk();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			this.flushChunk();
+		}
+		
+		private void flushChunk() throws IOException {
+			if(this.size > 0) {
+				writeChunk(this.type, this.buffer, this.size);
+				this.size = 0;
+			}
+		}
+	}
+}
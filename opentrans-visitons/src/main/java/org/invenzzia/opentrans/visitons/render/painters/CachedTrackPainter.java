@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render.painters;
+
+import org.invenzzia.opentrans.visitons.network.NetworkConst;
+
+/**
+ * Track painter together with the geometry it was created for. The track metadata
+ * array is replaced whenever the track is changed, so comparing the references is
+ * enough to detect the change. The scene exporters keep the painters of the unchanged
+ * tracks between the exports, so that neither the painters, nor their shapes are
+ * allocated again. The track tiles rely on that: the same painter means the same
+ * track geometry, so the tile drawn with it can be reused.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public final class CachedTrackPainter {
+	private final ITrackPainter painter;
+	private final byte type;
+	private final double metadata[];
+	private final double dx;
+	private final double dy;
+	
+	public CachedTrackPainter(long id, byte type, double metadata[], double dx, double dy) {
+		this.type = type;
+		this.metadata = metadata;
+		this.dx = dx;
+		this.dy = dy;
+		switch(type) {
+			case NetworkConst.TRACK_STRAIGHT:
+				this.painter = new StraightTrackPainter(id, metadata, dx, dy);
+				break;
+			case NetworkConst.TRACK_CURVED:
+				this.painter = new CurvedTrackPainter(id, metadata, dx, dy);
+				break;
+			case NetworkConst.TRACK_FREE:
+				this.painter = new FreeTrackPainter(id, metadata, dx, dy);
+				break;
+			default:
+				this.painter = null;
+		}
+	}
+	
+	/**
+	 * @return The painter, or <strong>null</strong> for unknown track types.
+	 */
+	public ITrackPainter getPainter() {
+		return this.painter;
+	}
+	
+	public boolean isValidFor(byte type, double metadata[], double dx, double dy) {
+		return this.type == type && this.metadata == metadata && this.dx == dx && this.dy == dy;
+	}
+}
@@ -20,6 +20,8 @@ package org.invenzzia.opentrans.visitons.render.painters;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Arc2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
 import org.invenzzia.opentrans.visitons.geometry.ArcOps;
 import org.invenzzia.opentrans.visitons.geometry.Geometry;
 import org.invenzzia.opentrans.visitons.geometry.LineOps;
@@ -46,7 +48,7 @@ public class CurvedTrackPainter implements ITrackPainter {
 	 */
 	private final double dx, dy;
 	/**
-	 * Precomputed arc object.
+	 * Precomputed arc object; updated in place by {@link #refreshData}.
 	 */
 	private Arc2D.Double arc;
 	
@@ -79,7 +81,10 @@ public class CurvedTrackPainter implements ITrackPainter {
 	@Override
 	public void refreshData(CameraModelSnapshot camera) {
 		double wh = (double) camera.world2pix(this.coordinates[2]);
-		this.arc = new Arc2D.Double(
+		if(null == this.arc) {
+			this.arc = new Arc2D.Double(Arc2D.OPEN);
+		}
+		this.arc.setArc(
 			(double) camera.world2pixX(this.coordinates[0] + this.dx),
 			(double) camera.world2pixY(this.coordinates[1] + this.dy),
 			wh, wh,
@@ -97,6 +102,28 @@ public class CurvedTrackPainter implements ITrackPainter {
 		return false;
 	}
 
+	@Override
+	public Rectangle2D getBounds() {
+		if(null != this.arc) {
+			return this.arc.getBounds2D();
+		}
+		return null;
+	}
+
+	@Override
+	public void appendOutline(Path2D path, double flatness) {
+		if(null != this.arc) {
+			path.append(this.arc.getPathIterator(null, flatness), false);
+		}
+	}
+
+	@Override
+	public void appendShape(Path2D path) {
+		if(null != this.arc) {
+			path.append(this.arc, false);
+		}
+	}
+
 	@Override
 	public double computePosition(MouseSnapshot snapshot, CameraModelSnapshot camera) {
 		double px = camera.pix2worldX(snapshot.x());
@@ -20,6 +20,8 @@ package org.invenzzia.opentrans.visitons.render.painters;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Arc2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
 import org.invenzzia.opentrans.visitons.geometry.ArcOps;
 import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.MouseSnapshot;
@@ -78,8 +80,12 @@ public class FreeTrackPainter implements ITrackPainter {
 
 	@Override
 	public void refreshData(CameraModelSnapshot camera) {
+		if(null == this.firstArc) {
+			this.firstArc = new Arc2D.Double(Arc2D.OPEN);
+			this.secondArc = new Arc2D.Double(Arc2D.OPEN);
+		}
 		double wh = (double) camera.world2pix(this.coordinates[2]);
-		this.firstArc = new Arc2D.Double(
+		this.firstArc.setArc(
 			(double) camera.world2pixX(this.coordinates[0] + this.dx),
 			(double) camera.world2pixY(this.coordinates[1] + this.dy),
 			wh, wh,
@@ -88,7 +94,7 @@ public class FreeTrackPainter implements ITrackPainter {
 			Arc2D.OPEN
 		);
 		wh = (double) camera.world2pix(this.coordinates[10]);
-		this.secondArc = new Arc2D.Double(
+		this.secondArc.setArc(
 			(double) camera.world2pixX(this.coordinates[8] + this.dx),
 			(double) camera.world2pixY(this.coordinates[9] + this.dy),
 			wh, wh,
@@ -106,6 +112,32 @@ public class FreeTrackPainter implements ITrackPainter {
 		return false;
 	}
 
+	@Override
+	public Rectangle2D getBounds() {
+		if(null != this.firstArc) {
+			Rectangle2D bounds = this.firstArc.getBounds2D();
+			bounds.add(this.secondArc.getBounds2D());
+			return bounds;
+		}
+		return null;
+	}
+
+	@Override
+	public void appendOutline(Path2D path, double flatness) {
+		if(null != this.firstArc) {
+			path.append(this.firstArc.getPathIterator(null, flatness), false);
+			path.append(this.secondArc.getPathIterator(null, flatness), false);
+		}
+	}
+
+	@Override
+	public void appendShape(Path2D path) {
+		if(null != this.firstArc) {
+			path.append(this.firstArc, false);
+			path.append(this.secondArc, false);
+		}
+	}
+
 	@Override
 	public double computePosition(MouseSnapshot snapshot, CameraModelSnapshot camera) {
 		double px = camera.pix2worldX(snapshot.x());
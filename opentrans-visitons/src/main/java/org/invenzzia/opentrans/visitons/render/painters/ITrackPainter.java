@@ -19,6 +19,8 @@ package org.invenzzia.opentrans.visitons.render.painters;
 
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
 import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.MouseSnapshot;
 
@@ -39,6 +41,28 @@ public interface ITrackPainter {
 	 * @return True, if this object is hit.
 	 */
 	public boolean hits(Graphics2D graphics, Rectangle rect);
+	/**
+	 * Returns the bounding box of the painted shape in the pixel space, used for
+	 * indexing the painters.
+	 * 
+	 * @return Bounding box, or <strong>null</strong> before the first {@link #refreshData} call.
+	 */
+	public Rectangle2D getBounds();
+	/**
+	 * Appends the simplified shape of the track to the given path, for drawing the
+	 * network when zoomed out. Arcs are replaced with polylines.
+	 * 
+	 * @param path The path to extend.
+	 * @param flatness Maximum distance between the polyline and the arc [px].
+	 */
+	public void appendOutline(Path2D path, double flatness);
+	/**
+	 * Appends the exact shape of the track to the given path, so that many tracks
+	 * can be drawn with a single call.
+	 * 
+	 * @param path The path to extend.
+	 */
+	public void appendShape(Path2D path);
 	
 	/**
 	 * To place something on tracks, we must know, which part of the line was
@@ -57,7 +81,8 @@ public interface ITrackPainter {
 	 */
 	public void draw(CameraModelSnapshot camera, Graphics2D graphics, boolean editable);
 	/**
-	 * Refreshes the painter data due to the changes in the camera model.
+	 * Refreshes the painter data due to the changes in the camera model. The painters
+	 * reuse their shape objects, so that the refresh does not allocate memory.
 	 * 
 	 * @param camera 
 	 */
@@ -20,6 +20,8 @@ package org.invenzzia.opentrans.visitons.render.painters;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
 import org.invenzzia.opentrans.visitons.geometry.LineOps;
 import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.MouseSnapshot;
@@ -70,7 +72,10 @@ public class StraightTrackPainter implements ITrackPainter {
 
 	@Override
 	public void refreshData(CameraModelSnapshot camera) {
-		this.line = new Line2D.Double(
+		if(null == this.line) {
+			this.line = new Line2D.Double();
+		}
+		this.line.setLine(
 			camera.world2pixX(this.coordinates[0] + this.dx),
 			camera.world2pixY(this.coordinates[1] + this.dy),
 			camera.world2pixX(this.coordinates[2] + this.dx),
@@ -86,6 +91,28 @@ public class StraightTrackPainter implements ITrackPainter {
 		return false;
 	}
 
+	@Override
+	public Rectangle2D getBounds() {
+		if(null != this.line) {
+			return this.line.getBounds2D();
+		}
+		return null;
+	}
+
+	@Override
+	public void appendOutline(Path2D path, double flatness) {
+		if(null != this.line) {
+			path.append(this.line, false);
+		}
+	}
+
+	@Override
+	public void appendShape(Path2D path) {
+		if(null != this.line) {
+			path.append(this.line, false);
+		}
+	}
+
 	@Override
 	public double computePosition(MouseSnapshot snapshot, CameraModelSnapshot camera) {
 		double cursorDist = LineOps.distance(this.line.getX1(), this.line.getY1(), snapshot.x(), snapshot.y());
@@ -17,7 +17,12 @@
 
 package org.invenzzia.opentrans.visitons.render.scene;
 
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
 import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
+import org.invenzzia.opentrans.visitons.render.PixelGridIndex;
 import org.invenzzia.opentrans.visitons.render.painters.ITrackPainter;
 
 /**
@@ -52,6 +57,27 @@ public abstract class AbstractTrackSnapshot {
 	 * Shall the painters recalculate the shape objects?
 	 */
 	private boolean refresh;
+	/**
+	 * Pixel-space index of the track painters for hovering; rebuilt after refreshing the painters.
+	 */
+	private PixelGridIndex trackIndex;
+	/**
+	 * Pixel-space index of the vertices for hovering; rebuilt after refreshing the painters.
+	 */
+	private PixelGridIndex vertexIndex;
+	/**
+	 * All the tracks as a single simplified path; rebuilt after refreshing the painters.
+	 */
+	private Path2D.Float outline;
+	/**
+	 * All the tracks as a single exact path; rebuilt after refreshing the painters.
+	 */
+	private Path2D.Float shape;
+	/**
+	 * The paths are reused between the refreshes, so we need separate flags for their validity.
+	 */
+	private boolean outlineValid;
+	private boolean shapeValid;
 
 	public AbstractTrackSnapshot(int trackNum) {
 		this.tracks = new ITrackPainter[trackNum];
@@ -65,6 +91,7 @@ public abstract class AbstractTrackSnapshot {
 	public void setVertexArray(double array[], long vid[]) {
 		this.vertices = array;
 		this.vertexIds = vid;
+		this.vertexIndex = null;
 	}
 	
 	public void setVertexDebugBuf1(double buf[]) {
@@ -123,5 +150,174 @@ public abstract class AbstractTrackSnapshot {
 			painter.refreshData(camera);
 		}
 		this.refresh = false;
+		this.trackIndex = null;
+		this.vertexIndex = null;
+		this.outlineValid = false;
+		this.shapeValid = false;
+	}
+	
+	/**
+	 * Returns all the tracks as a single path of polylines, so that the zoomed out
+	 * network can be drawn with one call.
+	 * 
+	 * @param flatness Maximum distance between the polyline and the arc [px].
+	 * @return Simplified shape of all the tracks.
+	 */
+	public Path2D getOutline(double flatness) {
+		if(!this.outlineValid) {
+			if(null == this.outline) {
+				this.outline = new Path2D.Float(Path2D.WIND_NON_ZERO, this.tracks.length * 4);
+			} else {
+				this.outline.reset();
+			}
+			for(ITrackPainter painter: this.tracks) {
+				if(null != painter) {
+					painter.appendOutline(this.outline, flatness);
+				}
+			}
+			this.outlineValid = true;
+		}
+		return this.outline;
+	}
+	
+	/**
+	 * Returns all the tracks as a single path, so that the tracks drawn with the same
+	 * style can be drawn with one call.
+	 * 
+	 * @return Exact shape of all the tracks.
+	 */
+	public Path2D getShape() {
+		if(!this.shapeValid) {
+			if(null == this.shape) {
+				this.shape = new Path2D.Float(Path2D.WIND_NON_ZERO, this.tracks.length * 8);
+			} else {
+				this.shape.reset();
+			}
+			for(ITrackPainter painter: this.tracks) {
+				if(null != painter) {
+					painter.appendShape(this.shape);
+				}
+			}
+			this.shapeValid = true;
+		}
+		return this.shape;
+	}
+	
+	/**
+	 * Finds the first track painter (in the drawing order) hit by the mouse. The painter
+	 * bounding boxes are taken from the index, and only the candidates are checked precisely.
+	 * The track stroke must be already set in the graphics.
+	 * 
+	 * @param graphics The canvas with the track stroke.
+	 * @param rect Mouse rectangle.
+	 * @param margin How much the stroke exceeds the shape bounds [px].
+	 * @param ignoreHover Optional track excluded from hovering.
+	 * @return Index of the hovered painter, or -1.
+	 */
+	public int findHoveredTrack(Graphics2D graphics, Rectangle rect, double margin, IgnoreHoverSnapshot ignoreHover) {
+		if(null == rect) {
+			return -1;
+		}
+		PixelGridIndex index = this.getTrackIndex();
+		int num = index.query(rect.getMinX() - margin, rect.getMinY() - margin, rect.getMaxX() + margin, rect.getMaxY() + margin);
+		for(int i = 0; i < num; i++) {
+			int idx = index.getResult(i);
+			ITrackPainter painter = this.tracks[idx];
+			if(null != ignoreHover && ignoreHover.getTrackId() == painter.getId()) {
+				continue;
+			}
+			if(painter.hits(graphics, rect)) {
+				return idx;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Finds the first vertex (in the drawing order) hit by the mouse.
+	 * 
+	 * @param camera Camera for calculating the vertex positions.
+	 * @param mouse Mouse position.
+	 * @param radius Size of the drawn vertex [px].
+	 * @param halfRadius Offset of the drawn vertex [px].
+	 * @param ignoreHover Optional vertex excluded from hovering.
+	 * @return Index of the hovered vertex, or -1.
+	 */
+	public int findHoveredVertex(CameraModelSnapshot camera, MouseSnapshot mouse, int radius, int halfRadius, IgnoreHoverSnapshot ignoreHover) {
+		if(null == mouse || null == this.vertices) {
+			return -1;
+		}
+		PixelGridIndex index = this.getVertexIndex(camera);
+		int num = index.query(mouse.x() - radius, mouse.y() - radius, mouse.x() + radius, mouse.y() + radius);
+		for(int i = 0; i < num; i++) {
+			int idx = index.getResult(i);
+			if(null != ignoreHover && ignoreHover.getVertexId() == this.vertexIds[idx]) {
+				continue;
+			}
+			int x = camera.world2pixX(this.vertices[idx * 2]);
+			int y = camera.world2pixY(this.vertices[idx * 2 + 1]);
+			if(mouse.hits(x - halfRadius, y - halfRadius, radius, radius)) {
+				return idx;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns the pixel-space index of the track painter bounding boxes. The index items
+	 * are the positions in {@link #getTracks()}.
+	 * 
+	 * @return Track painter index valid until the next refresh.
+	 */
+	public PixelGridIndex getTrackIndex() {
+		if(null == this.trackIndex) {
+			this.trackIndex = this.createTrackIndex();
+		}
+		return this.trackIndex;
+	}
+	
+	/**
+	 * Returns the pixel-space index of the vertex positions. The index items are the
+	 * vertex numbers, i.e. the positions in {@link #getVertexIds()}.
+	 * 
+	 * @param camera Camera for calculating the vertex positions.
+	 * @return Vertex index valid until the next refresh.
+	 */
+	public PixelGridIndex getVertexIndex(CameraModelSnapshot camera) {
+		if(null == this.vertexIndex) {
+			this.vertexIndex = this.createVertexIndex(camera);
+		}
+		return this.vertexIndex;
+	}
+	
+	private PixelGridIndex createTrackIndex() {
+		int num = this.tracks.length;
+		double minX[] = new double[num];
+		double minY[] = new double[num];
+		double maxX[] = new double[num];
+		double maxY[] = new double[num];
+		for(int i = 0; i < num; i++) {
+			Rectangle2D bounds = (null != this.tracks[i] ? this.tracks[i].getBounds() : null);
+			if(null == bounds) {
+				minX[i] = minY[i] = maxX[i] = maxY[i] = Double.NaN;
+			} else {
+				minX[i] = bounds.getMinX();
+				minY[i] = bounds.getMinY();
+				maxX[i] = bounds.getMaxX();
+				maxY[i] = bounds.getMaxY();
+			}
+		}
+		return new PixelGridIndex(minX, minY, maxX, maxY);
+	}
+	
+	private PixelGridIndex createVertexIndex(CameraModelSnapshot camera) {
+		int num = (null != this.vertices ? this.vertices.length / 2 : 0);
+		double x[] = new double[num];
+		double y[] = new double[num];
+		for(int i = 0; i < num; i++) {
+			x[i] = camera.world2pixX(this.vertices[i * 2]);
+			y[i] = camera.world2pixY(this.vertices[i * 2 + 1]);
+		}
+		return new PixelGridIndex(x, y, x, y);
 	}
 }
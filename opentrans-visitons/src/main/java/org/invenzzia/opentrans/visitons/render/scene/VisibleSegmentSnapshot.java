@@ -18,7 +18,6 @@
 package org.invenzzia.opentrans.visitons.render.scene;
 
 import com.google.common.base.Preconditions;
-import java.awt.Image;
 import java.util.LinkedList;
 import java.util.List;
 import org.invenzzia.opentrans.visitons.network.Segment;
@@ -58,16 +57,32 @@ public class VisibleSegmentSnapshot {
 	 * Snapshot of a segment information.
 	 */
 	public static class SegmentInfo {
-		public final Image image;
+		/**
+		 * Path to the segment bitmap, or <strong>null</strong>.
+		 */
+		public final String imagePath;
 		public final int x;
 		public final int y;
 		public final boolean isUsed;
 		
-		public SegmentInfo(Segment segment, Image bitmap) {
+		public SegmentInfo(Segment segment) {
 			this.x = segment.getX();
 			this.y = segment.getY();
 			this.isUsed = segment.isUsed();
-			this.image = bitmap;
+			this.imagePath = segment.getImagePath();
+		}
+		
+		/**
+		 * Describes an empty segment that is not resident in the memory.
+		 * 
+		 * @param x Segment position.
+		 * @param y Segment position.
+		 */
+		public SegmentInfo(int x, int y) {
+			this.x = x;
+			this.y = y;
+			this.isUsed = false;
+			this.imagePath = null;
 		}
 	}
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render.stream;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.util.Map;
+import org.invenzzia.opentrans.visitons.render.FrameProfiler;
+import org.invenzzia.opentrans.visitons.render.HoverCollector;
+import org.invenzzia.opentrans.visitons.render.RenderingLayer;
+import org.invenzzia.opentrans.visitons.render.RenderingStreamAdapter;
+
+/**
+ * Draws the rendering statistics in the corner of the screen, if enabled in the
+ * {@link FrameProfiler}. It should be the last stream of the {@link RenderingLayer#OVERLAY} layer. The numbers
+ * come from the previous frame.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class FrameProfilerStream extends RenderingStreamAdapter {
+	private static final Color BACKGROUND_COLOR = new Color(0x00, 0x00, 0x00, 0xaa);
+	private static final Color TEXT_COLOR = Color.WHITE;
+	private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+	private static final int LINE_HEIGHT = 13;
+	private static final int MARGIN = 6;
+	private static final int WIDTH = 300;
+
+	@Override
+	public void render(Graphics2D graphics, Map<Object, Object> scene, HoverCollector hoverCollector, long prevTimeFrame) {
+		FrameProfiler profiler = this.frameProfiler;
+		if(null == profiler || !profiler.isOverlayVisible()) {
+			return;
+		}
+		int streamNum = profiler.getStreamNum();
+		int lineNum = streamNum + 4;
+		graphics.setColor(BACKGROUND_COLOR);
+		graphics.fillRect(MARGIN, MARGIN, WIDTH, lineNum * LINE_HEIGHT + MARGIN);
+		graphics.setColor(TEXT_COLOR);
+		graphics.setFont(FONT);
+		
+		int x = MARGIN * 2;
+		int y = MARGIN + LINE_HEIGHT;
+		graphics.drawString(String.format("%-22s %6s %6s %6s", "[ms]", "last", "mean", "p99"), x, y);
+		for(int i = 0; i < streamNum; i++) {
+			y += LINE_HEIGHT;
+			graphics.drawString(String.format("%-22s %6.2f %6.2f %6.2f", profiler.getStreamName(i),
+				profiler.getLastTime(i) / 1000000.0, profiler.getMeanTime(i) / 1000000.0, profiler.getP99Time(i) / 1000000.0), x, y);
+		}
+		y += LINE_HEIGHT;
+		graphics.drawString(String.format("%-22s %6.2f %6.2f %6.2f", "frame",
+			profiler.getLastFrameTime(), profiler.getMeanFrameTime(), profiler.getP99FrameTime()), x, y);
+		y += LINE_HEIGHT;
+		graphics.drawString("painters: "+profiler.getPainterNum()+", vertices: "+profiler.getVertexNum(), x, y);
+		y += LINE_HEIGHT;
+		graphics.drawString("vehicles: "+profiler.getVehicleNum()+", frames: "+profiler.getFrameNum(), x, y);
+	}
+}
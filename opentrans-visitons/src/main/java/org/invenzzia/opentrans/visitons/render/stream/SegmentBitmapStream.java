@@ -17,12 +17,16 @@
  */
 package org.invenzzia.opentrans.visitons.render.stream;
 
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.util.Map;
 import org.invenzzia.opentrans.visitons.render.CameraModel;
 import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
 import org.invenzzia.opentrans.visitons.render.HoverCollector;
 import org.invenzzia.opentrans.visitons.render.RenderingStreamAdapter;
+import org.invenzzia.opentrans.visitons.render.SegmentBitmapCache;
 import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot.SegmentInfo;
 
@@ -34,20 +38,35 @@ import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot.Segm
  */
 public class SegmentBitmapStream extends RenderingStreamAdapter {
 	private static final double MAX_ZOOM_VISIBILITY = 3.0;
+	/**
+	 * Delivers the decoded bitmaps in the size close to the screen size.
+	 */
+	private final SegmentBitmapCache bitmapCache;
+	
+	@Inject
+	public SegmentBitmapStream(SegmentBitmapCache bitmapCache) {
+		this.bitmapCache = Preconditions.checkNotNull(bitmapCache);
+	}
 	
 	@Override
 	public void render(Graphics2D graphics, Map<Object, Object> snapshot, HoverCollector hoverCollector, long prevTimeFrame) {
 		VisibleSegmentSnapshot vss = this.extract(snapshot, VisibleSegmentSnapshot.class);
 		CameraModelSnapshot camera = this.extract(snapshot, CameraModelSnapshot.class);
+		// The bitmaps drawn in this frame are pinned in the cache.
+		this.bitmapCache.beginFrame();
 		if(null != vss && null != camera) {
+			if(camera.getMpp() >= MAX_ZOOM_VISIBILITY) {
+				return;
+			}
+			int newSize = (int) Math.round((CameraModel.DEFAULT_ZOOM / camera.getMpp() * CameraModel.SEGMENT_SIZE));
 			for(SegmentInfo segment: vss.getSegments()) {
-				if(null != segment.image) {
-					int x = (int) camera.world2pixX(segment.x * CameraModel.SEGMENT_SIZE);
-					int y = (int) camera.world2pixY(segment.y * CameraModel.SEGMENT_SIZE);
-
-					if(camera.getMpp() < MAX_ZOOM_VISIBILITY) {
-						int newSize = (int) Math.round((CameraModel.DEFAULT_ZOOM / camera.getMpp() * CameraModel.SEGMENT_SIZE));
-						graphics.drawImage(segment.image, x, y, newSize, newSize, null);
+				if(null != segment.imagePath) {
+					// Not decoded yet: the cache publishes the bitmap to the scene when it is ready.
+					BufferedImage image = this.bitmapCache.getImage(segment.imagePath, newSize);
+					if(null != image) {
+						int x = (int) camera.world2pixX(segment.x * CameraModel.SEGMENT_SIZE);
+						int y = (int) camera.world2pixY(segment.y * CameraModel.SEGMENT_SIZE);
+						graphics.drawImage(image, x, y, newSize, newSize, null);
 					}
 				}
 			}
@@ -17,11 +17,15 @@
 
 package org.invenzzia.opentrans.visitons.render.stream;
 
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
 import java.awt.Color;
+import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.util.Map;
 import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
 import org.invenzzia.opentrans.visitons.render.HoverCollector;
+import org.invenzzia.opentrans.visitons.render.LevelOfDetail;
 import org.invenzzia.opentrans.visitons.render.RenderingStreamAdapter;
 import org.invenzzia.opentrans.visitons.render.scene.StopSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.StopSnapshot.StopNameInfo;
@@ -34,21 +38,32 @@ import org.invenzzia.opentrans.visitons.render.scene.StopSnapshot.StopNameInfo;
 public class StopLabelStream extends RenderingStreamAdapter {
 	private static final Color FRAME_COLOR = new Color(0xEE, 0xEE, 0xEE, 0xCC);
 	private static final Color TEXT_COLOR = new Color(0x55, 0x99, 0xFF, 0xCC);
+	/**
+	 * How much detail to draw at the current zoom level.
+	 */
+	private LevelOfDetail levelOfDetail = new LevelOfDetail();
+	
+	@Inject
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+		this.levelOfDetail = Preconditions.checkNotNull(levelOfDetail);
+	}
 	
 	@Override
 	public void render(Graphics2D graphics, Map<Object, Object> scene, HoverCollector hoverCollector, long prevTimeFrame) {
 		StopSnapshot stopSnapshot  = this.extract(scene, StopSnapshot.class);
 		CameraModelSnapshot camera = this.extract(scene, CameraModelSnapshot.class);
-		if(null != stopSnapshot) {
+		if(null != stopSnapshot && this.levelOfDetail.areStopLabelsVisible(camera)) {
 			graphics.setFont(this.fontRepository.getFont("stop-name"));
+			FontMetrics metrics = graphics.getFontMetrics();
+			int height = metrics.getHeight();
+			int rounding = (int)camera.world2pix(1.8);
 			for(StopNameInfo info: stopSnapshot.getStopNameInfo()) {
-				int width = graphics.getFontMetrics().stringWidth(info.label);
-				int height = graphics.getFontMetrics().getHeight();
-				width += 4;
-				
 				int x = camera.world2pixX(info.x);
 				int y = camera.world2pixY(info.y - 15.0);
-				int rounding = (int)camera.world2pix(1.8);
+				int width = metrics.stringWidth(info.label) + 4;
+				if(!LevelOfDetail.isOnScreen(camera, x, y, Math.max(width / 2, height))) {
+					continue;
+				}
 				
 				graphics.setColor(FRAME_COLOR);
 				graphics.fillRect(x - width / 2, y - height / 2, width, height);
@@ -17,6 +17,8 @@
 
 package org.invenzzia.opentrans.visitons.render.stream;
 
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
@@ -28,6 +30,7 @@ import org.invenzzia.opentrans.visitons.geometry.Geometry;
 import org.invenzzia.opentrans.visitons.network.NetworkConst;
 import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
 import org.invenzzia.opentrans.visitons.render.HoverCollector;
+import org.invenzzia.opentrans.visitons.render.LevelOfDetail;
 import org.invenzzia.opentrans.visitons.render.RenderingStreamAdapter;
 import org.invenzzia.opentrans.visitons.render.scene.AbstractTrackObjectSnapshot.RenderableTrackObject;
 import org.invenzzia.opentrans.visitons.render.scene.CommittedTrackObjectSnapshot;
@@ -53,6 +56,15 @@ public class TrackObjectStream extends RenderingStreamAdapter {
 	private Rectangle mouseRect;
 	private HoverCollector hoverCollector;
 	private SelectedTrackObjectSnapshot selected;
+	/**
+	 * How much detail to draw at the current zoom level.
+	 */
+	private LevelOfDetail levelOfDetail = new LevelOfDetail();
+	
+	@Inject
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+		this.levelOfDetail = Preconditions.checkNotNull(levelOfDetail);
+	}
 	
 	@Override
 	public void render(Graphics2D graphics, Map<Object, Object> scene, HoverCollector hoverCollector, long prevTimeFrame) {
@@ -63,7 +75,7 @@ public class TrackObjectStream extends RenderingStreamAdapter {
 		this.selected = this.extract(scene, SelectedTrackObjectSnapshot.class);
 		this.mouseRect = this.getMousePosition(scene);
 		this.hoverCollector = hoverCollector;
-		if(null != committedTrackSnapshot) {
+		if(null != committedTrackSnapshot && this.levelOfDetail.areTrackObjectsVisible(camera)) {
 			this.drawObjects(graphics, camera, committedTrackSnapshot.getTrackObjects(), false, prevTimeFrame);
 		}
 		if(null != editableTrackSnapshot) {
@@ -87,6 +99,9 @@ public class TrackObjectStream extends RenderingStreamAdapter {
 		
 		int x = camera.world2pixX(object.x);
 		int y = camera.world2pixY(object.y);
+		if(!LevelOfDetail.isOnScreen(camera, x, y, (int) (camera.world2pix(15.0) + dist) + 1)) {
+			return;
+		}
 		
 		double angle = (object.orientation == 1 ? Geometry.normalizeAngle(object.tangent + Math.PI) : object.tangent);
 		double translation = -dist;
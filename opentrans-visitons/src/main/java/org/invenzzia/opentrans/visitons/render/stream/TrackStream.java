@@ -17,15 +17,19 @@
 
 package org.invenzzia.opentrans.visitons.render.stream;
 
+import com.google.common.base.Preconditions;
+import com.google.inject.Inject;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.Stroke;
 import java.util.Map;
 import org.invenzzia.helium.data.interfaces.IIdentifiable;
 import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
 import org.invenzzia.opentrans.visitons.render.HoverCollector;
+import org.invenzzia.opentrans.visitons.render.LevelOfDetail;
 import org.invenzzia.opentrans.visitons.render.RenderingStreamAdapter;
 import org.invenzzia.opentrans.visitons.render.painters.ITrackPainter;
 import org.invenzzia.opentrans.visitons.render.scene.AbstractTrackSnapshot;
@@ -34,6 +38,8 @@ import org.invenzzia.opentrans.visitons.render.scene.EditableTrackSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.HoveredItemSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.IgnoreHoverSnapshot;
 import org.invenzzia.opentrans.visitons.render.scene.MouseSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot.SegmentInfo;
 
 /**
  * Common code for drawing tracks. The basic algorithm is the same, but we use different strategies
@@ -45,6 +51,11 @@ public class TrackStream extends RenderingStreamAdapter {
 	public static final Stroke DEFAULT_STROKE = new BasicStroke();
 	public static final Color TRACK_COLOR = new Color(0x33, 0x33, 0xff, 0xff);
 	public static final Color SELECTED_COLOR = new Color(0x00, 0xc8, 0xff, 0xf4);
+	public static final Color OUTLINE_COLOR = new Color(0x33, 0x33, 0xff, 0x80);
+	/**
+	 * Maximum distance between the arc and its polyline in the simplified view [px].
+	 */
+	public static final double OUTLINE_FLATNESS = 1.0;
 	
 	/**
 	 * Details: how to draw edited tracks?
@@ -61,13 +72,46 @@ public class TrackStream extends RenderingStreamAdapter {
 	 * Stroke is generated dynamically, depending on the zoom.
 	 */
 	private Stroke currentStroke;
+	/**
+	 * The track stroke for the current zoom; created again only if the zoom changes.
+	 */
+	private BasicStroke zoomedStroke;
+	/**
+	 * Committed tracks pre-rendered per segment and zoom level.
+	 */
+	private final TrackTileCache tileCache;
+	/**
+	 * The tiles pay off only if the same tracks are drawn in many frames.
+	 */
+	private boolean tileCacheEnabled = true;
+	/**
+	 * How much detail to draw at the current zoom level.
+	 */
+	private LevelOfDetail levelOfDetail;
 	
 	public TrackStream() {
 		super();
 		this.editStrategy = new EditStrategy();
 		this.commitStrategy = new CommitStrategy();
+		this.tileCache = new TrackTileCache();
+		this.levelOfDetail = new LevelOfDetail();
+	}
+	
+	@Inject
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+		this.levelOfDetail = Preconditions.checkNotNull(levelOfDetail);
 	}
 
+	/**
+	 * Disable the tile cache, if each frame shows a different scene, i.e. while exporting
+	 * the map.
+	 * 
+	 * @param tileCacheEnabled 
+	 */
+	public void setTileCacheEnabled(boolean tileCacheEnabled) {
+		this.tileCacheEnabled = tileCacheEnabled;
+	}
+	
 	@Override
 	public void render(Graphics2D graphics, Map<Object, Object> scene, HoverCollector hoverCollector, long prevTimeFrame) {
 		CommittedTrackSnapshot committedTrackSnapshot = this.extract(scene, CommittedTrackSnapshot.class);
@@ -75,14 +119,27 @@ public class TrackStream extends RenderingStreamAdapter {
 		CameraModelSnapshot camera = this.extract(scene, CameraModelSnapshot.class);
 		IgnoreHoverSnapshot ignoreHover = this.extract(scene, IgnoreHoverSnapshot.class);
 		MouseSnapshot mouse = this.extract(scene, MouseSnapshot.class);
+		VisibleSegmentSnapshot vss = this.extract(scene, VisibleSegmentSnapshot.class);
 		Rectangle mouseRect = this.getMousePosition(scene);
 		if(null != committedTrackSnapshot) {
-			this.drawTracksFromSnapshot(this.commitStrategy, graphics, scene, hoverCollector, prevTimeFrame,
-				committedTrackSnapshot, camera, ignoreHover, mouse, mouseRect);
+			boolean drawVertices = this.levelOfDetail.areVerticesVisible(camera);
+			if(null != vss && this.levelOfDetail.isOutlineLevel(camera)) {
+				this.drawSegmentOutlines(graphics, vss, camera);
+			} else if(this.levelOfDetail.isSimplifiedLevel(camera)) {
+				this.drawSimplifiedTracks(this.commitStrategy, graphics, hoverCollector, committedTrackSnapshot, camera,
+					ignoreHover, mouse, mouseRect);
+			} else if(null != vss && null == committedTrackSnapshot.getVertexDebugBuf1() && null == committedTrackSnapshot.getVertexDebugBuf2()
+				&& this.tileCacheEnabled && this.tileCache.isApplicable(camera)) {
+				this.drawTracksFromTiles(this.commitStrategy, graphics, hoverCollector, committedTrackSnapshot, vss, camera,
+					ignoreHover, mouse, mouseRect, drawVertices);
+			} else {
+				this.drawTracksFromSnapshot(this.commitStrategy, graphics, scene, hoverCollector, prevTimeFrame,
+					committedTrackSnapshot, camera, ignoreHover, mouse, mouseRect, drawVertices);
+			}
 		}
 		if(null != editableTrackSnapshot) {
 			this.drawTracksFromSnapshot(this.editStrategy, graphics, scene, hoverCollector, prevTimeFrame,
-				editableTrackSnapshot, camera, ignoreHover, mouse, mouseRect);
+				editableTrackSnapshot, camera, ignoreHover, mouse, mouseRect, true);
 		}
 	}
 	
@@ -98,43 +155,37 @@ public class TrackStream extends RenderingStreamAdapter {
 	 * @param camera
 	 * @param mouse
 	 * @param mouseRect 
+	 * @param drawVertices Shall we draw the vertices at this zoom level?
 	 */
 	private void drawTracksFromSnapshot(ITrackDrawingStrategy strategy, Graphics2D graphics, Map<Object, Object> scene, HoverCollector hoverCollector,
 		long prevTimeFrame, AbstractTrackSnapshot trackSnapshot, CameraModelSnapshot camera, IgnoreHoverSnapshot ignoreHover,
-		MouseSnapshot mouse, Rectangle mouseRect)
+		MouseSnapshot mouse, Rectangle mouseRect, boolean drawVertices)
 	{
 		if(trackSnapshot.needsRefresh()) {
 			trackSnapshot.refreshTrackPainters(camera);
 		}
 
 		float height = camera.world2pix(1.5);
-		this.currentStroke = new BasicStroke(height > 1.0f ? height : 1.0f);
+		this.currentStroke = this.getZoomedStroke(height);
 		strategy.prepareTrackStroke(graphics);
 		boolean restore = false;
-		boolean found = false;
-		boolean checkHover;
+		int hovered = trackSnapshot.findHoveredTrack(graphics, mouseRect, height, ignoreHover);
 
-		for(ITrackPainter painter: trackSnapshot.getTracks()) {
-			checkHover = true;
-			if(null != ignoreHover) {
-				checkHover = ignoreHover.getTrackId() != painter.getId();
-			}
-			if(!found && checkHover && painter.hits(graphics, mouseRect)) {
-				strategy.prepareSelectedTrackStroke(graphics);
-				restore = true;
-				found = true;
-				hoverCollector.registerHoveredItem(HoveredItemSnapshot.TYPE_TRACK, painter.getId());
-				double t = painter.computePosition(mouse, camera);
-				hoverCollector.registerPosition(t);
-				
-				graphics.setColor(Color.RED);
-				graphics.drawString("POS: "+t, mouse.x() + 30, mouse.y() + 30);
-			}
+		// All the tracks have the same style, so they are drawn as a single path.
+		ITrackPainter painters[] = trackSnapshot.getTracks();
+		this.frameProfiler.countPainters(painters.length);
+		graphics.draw(trackSnapshot.getShape());
+		if(-1 != hovered) {
+			ITrackPainter painter = painters[hovered];
+			strategy.prepareSelectedTrackStroke(graphics);
+			hoverCollector.registerHoveredItem(HoveredItemSnapshot.TYPE_TRACK, painter.getId());
+			double t = painter.computePosition(mouse, camera);
+			hoverCollector.registerPosition(t);
+
+			graphics.setColor(Color.RED);
+			graphics.drawString("POS: "+t, mouse.x() + 30, mouse.y() + 30);
 			painter.draw(camera, graphics, true);
-			if(restore) {
-				strategy.restoreTrackStroke(graphics);
-				restore = false;
-			}
+			strategy.restoreTrackStroke(graphics);
 		}
 		strategy.prepareVertexStroke(graphics);
 		double points[] = trackSnapshot.getVertices();
@@ -142,30 +193,24 @@ public class TrackStream extends RenderingStreamAdapter {
 		double vertexDebug1[] = trackSnapshot.getVertexDebugBuf1();
 		double vertexDebug2[] = trackSnapshot.getVertexDebugBuf2();
 		restore = false;
-		found = false;
-		if(null != points) {
+		if(null != points && drawVertices) {
 			float radius = camera.world2pix(2.0);
 			if(radius < 3.0f) {
 				radius = 3.0f;
 			}
 			int radiusInt = (int)Math.ceil(radius);
 			int halfRadius = (int) Math.floor(radiusInt / 2.0);
+			int hoveredVertex = trackSnapshot.findHoveredVertex(camera, mouse, radiusInt, halfRadius, ignoreHover);
+			this.frameProfiler.countVertices(points.length / 2);
 			
 			for(int i = 0, j = 0; i < points.length; i += 2, j++) {
 				int x = camera.world2pixX(points[i]) ;
 				int y = camera.world2pixY(points[i+1]);
 
-				if(null != mouse) {
-					checkHover = true;
-					if(null != ignoreHover) {
-						checkHover = ignoreHover.getVertexId() != ids[j];
-					}
-					if(!found && checkHover && mouse.hits(x - halfRadius, y - halfRadius, radiusInt, radiusInt)) {
-						strategy.prepareSelectedVertexStroke(graphics);
-						restore = true;
-						found = true;
-						hoverCollector.registerHoveredItem(HoveredItemSnapshot.TYPE_VERTEX, ids[j]);
-					}
+				if(j == hoveredVertex) {
+					strategy.prepareSelectedVertexStroke(graphics);
+					restore = true;
+					hoverCollector.registerHoveredItem(HoveredItemSnapshot.TYPE_VERTEX, ids[j]);
 				}
 				strategy.drawVertex(graphics, x, y, radiusInt, halfRadius, prevTimeFrame);
 				if(null != vertexDebug1) {
@@ -181,6 +226,111 @@ public class TrackStream extends RenderingStreamAdapter {
 		}
 	}
 	
+	/**
+	 * @param height Track width at the current zoom [px].
+	 * @return Track stroke of the given width, at least 1 px.
+	 */
+	private BasicStroke getZoomedStroke(float height) {
+		float width = height > 1.0f ? height : 1.0f;
+		if(null == this.zoomedStroke || this.zoomedStroke.getLineWidth() != width) {
+			this.zoomedStroke = new BasicStroke(width);
+		}
+		return this.zoomedStroke;
+	}
+	
+	/**
+	 * The most distant view: the used segments are drawn as filled squares.
+	 */
+	private void drawSegmentOutlines(Graphics2D graphics, VisibleSegmentSnapshot vss, CameraModelSnapshot camera) {
+		int size = (int) Math.ceil(LevelOfDetail.getSegmentSize(camera));
+		graphics.setColor(OUTLINE_COLOR);
+		for(SegmentInfo segment: vss.getSegments()) {
+			if(segment.isUsed) {
+				graphics.fillRect(camera.world2pixX(segment.x * CameraModelSnapshot.SEGMENT_SIZE),
+					camera.world2pixY(segment.y * CameraModelSnapshot.SEGMENT_SIZE), size, size);
+			}
+		}
+	}
+	
+	/**
+	 * Zoomed out view: all the tracks are drawn as a single thin path of polylines,
+	 * without vertices. Only the hovered track is drawn with the full shape.
+	 */
+	private void drawSimplifiedTracks(ITrackDrawingStrategy strategy, Graphics2D graphics, HoverCollector hoverCollector,
+		AbstractTrackSnapshot trackSnapshot, CameraModelSnapshot camera, IgnoreHoverSnapshot ignoreHover,
+		MouseSnapshot mouse, Rectangle mouseRect)
+	{
+		if(trackSnapshot.needsRefresh()) {
+			trackSnapshot.refreshTrackPainters(camera);
+		}
+		this.currentStroke = DEFAULT_STROKE;
+		strategy.prepareTrackStroke(graphics);
+		Object antialiasing = graphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+		graphics.draw(trackSnapshot.getOutline(OUTLINE_FLATNESS));
+		this.frameProfiler.countPainters(trackSnapshot.getTracks().length);
+		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+
+		int hovered = trackSnapshot.findHoveredTrack(graphics, mouseRect, 1.0, ignoreHover);
+		if(-1 != hovered) {
+			ITrackPainter painter = trackSnapshot.getTracks()[hovered];
+			strategy.prepareSelectedTrackStroke(graphics);
+			hoverCollector.registerHoveredItem(HoveredItemSnapshot.TYPE_TRACK, painter.getId());
+			hoverCollector.registerPosition(painter.computePosition(mouse, camera));
+			painter.draw(camera, graphics, true);
+			strategy.restoreTrackStroke(graphics);
+		}
+	}
+	
+	/**
+	 * Draws the tracks and vertices from the cached tiles, and then only the hovered items
+	 * on top of them. Only the hovered items are reported to the profiler as drawn.
+	 */
+	private void drawTracksFromTiles(ITrackDrawingStrategy strategy, Graphics2D graphics, HoverCollector hoverCollector,
+		AbstractTrackSnapshot trackSnapshot, VisibleSegmentSnapshot vss, CameraModelSnapshot camera, IgnoreHoverSnapshot ignoreHover,
+		MouseSnapshot mouse, Rectangle mouseRect, boolean drawVertices)
+	{
+		if(trackSnapshot.needsRefresh()) {
+			trackSnapshot.refreshTrackPainters(camera);
+		}
+		float height = camera.world2pix(1.5);
+		this.currentStroke = this.getZoomedStroke(height);
+		float radius = camera.world2pix(2.0);
+		if(radius < 3.0f) {
+			radius = 3.0f;
+		}
+		int radiusInt = (int)Math.ceil(radius);
+		int halfRadius = (int) Math.floor(radiusInt / 2.0);
+		
+		this.tileCache.draw(graphics, vss, trackSnapshot, camera, strategy, Math.max(height, 1.0f), radiusInt, halfRadius, drawVertices);
+
+		strategy.prepareTrackStroke(graphics);
+		int hovered = trackSnapshot.findHoveredTrack(graphics, mouseRect, height, ignoreHover);
+		if(-1 != hovered) {
+			ITrackPainter painter = trackSnapshot.getTracks()[hovered];
+			strategy.prepareSelectedTrackStroke(graphics);
+			hoverCollector.registerHoveredItem(HoveredItemSnapshot.TYPE_TRACK, painter.getId());
+			double t = painter.computePosition(mouse, camera);
+			hoverCollector.registerPosition(t);
+			painter.draw(camera, graphics, true);
+			this.frameProfiler.countPainters(1);
+		}
+		if(!drawVertices) {
+			return;
+		}
+		strategy.prepareVertexStroke(graphics);
+		int hoveredVertex = trackSnapshot.findHoveredVertex(camera, mouse, radiusInt, halfRadius, ignoreHover);
+		if(-1 != hoveredVertex) {
+			double points[] = trackSnapshot.getVertices();
+			strategy.prepareSelectedVertexStroke(graphics);
+			hoverCollector.registerHoveredItem(HoveredItemSnapshot.TYPE_VERTEX, trackSnapshot.getVertexIds()[hoveredVertex]);
+			strategy.drawVertex(graphics, camera.world2pixX(points[hoveredVertex * 2]), camera.world2pixY(points[hoveredVertex * 2 + 1]),
+				radiusInt, halfRadius, 0L);
+			strategy.restoreVertexStroke(graphics);
+			this.frameProfiler.countVertices(1);
+		}
+	}
+	
 	/**
 	 * Exact painting and details are delegated to two classes implementing this
 	 * strategy.
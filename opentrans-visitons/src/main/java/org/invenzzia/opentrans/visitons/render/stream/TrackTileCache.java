@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.invenzzia.opentrans.visitons.render.stream;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
+import org.invenzzia.opentrans.visitons.render.PixelGridIndex;
+import org.invenzzia.opentrans.visitons.render.painters.CachedTrackPainter;
+import org.invenzzia.opentrans.visitons.render.painters.ITrackPainter;
+import org.invenzzia.opentrans.visitons.render.scene.AbstractTrackSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot.SegmentInfo;
+
+/**
+ * Keeps the committed tracks and vertices rendered into off-screen images, one per
+ * segment and zoom level, so that panning costs a few image copies instead of drawing
+ * every track again.
+ * 
+ * <p>Each tile remembers the painters and the vertex positions it was drawn from.
+ * The tile is valid as long as the same painters and vertices fall into its area.
+ * Comparing the painter references is enough, because the scene exporters keep the
+ * painters in {@link CachedTrackPainter}: a track keeps its painter until its geometry
+ * changes. This way the tiles crossed by the network edits are redrawn, and the rest
+ * is reused.</p>
+ * 
+ * <p>The cache is used by the rendering thread only.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+class TrackTileCache {
+	/**
+	 * Tiles bigger than that are not cached; when zooming in that much, there are only
+	 * a few tracks to draw anyway [px].
+	 */
+	public static final int MAX_TILE_SIZE = 1024;
+	/**
+	 * Memory limit of the cache, in pixels (four bytes each).
+	 */
+	public static final long MAX_CACHED_PIXELS = 16L * 1024L * 1024L;
+	/**
+	 * Cached tiles in the LRU order.
+	 */
+	private final Map<TileKey, Tile> tiles = new LinkedHashMap<>(64, 0.75f, true);
+	/**
+	 * Number of pixels occupied by the cached tiles.
+	 */
+	private long cachedPixels;
+	/**
+	 * Number of the tiles drawn so far.
+	 */
+	private int drawnTiles;
+	/**
+	 * Reused for drawing all the tracks of a tile with a single call.
+	 */
+	private final Path2D.Float batch = new Path2D.Float();
+	
+	/**
+	 * Checks whether the tiles can be used for the given zoom level.
+	 * 
+	 * @param camera Camera snapshot.
+	 * @return True, if the tiles are small enough.
+	 */
+	public boolean isApplicable(CameraModelSnapshot camera) {
+		return this.getTileSize(camera) <= MAX_TILE_SIZE;
+	}
+	
+	/**
+	 * Draws the tiles of all the visible segments, redrawing the outdated ones.
+	 * 
+	 * @param graphics Screen.
+	 * @param vss Visible segments.
+	 * @param snapshot Committed tracks with the refreshed painters.
+	 * @param camera Camera snapshot.
+	 * @param strategy How to draw tracks and vertices.
+	 * @param margin Stroke width [px].
+	 * @param radius Vertex size [px].
+	 * @param halfRadius Vertex offset [px].
+	 * @param withVertices Shall the tiles contain the vertices?
+	 */
+	public void draw(Graphics2D graphics, VisibleSegmentSnapshot vss, AbstractTrackSnapshot snapshot, CameraModelSnapshot camera,
+		TrackStream.ITrackDrawingStrategy strategy, double margin, int radius, int halfRadius, boolean withVertices)
+	{
+		int size = this.getTileSize(camera);
+		for(SegmentInfo segment: vss.getSegments()) {
+			int x = camera.world2pixX(segment.x * CameraModelSnapshot.SEGMENT_SIZE);
+			int y = camera.world2pixY(segment.y * CameraModelSnapshot.SEGMENT_SIZE);
+			TileKey key = new TileKey(segment.x, segment.y, camera.getMpp(), withVertices);
+			Tile tile = this.tiles.get(key);
+			if(null == tile || !tile.isValidFor(snapshot, camera, x, y, margin, radius)) {
+				if(null != tile) {
+					this.remove(key);
+				}
+				tile = this.createTile(snapshot, camera, strategy, x, y, size, margin, radius, halfRadius, withVertices);
+				this.put(key, tile);
+				this.drawnTiles++;
+			}
+			if(null != tile.image) {
+				graphics.drawImage(tile.image, x, y, null);
+			}
+		}
+	}
+	
+	/**
+	 * @return Number of the cached tiles.
+	 */
+	public int size() {
+		return this.tiles.size();
+	}
+	
+	/**
+	 * @return Number of the tiles drawn since the cache was created; the reused tiles are not counted.
+	 */
+	public int getDrawnTileNum() {
+		return this.drawnTiles;
+	}
+	
+	/**
+	 * Removes all the tiles.
+	 */
+	public void clear() {
+		this.tiles.clear();
+		this.cachedPixels = 0L;
+	}
+	
+	private int getTileSize(CameraModelSnapshot camera) {
+		return (int) Math.ceil(CameraModelSnapshot.SEGMENT_SIZE / camera.getMpp()) + 1;
+	}
+	
+	private void put(TileKey key, Tile tile) {
+		this.tiles.put(key, tile);
+		this.cachedPixels += tile.getPixels();
+		Iterator<Tile> it = this.tiles.values().iterator();
+		while(this.cachedPixels > MAX_CACHED_PIXELS && it.hasNext()) {
+			Tile eldest = it.next();
+			if(eldest != tile) {
+				this.cachedPixels -= eldest.getPixels();
+				it.remove();
+			}
+		}
+	}
+	
+	private void remove(TileKey key) {
+		Tile tile = this.tiles.remove(key);
+		if(null != tile) {
+			this.cachedPixels -= tile.getPixels();
+		}
+	}
+	
+	private Tile createTile(AbstractTrackSnapshot snapshot, CameraModelSnapshot camera, TrackStream.ITrackDrawingStrategy strategy,
+		int x, int y, int size, double margin, int radius, int halfRadius, boolean withVertices)
+	{
+		ITrackPainter allPainters[] = snapshot.getTracks();
+		PixelGridIndex index = snapshot.getTrackIndex();
+		int num = index.query(x - margin, y - margin, x + size + margin, y + size + margin);
+		ITrackPainter painters[] = new ITrackPainter[num];
+		for(int i = 0; i < num; i++) {
+			painters[i] = allPainters[index.getResult(i)];
+		}
+		double points[] = snapshot.getVertices();
+		index = snapshot.getVertexIndex(camera);
+		num = (withVertices ? index.query(x - radius, y - radius, x + size + radius, y + size + radius) : 0);
+		double vertices[] = new double[num * 2];
+		for(int i = 0; i < num; i++) {
+			int idx = index.getResult(i);
+			vertices[i * 2] = points[idx * 2];
+			vertices[i * 2 + 1] = points[idx * 2 + 1];
+		}
+		
+		BufferedImage image = null;
+		if(painters.length > 0 || vertices.length > 0) {
+			image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = image.createGraphics();
+			try {
+				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				g.translate(-x, -y);
+				strategy.prepareTrackStroke(g);
+				this.batch.reset();
+				for(ITrackPainter painter: painters) {
+					painter.appendShape(this.batch);
+				}
+				g.draw(this.batch);
+				strategy.prepareVertexStroke(g);
+				for(int i = 0; i < vertices.length; i += 2) {
+					strategy.drawVertex(g, camera.world2pixX(vertices[i]), camera.world2pixY(vertices[i + 1]), radius, halfRadius, 0L);
+				}
+			} finally {
+				g.dispose();
+			}
+		}
+		return new Tile(image, painters, vertices, withVertices);
+	}
+	
+	/**
+	 * Identifies the tile: the segment and the zoom level.
+	 */
+	static final class TileKey {
+		private final int x;
+		private final int y;
+		private final double mpp;
+		private final boolean withVertices;
+		
+		public TileKey(int x, int y, double mpp, boolean withVertices) {
+			this.x = x;
+			this.y = y;
+			this.mpp = mpp;
+			this.withVertices = withVertices;
+		}
+		
+		@Override
+		public boolean equals(Object object) {
+			if(!(object instanceof TileKey)) {
+				return false;
+			}
+			TileKey key = (TileKey) object;
+			return this.x == key.x && this.y == key.y && Double.compare(this.mpp, key.mpp) == 0 && this.withVertices == key.withVertices;
+		}
+		
+		@Override
+		public int hashCode() {
+			long bits = Double.doubleToLongBits(this.mpp);
+			return 31 * (31 * (31 * this.x + this.y) + (int) (bits ^ (bits >>> 32))) + (this.withVertices ? 1 : 0);
+		}
+	}
+	
+	/**
+	 * Rendered tile together with the data it was rendered from.
+	 */
+	static final class Tile {
+		/**
+		 * The image; <strong>null</strong> for an empty tile.
+		 */
+		private final BufferedImage image;
+		private final ITrackPainter painters[];
+		/**
+		 * World coordinates of the drawn vertices.
+		 */
+		private final double vertices[];
+		/**
+		 * Does the tile contain the vertices?
+		 */
+		private final boolean withVertices;
+		
+		public Tile(BufferedImage image, ITrackPainter painters[], double vertices[], boolean withVertices) {
+			this.image = image;
+			this.painters = painters;
+			this.vertices = vertices;
+			this.withVertices = withVertices;
+		}
+		
+		public long getPixels() {
+			if(null == this.image) {
+				return 0L;
+			}
+			return (long) this.image.getWidth() * this.image.getHeight();
+		}
+		
+		/**
+		 * Checks whether the same painters and vertices still fall into the tile area.
+		 * The painters are compared by reference, see {@link CachedTrackPainter}.
+		 */
+		public boolean isValidFor(AbstractTrackSnapshot snapshot, CameraModelSnapshot camera, int x, int y, double margin, int radius) {
+			int size = (null != this.image ? this.image.getWidth() : (int) Math.ceil(CameraModelSnapshot.SEGMENT_SIZE / camera.getMpp()) + 1);
+			ITrackPainter allPainters[] = snapshot.getTracks();
+			PixelGridIndex index = snapshot.getTrackIndex();
+			int num = index.query(x - margin, y - margin, x + size + margin, y + size + margin);
+			if(num != this.painters.length) {
+				return false;
+			}
+			for(int i = 0; i < num; i++) {
+				if(allPainters[index.getResult(i)] != this.painters[i]) {
+					return false;
+				}
+			}
+			if(!this.withVertices) {
+				return true;
+			}
+			double points[] = snapshot.getVertices();
+			index = snapshot.getVertexIndex(camera);
+			num = index.query(x - radius, y - radius, x + size + radius, y + size + radius);
+			if(num * 2 != this.vertices.length) {
+				return false;
+			}
+			for(int i = 0; i < num; i++) {
+				int idx = index.getResult(i);
+				if(points[idx * 2] != this.vertices[i * 2] || points[idx * 2 + 1] != this.vertices[i * 2 + 1]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -38,7 +38,14 @@ import org.invenzzia.opentrans.visitons.render.scene.VehicleSnapshot.RenderableV
  * @author Tomasz Jędrzejewski
  */
 public class VehicleStream extends RenderingStreamAdapter {
-	private BasicStroke VH_STROKE = new BasicStroke();
+	/**
+	 * Vehicle stroke for the current zoom; created again only if the zoom changes.
+	 */
+	private BasicStroke vehicleStroke;
+	/**
+	 * Reused for drawing all the vehicle segments.
+	 */
+	private final Line2D.Double line = new Line2D.Double();
 	
 	private Rectangle mouseRect;
 	private HoverCollector hoverCollector;
@@ -54,10 +61,14 @@ public class VehicleStream extends RenderingStreamAdapter {
 			this.mouseRect = this.getMousePosition(scene);
 			this.hoverCollector = hoverCollector;
 			
-			BasicStroke vehicleStroke = new BasicStroke(camera.world2pix(2.4));
+			float width = camera.world2pix(2.4);
+			if(null == this.vehicleStroke || this.vehicleStroke.getLineWidth() != width) {
+				this.vehicleStroke = new BasicStroke(width);
+			}
 		
 			for(RenderableVehicle rvh: vehicles.getVehicles()) {
-				this.renderVehicle(graphics, rvh, camera, mouse, vehicleStroke);
+				this.renderVehicle(graphics, rvh, camera, mouse, this.vehicleStroke);
+				this.frameProfiler.countVehicles(1);
 			}
 		}
 	}
@@ -68,8 +79,9 @@ public class VehicleStream extends RenderingStreamAdapter {
 		
 		graphics.setStroke(stroke);
 		
+		Line2D.Double line = this.line;
 		for(int i = 0; i < (knots.length - 3); i += 2) {
-			Line2D line = new Line2D.Double(
+			line.setLine(
 				(double)camera.world2pixX(knots[i]),
 				(double)camera.world2pixY(knots[i+1]),
 				(double)camera.world2pixX(knots[i+2]),
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.simulation;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.io.ProjectReader;
+
+/**
+ * Loads the project saved by the editor from the file. This is the default loader
+ * of the headless simulation, selected with the <tt>--project</tt> option.
+ *
+ * @author Tomasz Jędrzejewski
+ */
+public class FileProjectLoader implements IProjectLoader {
+	/**
+	 * The project file.
+	 */
+	private final File file;
+
+	public FileProjectLoader(File file) {
+		this.file = Preconditions.checkNotNull(file);
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	@Override
+	public Project loadProject() throws Exception {
+		return new ProjectReader().read(this.file);
+	}
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.simulation;
+
+import com.google.common.base.Preconditions;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.network.TrackGeometryStore;
+
+/**
+ * Runs the simulation without any user interface, in the calling thread. The simulated
+ * period is given as the time of the day, i.e. 05:00 - 24:00. The simulation can run
+ * as fast as possible or N times faster than the real time. At the end, it reports the
+ * number of steps per second of the wall-clock time, so that we can evaluate the variants
+ * of the project in batches.
+ *
+ * <p>Usage:</p>
+ * <pre>
+ * HeadlessSimulation --project file.otp [--from 05:00] [--to 24:00] [--step 0.1] [--warp max|N]
+ * HeadlessSimulation --loader class.name [--from 05:00] [--to 24:00] [--step 0.1] [--warp max|N]
+ * </pre>
+ *
+ * @author Tomasz Jędrzejewski
+ */
+public class HeadlessSimulation {
+	/**
+	 * How often the progress is reported [ns].
+	 */
+	private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+	/**
+	 * The simulation.
+	 */
+	private final SimulationEngine engine;
+	/**
+	 * Start time, in seconds since midnight.
+	 */
+	private int from = 5 * 3600;
+	/**
+	 * End time, in seconds since midnight.
+	 */
+	private int to = 24 * 3600;
+	/**
+	 * Simulated time per step in seconds.
+	 */
+	private double stepLength = SimulationThread.DEFAULT_STEP_LENGTH;
+	/**
+	 * Simulated seconds per real second; {@link SimulationThread#MAXIMUM_SPEED} for no limit.
+	 */
+	private double timeWarp = SimulationThread.MAXIMUM_SPEED;
+	/**
+	 * Number of steps performed during the last run.
+	 */
+	private long stepNum;
+	/**
+	 * Wall-clock duration of the last run [ns].
+	 */
+	private long wallTime;
+	/**
+	 * Number of the tracks in the simulated network.
+	 */
+	private int trackNum;
+	/**
+	 * Total length of the tracks in the simulated network [m].
+	 */
+	private double networkLength;
+
+	public HeadlessSimulation() {
+		this(new SimulationEngine());
+	}
+
+	public HeadlessSimulation(SimulationEngine engine) {
+		this.engine = Preconditions.checkNotNull(engine);
+	}
+
+	public static void main(String args[]) {
+		HeadlessSimulation simulation = new HeadlessSimulation();
+		String loaderName = null;
+		String projectName = null;
+		try {
+			int size = args.length;
+			for(int i = 0; i < size; i++) {
+				switch(args[i]) {
+					case "--project":
+						projectName = args[++i];
+						break;
+					case "--loader":
+						loaderName = args[++i];
+						break;
+					case "--from":
+						simulation.setFrom(parseTime(args[++i]));
+						break;
+					case "--to":
+						simulation.setTo(parseTime(args[++i]));
+						break;
+					case "--step":
+						simulation.setStepLength(Double.parseDouble(args[++i]));
+						break;
+					case "--warp":
+						String warp = args[++i];
+						simulation.setTimeWarp("max".equals(warp) ? SimulationThread.MAXIMUM_SPEED : Double.parseDouble(warp));
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option: "+args[i]);
+				}
+			}
+			if(null == loaderName && null == projectName) {
+				throw new IllegalArgumentException("Neither the project file, nor the project loader is specified.");
+			}
+			if(null != loaderName && null != projectName) {
+				throw new IllegalArgumentException("The project file and the project loader cannot be used together.");
+			}
+		} catch(IllegalArgumentException | ArrayIndexOutOfBoundsException exception) {
+			System.err.println(exception.getMessage());
+			printHelp();
+			System.exit(1);
+		}
+
+		try {
+			IProjectLoader loader;
+			if(null != projectName) {
+				loader = new FileProjectLoader(new File(projectName));
+			} else {
+				loader = (IProjectLoader) Class.forName(loaderName).newInstance();
+			}
+			Project project = loader.loadProject();
+			simulation.run(project);
+			simulation.printReport();
+		} catch(Exception exception) {
+			System.err.println("The simulation failed: "+exception.getMessage());
+			exception.printStackTrace(System.err);
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Parses the time of the day in the format <tt>HH:MM</tt> or <tt>HH:MM:SS</tt>.
+	 *
+	 * @param time Time of the day.
+	 * @return Seconds since midnight.
+	 */
+	public static int parseTime(String time) {
+		String parts[] = time.split(":");
+		if(parts.length < 2 || parts.length > 3) {
+			throw new IllegalArgumentException("Invalid time format: "+time);
+		}
+		int seconds = Integer.parseInt(parts[0]) * 3600 + Integer.parseInt(parts[1]) * 60;
+		if(parts.length == 3) {
+			seconds += Integer.parseInt(parts[2]);
+		}
+		return seconds;
+	}
+
+	public void setFrom(int from) {
+		Preconditions.checkArgument(from >= 0, "The start time cannot be negative.");
+		this.from = from;
+	}
+
+	public int getFrom() {
+		return this.from;
+	}
+
+	public void setTo(int to) {
+		this.to = to;
+	}
+
+	public int getTo() {
+		return this.to;
+	}
+
+	public void setStepLength(double stepLength) {
+		Preconditions.checkArgument(stepLength > 0.0, "The simulation step must be positive.");
+		this.stepLength = stepLength;
+	}
+
+	public double getStepLength() {
+		return this.stepLength;
+	}
+
+	public void setTimeWarp(double timeWarp) {
+		Preconditions.checkArgument(timeWarp >= 0.0, "The time warp cannot be negative.");
+		this.timeWarp = timeWarp;
+	}
+
+	public double getTimeWarp() {
+		return this.timeWarp;
+	}
+
+	public SimulationEngine getEngine() {
+		return this.engine;
+	}
+
+	/**
+	 * Simulates the configured period of the day.
+	 *
+	 * @param project The simulated project.
+	 * @throws InterruptedException If the thread is interrupted while waiting for the real time.
+	 */
+	public void run(Project project) throws InterruptedException {
+		Preconditions.checkState(this.to > this.from, "The end time must be later than the start time.");
+		this.engine.load(project);
+		TrackGeometryStore geometry = project.getWorld().getTrackGeometry();
+		this.trackNum = geometry.size();
+		this.networkLength = geometry.getTotalLength();
+		long steps = (long) Math.ceil((this.to - this.from) / this.stepLength);
+		long stepTime = (this.timeWarp > SimulationThread.MAXIMUM_SPEED ? (long) (this.stepLength * 1000000000.0 / this.timeWarp) : 0L);
+
+		long start = System.nanoTime();
+		long nextStep = start;
+		long nextReport = start + REPORT_INTERVAL;
+		for(long i = 0; i < steps; i++) {
+			this.engine.step(this.stepLength);
+			if(stepTime > 0) {
+				nextStep += stepTime;
+				long delay = nextStep - System.nanoTime();
+				if(delay > 0) {
+					TimeUnit.NANOSECONDS.sleep(delay);
+				}
+			}
+			if((i & 0x3FF) == 0 && System.nanoTime() > nextReport) {
+				nextReport += REPORT_INTERVAL;
+				this.stepNum = i + 1;
+				this.wallTime = System.nanoTime() - start;
+				System.out.println("Simulated "+formatTime(this.from + (int) this.engine.getTime())+", "+String.format("%.1f", this.getStepsPerSecond())+" steps/s");
+			}
+		}
+		this.wallTime = System.nanoTime() - start;
+		this.stepNum = steps;
+	}
+
+	/**
+	 * @return Number of the tracks in the network simulated during the last run.
+	 */
+	public int getTrackNum() {
+		return this.trackNum;
+	}
+
+	/**
+	 * @return Total length of the tracks in the network simulated during the last run [m].
+	 */
+	public double getNetworkLength() {
+		return this.networkLength;
+	}
+
+	/**
+	 * @return Number of steps performed during the last run.
+	 */
+	public long getStepNum() {
+		return this.stepNum;
+	}
+
+	/**
+	 * @return Wall-clock duration of the last run in seconds.
+	 */
+	public double getWallTime() {
+		return this.wallTime / 1000000000.0;
+	}
+
+	/**
+	 * @return Simulation steps per second of the wall-clock time during the last run.
+	 */
+	public double getStepsPerSecond() {
+		if(this.wallTime <= 0) {
+			return 0.0;
+		}
+		return this.stepNum / this.getWallTime();
+	}
+
+	/**
+	 * Prints the summary of the last run to the standard output.
+	 */
+	public void printReport() {
+		System.out.println("Period: "+formatTime(this.from)+" - "+formatTime(this.to));
+		System.out.println("Network: "+this.trackNum+" tracks, "+String.format("%.3f", this.networkLength / 1000.0)+" km");
+		System.out.println("Vehicles: "+this.engine.getVehicleNum());
+		System.out.println("Steps: "+this.stepNum+" x "+this.stepLength+" s");
+		System.out.println("Wall time: "+String.format("%.3f", this.getWallTime())+" s");
+		System.out.println("Steps per second: "+String.format("%.1f", this.getStepsPerSecond()));
+		if(this.wallTime > 0) {
+			System.out.println("Speed-up: "+String.format("%.1f", this.engine.getTime() / this.getWallTime())+"x");
+		}
+	}
+
+	private static String formatTime(int seconds) {
+		return String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+	}
+
+	private static void printHelp() {
+		System.out.println("Usage: HeadlessSimulation --project file.otp [options]");
+		System.out.println("       HeadlessSimulation --loader class.name [options]");
+		System.out.println("  --project file.otp   project file saved by the editor");
+		System.out.println("  --loader class.name  implementation of IProjectLoader that delivers the project");
+		System.out.println("  --from HH:MM         start of the simulated period (default 05:00)");
+		System.out.println("  --to HH:MM           end of the simulated period (default 24:00)");
+		System.out.println("  --step seconds       length of a single simulation step (default 0.1)");
+		System.out.println("  --warp max|N         run as fast as possible, or N times faster than real time");
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.simulation;
+
+import org.invenzzia.opentrans.visitons.Project;
+
+/**
+ * Delivers the project for the headless simulation. The projects saved by the editor
+ * are loaded by {@link FileProjectLoader}. Other implementations must have a public
+ * no-argument constructor, because they are selected by the class name from the
+ * command line.
+ *
+ * @author Tomasz Jędrzejewski
+ */
+public interface IProjectLoader {
+	/**
+	 * Creates or loads the project and returns it.
+	 *
+	 * @return Project ready for the simulation.
+	 * @throws Exception If the project cannot be delivered.
+	 */
+	public Project loadProject() throws Exception;
+}
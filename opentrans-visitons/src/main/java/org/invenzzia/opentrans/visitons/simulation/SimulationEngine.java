@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.simulation;
+
+import com.google.common.base.Preconditions;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import net.jcip.annotations.NotThreadSafe;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.data.Vehicle;
+import org.invenzzia.opentrans.visitons.data.VehicleType;
+import org.invenzzia.opentrans.visitons.geometry.Characteristics;
+import org.invenzzia.opentrans.visitons.network.IVertex;
+import org.invenzzia.opentrans.visitons.network.Junction;
+import org.invenzzia.opentrans.visitons.network.Track;
+import org.invenzzia.opentrans.visitons.network.TrackGeometryStore;
+import org.invenzzia.opentrans.visitons.network.Vertex;
+import org.invenzzia.opentrans.visitons.network.objects.TrackObject;
+
+/**
+ * Time-stepped simulation of the vehicle movement. The engine takes a copy of the
+ * vehicle positions from the project and keeps the state of all the vehicles in
+ * flat arrays, indexed by the vehicle number, so that a single step does not
+ * allocate any memory, no matter how many vehicles we have. The model objects are
+ * not touched until {@link #commit()} is called.
+ *
+ * <p>The track lengths are read from a copy of the {@link TrackGeometryStore} of the
+ * world taken during the load, so the step scans the packed arrays instead of visiting
+ * the track objects. Only the vehicles placed on the tracks connected to the network
+ * are simulated.</p>
+ *
+ * <p>The vehicles follow the tracks through the vertices. A vehicle that reaches
+ * the free end of a junction slave track merges into the master track. When the
+ * vehicle runs into a dead end, it stops and reverses, and its tail becomes the
+ * new head.</p>
+ *
+ * <p>The engine is not thread-safe. The owning thread must serialize the access
+ * to it, see {@link SimulationThread}.</p>
+ *
+ * @author Tomasz Jędrzejewski
+ */
+@NotThreadSafe
+public class SimulationEngine {
+	/**
+	 * Vehicle moves towards the second vertex of the track.
+	 */
+	public static final byte DIRECTION_FORWARD = 0;
+	/**
+	 * Vehicle moves towards the first vertex of the track.
+	 */
+	public static final byte DIRECTION_BACKWARD = 1;
+	/**
+	 * Acceleration used for vehicle types that do not specify the mass or the engine power [m/s^2].
+	 */
+	public static final double DEFAULT_ACCELERATION = 1.0;
+	/**
+	 * Default service braking deceleration [m/s^2].
+	 */
+	public static final double DEFAULT_DECELERATION = 1.2;
+	/**
+	 * Default speed limit: 50 km/h in [m/s].
+	 */
+	public static final double DEFAULT_MAXIMUM_SPEED = 50.0 / 3.6;
+	/**
+	 * The vehicle closer than this to a dead end is considered to be standing at it [m].
+	 */
+	private static final double STOP_TOLERANCE = 0.01;
+	/**
+	 * Protection against infinite loops on degenerated, zero-length tracks.
+	 */
+	private static final int MAX_TRACK_CHANGES = 64;
+
+	/**
+	 * Number of simulated vehicles.
+	 */
+	private int vehicleNum = 0;
+	/**
+	 * Simulated vehicles.
+	 */
+	private Vehicle vehicles[] = new Vehicle[0];
+	/**
+	 * Current track of every vehicle head.
+	 */
+	private Track tracks[] = new Track[0];
+	/**
+	 * Dense index of the current track of every vehicle head in {@link #geometry}.
+	 */
+	private int trackIndices[] = new int[0];
+	/**
+	 * Position of the vehicle head on the current track, in metres from the first vertex.
+	 */
+	private double positions[] = new double[0];
+	/**
+	 * Direction of the movement: {@link #DIRECTION_FORWARD} or {@link #DIRECTION_BACKWARD}.
+	 */
+	private byte directions[] = new byte[0];
+	/**
+	 * Current speeds [m/s].
+	 */
+	private double speeds[] = new double[0];
+	/**
+	 * Maximum accelerations derived from the vehicle type [m/s^2].
+	 */
+	private double accelerations[] = new double[0];
+	/**
+	 * Vehicle lengths [m].
+	 */
+	private double lengths[] = new double[0];
+	/**
+	 * Whether the current track ends with a dead end in the direction of the movement.
+	 * Cached, so that we do not have to look at the vertices in every step.
+	 */
+	private boolean terminating[] = new boolean[0];
+	/**
+	 * The direction a vehicle takes on the master track after leaving the slave track
+	 * through the given junction. Computed once per junction.
+	 */
+	private final Map<Junction, Byte> mergeDirections = new IdentityHashMap<>();
+	/**
+	 * Columnar geometry of the simulated network, copied during the load.
+	 */
+	private TrackGeometryStore geometry;
+	/**
+	 * Speed limit [m/s].
+	 */
+	private double maximumSpeed = DEFAULT_MAXIMUM_SPEED;
+	/**
+	 * Braking deceleration [m/s^2].
+	 */
+	private double deceleration = DEFAULT_DECELERATION;
+	/**
+	 * Number of steps performed since the last load.
+	 */
+	private long stepNum = 0;
+	/**
+	 * Simulated time since the last load [s].
+	 */
+	private double time = 0.0;
+
+	/**
+	 * Loads all the vehicles placed on the tracks. The previous state of the engine
+	 * is discarded. Must be called in the thread that owns the project.
+	 *
+	 * @param project The project to simulate.
+	 */
+	public void load(Project project) {
+		Preconditions.checkNotNull(project, "The simulated project cannot be empty.");
+		this.geometry = project.getWorld().getTrackGeometry().copy();
+		int num = 0;
+		for(Vehicle vehicle: project.getVehicleManager()) {
+			if(TrackGeometryStore.NO_TRACK != this.trackIndexOf(vehicle)) {
+				num++;
+			}
+		}
+		this.allocate(num);
+		this.mergeDirections.clear();
+		this.stepNum = 0;
+		this.time = 0.0;
+
+		int i = 0;
+		for(Vehicle vehicle: project.getVehicleManager()) {
+			int trackIndex = this.trackIndexOf(vehicle);
+			if(TrackGeometryStore.NO_TRACK == trackIndex) {
+				continue;
+			}
+			TrackObject trackObject = vehicle.getTrackObject();
+			VehicleType vt = vehicle.getVehicleType().get();
+			this.vehicles[i] = vehicle;
+			this.tracks[i] = trackObject.getTrack();
+			this.trackIndices[i] = trackIndex;
+			this.positions[i] = trackObject.getPosition() * this.geometry.getLength(trackIndex);
+			this.directions[i] = (trackObject.getOrientation() == DIRECTION_BACKWARD ? DIRECTION_BACKWARD : DIRECTION_FORWARD);
+			this.speeds[i] = 0.0;
+			this.lengths[i] = vt.getLength();
+			if(vt.getMass() > 0 && vt.getEnginePower() > 0) {
+				this.accelerations[i] = (double) vt.getEnginePower() / (double) vt.getMass();
+			} else {
+				this.accelerations[i] = DEFAULT_ACCELERATION;
+			}
+			this.terminating[i] = this.isDeadEnd(this.tracks[i], this.directions[i]);
+			i++;
+		}
+		this.vehicleNum = num;
+	}
+
+	/**
+	 * Advances the simulation by the given amount of time.
+	 *
+	 * @param dt Step length in seconds.
+	 */
+	public void step(double dt) {
+		Preconditions.checkArgument(dt > 0.0, "The simulation step must be positive.");
+		for(int i = 0; i < this.vehicleNum; i++) {
+			double speed = this.speeds[i];
+			if(this.terminating[i]) {
+				double remaining = this.distanceToTrackEnd(i);
+				if(remaining <= STOP_TOLERANCE) {
+					this.reverse(i);
+					continue;
+				}
+				if(speed * speed / (2.0 * this.deceleration) >= remaining) {
+					speed = Math.max(0.0, speed - this.deceleration * dt);
+				} else {
+					speed = Math.min(this.maximumSpeed, speed + this.accelerations[i] * dt);
+				}
+				this.speeds[i] = speed;
+				this.move(i, Math.min(speed * dt, remaining));
+			} else {
+				speed = Math.min(this.maximumSpeed, speed + this.accelerations[i] * dt);
+				this.speeds[i] = speed;
+				this.move(i, speed * dt);
+			}
+		}
+		this.stepNum++;
+		this.time += dt;
+	}
+
+	/**
+	 * Writes the simulated positions back to the track objects of the vehicles. Must
+	 * be called in the thread that owns the project.
+	 */
+	public void commit() {
+		for(int i = 0; i < this.vehicleNum; i++) {
+			Vehicle vehicle = this.vehicles[i];
+			TrackObject trackObject = vehicle.getTrackObject();
+			if(null == trackObject) {
+				continue;
+			}
+			Track track = this.tracks[i];
+			if(trackObject.getTrack() != track) {
+				trackObject.getTrack().removeTrackObject(vehicle);
+				track.addTrackObject(trackObject);
+			}
+			trackObject.setPosition(this.positions[i] / this.geometry.getLength(this.trackIndices[i]));
+			trackObject.setOrientation(this.directions[i]);
+		}
+	}
+
+	public int getVehicleNum() {
+		return this.vehicleNum;
+	}
+
+	public Vehicle getVehicle(int idx) {
+		return this.vehicles[idx];
+	}
+
+	public Track getTrack(int idx) {
+		return this.tracks[idx];
+	}
+
+	/**
+	 * Returns the position of the vehicle head on its current track in metres.
+	 *
+	 * @param idx Vehicle index.
+	 * @return Distance from the first vertex of the track.
+	 */
+	public double getPosition(int idx) {
+		return this.positions[idx];
+	}
+
+	public byte getDirection(int idx) {
+		return this.directions[idx];
+	}
+
+	public double getSpeed(int idx) {
+		return this.speeds[idx];
+	}
+
+	public long getStepNum() {
+		return this.stepNum;
+	}
+
+	/**
+	 * @return Simulated time in seconds since the last load.
+	 */
+	public double getTime() {
+		return this.time;
+	}
+
+	public double getMaximumSpeed() {
+		return this.maximumSpeed;
+	}
+
+	public void setMaximumSpeed(double maximumSpeed) {
+		Preconditions.checkArgument(maximumSpeed > 0.0, "The maximum speed must be positive.");
+		this.maximumSpeed = maximumSpeed;
+	}
+
+	public double getDeceleration() {
+		return this.deceleration;
+	}
+
+	public void setDeceleration(double deceleration) {
+		Preconditions.checkArgument(deceleration > 0.0, "The deceleration must be positive.");
+		this.deceleration = deceleration;
+	}
+
+	/**
+	 * Makes sure that the state arrays can hold the given number of vehicles. The arrays
+	 * are reused between loads, if they are big enough.
+	 *
+	 * @param num Number of vehicles.
+	 */
+	private void allocate(int num) {
+		if(this.vehicles.length < num) {
+			this.vehicles = new Vehicle[num];
+			this.tracks = new Track[num];
+			this.trackIndices = new int[num];
+			this.positions = new double[num];
+			this.directions = new byte[num];
+			this.speeds = new double[num];
+			this.accelerations = new double[num];
+			this.lengths = new double[num];
+			this.terminating = new boolean[num];
+		} else {
+			for(int i = num; i < this.vehicleNum; i++) {
+				this.vehicles[i] = null;
+				this.tracks[i] = null;
+			}
+		}
+	}
+
+	private double distanceToTrackEnd(int i) {
+		if(this.directions[i] == DIRECTION_FORWARD) {
+			return this.geometry.getLength(this.trackIndices[i]) - this.positions[i];
+		}
+		return this.positions[i];
+	}
+
+	/**
+	 * Moves the vehicle head by the given distance in the current direction, following
+	 * the network. The movement stops at the dead end.
+	 *
+	 * @param i Vehicle index.
+	 * @param distance Distance in metres.
+	 */
+	private void move(int i, double distance) {
+		Track track = this.tracks[i];
+		int trackIndex = this.trackIndices[i];
+		double position = this.positions[i];
+		byte direction = this.directions[i];
+		for(int changes = 0; changes < MAX_TRACK_CHANGES; changes++) {
+			double length = this.geometry.getLength(trackIndex);
+			IVertex exit;
+			if(direction == DIRECTION_FORWARD) {
+				position += distance;
+				if(position <= length) {
+					break;
+				}
+				distance = position - length;
+				position = length;
+				exit = track.getSecondVertex();
+			} else {
+				position -= distance;
+				if(position >= 0.0) {
+					break;
+				}
+				distance = -position;
+				position = 0.0;
+				exit = track.getFirstVertex();
+			}
+
+			Track next = this.nextTrack(track, exit);
+			if(null == next) {
+				break;
+			}
+			int nextIndex = this.geometry.indexOf(next.getId());
+			if(TrackGeometryStore.NO_TRACK == nextIndex) {
+				break;
+			}
+			if(exit instanceof Junction && next != ((Junction) exit).getSlaveTrack()) {
+				Junction junction = (Junction) exit;
+				direction = this.mergeDirection(junction);
+				position = junction.position() * this.geometry.getLength(nextIndex);
+			} else if(next.getFirstVertex() == exit) {
+				direction = DIRECTION_FORWARD;
+				position = 0.0;
+			} else {
+				direction = DIRECTION_BACKWARD;
+				position = this.geometry.getLength(nextIndex);
+			}
+			track = next;
+			trackIndex = nextIndex;
+		}
+		if(track != this.tracks[i] || direction != this.directions[i]) {
+			this.tracks[i] = track;
+			this.trackIndices[i] = trackIndex;
+			this.directions[i] = direction;
+			this.terminating[i] = this.isDeadEnd(track, direction);
+		}
+		this.positions[i] = position;
+	}
+
+	/**
+	 * The vehicle standing at the dead end changes the direction. Its previous tail
+	 * becomes the new head.
+	 *
+	 * @param i Vehicle index.
+	 */
+	private void reverse(int i) {
+		this.speeds[i] = 0.0;
+		this.directions[i] = (this.directions[i] == DIRECTION_FORWARD ? DIRECTION_BACKWARD : DIRECTION_FORWARD);
+		this.terminating[i] = this.isDeadEnd(this.tracks[i], this.directions[i]);
+		this.move(i, this.lengths[i]);
+	}
+
+	/**
+	 * Returns the dense index of the track the vehicle is placed on, if the vehicle can
+	 * be simulated.
+	 *
+	 * @param vehicle The vehicle.
+	 * @return Index in the track geometry store or {@link TrackGeometryStore#NO_TRACK}.
+	 */
+	private int trackIndexOf(Vehicle vehicle) {
+		TrackObject trackObject = vehicle.getTrackObject();
+		if(null == trackObject || null == trackObject.getTrack() || null == vehicle.getVehicleType().get()) {
+			return TrackGeometryStore.NO_TRACK;
+		}
+		return this.geometry.indexOf(trackObject.getTrack().getId());
+	}
+
+	/**
+	 * Finds the track the vehicle should enter after leaving the current track through the
+	 * given vertex.
+	 *
+	 * @param track Current track.
+	 * @param exit The vertex the vehicle leaves the track through.
+	 * @return Next track or null, if this is a dead end.
+	 */
+	private Track nextTrack(Track track, IVertex exit) {
+		if(exit instanceof Vertex) {
+			Vertex vertex = (Vertex) exit;
+			if(!vertex.hasAllTracks()) {
+				return null;
+			}
+			return vertex.getOppositeTrack(track);
+		} else if(exit instanceof Junction) {
+			Junction junction = (Junction) exit;
+			if(junction.getSlaveTrack() == track) {
+				return junction.getMasterTrack();
+			}
+		}
+		return null;
+	}
+
+	private boolean isDeadEnd(Track track, byte direction) {
+		IVertex exit = (direction == DIRECTION_FORWARD ? track.getSecondVertex() : track.getFirstVertex());
+		return null == this.nextTrack(track, exit);
+	}
+
+	/**
+	 * Finds the direction on the master track, where the vehicle leaving the slave track
+	 * should go: away from the slave track.
+	 *
+	 * @param junction The junction.
+	 * @return Direction on the master track.
+	 */
+	private byte mergeDirection(Junction junction) {
+		Byte direction = this.mergeDirections.get(junction);
+		if(null == direction) {
+			Track master = junction.getMasterTrack();
+			Characteristics slavePoint = junction.getSlaveTrack().getPointCharacteristics(0.5);
+			double delta = Math.min(0.05, 1.0 / Math.max(1.0, master.getLength()));
+			Characteristics ahead = master.getPointCharacteristics(Math.min(1.0, junction.position() + delta));
+			Characteristics behind = master.getPointCharacteristics(Math.max(0.0, junction.position() - delta));
+			if(distanceSq(slavePoint, ahead) >= distanceSq(slavePoint, behind)) {
+				direction = DIRECTION_FORWARD;
+			} else {
+				direction = DIRECTION_BACKWARD;
+			}
+			this.mergeDirections.put(junction, direction);
+		}
+		return direction;
+	}
+
+	private static double distanceSq(Characteristics a, Characteristics b) {
+		double dx = a.x() - b.x();
+		double dy = a.y() - b.y();
+		return dx * dx + dy * dy;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.simulation;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.invenzzia.opentrans.visitons.Project;
+
+/**
+ * Runs the {@link SimulationEngine} on its own thread with a fixed simulation step,
+ * independently of the rendering frame rate. The simulated time can flow with the
+ * real time, a multiple of it, or as fast as the CPU allows.
+ *
+ * <p>The project is loaded into the engine and the results are written back to the
+ * model only through {@link #load(Project)} and {@link #commit()}, which must be
+ * called from the thread that owns the project.</p>
+ *
+ * @author Tomasz Jędrzejewski
+ */
+@ThreadSafe
+public class SimulationThread extends AbstractExecutionThreadService {
+	/**
+	 * Default length of a single simulation step in seconds.
+	 */
+	public static final double DEFAULT_STEP_LENGTH = 0.1;
+	/**
+	 * Time warp value which runs the simulation as fast as possible.
+	 */
+	public static final double MAXIMUM_SPEED = 0.0;
+	/**
+	 * If the thread is late more than this, we do not try to catch up [ns].
+	 */
+	private static final long MAXIMUM_LAG = TimeUnit.SECONDS.toNanos(1);
+	/**
+	 * Guards the engine.
+	 */
+	private final Lock lock = new ReentrantLock();
+	/**
+	 * Signalled when the simulation is resumed or the thread is stopped.
+	 */
+	private final Condition resumed = this.lock.newCondition();
+	/**
+	 * The simulation.
+	 */
+	@GuardedBy("lock")
+	private final SimulationEngine engine;
+	/**
+	 * Simulated time per step in seconds.
+	 */
+	private final double stepLength;
+	/**
+	 * Simulated seconds per real second; {@link #MAXIMUM_SPEED} for no limit.
+	 */
+	private volatile double timeWarp = 1.0;
+	/**
+	 * Paused simulation does not advance, but the thread is alive.
+	 */
+	private volatile boolean paused = true;
+
+	public SimulationThread() {
+		this(new SimulationEngine(), DEFAULT_STEP_LENGTH);
+	}
+
+	public SimulationThread(SimulationEngine engine, double stepLength) {
+		Preconditions.checkArgument(stepLength > 0.0, "The simulation step must be positive.");
+		this.engine = Preconditions.checkNotNull(engine);
+		this.stepLength = stepLength;
+	}
+
+	/**
+	 * Loads the vehicles from the project into the engine. The simulation is paused
+	 * afterwards.
+	 *
+	 * @param project The simulated project.
+	 */
+	public void load(Project project) {
+		this.lock.lock();
+		try {
+			this.paused = true;
+			this.engine.load(project);
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the current vehicle positions back to the model.
+	 */
+	public void commit() {
+		this.lock.lock();
+		try {
+			this.engine.commit();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	public double getStepLength() {
+		return this.stepLength;
+	}
+
+	/**
+	 * Sets the simulation speed: 1.0 is the real time, 10.0 makes the simulation ten
+	 * times faster, and {@link #MAXIMUM_SPEED} removes the limit.
+	 *
+	 * @param timeWarp The new speed factor.
+	 */
+	public void setTimeWarp(double timeWarp) {
+		Preconditions.checkArgument(timeWarp >= 0.0, "The time warp cannot be negative.");
+		this.timeWarp = timeWarp;
+	}
+
+	public double getTimeWarp() {
+		return this.timeWarp;
+	}
+
+	/**
+	 * Pauses or resumes the simulation. The paused thread waits until it is resumed
+	 * or stopped.
+	 *
+	 * @param paused The new state.
+	 */
+	public void setPaused(boolean paused) {
+		this.lock.lock();
+		try {
+			this.paused = paused;
+			if(!paused) {
+				this.resumed.signalAll();
+			}
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	public boolean isPaused() {
+		return this.paused;
+	}
+
+	/**
+	 * @return Number of simulation steps performed since the last load.
+	 */
+	public long getStepNum() {
+		this.lock.lock();
+		try {
+			return this.engine.getStepNum();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Simulated time in seconds since the last load.
+	 */
+	public double getTime() {
+		this.lock.lock();
+		try {
+			return this.engine.getTime();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	@Override
+	protected void run() {
+		long nextStep = System.nanoTime();
+		try {
+			while(this.isRunning()) {
+				this.lock.lock();
+				try {
+					if(this.paused) {
+						while(this.paused && this.isRunning()) {
+							this.resumed.await();
+						}
+						nextStep = System.nanoTime();
+						continue;
+					}
+					this.engine.step(this.stepLength);
+				} finally {
+					this.lock.unlock();
+				}
+				double warp = this.timeWarp;
+				if(warp > MAXIMUM_SPEED) {
+					nextStep += (long) (this.stepLength * 1000000000.0 / warp);
+					long delay = nextStep - System.nanoTime();
+					if(delay > 0) {
+						TimeUnit.NANOSECONDS.sleep(delay);
+					} else if(delay < -MAXIMUM_LAG) {
+						nextStep = System.nanoTime();
+					}
+				}
+			}
+		} catch(InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Wakes up the paused thread, so that it notices the stop request.
+	 */
+	@Override
+	protected void triggerShutdown() {
+		this.lock.lock();
+		try {
+			this.resumed.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.utils.collections;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * Common part of the hash collections with primitive <tt>long</tt> keys. The keys are
+ * stored in a dense array in the insertion order, and the hash table with linear probing
+ * keeps only the positions in that array. Thus, the iteration follows the insertion
+ * order, like in {@link java.util.LinkedHashMap}, but no entry objects are allocated
+ * and the keys are not boxed.
+ * 
+ * <p>The removed entries leave holes in the dense array, which are compacted when
+ * the array fills up. The subclasses keep their values in parallel arrays and must
+ * follow the entries moved by {@link #moveValue(int, int)}.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+abstract class AbstractLongHash {
+	protected static final int DEFAULT_CAPACITY = 16;
+	/**
+	 * Keys in the insertion order.
+	 */
+	protected long keys[];
+	/**
+	 * Which positions in the key array hold the entries that have not been removed.
+	 */
+	private boolean live[];
+	/**
+	 * Hash table: position in the key array plus one, or 0 for an empty slot.
+	 */
+	private int table[];
+	/**
+	 * Number of the used positions in the key array, including the removed ones.
+	 */
+	protected int used;
+	/**
+	 * Number of the entries.
+	 */
+	private int size;
+	/**
+	 * Incremented on every structural modification, to detect the concurrent modifications
+	 * during the iteration.
+	 */
+	protected int modCount;
+	
+	protected AbstractLongHash(int capacity) {
+		capacity = Math.max(capacity, 4);
+		this.keys = new long[capacity];
+		this.live = new boolean[capacity];
+		this.table = new int[tableSize(capacity)];
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	public boolean isEmpty() {
+		return 0 == this.size;
+	}
+	
+	public void clear() {
+		Arrays.fill(this.live, 0, this.used, false);
+		Arrays.fill(this.table, 0);
+		this.clearValues(0, this.used);
+		this.used = 0;
+		this.size = 0;
+		this.modCount++;
+	}
+	
+	/**
+	 * @return Copy of all the keys in the insertion order.
+	 */
+	public long[] keyArray() {
+		long result[] = new long[this.size];
+		int j = 0;
+		for(int i = 0; i < this.used; i++) {
+			if(this.live[i]) {
+				result[j++] = this.keys[i];
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Finds the position of the key in the key array.
+	 * 
+	 * @param key The key to find.
+	 * @return Position or -1, if the key is not present.
+	 */
+	protected final int indexOf(long key) {
+		int mask = this.table.length - 1;
+		int slot = hash(key) & mask;
+		int entry;
+		while(0 != (entry = this.table[slot])) {
+			if(this.keys[entry - 1] == key) {
+				return entry - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Appends a new key, which must not be present in the collection.
+	 * 
+	 * @param key The new key.
+	 * @return Position of the key in the key array.
+	 */
+	protected final int append(long key) {
+		if(this.used == this.keys.length) {
+			this.rebuild(this.size >= this.keys.length / 2 ? this.keys.length * 2 : this.keys.length);
+		}
+		int index = this.used++;
+		this.keys[index] = key;
+		this.live[index] = true;
+		this.insertIntoTable(index);
+		this.size++;
+		this.modCount++;
+		return index;
+	}
+	
+	/**
+	 * Removes the key from the collection.
+	 * 
+	 * @param key The key to remove.
+	 * @return The former position of the key, or -1, if it was not present.
+	 */
+	protected final int delete(long key) {
+		int mask = this.table.length - 1;
+		int slot = hash(key) & mask;
+		int entry;
+		while(0 != (entry = this.table[slot])) {
+			if(this.keys[entry - 1] == key) {
+				this.deleteSlot(slot);
+				int index = entry - 1;
+				this.live[index] = false;
+				this.size--;
+				this.modCount++;
+				return index;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Moves the value from one position to another during the compaction.
+	 * 
+	 * @param from Old position.
+	 * @param to New position.
+	 */
+	protected abstract void moveValue(int from, int to);
+	
+	/**
+	 * Releases the values in the given range of positions.
+	 * 
+	 * @param from First position (inclusive).
+	 * @param to Last position (exclusive).
+	 */
+	protected abstract void clearValues(int from, int to);
+	
+	/**
+	 * Changes the capacity of the value arrays.
+	 * 
+	 * @param capacity New capacity.
+	 */
+	protected abstract void resizeValues(int capacity);
+	
+	/**
+	 * Removes the holes left by the removed entries, grows the arrays if necessary
+	 * and fills the hash table again.
+	 * 
+	 * @param capacity New capacity of the key array.
+	 */
+	private void rebuild(int capacity) {
+		if(capacity != this.keys.length) {
+			this.keys = Arrays.copyOf(this.keys, capacity);
+			this.live = Arrays.copyOf(this.live, capacity);
+			this.resizeValues(capacity);
+			this.table = new int[tableSize(capacity)];
+		} else {
+			Arrays.fill(this.table, 0);
+		}
+		int j = 0;
+		for(int i = 0; i < this.used; i++) {
+			if(this.live[i]) {
+				if(i != j) {
+					this.keys[j] = this.keys[i];
+					this.live[j] = true;
+					this.moveValue(i, j);
+				}
+				this.insertIntoTable(j);
+				j++;
+			}
+		}
+		Arrays.fill(this.live, j, this.used, false);
+		this.clearValues(j, this.used);
+		this.used = j;
+	}
+	
+	private void insertIntoTable(int index) {
+		int mask = this.table.length - 1;
+		int slot = hash(this.keys[index]) & mask;
+		while(0 != this.table[slot]) {
+			slot = (slot + 1) & mask;
+		}
+		this.table[slot] = index + 1;
+	}
+	
+	/**
+	 * Empties the slot of the hash table and shifts back the following entries of the
+	 * probe sequence, so that no tombstones are necessary.
+	 * 
+	 * @param hole The slot to empty.
+	 */
+	private void deleteSlot(int hole) {
+		int mask = this.table.length - 1;
+		int slot = hole;
+		int entry;
+		while(0 != (entry = this.table[slot = (slot + 1) & mask])) {
+			int home = hash(this.keys[entry - 1]) & mask;
+			boolean movable = (slot > hole ? (home <= hole || home > slot) : (home <= hole && home > slot));
+			if(movable) {
+				this.table[hole] = entry;
+				hole = slot;
+			}
+		}
+		this.table[hole] = 0;
+	}
+	
+	private static int tableSize(int capacity) {
+		return Integer.highestOneBit(capacity * 2 - 1) << 1;
+	}
+	
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	/**
+	 * Walks through the live entries in the insertion order. The entries can be removed
+	 * by the iterator.
+	 */
+	protected abstract class EntryIterator {
+		private int next;
+		private int current = -1;
+		private int expectedModCount = modCount;
+		
+		public EntryIterator() {
+			this.next = this.findLive(0);
+		}
+		
+		public boolean hasNext() {
+			return this.next < used;
+		}
+		
+		/**
+		 * @return Position of the next entry.
+		 */
+		protected int nextIndex() {
+			if(this.expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if(this.next >= used) {
+				throw new NoSuchElementException();
+			}
+			this.current = this.next;
+			this.next = this.findLive(this.next + 1);
+			return this.current;
+		}
+		
+		public void remove() {
+			if(this.current < 0) {
+				throw new IllegalStateException();
+			}
+			if(this.expectedModCount != modCount) {
+				throw new ConcurrentModificationException();
+			}
+			int index = delete(keys[this.current]);
+			clearValues(index, index + 1);
+			this.current = -1;
+			this.expectedModCount = modCount;
+		}
+		
+		private int findLive(int from) {
+			while(from < used && !live[from]) {
+				from++;
+			}
+			return from;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.utils.collections;
+
+/**
+ * Exact distance between the item stored in the {@link RTree} and a point. It must not
+ * be shorter than the distance to the bounding box of the item.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public interface IItemDistance<T> {
+	/**
+	 * @param item The stored item.
+	 * @param x Point X.
+	 * @param y Point Y.
+	 * @return Distance between the item and the point.
+	 */
+	public double distance(T item, double x, double y);
+}
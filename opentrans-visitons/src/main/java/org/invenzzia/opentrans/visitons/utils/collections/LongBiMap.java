@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.utils.collections;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Bidirectional map between primitive <tt>long</tt> values, i.e. between the temporary
+ * and the actual ID-s. Like in {@link com.google.common.collect.BiMap}, the values must
+ * be unique, too.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class LongBiMap {
+	private final LongLongMap forward;
+	private final LongLongMap backward;
+	
+	/**
+	 * @param missingValue Returned for the missing keys and values.
+	 */
+	public LongBiMap(long missingValue) {
+		this.forward = new LongLongMap(missingValue);
+		this.backward = new LongLongMap(missingValue);
+	}
+	
+	public int size() {
+		return this.forward.size();
+	}
+	
+	public boolean isEmpty() {
+		return this.forward.isEmpty();
+	}
+	
+	public boolean containsKey(long key) {
+		return this.forward.containsKey(key);
+	}
+	
+	public boolean containsValue(long value) {
+		return this.backward.containsKey(value);
+	}
+	
+	/**
+	 * @param key The key.
+	 * @return The value for the key or the missing value.
+	 */
+	public long get(long key) {
+		return this.forward.get(key);
+	}
+	
+	/**
+	 * @param value The value.
+	 * @return The key for the value or the missing value.
+	 */
+	public long getKey(long value) {
+		return this.backward.get(value);
+	}
+	
+	/**
+	 * Maps the key to the value.
+	 * 
+	 * @param key The key.
+	 * @param value The value, which must not be mapped to another key.
+	 * @return The previous value of the key or the missing value.
+	 * @throws IllegalArgumentException If the value is already mapped to another key.
+	 */
+	public long put(long key, long value) {
+		if(this.backward.containsKey(value)) {
+			Preconditions.checkArgument(this.backward.get(value) == key, "The value %s is already present in the map.", value);
+			return value;
+		}
+		boolean replaced = this.forward.containsKey(key);
+		long previous = this.forward.put(key, value);
+		if(replaced) {
+			this.backward.remove(previous);
+		}
+		this.backward.put(value, key);
+		return previous;
+	}
+	
+	/**
+	 * @param key The key to remove.
+	 * @return The removed value or the missing value.
+	 */
+	public long remove(long key) {
+		if(!this.forward.containsKey(key)) {
+			return this.forward.getMissingValue();
+		}
+		long value = this.forward.remove(key);
+		this.backward.remove(value);
+		return value;
+	}
+	
+	public void clear() {
+		this.forward.clear();
+		this.backward.clear();
+	}
+	
+	/**
+	 * @return Copy of all the keys in the insertion order.
+	 */
+	public long[] keyArray() {
+		return this.forward.keyArray();
+	}
+	
+	/**
+	 * @return Copy of all the values in the insertion order of their keys.
+	 */
+	public long[] valueArray() {
+		return this.forward.valueArray();
+	}
+}
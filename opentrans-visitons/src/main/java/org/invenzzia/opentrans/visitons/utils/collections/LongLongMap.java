@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.utils.collections;
+
+import java.util.Arrays;
+
+/**
+ * Map from primitive <tt>long</tt> keys to primitive <tt>long</tt> values, which
+ * remembers the insertion order. Since the values cannot be null, the missing keys are
+ * reported with the value chosen in the constructor.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class LongLongMap extends AbstractLongHash {
+	private long values[];
+	/**
+	 * Returned by {@link #get(long)} for the missing keys.
+	 */
+	private final long missingValue;
+	
+	public LongLongMap(long missingValue) {
+		this(missingValue, DEFAULT_CAPACITY);
+	}
+	
+	public LongLongMap(long missingValue, int capacity) {
+		super(capacity);
+		this.values = new long[this.keys.length];
+		this.missingValue = missingValue;
+	}
+	
+	public long getMissingValue() {
+		return this.missingValue;
+	}
+	
+	public boolean containsKey(long key) {
+		return this.indexOf(key) >= 0;
+	}
+	
+	/**
+	 * @param key The key.
+	 * @return The value for this key or the missing value.
+	 */
+	public long get(long key) {
+		int index = this.indexOf(key);
+		if(index < 0) {
+			return this.missingValue;
+		}
+		return this.values[index];
+	}
+	
+	/**
+	 * @param key The key.
+	 * @param value The new value.
+	 * @return The previous value or the missing value.
+	 */
+	public long put(long key, long value) {
+		int index = this.indexOf(key);
+		if(index >= 0) {
+			long previous = this.values[index];
+			this.values[index] = value;
+			return previous;
+		}
+		// The arrays may grow during the append.
+		int added = this.append(key);
+		this.values[added] = value;
+		return this.missingValue;
+	}
+	
+	/**
+	 * @param key The key to remove.
+	 * @return The removed value or the missing value.
+	 */
+	public long remove(long key) {
+		int index = this.delete(key);
+		if(index < 0) {
+			return this.missingValue;
+		}
+		return this.values[index];
+	}
+	
+	/**
+	 * @return Copy of all the values in the insertion order of their keys.
+	 */
+	public long[] valueArray() {
+		long result[] = new long[this.size()];
+		int j = 0;
+		EntryIterator iterator = new EntryIterator() {};
+		while(iterator.hasNext()) {
+			result[j++] = this.values[iterator.nextIndex()];
+		}
+		return result;
+	}
+
+	@Override
+	protected void moveValue(int from, int to) {
+		this.values[to] = this.values[from];
+	}
+
+	@Override
+	protected void clearValues(int from, int to) {
+	}
+
+	@Override
+	protected void resizeValues(int capacity) {
+		this.values = Arrays.copyOf(this.values, capacity);
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.utils.collections;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Map with primitive <tt>long</tt> keys, which iterates over the entries in the insertion
+ * order. It is meant for the registries of the identifiable objects, where the boxed keys
+ * and the entry objects of {@link java.util.LinkedHashMap} would take more memory than
+ * the objects themselves. The map does not accept null values.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class LongMap<V> extends AbstractLongHash {
+	private Object values[];
+	/**
+	 * Live view of the values.
+	 */
+	private Collection<V> valueView;
+	
+	public LongMap() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public LongMap(int capacity) {
+		super(capacity);
+		this.values = new Object[this.keys.length];
+	}
+	
+	public boolean containsKey(long key) {
+		return this.indexOf(key) >= 0;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int index = this.indexOf(key);
+		if(index < 0) {
+			return null;
+		}
+		return (V) this.values[index];
+	}
+	
+	/**
+	 * Puts the value into the map. If the key is already present, the value is replaced,
+	 * but the entry keeps its position in the iteration order.
+	 * 
+	 * @param key The key.
+	 * @param value The new value.
+	 * @return The previous value or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if(null == value) {
+			throw new NullPointerException("The map does not accept null values.");
+		}
+		int index = this.indexOf(key);
+		if(index >= 0) {
+			V previous = (V) this.values[index];
+			this.values[index] = value;
+			return previous;
+		}
+		// The arrays may grow during the append.
+		int added = this.append(key);
+		this.values[added] = value;
+		return null;
+	}
+	
+	/**
+	 * Removes the key from the map.
+	 * 
+	 * @param key The key to remove.
+	 * @return The removed value or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int index = this.delete(key);
+		if(index < 0) {
+			return null;
+		}
+		V previous = (V) this.values[index];
+		this.values[index] = null;
+		return previous;
+	}
+	
+	/**
+	 * Returns the live view of the values in the insertion order. The values can be removed
+	 * through the iterator, but not added.
+	 * 
+	 * @return Values of the map.
+	 */
+	public Collection<V> values() {
+		if(null == this.valueView) {
+			this.valueView = new AbstractCollection<V>() {
+				@Override
+				public Iterator<V> iterator() {
+					return new ValueIterator();
+				}
+
+				@Override
+				public int size() {
+					return LongMap.this.size();
+				}
+				
+				@Override
+				public void clear() {
+					LongMap.this.clear();
+				}
+			};
+		}
+		return this.valueView;
+	}
+	
+	@Override
+	protected void moveValue(int from, int to) {
+		this.values[to] = this.values[from];
+	}
+	
+	@Override
+	protected void clearValues(int from, int to) {
+		Arrays.fill(this.values, from, to, null);
+	}
+	
+	@Override
+	protected void resizeValues(int capacity) {
+		this.values = Arrays.copyOf(this.values, capacity);
+	}
+	
+	private class ValueIterator extends EntryIterator implements Iterator<V> {
+		@Override
+		@SuppressWarnings("unchecked")
+		public V next() {
+			return (V) values[this.nextIndex()];
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.utils.collections;
+
+/**
+ * Set of primitive <tt>long</tt> values, which remembers the insertion order.
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class LongSet extends AbstractLongHash {
+	public LongSet() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public LongSet(int capacity) {
+		super(capacity);
+	}
+	
+	public boolean contains(long value) {
+		return this.indexOf(value) >= 0;
+	}
+	
+	/**
+	 * @param value The value to add.
+	 * @return True, if the value was not present in the set.
+	 */
+	public boolean add(long value) {
+		if(this.indexOf(value) >= 0) {
+			return false;
+		}
+		this.append(value);
+		return true;
+	}
+	
+	/**
+	 * @param value The value to remove.
+	 * @return True, if the value was present in the set.
+	 */
+	public boolean remove(long value) {
+		return this.delete(value) >= 0;
+	}
+	
+	/**
+	 * @return Copy of all the values in the insertion order.
+	 */
+	public long[] toArray() {
+		return this.keyArray();
+	}
+
+	@Override
+	protected void moveValue(int from, int to) {
+	}
+
+	@Override
+	protected void clearValues(int from, int to) {
+	}
+
+	@Override
+	protected void resizeValues(int capacity) {
+	}
+}
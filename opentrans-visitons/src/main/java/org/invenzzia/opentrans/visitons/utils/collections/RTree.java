@@ -0,0 +1,522 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.utils.collections;
+
+import com.google.common.base.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * R-tree of the items with axis-aligned bounding boxes. The items are compared by identity,
+ * and each of them can be stored only once: inserting it again moves it to the new box.
+ * A map from the items to their leaves makes the removal independent of the box, so that
+ * the index can be updated after the item has already changed. The nodes are split with
+ * the quadratic algorithm of Guttman.
+ * 
+ * <p>The tree is not thread-safe.</p>
+ * 
+ * @author Tomasz Jędrzejewski
+ */
+public class RTree<T> {
+	static final int MAX_ENTRIES = 16;
+	static final int MIN_ENTRIES = 6;
+	/**
+	 * The top of the tree.
+	 */
+	private Node root = new Node(true);
+	/**
+	 * The leaf that holds the given item.
+	 */
+	private final Map<T, Node> leaves = new IdentityHashMap<>();
+	
+	public int size() {
+		return this.leaves.size();
+	}
+	
+	public boolean isEmpty() {
+		return this.leaves.isEmpty();
+	}
+	
+	public boolean contains(T item) {
+		return this.leaves.containsKey(item);
+	}
+	
+	public void clear() {
+		this.root = new Node(true);
+		this.leaves.clear();
+	}
+	
+	/**
+	 * @return Copy of all the stored items.
+	 */
+	public List<T> items() {
+		return new ArrayList<>(this.leaves.keySet());
+	}
+	
+	/**
+	 * Inserts the item with the given bounding box. If the item is already in the tree,
+	 * it is moved.
+	 * 
+	 * @param item The item to store.
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY 
+	 */
+	public void insert(T item, double minX, double minY, double maxX, double maxY) {
+		Preconditions.checkNotNull(item);
+		Preconditions.checkArgument(minX <= maxX && minY <= maxY, "Invalid bounding box.");
+		this.remove(item);
+		Node leaf = this.chooseLeaf(minX, minY, maxX, maxY);
+		leaf.add(item, minX, minY, maxX, maxY);
+		this.leaves.put(item, leaf);
+		this.handleOverflow(leaf);
+	}
+	
+	/**
+	 * Removes the item from the tree.
+	 * 
+	 * @param item The item to remove.
+	 * @return True, if the item was present.
+	 */
+	public boolean remove(T item) {
+		Node leaf = this.leaves.remove(item);
+		if(null == leaf) {
+			return false;
+		}
+		leaf.removeAt(leaf.indexOf(item));
+		this.condense(leaf);
+		return true;
+	}
+	
+	/**
+	 * Finds all the items whose boxes intersect the given area.
+	 * 
+	 * @param minX
+	 * @param minY
+	 * @param maxX
+	 * @param maxY
+	 * @param output The found items are added here.
+	 * @return Number of the found items.
+	 */
+	@SuppressWarnings("unchecked")
+	public int search(double minX, double minY, double maxX, double maxY, Collection<? super T> output) {
+		int found = 0;
+		Node stack[] = new Node[16];
+		int top = 0;
+		stack[top++] = this.root;
+		while(top > 0) {
+			Node node = stack[--top];
+			for(int i = 0; i < node.count; i++) {
+				if(node.minX[i] <= maxX && node.maxX[i] >= minX && node.minY[i] <= maxY && node.maxY[i] >= minY) {
+					if(node.leaf) {
+						output.add((T) node.children[i]);
+						found++;
+					} else {
+						if(top == stack.length) {
+							stack = Arrays.copyOf(stack, top * 2);
+						}
+						stack[top++] = (Node) node.children[i];
+					}
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Finds up to <tt>k</tt> items nearest to the given point, within the given distance.
+	 * The nodes are visited in the order of the distance to their boxes, so only the nearby
+	 * part of the tree is searched.
+	 * 
+	 * @param x Point X.
+	 * @param y Point Y.
+	 * @param k Maximum number of the found items.
+	 * @param maxDistance Maximum distance of the found items.
+	 * @param metric Exact distance of the item; if null, the distance to the bounding box is used.
+	 * @param output The found items are added here, from the nearest one.
+	 * @return Number of the found items.
+	 */
+	@SuppressWarnings("unchecked")
+	public int nearest(double x, double y, int k, double maxDistance, IItemDistance<? super T> metric, Collection<? super T> output) {
+		Preconditions.checkArgument(k > 0, "The number of the nearest items must be positive.");
+		PriorityQueue<Candidate> queue = new PriorityQueue<>();
+		queue.add(new Candidate(this.root, 0.0, false));
+		int found = 0;
+		while(!queue.isEmpty()) {
+			Candidate candidate = queue.poll();
+			if(candidate.item) {
+				output.add((T) candidate.object);
+				if(++found == k) {
+					break;
+				}
+				continue;
+			}
+			Node node = (Node) candidate.object;
+			for(int i = 0; i < node.count; i++) {
+				double distance = boxDistance(node, i, x, y);
+				if(distance > maxDistance) {
+					continue;
+				}
+				if(node.leaf) {
+					if(null != metric) {
+						distance = metric.distance((T) node.children[i], x, y);
+						if(distance > maxDistance) {
+							continue;
+						}
+					}
+					queue.add(new Candidate(node.children[i], distance, true));
+				} else {
+					queue.add(new Candidate(node.children[i], distance, false));
+				}
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * @return Height of the tree; 1 for a single leaf.
+	 */
+	public int getHeight() {
+		int height = 1;
+		Node node = this.root;
+		while(!node.leaf) {
+			node = (Node) node.children[0];
+			height++;
+		}
+		return height;
+	}
+	
+	private Node chooseLeaf(double minX, double minY, double maxX, double maxY) {
+		Node node = this.root;
+		while(!node.leaf) {
+			int best = 0;
+			double bestEnlargement = Double.POSITIVE_INFINITY;
+			double bestArea = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < node.count; i++) {
+				double area = area(node.minX[i], node.minY[i], node.maxX[i], node.maxY[i]);
+				double enlargement = area(Math.min(minX, node.minX[i]), Math.min(minY, node.minY[i]),
+					Math.max(maxX, node.maxX[i]), Math.max(maxY, node.maxY[i])) - area;
+				if(enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+					best = i;
+					bestEnlargement = enlargement;
+					bestArea = area;
+				}
+			}
+			node = (Node) node.children[best];
+		}
+		return node;
+	}
+	
+	/**
+	 * Splits the overfull nodes up to the root and updates the boxes of the ancestors.
+	 */
+	private void handleOverflow(Node node) {
+		while(null != node) {
+			if(node.count > MAX_ENTRIES) {
+				Node sibling = this.split(node);
+				if(node == this.root) {
+					Node newRoot = new Node(false);
+					newRoot.addChild(node);
+					newRoot.addChild(sibling);
+					this.root = newRoot;
+					return;
+				}
+				node.parent.addChild(sibling);
+			}
+			node.updateBoxInParent();
+			node = node.parent;
+		}
+	}
+	
+	/**
+	 * Removes the underfull nodes on the path to the root and inserts their items again.
+	 */
+	@SuppressWarnings("unchecked")
+	private void condense(Node node) {
+		List<Object> orphans = null;
+		while(node != this.root) {
+			Node parent = node.parent;
+			if(node.count < MIN_ENTRIES) {
+				parent.removeAt(parent.indexOf(node));
+				if(null == orphans) {
+					orphans = new ArrayList<>();
+				}
+				node.collectItems(orphans);
+			} else {
+				node.updateBoxInParent();
+			}
+			node = parent;
+		}
+		if(!this.root.leaf && 1 == this.root.count) {
+			this.root = (Node) this.root.children[0];
+			this.root.parent = null;
+		} else if(!this.root.leaf && 0 == this.root.count) {
+			this.root = new Node(true);
+		}
+		if(null != orphans) {
+			for(int i = 0; i < orphans.size(); i += 5) {
+				T item = (T) orphans.get(i);
+				this.leaves.remove(item);
+				this.insert(item, (Double) orphans.get(i + 1), (Double) orphans.get(i + 2), (Double) orphans.get(i + 3), (Double) orphans.get(i + 4));
+			}
+		}
+	}
+	
+	/**
+	 * Moves about a half of the entries into a new node.
+	 */
+	@SuppressWarnings("unchecked")
+	private Node split(Node node) {
+		int num = node.count;
+		// Pick the two entries that would waste the most area together.
+		int seed1 = 0, seed2 = 1;
+		double worst = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < num; i++) {
+			for(int j = i + 1; j < num; j++) {
+				double waste = area(Math.min(node.minX[i], node.minX[j]), Math.min(node.minY[i], node.minY[j]),
+					Math.max(node.maxX[i], node.maxX[j]), Math.max(node.maxY[i], node.maxY[j]))
+					- node.area(i) - node.area(j);
+				if(waste > worst) {
+					worst = waste;
+					seed1 = i;
+					seed2 = j;
+				}
+			}
+		}
+		Node source = new Node(node.leaf);
+		for(int i = 0; i < num; i++) {
+			source.add(node.children[i], node.minX[i], node.minY[i], node.maxX[i], node.maxY[i]);
+		}
+		node.count = 0;
+		Arrays.fill(node.children, null);
+		Node sibling = new Node(node.leaf);
+		boolean assigned[] = new boolean[num];
+		this.moveEntry(source, seed1, node);
+		this.moveEntry(source, seed2, sibling);
+		assigned[seed1] = true;
+		assigned[seed2] = true;
+		int remaining = num - 2;
+		while(remaining > 0) {
+			// Make sure that both nodes get the minimum number of entries.
+			Node forced = null;
+			if(node.count + remaining == MIN_ENTRIES) {
+				forced = node;
+			} else if(sibling.count + remaining == MIN_ENTRIES) {
+				forced = sibling;
+			}
+			int next = -1;
+			Node target = null;
+			double bestDifference = -1.0;
+			for(int i = 0; i < num; i++) {
+				if(assigned[i]) {
+					continue;
+				}
+				double d1 = node.enlargement(source, i);
+				double d2 = sibling.enlargement(source, i);
+				double difference = Math.abs(d1 - d2);
+				if(difference > bestDifference) {
+					bestDifference = difference;
+					next = i;
+					if(null != forced) {
+						target = forced;
+					} else if(d1 != d2) {
+						target = (d1 < d2 ? node : sibling);
+					} else {
+						target = (node.count <= sibling.count ? node : sibling);
+					}
+				}
+			}
+			this.moveEntry(source, next, target);
+			assigned[next] = true;
+			remaining--;
+		}
+		if(node.leaf) {
+			for(int i = 0; i < sibling.count; i++) {
+				this.leaves.put((T) sibling.children[i], sibling);
+			}
+		}
+		return sibling;
+	}
+	
+	private void moveEntry(Node source, int index, Node target) {
+		Object child = source.children[index];
+		if(!source.leaf) {
+			target.addChild((Node) child, source.minX[index], source.minY[index], source.maxX[index], source.maxY[index]);
+		} else {
+			target.add(child, source.minX[index], source.minY[index], source.maxX[index], source.maxY[index]);
+		}
+	}
+	
+	private static double area(double minX, double minY, double maxX, double maxY) {
+		return (maxX - minX) * (maxY - minY);
+	}
+	
+	private static double boxDistance(Node node, int i, double x, double y) {
+		double dx = Math.max(0.0, Math.max(node.minX[i] - x, x - node.maxX[i]));
+		double dy = Math.max(0.0, Math.max(node.minY[i] - y, y - node.maxY[i]));
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+	
+	/**
+	 * Node or item waiting in the queue of the nearest neighbour search.
+	 */
+	static final class Candidate implements Comparable<Candidate> {
+		final Object object;
+		final double distance;
+		final boolean item;
+		
+		Candidate(Object object, double distance, boolean item) {
+			this.object = object;
+			this.distance = distance;
+			this.item = item;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			int result = Double.compare(this.distance, other.distance);
+			if(0 == result && this.item != other.item) {
+				// The items go first, so that the ties do not open the further nodes.
+				return this.item ? -1 : 1;
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * Node of the tree. The boxes of the entries are kept in the parallel arrays, with
+	 * one spare place for the overflow before the split.
+	 */
+	static final class Node {
+		final boolean leaf;
+		Node parent;
+		int count;
+		final double minX[] = new double[MAX_ENTRIES + 1];
+		final double minY[] = new double[MAX_ENTRIES + 1];
+		final double maxX[] = new double[MAX_ENTRIES + 1];
+		final double maxY[] = new double[MAX_ENTRIES + 1];
+		final Object children[] = new Object[MAX_ENTRIES + 1];
+		
+		Node(boolean leaf) {
+			this.leaf = leaf;
+		}
+		
+		void add(Object child, double minX, double minY, double maxX, double maxY) {
+			int i = this.count++;
+			this.children[i] = child;
+			this.minX[i] = minX;
+			this.minY[i] = minY;
+			this.maxX[i] = maxX;
+			this.maxY[i] = maxY;
+		}
+		
+		void addChild(Node child) {
+			this.addChild(child, 0.0, 0.0, 0.0, 0.0);
+			child.updateBoxInParent();
+		}
+		
+		void addChild(Node child, double minX, double minY, double maxX, double maxY) {
+			this.add(child, minX, minY, maxX, maxY);
+			child.parent = this;
+		}
+		
+		void removeAt(int index) {
+			int last = --this.count;
+			this.children[index] = this.children[last];
+			this.minX[index] = this.minX[last];
+			this.minY[index] = this.minY[last];
+			this.maxX[index] = this.maxX[last];
+			this.maxY[index] = this.maxY[last];
+			this.children[last] = null;
+		}
+		
+		int indexOf(Object child) {
+			for(int i = 0; i < this.count; i++) {
+				if(this.children[i] == child) {
+					return i;
+				}
+			}
+			throw new IllegalStateException("The R-tree is corrupted: the entry is missing in its node.");
+		}
+		
+		double area(int i) {
+			return RTree.area(this.minX[i], this.minY[i], this.maxX[i], this.maxY[i]);
+		}
+		
+		/**
+		 * How much the box of this node would grow, if the entry of another node was added.
+		 */
+		double enlargement(Node other, int i) {
+			if(0 == this.count) {
+				return 0.0;
+			}
+			double x1 = other.minX[i], y1 = other.minY[i], x2 = other.maxX[i], y2 = other.maxY[i];
+			double bx1 = this.minX[0], by1 = this.minY[0], bx2 = this.maxX[0], by2 = this.maxY[0];
+			for(int j = 1; j < this.count; j++) {
+				bx1 = Math.min(bx1, this.minX[j]);
+				by1 = Math.min(by1, this.minY[j]);
+				bx2 = Math.max(bx2, this.maxX[j]);
+				by2 = Math.max(by2, this.maxY[j]);
+			}
+			return RTree.area(Math.min(bx1, x1), Math.min(by1, y1), Math.max(bx2, x2), Math.max(by2, y2)) - RTree.area(bx1, by1, bx2, by2);
+		}
+		
+		/**
+		 * Writes the box that covers all the entries into the parent node.
+		 */
+		void updateBoxInParent() {
+			if(null == this.parent || 0 == this.count) {
+				return;
+			}
+			double bx1 = this.minX[0], by1 = this.minY[0], bx2 = this.maxX[0], by2 = this.maxY[0];
+			for(int j = 1; j < this.count; j++) {
+				bx1 = Math.min(bx1, this.minX[j]);
+				by1 = Math.min(by1, this.minY[j]);
+				bx2 = Math.max(bx2, this.maxX[j]);
+				by2 = Math.max(by2, this.maxY[j]);
+			}
+			int i = this.parent.indexOf(this);
+			this.parent.minX[i] = bx1;
+			this.parent.minY[i] = by1;
+			this.parent.maxX[i] = bx2;
+			this.parent.maxY[i] = by2;
+		}
+		
+		/**
+		 * Appends the items of the subtree with their boxes: item, minX, minY, maxX, maxY.
+		 */
+		void collectItems(List<Object> output) {
+			for(int i = 0; i < this.count; i++) {
+				if(this.leaf) {
+					output.add(this.children[i]);
+					output.add(this.minX[i]);
+					output.add(this.minY[i]);
+					output.add(this.maxX[i]);
+					output.add(this.maxY[i]);
+				} else {
+					((Node) this.children[i]).collectItems(output);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.data.MeanOfTransport;
+import org.invenzzia.opentrans.visitons.data.Platform;
+import org.invenzzia.opentrans.visitons.data.Stop;
+import org.invenzzia.opentrans.visitons.data.Vehicle;
+import org.invenzzia.opentrans.visitons.data.VehicleType;
+import org.invenzzia.opentrans.visitons.exception.ProjectFormatException;
+import org.invenzzia.opentrans.visitons.geometry.Geometry;
+import org.invenzzia.opentrans.visitons.network.NetworkConst;
+import org.invenzzia.opentrans.visitons.network.Track;
+import org.invenzzia.opentrans.visitons.network.Vertex;
+import org.invenzzia.opentrans.visitons.network.World;
+import org.invenzzia.opentrans.visitons.network.objects.TrackObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProjectFileTest {
+	private File file;
+	
+	@Before
+	public void createFile() throws IOException {
+		this.file = File.createTempFile("opentrans", "."+ProjectFormat.EXTENSION);
+	}
+	
+	@After
+	public void removeFile() {
+		this.file.delete();
+	}
+	
+	@Test
+	public void testProjectSurvivesTheRoundTrip() throws Exception {
+		Project project = new Project();
+		project.setName("Foo");
+		project.setAuthor("Joe");
+		World world = project.getWorld();
+		world.construct(2, 2);
+		world.findSegment(1, 0).setImagePath("/tmp/segment.png");
+		
+		Vertex v1 = new Vertex();
+		v1.setPos(world.findPosition(100.0, 100.0));
+		Vertex v2 = new Vertex();
+		v2.setPos(world.findPosition(1200.0, 100.0));
+		world.addVertex(v1);
+		world.addVertex(v2);
+		Track track = new Track();
+		track.restore(NetworkConst.TRACK_STRAIGHT, v1, v2, 1100.0, new double[] { 0.0, 0.0, 1100.0, 0.0 });
+		world.addTrack(track);
+		v1.restoreTracks(track, null);
+		v2.restoreTracks(track, null);
+		
+		MeanOfTransport mot = new MeanOfTransport();
+		mot.setName("Tram");
+		project.getMeanOfTransportManager().addItem(mot);
+		VehicleType vt = new VehicleType();
+		vt.setName("NGT6");
+		vt.setLength(27.0);
+		vt.setMass(30000);
+		vt.getMeanOfTransport().set(mot);
+		project.getVehicleTypeManager().addItem(vt);
+		Vehicle vehicle = new Vehicle();
+		vehicle.setName("2050");
+		vehicle.getVehicleType().set(vt);
+		project.getVehicleManager().addItem(vehicle);
+		TrackObject<Vehicle> vehicleObject = new TrackObject<>();
+		vehicleObject.setPosition(0.25);
+		vehicle.setTrackObject(vehicleObject);
+		track.addTrackObject(vehicleObject);
+		
+		Stop stop = new Stop();
+		stop.setName("Bar");
+		project.getStopManager().addItem(stop);
+		TrackObject<Platform> platformObject = new TrackObject<>();
+		platformObject.setPosition(0.75);
+		platformObject.setOrientation((byte) 1);
+		track.addTrackObject(platformObject);
+		new Platform(stop, platformObject).setName("A");
+		
+		new ProjectWriter().write(project, this.file);
+		Project loaded = new ProjectReader().read(this.file);
+		
+		Assert.assertEquals("Foo", loaded.getName());
+		Assert.assertEquals("Joe", loaded.getAuthor());
+		Assert.assertEquals(project.getDescription(), loaded.getDescription());
+		World loadedWorld = loaded.getWorld();
+		Assert.assertEquals(2, loadedWorld.getX());
+		Assert.assertEquals(2, loadedWorld.getY());
+		Assert.assertEquals("/tmp/segment.png", loadedWorld.findSegment(1, 0).getImagePath());
+		Assert.assertEquals(world.getNextTrackId(), loadedWorld.getNextTrackId());
+		Assert.assertEquals(world.getNextVertexId(), loadedWorld.getNextVertexId());
+		Assert.assertTrue(loadedWorld.findSegment(0, 0).isUsed());
+		Assert.assertTrue(loadedWorld.findSegment(1, 0).isUsed());
+		Assert.assertFalse(loadedWorld.findSegment(0, 1).isUsed());
+		
+		Track loadedTrack = loadedWorld.findTrack(track.getId());
+		Assert.assertNotNull(loadedTrack);
+		Assert.assertEquals(NetworkConst.TRACK_STRAIGHT, loadedTrack.getType());
+		Assert.assertEquals(1100.0, loadedTrack.getLength(), Geometry.EPSILON);
+		Assert.assertArrayEquals(track.getMetadata(), loadedTrack.getMetadata(), Geometry.EPSILON);
+		Vertex loadedVertex = (Vertex) loadedTrack.getSecondVertex();
+		Assert.assertEquals(v2.getId(), loadedVertex.getId());
+		Assert.assertSame(loadedTrack, loadedVertex.getFirstTrack());
+		Assert.assertEquals(1200.0, loadedVertex.pos().getAbsoluteX(), Geometry.EPSILON);
+		Assert.assertEquals(200.0, loadedVertex.pos().x(), Geometry.EPSILON);
+		
+		VehicleType loadedVt = loaded.getVehicleTypeManager().findById(vt.getId());
+		Assert.assertEquals("NGT6", loadedVt.getName());
+		Assert.assertEquals(27.0, loadedVt.getLength(), Geometry.EPSILON);
+		Assert.assertSame(loaded.getMeanOfTransportManager().findById(mot.getId()), loadedVt.getMeanOfTransport().get());
+		Vehicle loadedVehicle = loaded.getVehicleManager().findById(vehicle.getId());
+		Assert.assertEquals("2050", loadedVehicle.getName());
+		Assert.assertSame(loadedVt, loadedVehicle.getVehicleType().get());
+		Assert.assertSame(loadedTrack, loadedVehicle.getTrackObject().getTrack());
+		Assert.assertEquals(0.25, loadedVehicle.getTrackObject().getPosition(), Geometry.EPSILON);
+		
+		Stop loadedStop = loaded.getStopManager().findById(stop.getId());
+		Platform loadedPlatform = loadedStop.getPlatform(1);
+		Assert.assertEquals("A", loadedPlatform.getName());
+		Assert.assertSame(loadedTrack, loadedPlatform.getTrackObject().getTrack());
+		Assert.assertEquals(1, loadedPlatform.getTrackObject().getOrientation());
+	}
+	
+	@Test
+	public void testMissingReferencesSurviveTheRoundTrip() throws Exception {
+		Project project = new Project();
+		project.getWorld().construct(1, 1);
+		MeanOfTransport mot = new MeanOfTransport();
+		mot.setName("Tram");
+		project.getMeanOfTransportManager().addItem(mot);
+		VehicleType vt = new VehicleType();
+		vt.setName("NGT6");
+		vt.getMeanOfTransport().set(mot);
+		project.getVehicleTypeManager().addItem(vt);
+		vt.getMeanOfTransport().set(null);
+		Vehicle vehicle = new Vehicle();
+		vehicle.setName("2050");
+		project.getVehicleManager().addItem(vehicle);
+		
+		new ProjectWriter().write(project, this.file);
+		Project loaded = new ProjectReader().read(this.file);
+		
+		VehicleType loadedVt = loaded.getVehicleTypeManager().findById(vt.getId());
+		Assert.assertEquals("NGT6", loadedVt.getName());
+		Assert.assertFalse(loadedVt.getMeanOfTransport().isDefined());
+		Vehicle loadedVehicle = loaded.getVehicleManager().findById(vehicle.getId());
+		Assert.assertEquals("2050", loadedVehicle.getName());
+		Assert.assertFalse(loadedVehicle.getVehicleType().isDefined());
+	}
+	
+	@Test(expected = ProjectFormatException.class)
+	public void testReaderRejectsUnknownFiles() throws Exception {
+		try(FileOutputStream out = new FileOutputStream(this.file)) {
+			out.write(new byte[] { 'G', 'I', 'F', '8', '9', 'a', 0, 0 });
+		}
+		new ProjectReader().read(this.file);
+	}
+}
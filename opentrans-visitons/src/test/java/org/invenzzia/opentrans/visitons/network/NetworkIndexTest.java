@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.network;
+
+import java.util.List;
+import org.invenzzia.opentrans.visitons.utils.SegmentCoordinate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NetworkIndexTest {
+	private World world;
+	private Segment segment;
+	
+	@Before
+	public void createNetwork() {
+		this.world = new World();
+		this.segment = new Segment(0, 0);
+		// Two parallel tracks, 10 m apart.
+		Vertex v1 = this.createVertex(1, 0.0, 10.0);
+		Vertex v2 = this.createVertex(2, 100.0, 10.0);
+		Vertex v3 = this.createVertex(3, 0.0, 20.0);
+		Vertex v4 = this.createVertex(4, 100.0, 20.0);
+		this.world.addTrack(this.createTrack(1, v1, v2));
+		this.world.addTrack(this.createTrack(2, v3, v4));
+	}
+	
+	@Test
+	public void testNearestTrackPointIsFound() {
+		TrackPoint point = this.world.findNearestTrackPoint(25.0, 12.0, 5.0);
+		Assert.assertNotNull(point);
+		Assert.assertEquals(1L, point.getTrack().getId());
+		Assert.assertEquals(0.25, point.getPosition(), 0.0001);
+		Assert.assertEquals(25.0, point.getX(), 0.0001);
+		Assert.assertEquals(10.0, point.getY(), 0.0001);
+		Assert.assertEquals(2.0, point.getDistance(), 0.0001);
+		
+		Assert.assertNull(this.world.findNearestTrackPoint(50.0, 50.0, 5.0));
+		
+		List<TrackPoint> points = this.world.findNearestTrackPoints(50.0, 16.0, 5, 20.0);
+		Assert.assertEquals(2, points.size());
+		Assert.assertEquals(2L, points.get(0).getTrack().getId());
+		Assert.assertEquals(1L, points.get(1).getTrack().getId());
+	}
+	
+	@Test
+	public void testNearestVertexIsFound() {
+		Assert.assertEquals(4L, this.world.findNearestVertex(98.0, 19.0, 5.0).getId());
+		Assert.assertNull(this.world.findNearestVertex(50.0, 15.0, 5.0));
+		Assert.assertEquals(2, this.world.findNearestVertices(0.0, 15.0, 3, 6.0).size());
+	}
+	
+	@Test
+	public void testAreaQueriesFollowTheChanges() {
+		Assert.assertEquals(2, this.world.findTracksInArea(-1.0, 0.0, 101.0, 30.0).size());
+		Assert.assertEquals(1, this.world.findTracksInArea(-1.0, 0.0, 101.0, 15.0).size());
+		Assert.assertEquals(2, this.world.findTracksCrossingArea(40.0, 0.0, 60.0, 30.0).size());
+		
+		this.world.removeTrack(this.world.findTrack(1));
+		Assert.assertEquals(1, this.world.findTracksCrossingArea(40.0, 0.0, 60.0, 30.0).size());
+	}
+	
+	private Vertex createVertex(long id, double x, double y) {
+		Vertex vertex = new Vertex();
+		vertex.setId(id);
+		vertex.setPos(new SegmentCoordinate(this.segment, x, y));
+		this.world.addVertex(vertex);
+		return vertex;
+	}
+	
+	private Track createTrack(long id, IVertex v1, IVertex v2) {
+		Track track = new Track();
+		track.setId(id);
+		track.restore(NetworkConst.TRACK_STRAIGHT, v1, v2, 100.0, new double[] { 0.0, 0.0, 100.0, 0.0 });
+		return track;
+	}
+}
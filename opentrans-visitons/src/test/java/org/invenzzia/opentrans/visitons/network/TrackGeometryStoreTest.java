@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.network;
+
+import org.invenzzia.opentrans.visitons.utils.SegmentCoordinate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TrackGeometryStoreTest {
+	private Segment segment;
+	private Vertex v1;
+	private Vertex v2;
+	private Vertex v3;
+	
+	@Before
+	public void createVertices() {
+		this.segment = new Segment(1, 0);
+		this.v1 = this.createVertex(1, 0.0, 10.0);
+		this.v2 = this.createVertex(2, 100.0, 10.0);
+		this.v3 = this.createVertex(3, 200.0, 50.0);
+	}
+	
+	@Test
+	public void testTracksAreStoredInColumns() {
+		TrackGeometryStore store = new TrackGeometryStore();
+		Track straight = this.createTrack(1, NetworkConst.TRACK_STRAIGHT, this.v1, this.v2, 100.0, new double[] { 0.0, 0.0, 100.0, 0.0 });
+		Track curved = this.createTrack(2, NetworkConst.TRACK_CURVED, this.v2, this.v3, 120.0, new double[12]);
+		Assert.assertEquals(0, store.update(straight));
+		Assert.assertEquals(1, store.update(curved));
+		
+		Assert.assertEquals(2, store.size());
+		Assert.assertEquals(1, store.indexOf(2));
+		Assert.assertEquals(TrackGeometryStore.NO_TRACK, store.indexOf(3));
+		Assert.assertEquals(NetworkConst.TRACK_CURVED, store.getType(1));
+		Assert.assertEquals(Segment.SIZE_D + 100.0, store.getX1(1), 0.0001);
+		Assert.assertEquals(50.0, store.getY2(1), 0.0001);
+		Assert.assertEquals(4, store.getParamNum(0));
+		Assert.assertEquals(100.0, store.getParam(0, 2), 0.0001);
+		Assert.assertEquals(220.0, store.getTotalLength(), 0.0001);
+		Assert.assertEquals(1, store.countTracks(NetworkConst.TRACK_STRAIGHT));
+	}
+	
+	@Test
+	public void testRemovedTrackIsReplacedWithTheLastOne() {
+		TrackGeometryStore store = new TrackGeometryStore();
+		for(int i = 1; i <= 5; i++) {
+			store.update(this.createTrack(i, NetworkConst.TRACK_STRAIGHT, this.v1, this.v2, i, new double[] { i, 0.0, 0.0, 0.0 }));
+		}
+		Assert.assertTrue(store.remove(2));
+		Assert.assertFalse(store.remove(2));
+		Assert.assertEquals(4, store.size());
+		Assert.assertEquals(1, store.indexOf(5));
+		Assert.assertEquals(5L, store.getId(1));
+		Assert.assertEquals(5.0, store.getParam(1, 0), 0.0001);
+		Assert.assertEquals(13.0, store.getTotalLength(), 0.0001);
+	}
+	
+	@Test
+	public void testParamsSurviveTheCompaction() {
+		TrackGeometryStore store = new TrackGeometryStore();
+		for(int round = 0; round < 50; round++) {
+			for(int i = 1; i <= 40; i++) {
+				int num = ((round + i) % 2 == 0 ? 4 : 20);
+				double metadata[] = new double[num];
+				metadata[num - 1] = round * 1000 + i;
+				store.update(this.createTrack(i, (num == 4 ? NetworkConst.TRACK_STRAIGHT : NetworkConst.TRACK_FREE), this.v1, this.v2, 1.0, metadata));
+			}
+		}
+		for(int i = 1; i <= 40; i++) {
+			int index = store.indexOf(i);
+			int num = store.getParamNum(index);
+			Assert.assertEquals(((49 + i) % 2 == 0 ? 4 : 20), num);
+			Assert.assertEquals(49 * 1000 + i, store.getParam(index, num - 1), 0.0001);
+		}
+	}
+	
+	@Test
+	public void testCopyIsIndependent() {
+		TrackGeometryStore store = new TrackGeometryStore();
+		for(int i = 1; i <= 100; i++) {
+			store.update(this.createTrack(i, NetworkConst.TRACK_STRAIGHT, this.v1, this.v2, i, new double[] { i, 0.0, 0.0, 0.0 }));
+		}
+		TrackGeometryStore copy = store.copy();
+		store.remove(1);
+		store.update(this.createTrack(100, NetworkConst.TRACK_STRAIGHT, this.v1, this.v2, 1.0, new double[] { 0.0, 0.0, 0.0, 0.0 }));
+		Assert.assertEquals(100, copy.size());
+		Assert.assertEquals(0, copy.indexOf(1));
+		Assert.assertEquals(100.0, copy.getLength(copy.indexOf(100)), 0.0001);
+		Assert.assertEquals(100.0, copy.getParam(copy.indexOf(100), 0), 0.0001);
+		Assert.assertEquals(5050.0, copy.getTotalLength(), 0.0001);
+	}
+	
+	@Test
+	public void testWorldKeepsTheStoreInSync() {
+		World world = new World();
+		Track track = this.createTrack(7, NetworkConst.TRACK_STRAIGHT, this.v1, this.v2, 100.0, new double[] { 0.0, 0.0, 100.0, 0.0 });
+		world.addTrack(track);
+		Assert.assertEquals(0, world.getTrackGeometry().indexOf(7));
+		
+		track.setLength(90.0);
+		world.updateTrackGeometry(track);
+		Assert.assertEquals(90.0, world.getTrackGeometry().getTotalLength(), 0.0001);
+	}
+	
+	private Vertex createVertex(long id, double x, double y) {
+		Vertex vertex = new Vertex();
+		vertex.setId(id);
+		vertex.setPos(new SegmentCoordinate(this.segment, x, y));
+		return vertex;
+	}
+	
+	private Track createTrack(long id, byte type, IVertex v1, IVertex v2, double length, double metadata[]) {
+		Track track = new Track();
+		track.setId(id);
+		track.restore(type, v1, v2, length, metadata);
+		return track;
+	}
+}
@@ -17,11 +17,27 @@
 
 package org.invenzzia.opentrans.visitons.network;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.primitives.Longs;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.editing.network.NetworkLayoutChangeCmd;
+import org.invenzzia.opentrans.visitons.geometry.Geometry;
 import org.invenzzia.opentrans.visitons.network.World.HorizontalDir;
 import org.invenzzia.opentrans.visitons.network.World.VerticalDir;
+import org.invenzzia.opentrans.visitons.network.transform.IRecordImporter;
+import org.invenzzia.opentrans.visitons.network.transform.ITransformAPI;
+import org.invenzzia.opentrans.visitons.network.transform.NetworkUnitOfWork;
+import org.invenzzia.opentrans.visitons.network.transform.TransformEngine;
+import org.invenzzia.opentrans.visitons.render.CameraModel;
+import org.invenzzia.opentrans.visitons.render.SceneManager;
+import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot.SegmentInfo;
 import org.junit.Assert;
 import org.junit.Test;
 
+import static org.mockito.Mockito.*;
+
 public class WorldTest {
 	@Test
 	public void testCreatingTheWorld() {
@@ -121,6 +137,145 @@ public class WorldTest {
 		Assert.assertEquals(2, newSegment.getY());
 	}
 	
+	@Test
+	public void testSegmentsAreAllocatedLazily() {
+		World world = new World();
+		world.construct(100, 100);
+		Assert.assertEquals(0, world.getResidentSegmentNum());
+		Assert.assertNull(world.findResidentSegment(5, 5));
+		
+		Segment segment = world.findSegment(5, 5);
+		Assert.assertNotNull(segment);
+		Assert.assertSame(segment, world.findResidentSegment(5, 5));
+		Assert.assertEquals(1, world.getResidentSegmentNum());
+	}
+	
+	@Test
+	public void testVisibleSegmentsAreNotAllocated() {
+		World world = new World();
+		world.construct(100, 100);
+		Segment used = world.findSegment(1, 1);
+		used.setImagePath("foo.png");
+		CameraModel camera = new CameraModel();
+		camera.setWorldSize(100, 100);
+		camera.setPos(0.0, 0.0);
+		camera.setViewportWidthPx((int) (Segment.SIZE_D * 2.5));
+		camera.setViewportHeightPx((int) (Segment.SIZE_D * 2.5));
+		
+		Assert.assertEquals(1, world.getVisibleSegments(camera).size());
+		VisibleSegmentSnapshot vss = world.exportVisibleSegments(camera);
+		Assert.assertEquals(9, vss.getSegments().size());
+		Assert.assertEquals(1, world.getResidentSegmentNum());
+		int bitmaps = 0;
+		for(SegmentInfo info: vss.getSegments()) {
+			if(null != info.imagePath) {
+				Assert.assertEquals(1, info.x);
+				Assert.assertEquals(1, info.y);
+				bitmaps++;
+			}
+		}
+		Assert.assertEquals(1, bitmaps);
+	}
+	
+	@Test
+	public void testSegmentSceneDataFollowsTheVertexChanges() throws Exception {
+		Project project = new Project();
+		World world = project.getWorld();
+		world.construct(2, 1);
+		ITransformAPI api = new TransformEngine(mock(IRecordImporter.class), new SceneManager()).getAPI();
+		Segment left = world.findSegment(0, 0);
+		Segment right = world.findSegment(1, 0);
+		
+		// Add: v1 - v2 in the left segment, v3 in the right one.
+		NetworkUnitOfWork unit = new NetworkUnitOfWork();
+		VertexRecord vertices[] = new VertexRecord[] { new VertexRecord(), new VertexRecord(), new VertexRecord() };
+		vertices[0].setPosition(100.0, 100.0);
+		vertices[1].setPosition(400.0, 100.0);
+		vertices[2].setPosition(1500.0, 100.0);
+		for(int i = 0; i < vertices.length; i++) {
+			unit.addVertex(vertices[i]);
+			if(i > 0) {
+				TrackRecord tr = new TrackRecord();
+				tr.setType(NetworkConst.TRACK_STRAIGHT);
+				tr.setVertices(vertices[i - 1], vertices[i]);
+				vertices[i - 1].addTrack(tr);
+				vertices[i].addTrack(tr);
+				api.calculateStraightLine(tr);
+				unit.addTrack(tr);
+			}
+		}
+		new NetworkLayoutChangeCmd(unit, "Add").execute(project, mock(EventBus.class));
+		IVertex v1 = world.findNearestVertex(100.0, 100.0, 1.0);
+		IVertex v2 = world.findNearestVertex(400.0, 100.0, 1.0);
+		IVertex v3 = world.findNearestVertex(1500.0, 100.0, 1.0);
+		Track t1 = v1.getFirstTrack();
+		Track t2 = v3.getFirstTrack();
+		
+		left.refreshSceneData();
+		right.refreshSceneData();
+		this.assertSceneVertices(left, v1, 100.0, 100.0, v2, 400.0, 100.0);
+		this.assertSceneTracks(left, t1, t2);
+		this.assertSceneVertices(right, v3, 1500.0, 100.0);
+		this.assertSceneTracks(right, t2);
+		
+		// Nothing has changed, so the exported data is reused.
+		long leftIds[] = left.getSceneIds();
+		double rightPoints[] = right.getScenePoints();
+		left.refreshSceneData();
+		right.refreshSceneData();
+		Assert.assertSame(leftIds, left.getSceneIds());
+		Assert.assertSame(rightPoints, right.getScenePoints());
+		
+		// Move: v2 goes to the right segment.
+		unit = new NetworkUnitOfWork();
+		TrackRecord tr1 = unit.importTrack(world, t1);
+		TrackRecord tr2 = unit.importTrack(world, t2);
+		((VertexRecord) unit.findVertex(v2.getId())).setPosition(1200.0, 200.0);
+		api.calculateStraightLine(tr1);
+		api.calculateStraightLine(tr2);
+		new NetworkLayoutChangeCmd(unit, "Move").execute(project, mock(EventBus.class));
+		
+		left.refreshSceneData();
+		right.refreshSceneData();
+		this.assertSceneVertices(left, v1, 100.0, 100.0);
+		this.assertSceneTracks(left, t1);
+		this.assertSceneVertices(right, v2, 1200.0, 200.0, v3, 1500.0, 100.0);
+		this.assertSceneTracks(right, t1, t2);
+		
+		// Remove: v1 goes away together with its track. The vertices of the right segment
+		// stay in place, only v2 loses the connection.
+		world.removeVertex(v1);
+		
+		left.refreshSceneData();
+		right.refreshSceneData();
+		this.assertSceneVertices(left);
+		this.assertSceneTracks(left);
+		this.assertSceneVertices(right, v2, 1200.0, 200.0, v3, 1500.0, 100.0);
+		this.assertSceneTracks(right, t2);
+	}
+	
+	/**
+	 * Checks the exported vertices of the segment, given as the triples: vertex, X, Y.
+	 */
+	private void assertSceneVertices(Segment segment, Object ... expected) {
+		long ids[] = segment.getSceneIds();
+		double points[] = segment.getScenePoints();
+		Assert.assertEquals(expected.length / 3, ids.length);
+		Assert.assertEquals(ids.length * 2, points.length);
+		for(int i = 0; i < expected.length; i += 3) {
+			long id = ((IVertex) expected[i]).getId();
+			int idx = Longs.indexOf(ids, id);
+			Assert.assertTrue("Vertex #"+id+" is not exported.", idx >= 0);
+			Assert.assertEquals((Double) expected[i + 1], points[idx * 2], Geometry.EPSILON);
+			Assert.assertEquals((Double) expected[i + 2], points[idx * 2 + 1], Geometry.EPSILON);
+		}
+	}
+	
+	private void assertSceneTracks(Segment segment, Track ... expected) {
+		Assert.assertEquals(ImmutableSet.copyOf(expected), ImmutableSet.copyOf(segment.getSceneTracks()));
+		Assert.assertEquals(expected.length, segment.getSceneTracks().length);
+	}
+	
 	@Test
 	public void testShrinkingTheWorldHorizontallyIfAllSegmentsAreUnused() {
 		
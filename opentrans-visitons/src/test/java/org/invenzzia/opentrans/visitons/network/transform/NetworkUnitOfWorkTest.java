@@ -194,4 +194,51 @@ public class NetworkUnitOfWorkTest {
 		Assert.assertSame(tr, vr2.getSecondTrack());
 		Assert.assertSame(tr, vr3.getFirstTrack());
 	}
+	
+	@Test
+	public void testMergingLinksTheImportedVertexWithTheExistingOne() {
+		NetworkUnitOfWork uw = new NetworkUnitOfWork();
+		World world = this.buildWorldMock();
+		VertexRecord vr2 = (VertexRecord) uw.importVertex(world, 2);
+		
+		NetworkUnitOfWork imported = new NetworkUnitOfWork();
+		VertexRecord vr3 = (VertexRecord) imported.importVertex(world, 3);
+		imported.importConnectingTracks(world, uw.getVertexIds());
+		uw.merge(imported);
+		
+		Assert.assertEquals(2, uw.getVertexNum());
+		Assert.assertEquals(1, uw.getTrackNum());
+		Assert.assertSame(vr2, uw.findVertex(2));
+		Assert.assertSame(vr3, uw.findVertex(3));
+		TrackRecord tr = uw.findTrack(2);
+		Assert.assertSame(vr2, tr.getFirstVertex());
+		Assert.assertSame(vr3, tr.getSecondVertex());
+		Assert.assertSame(tr, vr2.getSecondTrack());
+		Assert.assertSame(tr, vr3.getFirstTrack());
+		Assert.assertEquals(1, vr2.getFirstTrackId());
+		Assert.assertEquals(3, vr3.getSecondTrackId());
+	}
+	
+	@Test
+	public void testMergingKeepsTheExistingRecords() {
+		NetworkUnitOfWork uw = new NetworkUnitOfWork();
+		World world = this.buildWorldMock();
+		TrackRecord tr2 = uw.importTrack(world, 2);
+		VertexRecord vr3 = (VertexRecord) uw.findVertex(3);
+		
+		NetworkUnitOfWork imported = new NetworkUnitOfWork();
+		imported.importTrack(world, 2);
+		TrackRecord tr3 = imported.importTrack(world, 3);
+		imported.importConnectingTracks(world, uw.getVertexIds());
+		uw.merge(imported);
+		
+		Assert.assertEquals(3, uw.getVertexNum());
+		Assert.assertEquals(2, uw.getTrackNum());
+		Assert.assertSame(tr2, uw.findTrack(2));
+		Assert.assertSame(tr3, uw.findTrack(3));
+		Assert.assertSame(vr3, uw.findVertex(3));
+		Assert.assertSame(vr3, tr3.getFirstVertex());
+		Assert.assertSame(tr2, vr3.getFirstTrack());
+		Assert.assertSame(tr3, vr3.getSecondTrack());
+	}
 }
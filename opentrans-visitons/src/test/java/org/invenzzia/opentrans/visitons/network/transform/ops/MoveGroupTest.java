@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.invenzzia.opentrans.visitons.network.transform.ops;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.editing.network.NetworkLayoutChangeCmd;
+import org.invenzzia.opentrans.visitons.geometry.Characteristics;
+import org.invenzzia.opentrans.visitons.geometry.Geometry;
+import org.invenzzia.opentrans.visitons.geometry.LineOps;
+import org.invenzzia.opentrans.visitons.network.IVertexRecord;
+import org.invenzzia.opentrans.visitons.network.NetworkConst;
+import org.invenzzia.opentrans.visitons.network.TrackRecord;
+import org.invenzzia.opentrans.visitons.network.VertexRecord;
+import org.invenzzia.opentrans.visitons.network.World;
+import org.invenzzia.opentrans.visitons.network.WorldRecord;
+import org.invenzzia.opentrans.visitons.network.transform.DefaultRecordImporter;
+import org.invenzzia.opentrans.visitons.network.transform.IRecordImporter;
+import org.invenzzia.opentrans.visitons.network.transform.NetworkUnitOfWork;
+import org.invenzzia.opentrans.visitons.network.transform.TransformEngine;
+import org.invenzzia.opentrans.visitons.render.SceneManager;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class MoveGroupTest {
+	private static final double DELTA = 0.00001;
+	
+	private Project project;
+	private World world;
+	private CountingImporter importer;
+	private TransformEngine engine;
+	
+	@Before
+	public void createNetwork() throws Exception {
+		this.project = new Project();
+		this.world = this.project.getWorld();
+		this.importer = new CountingImporter(Guice.createInjector(new AbstractModule() {
+			@Override
+			protected void configure() {
+				bind(World.class).toInstance(world);
+			}
+		}).getInstance(DefaultRecordImporter.class));
+		this.engine = new TransformEngine(this.importer, new SceneManager());
+		this.engine.addOperation(new MoveGroup());
+		this.engine.setWorld(new WorldRecord(this.world));
+		
+		// Four vertices on a horizontal line, connected with three straight tracks.
+		NetworkUnitOfWork unit = new NetworkUnitOfWork();
+		VertexRecord vertices[] = new VertexRecord[4];
+		for(int i = 0; i < vertices.length; i++) {
+			vertices[i] = new VertexRecord();
+			vertices[i].setPosition(100.0 + i * 200.0, 500.0);
+			unit.addVertex(vertices[i]);
+		}
+		for(int i = 1; i < vertices.length; i++) {
+			TrackRecord tr = new TrackRecord();
+			tr.setType(NetworkConst.TRACK_STRAIGHT);
+			tr.setVertices(vertices[i - 1], vertices[i]);
+			vertices[i - 1].addTrack(tr);
+			vertices[i].addTrack(tr);
+			this.engine.getAPI().calculateStraightLine(tr);
+			unit.addTrack(tr);
+		}
+		new NetworkLayoutChangeCmd(unit, "Create").execute(this.project, mock(EventBus.class));
+	}
+	
+	@Test
+	public void testOutsideNeighboursAreImportedInOneBatchAndBent() {
+		NetworkUnitOfWork unit = new NetworkUnitOfWork();
+		this.engine.setUnitOfWork(unit);
+		TrackRecord middle = unit.importTrack(this.world, this.world.findNearestVertex(300.0, 500.0, 1.0).getSecondTrack());
+		Assert.assertEquals(1, unit.getTrackNum());
+		
+		Assert.assertTrue(this.engine.op(MoveGroup.class).moveByDelta(ImmutableSet.of(middle), 0.0, 100.0));
+		
+		Assert.assertEquals(1, this.importer.batches.size());
+		Assert.assertEquals(2, this.importer.batches.get(0).size());
+		Assert.assertEquals(3, unit.getTrackNum());
+		Assert.assertEquals(NetworkConst.TRACK_STRAIGHT, middle.getType());
+		
+		VertexRecord first = (VertexRecord) middle.getFirstVertex();
+		VertexRecord second = (VertexRecord) middle.getSecondVertex();
+		Assert.assertEquals(600.0, first.y(), Geometry.EPSILON);
+		Assert.assertEquals(600.0, second.y(), Geometry.EPSILON);
+		Assert.assertTrue(this.importer.batches.get(0).contains(first));
+		Assert.assertTrue(this.importer.batches.get(0).contains(second));
+		TrackRecord left = first.getOppositeTrack(middle);
+		TrackRecord right = second.getOppositeTrack(middle);
+		this.assertBentBetween(left, 100.0, 500.0, 300.0, 600.0);
+		this.assertBentBetween(right, 500.0, 600.0, 700.0, 500.0);
+		
+		// The neighbours are already in the unit of work, so the next drag step imports nothing.
+		Assert.assertTrue(this.engine.op(MoveGroup.class).moveByDelta(ImmutableSet.of(middle), 0.0, 50.0));
+		Assert.assertEquals(1, this.importer.batches.size());
+		Assert.assertEquals(3, unit.getTrackNum());
+		this.assertBentBetween(left, 100.0, 500.0, 300.0, 650.0);
+		this.assertBentBetween(right, 500.0, 650.0, 700.0, 500.0);
+	}
+	
+	/**
+	 * The free curve must start and end in the vertices, in the direction of the former
+	 * straight line, and both of its arcs must meet in the middle point.
+	 */
+	private void assertBentBetween(TrackRecord track, double x1, double y1, double x2, double y2) {
+		Assert.assertEquals(NetworkConst.TRACK_FREE, track.getType());
+		Characteristics begin = track.getPointCharacteristics(0.0);
+		Characteristics middle = track.getPointCharacteristics(0.5);
+		Characteristics end = track.getPointCharacteristics(1.0);
+		Assert.assertEquals(x1, begin.x(), DELTA);
+		Assert.assertEquals(y1, begin.y(), DELTA);
+		Assert.assertTrue(LineOps.areParallel(Geometry.normalizeAngle(begin.tangent()), 0.0));
+		Assert.assertEquals((x1 + x2) / 2.0, middle.x(), DELTA);
+		Assert.assertEquals((y1 + y2) / 2.0, middle.y(), DELTA);
+		Assert.assertEquals(x2, end.x(), DELTA);
+		Assert.assertEquals(y2, end.y(), DELTA);
+		Assert.assertTrue(LineOps.areParallel(Geometry.normalizeAngle(end.tangent()), 0.0));
+	}
+	
+	/**
+	 * Records the batches, like the importers that switch the threads, and imports them
+	 * with the default importer.
+	 */
+	static class CountingImporter implements IRecordImporter {
+		private final IRecordImporter importer;
+		private final List<List<IVertexRecord>> batches = new ArrayList<>();
+		
+		public CountingImporter(IRecordImporter importer) {
+			this.importer = importer;
+		}
+
+		@Override
+		public void importAllMissingNeighbors(NetworkUnitOfWork populatedUnit, IVertexRecord... vertices) {
+			this.importAllMissingNeighbors(populatedUnit, Arrays.asList(vertices));
+		}
+
+		@Override
+		public void importAllMissingNeighbors(NetworkUnitOfWork populatedUnit, Collection<IVertexRecord> vertices) {
+			this.batches.add(new ArrayList<>(vertices));
+			this.importer.importAllMissingNeighbors(populatedUnit, vertices);
+		}
+
+		@Override
+		public void importMissingNeighboursSmarter(NetworkUnitOfWork populatedUnit, IVertexRecord rootVertex) {
+			this.batches.add(Collections.singletonList(rootVertex));
+			this.importer.importMissingNeighboursSmarter(populatedUnit, rootVertex);
+		}
+	}
+}
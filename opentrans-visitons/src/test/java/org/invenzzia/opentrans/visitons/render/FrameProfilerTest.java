@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrameProfilerTest {
+	@Test
+	public void testStatisticsOfTheRecentFrames() {
+		FrameProfiler profiler = new FrameProfiler();
+		profiler.addStream("a");
+		profiler.addStream("b");
+		for(int i = 1; i <= 100; i++) {
+			profiler.beginFrame();
+			profiler.recordStream(0, i * 1000L);
+			profiler.recordStream(1, 5000L);
+			profiler.countPainters(3);
+			profiler.countVertices(7);
+			profiler.countVehicles(i);
+			profiler.endFrame(i * 1000L + 5000L);
+		}
+		Assert.assertEquals(100, profiler.getFrameNum());
+		Assert.assertEquals(100000L, profiler.getLastTime(0));
+		Assert.assertEquals(50500L, profiler.getMeanTime(0));
+		Assert.assertEquals(5000L, profiler.getMeanTime(1));
+		Assert.assertEquals(3, profiler.getPainterNum());
+		Assert.assertEquals(7, profiler.getVertexNum());
+		Assert.assertEquals(100, profiler.getVehicleNum());
+		Assert.assertArrayEquals(new String[] { "a", "b" }, profiler.getStreamNames());
+		Assert.assertEquals(0.105, profiler.getLastFrameTime(), 0.000001);
+	}
+	
+	@Test
+	public void testPercentileOverTheRingBuffer() {
+		FrameProfiler profiler = new FrameProfiler();
+		profiler.addStream("a");
+		for(int i = 0; i < FrameProfiler.SAMPLE_NUM * 2; i++) {
+			profiler.beginFrame();
+			profiler.recordStream(0, (i % 64) == 63 ? 1000000L : 1000L);
+			profiler.endFrame(0L);
+		}
+		Assert.assertEquals(1000000L, profiler.getP99Time(0));
+		Assert.assertEquals((1000000L * 2 + 1000L * 126) / 128, profiler.getMeanTime(0));
+		
+		profiler.reset();
+		Assert.assertEquals(0, profiler.getFrameNum());
+		Assert.assertEquals(0L, profiler.getMeanTime(0));
+		Assert.assertEquals(1, profiler.getStreamNum());
+	}
+	
+	@Test
+	public void testStreamsThatAreNotRedrawnKeepTheirStatistics() {
+		FrameProfiler profiler = new FrameProfiler();
+		profiler.addStream("a");
+		profiler.addStream("b");
+		profiler.beginFrame();
+		profiler.countPainters(10);
+		profiler.recordStream(0, 8000L);
+		profiler.countVehicles(4);
+		profiler.recordStream(1, 2000L);
+		profiler.endFrame(10000L);
+		for(int i = 0; i < 10; i++) {
+			profiler.beginFrame();
+			profiler.countVehicles(5);
+			profiler.recordStream(1, 1000L);
+			profiler.endFrame(1000L);
+		}
+		Assert.assertEquals(8000L, profiler.getLastTime(0));
+		Assert.assertEquals(8000L, profiler.getMeanTime(0));
+		Assert.assertEquals(1000L, profiler.getLastTime(1));
+		Assert.assertEquals((2000L + 10 * 1000L) / 11, profiler.getMeanTime(1));
+		Assert.assertEquals(10, profiler.getPainterNum());
+		Assert.assertEquals(5, profiler.getVehicleNum());
+	}
+}
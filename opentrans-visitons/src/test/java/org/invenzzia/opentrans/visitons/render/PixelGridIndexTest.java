@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.invenzzia.opentrans.visitons.render;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PixelGridIndexTest {
+	@Test
+	public void testQueryReturnsIntersectingRectanglesInOrder() {
+		PixelGridIndex index = new PixelGridIndex(
+			new double[] { 0.0, 500.0, 90.0, Double.NaN, -10000.0 },
+			new double[] { 0.0, 500.0, 90.0, Double.NaN, -10000.0 },
+			new double[] { 100.0, 510.0, 95.0, Double.NaN, 10000.0 },
+			new double[] { 100.0, 510.0, 95.0, Double.NaN, 10000.0 }
+		);
+		int num = index.query(92.0, 92.0, 96.0, 96.0);
+		Assert.assertEquals(3, num);
+		Assert.assertEquals(0, index.getResult(0));
+		Assert.assertEquals(2, index.getResult(1));
+		Assert.assertEquals(4, index.getResult(2));
+		
+		num = index.query(505.0, 505.0, 506.0, 506.0);
+		Assert.assertEquals(2, num);
+		Assert.assertEquals(1, index.getResult(0));
+		Assert.assertEquals(4, index.getResult(1));
+		
+		Assert.assertEquals(0, index.query(20000.0, 20000.0, 20001.0, 20001.0));
+	}
+	
+	@Test
+	public void testEmptyIndex() {
+		PixelGridIndex index = new PixelGridIndex(new double[0], new double[0], new double[0], new double[0]);
+		Assert.assertEquals(0, index.query(0.0, 0.0, 10.0, 10.0));
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render;
+
+import com.google.inject.Provider;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import org.invenzzia.opentrans.visitons.render.scene.VehicleSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RendererTest {
+	private SceneManager sceneManager;
+	private Renderer renderer;
+	
+	@Before
+	public void createRenderer() {
+		CameraModel camera = new CameraModel();
+		camera.setWorldSize(4, 4);
+		camera.setViewportWidthPx(100);
+		camera.setViewportHeightPx(100);
+		this.sceneManager = new SceneManager();
+		this.sceneManager.updateResource(CameraModelSnapshot.class, new CameraModelSnapshot(camera));
+		this.renderer = new Renderer(this.sceneManager, new Provider<HoverCollector>() {
+			@Override
+			public HoverCollector get() {
+				return new HoverCollector();
+			}
+		}, new FrameProfiler());
+	}
+	
+	@After
+	public void shutdownRenderer() {
+		this.renderer.shutdown();
+	}
+	
+	@Test
+	public void testLayerIsRedrawnOnlyIfItsResourcesChange() {
+		CountingStream background = new CountingStream(Color.RED, 0);
+		CountingStream overlay = new CountingStream(Color.BLUE, 50);
+		this.renderer.addRenderingStream(RenderingLayer.BACKGROUND, background);
+		this.renderer.addRenderingStream(overlay);
+		
+		this.renderer.render(0L);
+		this.renderer.render(0L);
+		Assert.assertEquals(1, background.renderNum);
+		Assert.assertEquals(2, overlay.renderNum);
+		
+		this.sceneManager.updateResource(VehicleSnapshot.class, new VehicleSnapshot());
+		this.renderer.render(0L);
+		Assert.assertEquals(1, background.renderNum);
+		
+		this.sceneManager.updateResource(VisibleSegmentSnapshot.class, new VisibleSegmentSnapshot());
+		this.renderer.render(0L);
+		Assert.assertEquals(2, background.renderNum);
+		
+		this.renderer.invalidateLayers();
+		this.renderer.render(0L);
+		Assert.assertEquals(3, background.renderNum);
+		
+		BufferedImage image = this.renderer.getServedImage();
+		Assert.assertEquals(Color.RED.getRGB(), image.getRGB(5, 5));
+		Assert.assertEquals(Color.BLUE.getRGB(), image.getRGB(55, 55));
+		Assert.assertEquals(Renderer.BACKGROUND_COLOR.getRGB(), image.getRGB(30, 30));
+	}
+	
+	@Test
+	public void testLayersAreComposedInTheDrawingOrder() {
+		CountingStream vehicles = new CountingStream(Color.BLUE, 5);
+		CountingStream tracks = new CountingStream(Color.RED, 0);
+		this.renderer.addRenderingStream(RenderingLayer.VEHICLES, vehicles);
+		this.renderer.addRenderingStream(RenderingLayer.TRACKS, tracks);
+		for(int i = 0; i < 10; i++) {
+			this.renderer.invalidateLayers();
+			this.renderer.render(0L);
+		}
+		BufferedImage image = this.renderer.getServedImage();
+		Assert.assertEquals(Color.RED.getRGB(), image.getRGB(2, 2));
+		Assert.assertEquals(Color.BLUE.getRGB(), image.getRGB(7, 7));
+		Assert.assertEquals(10, vehicles.renderNum);
+		Assert.assertEquals(10, tracks.renderNum);
+	}
+	
+	static class CountingStream extends RenderingStreamAdapter {
+		private final Color color;
+		private final int offset;
+		private volatile int renderNum;
+		
+		public CountingStream(Color color, int offset) {
+			this.color = color;
+			this.offset = offset;
+		}
+
+		@Override
+		public void render(Graphics2D graphics, Map<Object, Object> scene, HoverCollector hoverCollector, long prevTimeFrame) {
+			graphics.setColor(this.color);
+			graphics.fillRect(this.offset, this.offset, 10, 10);
+			this.renderNum++;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.invenzzia.opentrans.visitons.render;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SceneManagerTest {
+	@Test
+	public void testBatchUpdateIsPublishedAtOnce() {
+		SceneManager sm = new SceneManager();
+		sm.updateResource("a", 1);
+		Map<Object, Object> before = sm.getSnapshot();
+		
+		sm.guard();
+		try {
+			sm.batchUpdateResource("a", 2);
+			sm.batchUpdateResource("b", 3);
+			Assert.assertEquals(2, sm.getSceneResource("a"));
+			Assert.assertSame(before, sm.getSnapshot());
+		} finally {
+			sm.unguard();
+		}
+		Map<Object, Object> after = sm.getSnapshot();
+		Assert.assertEquals(1, before.get("a"));
+		Assert.assertFalse(before.containsKey("b"));
+		Assert.assertEquals(2, after.get("a"));
+		Assert.assertEquals(3, after.get("b"));
+	}
+	
+	@Test
+	public void testNullValueRemovesTheResource() {
+		SceneManager sm = new SceneManager();
+		sm.updateResource("a", 1);
+		sm.updateResource("a", null);
+		Assert.assertNull(sm.getResource("a"));
+		Assert.assertTrue(sm.getSnapshot().isEmpty());
+	}
+	
+	@Test
+	public void testVersionChangesOncePerPublication() throws InterruptedException {
+		SceneManager sm = new SceneManager();
+		long version = sm.getVersion();
+		Assert.assertFalse(sm.awaitVersion(version, 1, TimeUnit.MILLISECONDS));
+		
+		sm.guard();
+		try {
+			sm.batchUpdateResource("a", 1);
+			sm.batchUpdateResource("b", 2);
+		} finally {
+			sm.unguard();
+		}
+		Assert.assertEquals(version + 1, sm.getVersion());
+		Assert.assertTrue(sm.awaitVersion(version, 1, TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	public void testWakeUpEndsTheWaitWithoutPublishing() throws InterruptedException {
+		final SceneManager sm = new SceneManager();
+		long version = sm.getVersion();
+		long wakeUpNum = sm.getWakeUpNum();
+		Assert.assertFalse(sm.awaitChange(version, wakeUpNum, 1, TimeUnit.MILLISECONDS));
+		
+		Thread waker = new Thread() {
+			@Override
+			public void run() {
+				sm.wakeUpWaiters();
+			}
+		};
+		waker.start();
+		Assert.assertTrue(sm.awaitChange(version, wakeUpNum, 10, TimeUnit.SECONDS));
+		waker.join();
+		Assert.assertEquals(version, sm.getVersion());
+	}
+}
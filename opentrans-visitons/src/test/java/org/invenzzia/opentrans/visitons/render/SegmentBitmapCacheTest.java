@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.invenzzia.opentrans.visitons.render;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SegmentBitmapCacheTest {
+	@Test
+	public void testBitmapIsDecodedInTheBackground() throws Exception {
+		File file = this.createBitmap(512);
+		SceneManager sm = new SceneManager();
+		SegmentBitmapCache cache = new SegmentBitmapCache(sm);
+		try {
+			long version = sm.getVersion();
+			BufferedImage image = this.awaitImage(cache, file, 100, 128);
+			Assert.assertEquals(128, image.getHeight());
+			Assert.assertEquals(128L * 128L * 4L, cache.getUsedBytes());
+			// The image is visible before the scene manager is notified.
+			Assert.assertTrue(sm.awaitVersion(version, 5, TimeUnit.SECONDS));
+			Assert.assertNotNull(sm.getResource(SegmentBitmapCache.class));
+			
+			// The previous level is returned until the new one is decoded, and then replaced.
+			Assert.assertEquals(128, cache.getImage(file.getPath(), 1000).getWidth());
+			this.awaitImage(cache, file, 1000, 512);
+			Assert.assertEquals(512L * 512L * 4L, cache.getUsedBytes());
+		} finally {
+			cache.shutdown();
+		}
+	}
+	
+	@Test
+	public void testBitmapsOfTheCurrentFrameAreNotEvicted() throws Exception {
+		File first = this.createBitmap(256);
+		File second = this.createBitmap(256);
+		SegmentBitmapCache cache = new SegmentBitmapCache(new SceneManager());
+		try {
+			cache.setMaxBytes(256L * 256L * 4L);
+			cache.beginFrame();
+			this.awaitImage(cache, first, 256, 256);
+			this.awaitImage(cache, second, 256, 256);
+			Assert.assertNotNull(cache.getImage(first.getPath(), 256));
+			Assert.assertEquals(2L * 256L * 256L * 4L, cache.getUsedBytes());
+			
+			// Only the second bitmap is still visible.
+			cache.beginFrame();
+			cache.getImage(second.getPath(), 256);
+			cache.beginFrame();
+			cache.getImage(second.getPath(), 256);
+			cache.setMaxBytes(256L * 256L * 4L);
+			Assert.assertEquals(256L * 256L * 4L, cache.getUsedBytes());
+			Assert.assertNotNull(cache.getImage(second.getPath(), 256));
+		} finally {
+			cache.shutdown();
+		}
+	}
+	
+	@Test
+	public void testSubsamplingKeepsTheImageLargeEnough() {
+		Assert.assertEquals(4, SegmentBitmapCache.subsampling(512, 512, 100));
+		Assert.assertEquals(1, SegmentBitmapCache.subsampling(512, 512, 1000));
+		Assert.assertEquals(2, SegmentBitmapCache.subsampling(300, 200, 10));
+	}
+	
+	private File createBitmap(int size) throws IOException {
+		File file = File.createTempFile("segment", ".png");
+		file.deleteOnExit();
+		ImageIO.write(new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB), "png", file);
+		return file;
+	}
+	
+	private BufferedImage awaitImage(SegmentBitmapCache cache, File file, int size, int width) throws InterruptedException {
+		BufferedImage image = cache.getImage(file.getPath(), size);
+		for(int i = 0; i < 500 && (null == image || image.getWidth() != width); i++) {
+			Thread.sleep(10);
+			image = cache.getImage(file.getPath(), size);
+		}
+		Assert.assertNotNull(image);
+		Assert.assertEquals(width, image.getWidth());
+		return image;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.render.export;
+
+import com.google.common.collect.ImmutableList;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
+import org.invenzzia.opentrans.visitons.render.HoverCollector;
+import org.invenzzia.opentrans.visitons.render.IRenderingStream;
+import org.invenzzia.opentrans.visitons.render.RenderingStreamAdapter;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MapExporterTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testPngWriterWritesTheStripes() throws Exception {
+		BufferedImage stripe = new BufferedImage(300, 16, BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try(StripedPngWriter writer = new StripedPngWriter(output, 300, 40)) {
+			for(int base = 0; base < 40; base += 16) {
+				for(int y = 0; y < 16; y++) {
+					for(int x = 0; x < 300; x++) {
+						stripe.setRGB(x, y, this.pattern(x, base + y));
+					}
+				}
+				writer.writeRows(stripe, Math.min(16, 40 - base));
+			}
+		}
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+		Assert.assertEquals(300, image.getWidth());
+		Assert.assertEquals(40, image.getHeight());
+		for(int y = 0; y < 40; y++) {
+			for(int x = 0; x < 300; x++) {
+				Assert.assertEquals(this.pattern(x, y), image.getRGB(x, y) & 0xFFFFFF);
+			}
+		}
+	}
+	
+	@Test
+	public void testExportedImageJoinsTheTiles() throws Exception {
+		MapExporter exporter = this.createExporter();
+		File file = this.folder.newFile("map.png");
+		exporter.exportImage(file);
+		
+		BufferedImage image = ImageIO.read(file);
+		Assert.assertEquals(250, image.getWidth());
+		Assert.assertEquals(250, image.getHeight());
+		for(int y = 0; y < 250; y++) {
+			for(int x = 0; x < 250; x++) {
+				boolean inside = (x >= 50 && x < 100 && y >= 75 && y < 150);
+				Assert.assertEquals(inside ? 0x000000 : 0xFFFFFF, image.getRGB(x, y) & 0xFFFFFF);
+			}
+		}
+	}
+	
+	@Test
+	public void testTilesAreSavedSeparately() throws Exception {
+		MapExporter exporter = this.createExporter();
+		File directory = this.folder.newFolder("tiles");
+		exporter.exportTiles(directory);
+		
+		Assert.assertEquals(16, directory.list().length);
+		BufferedImage corner = ImageIO.read(new File(directory, "3_3.png"));
+		Assert.assertEquals(58, corner.getWidth());
+		Assert.assertEquals(58, corner.getHeight());
+		BufferedImage tile = ImageIO.read(new File(directory, "1_1.png"));
+		Assert.assertEquals(0x000000, tile.getRGB(0, 11) & 0xFFFFFF);
+		Assert.assertEquals(0xFFFFFF, tile.getRGB(0, 10) & 0xFFFFFF);
+	}
+	
+	private MapExporter createExporter() {
+		MapExporter exporter = new MapExporter(new Project().getWorld(), new IRenderingStreamFactory() {
+			@Override
+			public List<IRenderingStream> createStreams() {
+				return ImmutableList.<IRenderingStream>of(new RectangleStream());
+			}
+		});
+		exporter.setMpp(4.0);
+		exporter.setTileSize(64);
+		exporter.setThreads(3);
+		return exporter;
+	}
+	
+	private int pattern(int x, int y) {
+		return ((x * 7) & 0xFF) << 16 | ((y * 13) & 0xFF) << 8 | ((x + y) & 0xFF);
+	}
+	
+	/**
+	 * Draws the rectangle 200,300 - 400,600 in the world coordinates.
+	 */
+	static class RectangleStream extends RenderingStreamAdapter {
+		@Override
+		public void render(Graphics2D graphics, Map<Object, Object> scene, HoverCollector hoverCollector, long prevTimeFrame) {
+			CameraModelSnapshot camera = this.extract(scene, CameraModelSnapshot.class);
+			int x = camera.world2pixX(200.0);
+			int y = camera.world2pixY(300.0);
+			graphics.setColor(Color.BLACK);
+			graphics.fillRect(x, y, camera.world2pixX(400.0) - x, camera.world2pixY(600.0) - y);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.invenzzia.opentrans.visitons.render.stream;
+
+import com.google.common.eventbus.EventBus;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.editing.network.NetworkLayoutChangeCmd;
+import org.invenzzia.opentrans.visitons.network.IVertex;
+import org.invenzzia.opentrans.visitons.network.NetworkConst;
+import org.invenzzia.opentrans.visitons.network.TrackRecord;
+import org.invenzzia.opentrans.visitons.network.VertexRecord;
+import org.invenzzia.opentrans.visitons.network.World;
+import org.invenzzia.opentrans.visitons.network.transform.IRecordImporter;
+import org.invenzzia.opentrans.visitons.network.transform.ITransformAPI;
+import org.invenzzia.opentrans.visitons.network.transform.NetworkUnitOfWork;
+import org.invenzzia.opentrans.visitons.network.transform.TransformEngine;
+import org.invenzzia.opentrans.visitons.render.CameraModel;
+import org.invenzzia.opentrans.visitons.render.CameraModelSnapshot;
+import org.invenzzia.opentrans.visitons.render.SceneManager;
+import org.invenzzia.opentrans.visitons.render.painters.ITrackPainter;
+import org.invenzzia.opentrans.visitons.render.scene.CommittedTrackSnapshot;
+import org.invenzzia.opentrans.visitons.render.scene.VisibleSegmentSnapshot;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class TrackTileCacheTest {
+	private Project project;
+	private World world;
+	private ITransformAPI api;
+	private CameraModel camera;
+	private SceneManager sceneManager;
+	private BufferedImage screen;
+	private TrackTileCache cache;
+	
+	@Before
+	public void createWorld() throws Exception {
+		this.project = new Project();
+		this.world = this.project.getWorld();
+		this.world.construct(3, 1);
+		this.sceneManager = new SceneManager();
+		this.api = new TransformEngine(mock(IRecordImporter.class), this.sceneManager).getAPI();
+		
+		// One track in the first and one in the last segment; the middle one stays empty.
+		NetworkUnitOfWork unit = new NetworkUnitOfWork();
+		this.createStraightTrack(unit, 100.0, 500.0, 900.0, 500.0);
+		this.createStraightTrack(unit, 2100.0, 500.0, 2900.0, 500.0);
+		new NetworkLayoutChangeCmd(unit, "Create").execute(this.project, mock(EventBus.class));
+		
+		this.camera = new CameraModel();
+		this.camera.setWorldSize(3, 1);
+		this.camera.setMpp(10.0);
+		this.camera.setViewportDimensionPx(300, 100);
+		this.camera.setPos(0.0, 0.0);
+		this.screen = new BufferedImage(300, 100, BufferedImage.TYPE_INT_ARGB);
+		this.cache = new TrackTileCache();
+	}
+	
+	@Test
+	public void testUnchangedPaintersReuseTheTiles() {
+		this.exportAndDraw();
+		Assert.assertEquals(3, this.cache.getDrawnTileNum());
+		ITrackPainter painters[] = this.sceneManager.getResource(CommittedTrackSnapshot.class, CommittedTrackSnapshot.class).getTracks().clone();
+		
+		this.exportAndDraw();
+		Assert.assertEquals(3, this.cache.getDrawnTileNum());
+		ITrackPainter exported[] = this.sceneManager.getResource(CommittedTrackSnapshot.class, CommittedTrackSnapshot.class).getTracks();
+		Assert.assertEquals(painters.length, exported.length);
+		for(ITrackPainter painter: exported) {
+			Assert.assertTrue(this.containsSame(painters, painter));
+		}
+	}
+	
+	@Test
+	public void testChangedTrackRedrawsOnlyTheTilesItCrosses() throws Exception {
+		this.exportAndDraw();
+		Assert.assertEquals(3, this.cache.getDrawnTileNum());
+		
+		NetworkUnitOfWork unit = new NetworkUnitOfWork();
+		IVertex movedVertex = this.world.findNearestVertex(2900.0, 500.0, 1.0);
+		TrackRecord track = unit.importTrack(this.world, movedVertex.getFirstTrack());
+		VertexRecord vertex = (VertexRecord) unit.findVertex(movedVertex.getId());
+		vertex.setPosition(2900.0, 700.0);
+		this.api.calculateStraightLine(track);
+		new NetworkLayoutChangeCmd(unit, "Move").execute(this.project, mock(EventBus.class));
+		
+		this.exportAndDraw();
+		Assert.assertEquals(4, this.cache.getDrawnTileNum());
+		Assert.assertEquals(3, this.cache.size());
+	}
+	
+	private boolean containsSame(ITrackPainter painters[], ITrackPainter painter) {
+		for(ITrackPainter candidate: painters) {
+			if(candidate == painter) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private void createStraightTrack(NetworkUnitOfWork unit, double x1, double y1, double x2, double y2) {
+		VertexRecord v1 = new VertexRecord();
+		v1.setPosition(x1, y1);
+		VertexRecord v2 = new VertexRecord();
+		v2.setPosition(x2, y2);
+		TrackRecord tr = new TrackRecord();
+		tr.setType(NetworkConst.TRACK_STRAIGHT);
+		tr.setVertices(v1, v2);
+		v1.addTrack(tr);
+		v2.addTrack(tr);
+		this.api.calculateStraightLine(tr);
+		unit.addVertex(v1).addVertex(v2).addTrack(tr);
+	}
+	
+	/**
+	 * Exports the scene, like the model thread does, and draws the committed tracks
+	 * from the tiles, like the rendering thread does.
+	 */
+	private void exportAndDraw() {
+		this.world.exportScene(this.sceneManager, this.camera, false);
+		CommittedTrackSnapshot snapshot = this.sceneManager.getResource(CommittedTrackSnapshot.class, CommittedTrackSnapshot.class);
+		VisibleSegmentSnapshot vss = this.sceneManager.getResource(VisibleSegmentSnapshot.class, VisibleSegmentSnapshot.class);
+		CameraModelSnapshot cameraSnapshot = new CameraModelSnapshot(this.camera);
+		snapshot.refreshTrackPainters(cameraSnapshot);
+		
+		Graphics2D graphics = this.screen.createGraphics();
+		try {
+			this.cache.draw(graphics, vss, snapshot, cameraSnapshot, new NullStrategy(), 1.0, 4, 2, true);
+		} finally {
+			graphics.dispose();
+		}
+	}
+	
+	static class NullStrategy implements TrackStream.ITrackDrawingStrategy {
+		@Override
+		public void prepareTrackStroke(Graphics2D graphics) {
+		}
+
+		@Override
+		public void prepareSelectedTrackStroke(Graphics2D graphics) {
+		}
+
+		@Override
+		public void restoreTrackStroke(Graphics2D graphics) {
+		}
+
+		@Override
+		public void prepareVertexStroke(Graphics2D graphics) {
+		}
+
+		@Override
+		public void prepareSelectedVertexStroke(Graphics2D graphics) {
+		}
+
+		@Override
+		public void restoreVertexStroke(Graphics2D graphics) {
+		}
+
+		@Override
+		public void drawVertex(Graphics2D graphics, int x, int y, int radius, int halfRadius, long prevTimeFrame) {
+			graphics.fillRect(x - halfRadius, y - halfRadius, radius, radius);
+		}
+	}
+}
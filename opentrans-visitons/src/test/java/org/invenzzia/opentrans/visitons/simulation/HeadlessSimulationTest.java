@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.invenzzia.opentrans.visitons.simulation;
+
+import java.io.File;
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.data.MeanOfTransport;
+import org.invenzzia.opentrans.visitons.data.Vehicle;
+import org.invenzzia.opentrans.visitons.data.VehicleType;
+import org.invenzzia.opentrans.visitons.io.ProjectFormat;
+import org.invenzzia.opentrans.visitons.io.ProjectWriter;
+import org.invenzzia.opentrans.visitons.network.NetworkConst;
+import org.invenzzia.opentrans.visitons.network.Track;
+import org.invenzzia.opentrans.visitons.network.Vertex;
+import org.invenzzia.opentrans.visitons.network.World;
+import org.invenzzia.opentrans.visitons.network.objects.TrackObject;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HeadlessSimulationTest {
+	private File file;
+
+	@Before
+	public void saveProject() throws Exception {
+		this.file = File.createTempFile("opentrans", "."+ProjectFormat.EXTENSION);
+
+		Project project = new Project();
+		World world = project.getWorld();
+		world.construct(1, 1);
+		Vertex v1 = new Vertex();
+		v1.setPos(world.findPosition(100.0, 100.0));
+		Vertex v2 = new Vertex();
+		v2.setPos(world.findPosition(600.0, 100.0));
+		world.addVertex(v1);
+		world.addVertex(v2);
+		Track track = new Track();
+		track.restore(NetworkConst.TRACK_STRAIGHT, v1, v2, 500.0, new double[] { 0.0, 0.0, 500.0, 0.0 });
+		world.addTrack(track);
+		v1.restoreTracks(track, null);
+		v2.restoreTracks(track, null);
+
+		MeanOfTransport mot = new MeanOfTransport();
+		mot.setName("Tram");
+		project.getMeanOfTransportManager().addItem(mot);
+		VehicleType vt = new VehicleType();
+		vt.setName("NGT6");
+		vt.getMeanOfTransport().set(mot);
+		vt.setLength(27.0);
+		vt.setMass(30000);
+		vt.setEnginePower(30000);
+		project.getVehicleTypeManager().addItem(vt);
+		Vehicle vehicle = new Vehicle();
+		vehicle.setName("2050");
+		vehicle.getVehicleType().set(vt);
+		project.getVehicleManager().addItem(vehicle);
+		TrackObject<Vehicle> vehicleObject = new TrackObject<>();
+		vehicleObject.setPosition(0.1);
+		vehicle.setTrackObject(vehicleObject);
+		track.addTrackObject(vehicleObject);
+
+		new ProjectWriter().write(project, this.file);
+	}
+
+	@After
+	public void removeFile() {
+		this.file.delete();
+	}
+
+	@Test
+	public void testSavedProjectIsSimulated() throws Exception {
+		Project project = new FileProjectLoader(this.file).loadProject();
+		HeadlessSimulation simulation = new HeadlessSimulation();
+		simulation.setFrom(HeadlessSimulation.parseTime("05:00"));
+		simulation.setTo(HeadlessSimulation.parseTime("05:01"));
+		simulation.setStepLength(0.5);
+		simulation.run(project);
+
+		Assert.assertEquals(120, simulation.getStepNum());
+		Assert.assertEquals(1, simulation.getTrackNum());
+		Assert.assertEquals(500.0, simulation.getNetworkLength(), 0.0001);
+		SimulationEngine engine = simulation.getEngine();
+		Assert.assertEquals(1, engine.getVehicleNum());
+		Assert.assertEquals(60.0, engine.getTime(), 0.0001);
+		Assert.assertTrue(engine.getPosition(0) > 50.0);
+		Assert.assertTrue(engine.getSpeed(0) > 0.0);
+	}
+}
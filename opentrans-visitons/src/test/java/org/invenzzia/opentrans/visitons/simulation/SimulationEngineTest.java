@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.simulation;
+
+import org.invenzzia.opentrans.visitons.Project;
+import org.invenzzia.opentrans.visitons.data.Vehicle;
+import org.invenzzia.opentrans.visitons.data.VehicleType;
+import org.invenzzia.opentrans.visitons.network.Segment;
+import org.invenzzia.opentrans.visitons.network.Track;
+import org.invenzzia.opentrans.visitons.network.Vertex;
+import org.invenzzia.opentrans.visitons.network.objects.TrackObject;
+import org.invenzzia.opentrans.visitons.utils.SegmentCoordinate;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SimulationEngineTest {
+	private Project project;
+	private Track t1;
+	private Track t2;
+	private Vehicle vehicle;
+
+	@Before
+	public void populateProject() throws Exception {
+		Segment segment = new Segment(0, 0);
+		Vertex v1 = new Vertex();
+		v1.setId(1);
+		v1.setPos(new SegmentCoordinate(segment, 0.0, 10.0));
+		Vertex v2 = new Vertex();
+		v2.setId(2);
+		v2.setPos(new SegmentCoordinate(segment, 100.0, 10.0));
+		Vertex v3 = new Vertex();
+		v3.setId(3);
+		v3.setPos(new SegmentCoordinate(segment, 200.0, 10.0));
+
+		this.t1 = new Track();
+		this.t1.setId(1);
+		this.t1.setVertices(v1, v2);
+		this.t1.setLength(100.0);
+		this.t2 = new Track();
+		this.t2.setId(2);
+		this.t2.setVertices(v2, v3);
+		this.t2.setLength(100.0);
+		v1.setTracks(this.t1, null);
+		v2.setTracks(this.t1, this.t2);
+		v3.setTracks(this.t2, null);
+
+		this.project = new Project();
+		this.project.getWorld().addVertex(v1).addVertex(v2).addVertex(v3);
+		this.project.getWorld().addTrack(this.t1).addTrack(this.t2);
+
+		VehicleType vt = new VehicleType();
+		vt.setName("NGT6");
+		vt.setLength(27.0);
+		vt.setMass(30000);
+		vt.setEnginePower(30000);
+		this.vehicle = new Vehicle();
+		this.vehicle.setName("2050");
+		this.vehicle.getVehicleType().set(vt);
+
+		this.project.getVehicleManager().addItem(this.vehicle);
+		TrackObject<Vehicle> trackObject = new TrackObject<>();
+		trackObject.setPosition(0.5);
+		this.vehicle.setTrackObject(trackObject);
+		this.t1.addTrackObject(trackObject);
+	}
+
+	@Test
+	public void testVehicleMovesToTheNextTrack() {
+		SimulationEngine engine = new SimulationEngine();
+		engine.load(this.project);
+		Assert.assertEquals(1, engine.getVehicleNum());
+		Assert.assertEquals(50.0, engine.getPosition(0), 0.0001);
+
+		engine.step(1.0);
+		Assert.assertEquals(1.0, engine.getSpeed(0), 0.0001);
+		Assert.assertEquals(51.0, engine.getPosition(0), 0.0001);
+
+		for(int i = 0; i < 10; i++) {
+			engine.step(1.0);
+		}
+		Assert.assertSame(this.t2, engine.getTrack(0));
+		Assert.assertEquals(SimulationEngine.DIRECTION_FORWARD, engine.getDirection(0));
+		Assert.assertSame(this.t1, this.vehicle.getTrackObject().getTrack());
+
+		engine.commit();
+		Assert.assertSame(this.t2, this.vehicle.getTrackObject().getTrack());
+		Assert.assertFalse(this.t1.hasTrackObjects());
+		Assert.assertEquals(engine.getPosition(0) / 100.0, this.vehicle.getTrackObject().getPosition(), 0.0001);
+	}
+
+	@Test
+	public void testVehicleReversesAtTheDeadEnd() {
+		SimulationEngine engine = new SimulationEngine();
+		engine.load(this.project);
+		for(int i = 0; i < 600; i++) {
+			engine.step(0.1);
+			Assert.assertTrue(engine.getSpeed(0) <= engine.getMaximumSpeed());
+			if(engine.getDirection(0) == SimulationEngine.DIRECTION_BACKWARD) {
+				break;
+			}
+		}
+		Assert.assertSame(this.t2, engine.getTrack(0));
+		Assert.assertEquals(SimulationEngine.DIRECTION_BACKWARD, engine.getDirection(0));
+		Assert.assertEquals(0.0, engine.getSpeed(0), 0.0001);
+		Assert.assertEquals(73.0, engine.getPosition(0), 0.02);
+	}
+}
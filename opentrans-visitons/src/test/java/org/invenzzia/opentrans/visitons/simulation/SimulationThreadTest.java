@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.invenzzia.opentrans.visitons.simulation;
+
+import org.invenzzia.opentrans.visitons.Project;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SimulationThreadTest {
+	@Test(timeout = 5000)
+	public void testPausedThreadIsResumedAndStopped() throws Exception {
+		SimulationThread thread = new SimulationThread();
+		thread.load(new Project());
+		thread.setTimeWarp(SimulationThread.MAXIMUM_SPEED);
+		thread.startAndWait();
+		Thread.sleep(50);
+		Assert.assertTrue(thread.isPaused());
+		Assert.assertEquals(0, thread.getStepNum());
+
+		thread.setPaused(false);
+		while(thread.getStepNum() == 0) {
+			Thread.sleep(1);
+		}
+		thread.setPaused(true);
+		thread.stopAndWait();
+		Assert.assertFalse(thread.isRunning());
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongMapTest {
+	@Test
+	public void testMapFollowsTheInsertionOrder() {
+		LongMap<String> map = new LongMap<>();
+		Map<Long, String> expected = new LinkedHashMap<>();
+		Random random = new Random(42);
+		for(int i = 0; i < 20000; i++) {
+			long key = random.nextInt(2000) - 1000;
+			if(random.nextInt(3) == 0) {
+				Assert.assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				String value = "v"+i;
+				Assert.assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			Assert.assertEquals(expected.size(), map.size());
+		}
+		for(Map.Entry<Long, String> entry: expected.entrySet()) {
+			Assert.assertTrue(map.containsKey(entry.getKey()));
+			Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		Assert.assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+		long keys[] = map.keyArray();
+		int i = 0;
+		for(Long key: expected.keySet()) {
+			Assert.assertEquals(key.longValue(), keys[i++]);
+		}
+	}
+	
+	@Test
+	public void testValuesCanBeRemovedByTheIterator() {
+		LongMap<String> map = new LongMap<>();
+		for(int i = 0; i < 100; i++) {
+			map.put(i, "v"+i);
+		}
+		Iterator<String> iterator = map.values().iterator();
+		while(iterator.hasNext()) {
+			if(iterator.next().endsWith("0")) {
+				iterator.remove();
+			}
+		}
+		Assert.assertEquals(90, map.size());
+		Assert.assertNull(map.get(50));
+		Assert.assertEquals("v51", map.get(51));
+		map.put(50, "again");
+		List<String> values = new ArrayList<>(map.values());
+		Assert.assertEquals("again", values.get(values.size() - 1));
+	}
+	
+	@Test
+	public void testSetRemembersTheOrder() {
+		LongSet set = new LongSet();
+		Assert.assertTrue(set.add(5));
+		Assert.assertTrue(set.add(-3));
+		Assert.assertFalse(set.add(5));
+		Assert.assertTrue(set.add(7));
+		Assert.assertTrue(set.remove(-3));
+		Assert.assertFalse(set.contains(-3));
+		Assert.assertArrayEquals(new long[] { 5, 7 }, set.toArray());
+	}
+	
+	@Test
+	public void testBiMapKeepsBothDirections() {
+		LongBiMap map = new LongBiMap(0);
+		map.put(-1, 10);
+		map.put(-2, 20);
+		Assert.assertEquals(10, map.get(-1));
+		Assert.assertEquals(-2, map.getKey(20));
+		Assert.assertEquals(0, map.get(-3));
+		Assert.assertEquals(10, map.put(-1, 11));
+		Assert.assertFalse(map.containsValue(10));
+		Assert.assertEquals(-1, map.getKey(11));
+		Assert.assertArrayEquals(new long[] { 11, 20 }, map.valueArray());
+		try {
+			map.put(-3, 20);
+			Assert.fail("The duplicate value has been accepted.");
+		} catch(IllegalArgumentException exception) {
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 Invenzzia Group <http://www.invenzzia.org/>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.invenzzia.opentrans.visitons.utils.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RTreeTest {
+	@Test
+	public void testSearchMatchesTheBruteForce() {
+		RTree<String> tree = new RTree<>();
+		Map<String, double[]> expected = new HashMap<>();
+		String items[] = this.createItems(1500);
+		Random random = new Random(42);
+		for(int i = 0; i < 5000; i++) {
+			String item = items[random.nextInt(items.length)];
+			if(random.nextInt(3) == 0) {
+				Assert.assertEquals(null != expected.remove(item), tree.remove(item));
+			} else {
+				double x = random.nextDouble() * 1000.0;
+				double y = random.nextDouble() * 1000.0;
+				double box[] = new double[] { x, y, x + random.nextDouble() * 20.0, y + random.nextDouble() * 20.0 };
+				expected.put(item, box);
+				tree.insert(item, box[0], box[1], box[2], box[3]);
+			}
+			Assert.assertEquals(expected.size(), tree.size());
+			if(i % 100 == 0) {
+				this.assertSameResults(tree, expected, random);
+			}
+		}
+		Assert.assertTrue(tree.getHeight() > 1);
+		this.assertSameResults(tree, expected, random);
+	}
+	
+	@Test
+	public void testRemovingAllItemsEmptiesTheTree() {
+		RTree<String> tree = new RTree<>();
+		String items[] = this.createItems(1000);
+		for(int i = 0; i < items.length; i++) {
+			tree.insert(items[i], i, i, i + 1.0, i + 1.0);
+		}
+		for(int i = 0; i < items.length; i++) {
+			Assert.assertTrue(tree.remove(items[i]));
+		}
+		Assert.assertTrue(tree.isEmpty());
+		Assert.assertEquals(1, tree.getHeight());
+		Set<String> found = new HashSet<>();
+		Assert.assertEquals(0, tree.search(0.0, 0.0, 2000.0, 2000.0, found));
+	}
+	
+	@Test
+	public void testNearestItemsAreFoundInOrder() {
+		RTree<String> tree = new RTree<>();
+		String items[] = this.createItems(500);
+		Random random = new Random(7);
+		double points[][] = new double[items.length][];
+		for(int i = 0; i < items.length; i++) {
+			points[i] = new double[] { random.nextDouble() * 1000.0, random.nextDouble() * 1000.0 };
+			tree.insert(items[i], points[i][0], points[i][1], points[i][0], points[i][1]);
+		}
+		List<String> found = new ArrayList<>();
+		tree.nearest(500.0, 500.0, 5, Double.POSITIVE_INFINITY, null, found);
+		Assert.assertEquals(5, found.size());
+		double sorted[] = new double[items.length];
+		for(int i = 0; i < items.length; i++) {
+			sorted[i] = Math.hypot(points[i][0] - 500.0, points[i][1] - 500.0);
+		}
+		Arrays.sort(sorted);
+		for(int i = 0; i < found.size(); i++) {
+			int index = Integer.parseInt(found.get(i).substring(4));
+			Assert.assertEquals(sorted[i], Math.hypot(points[index][0] - 500.0, points[index][1] - 500.0), 0.000001);
+		}
+		found.clear();
+		Assert.assertEquals(0, tree.nearest(-100.0, -100.0, 5, 10.0, null, found));
+	}
+	
+	/**
+	 * The tree compares the items by identity, so each of them must be a separate object.
+	 */
+	private String[] createItems(int num) {
+		String items[] = new String[num];
+		for(int i = 0; i < num; i++) {
+			items[i] = "item"+i;
+		}
+		return items;
+	}
+	
+	private void assertSameResults(RTree<String> tree, Map<String, double[]> expected, Random random) {
+		for(int j = 0; j < 20; j++) {
+			double x1 = random.nextDouble() * 1000.0;
+			double y1 = random.nextDouble() * 1000.0;
+			double x2 = x1 + random.nextDouble() * 200.0;
+			double y2 = y1 + random.nextDouble() * 200.0;
+			Set<String> bruteForce = new HashSet<>();
+			for(Map.Entry<String, double[]> entry: expected.entrySet()) {
+				double box[] = entry.getValue();
+				if(box[0] <= x2 && box[2] >= x1 && box[1] <= y2 && box[3] >= y1) {
+					bruteForce.add(entry.getKey());
+				}
+			}
+			Set<String> found = new HashSet<>();
+			tree.search(x1, y1, x2, y2, found);
+			Assert.assertEquals(bruteForce, found);
+		}
+	}
+}